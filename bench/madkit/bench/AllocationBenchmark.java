@@ -0,0 +1,215 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import madkit.kernel.AbstractAgent;
+import madkit.kernel.AbstractAgent.ReturnCode;
+import madkit.kernel.AgentAddress;
+import madkit.kernel.BenchKernel;
+import madkit.kernel.BenchKernel.RolePlayer;
+import madkit.kernel.BenchKernel.Sink;
+import madkit.kernel.Message;
+import madkit.kernel.Scheduler;
+import madkit.kernel.Watcher;
+import madkit.message.MessageFilter;
+import madkit.message.StringMessage;
+import madkit.simulation.ActivatorBenchmark.SimulatedAgent;
+import madkit.simulation.activator.GenericBehaviorActivator;
+import madkit.simulation.probe.DoublePropertyProbe;
+import madkit.simulation.probe.PropertyProbe;
+
+/**
+ * The kernel paths measured by {@link AllocationGate}. Messages are allocated
+ * once so that only what the kernel allocates is measured. Benchmarks
+ * annotated with {@link AllocationFree} make the gate fail if they allocate.
+ *
+ * @author Fabien Michel
+ * @since MaDKit 5.2
+ * @version 0.9
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AllocationBenchmark {
+
+    static final int ROLE_SIZE = 100;
+    static final int AGENTS = 1000;
+
+    private static final MessageFilter STRING_MESSAGES = m -> m instanceof StringMessage;
+
+    private BenchKernel kernel;
+    private AbstractAgent sender;
+    private AgentAddress sink;
+    private AbstractAgent mailbox;
+    private final Message message = new Message();
+    private final Message searched = new StringMessage("searched");
+    private GenericBehaviorActivator<AbstractAgent> activator;
+    private PropertyProbe<AbstractAgent, Double> energy;
+    private DoublePropertyProbe<AbstractAgent> primitiveEnergy;
+    private AbstractAgent simulated;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+	kernel = new BenchKernel();
+	sender = kernel.launch(new RolePlayer(BenchKernel.ROLE2));
+	final List<AbstractAgent> sinks = new ArrayList<>(ROLE_SIZE);
+	for (int i = 0; i < ROLE_SIZE; i++) {
+	    sinks.add(new Sink());
+	}
+	sender.launchAgentBucket(sinks, BenchKernel.CGR);
+	sink = sender.getAgentWithRole(BenchKernel.COMMUNITY, BenchKernel.GROUP, BenchKernel.ROLE);
+
+	mailbox = kernel.launchRolePlayer();
+	for (int i = 0; i < 10; i++) {
+	    mailbox.receiveMessage(new Message());
+	}
+
+	final Scheduler scheduler = kernel.launch(new Scheduler());
+	final Watcher watcher = kernel.launch(new Watcher());
+	final List<AbstractAgent> agents = new ArrayList<>(AGENTS);
+	for (int i = 0; i < AGENTS; i++) {
+	    agents.add(new SimulatedAgent());
+	}
+	scheduler.launchAgentBucket(agents, BenchKernel.COMMUNITY + "," + BenchKernel.GROUP + ",simulated");
+	activator = new GenericBehaviorActivator<>(BenchKernel.COMMUNITY, BenchKernel.GROUP, "simulated", "doIt");
+	scheduler.addActivator(activator);
+	energy = new PropertyProbe<>(BenchKernel.COMMUNITY, BenchKernel.GROUP, "simulated", "energy");
+	watcher.addProbe(energy);
+	primitiveEnergy = new DoublePropertyProbe<>(BenchKernel.COMMUNITY, BenchKernel.GROUP, "simulated", "energy");
+	watcher.addProbe(primitiveEnergy);
+	simulated = agents.get(0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+	kernel.exit();
+    }
+
+    @Benchmark
+    @AllocationFree
+    public ReturnCode sendMessage() {
+	return sender.sendMessage(sink, message);
+    }
+
+    @Benchmark
+    public ReturnCode broadcastMessage() {
+	return sender.broadcastMessage(BenchKernel.COMMUNITY, BenchKernel.GROUP, BenchKernel.ROLE, message);
+    }
+
+    @Benchmark
+    public ReturnCode requestRole() {
+	sender.requestRole(BenchKernel.COMMUNITY, BenchKernel.GROUP, "churn");
+	return sender.leaveRole(BenchKernel.COMMUNITY, BenchKernel.GROUP, "churn");
+    }
+
+    @Benchmark
+    public Message nextMessageWithFilter() {
+	mailbox.receiveMessage(searched);
+	return mailbox.nextMessage(STRING_MESSAGES);
+    }
+
+    /**
+     * The cost of {@link GenericBehaviorActivator#execute(Object...)} per
+     * agent.
+     */
+    @Benchmark
+    @AllocationFree
+    @OperationsPerInvocation(AGENTS)
+    public void genericBehaviorActivator() {
+	activator.execute();
+    }
+
+    @Benchmark
+    public Double getPropertyValue() {
+	return energy.getPropertyValue(simulated);
+    }
+
+    @Benchmark
+    @AllocationFree
+    public double getDouble() {
+	return primitiveEnergy.getDouble(simulated);
+    }
+
+    /**
+     * Launching a single agent. A new kernel is used for each iteration.
+     */
+    @State(Scope.Benchmark)
+    public static class Launching {
+
+	private BenchKernel kernel;
+	private AbstractAgent launcher;
+
+	@Setup(Level.Iteration)
+	public void setUp() {
+	    kernel = new BenchKernel();
+	    launcher = kernel.launchRolePlayer();
+	}
+
+	@TearDown(Level.Iteration)
+	public void tearDown() {
+	    kernel.exit();
+	}
+    }
+
+    @Benchmark
+    public ReturnCode launchAgent(Launching l) {
+	return l.launcher.launchAgent(new AbstractAgent());
+    }
+
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.bench;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs benchmarks with the JMH GC profiler, which reads the allocation counters
+ * of the threads, and reports the bytes allocated per operation. The run fails
+ * with exit status 1 if a benchmark annotated with {@link AllocationFree}
+ * allocates more than the tolerance, which is 0.5 byte per operation by
+ * default and can be changed with the <code>madkit.bench.alloc.tolerance</code>
+ * system property.
+ * <p>
+ * Arguments are the usual JMH command line options. By default,
+ * {@link AllocationBenchmark} is run.
+ *
+ * @author Fabien Michel
+ * @since MaDKit 5.2
+ * @version 0.9
+ *
+ */
+public class AllocationGate {
+
+    static final String ALLOCATION_METRIC = "gc.alloc.rate.norm";
+
+    /**
+     * @param args
+     *            JMH command line options
+     */
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+	final CommandLineOptions cmd = new CommandLineOptions(args);
+	final ChainedOptionsBuilder options = new OptionsBuilder().parent(cmd).addProfiler(GCProfiler.class);
+	if (cmd.getIncludes().isEmpty()) {
+	    options.include(AllocationBenchmark.class.getName());
+	}
+	if (!cmd.getResult().hasValue()) {
+	    options.resultFormat(ResultFormatType.JSON).result("jmh-alloc.json");
+	}
+	final double tolerance = Double.parseDouble(System.getProperty("madkit.bench.alloc.tolerance", "0.5"));
+	final Collection<RunResult> results = new Runner(options.build()).run();
+
+	int violations = 0;
+	System.out.println();
+	System.out.println(String.format(Locale.US, "%-80s %14s  %s", "benchmark", "bytes/op", "allocation free"));
+	for (RunResult r : results) {
+	    final String benchmark = r.getParams().getBenchmark();
+	    final Double bytes = bytesPerOp(r.getAggregatedResult().getSecondaryResults());
+	    final boolean allocationFree = isAllocationFree(benchmark);
+	    final boolean violation = allocationFree && (bytes == null || bytes > tolerance);
+	    if (violation) {
+		violations++;
+	    }
+	    System.out.println(String.format(Locale.US, "%-80s %14s  %s", benchmark + r.getParams().getParamsKeys().toString().replace("[]", ""),
+		    bytes == null ? "?" : String.format(Locale.US, "%.1f", bytes), allocationFree ? (violation ? "FAILED" : "yes") : ""));
+	}
+	if (violations > 0) {
+	    System.err.println(violations + " allocation free path(s) allocate more than " + tolerance + " byte/op");
+	    System.exit(1);
+	}
+    }
+
+    /**
+     * The metric label has been prefixed by a middle dot in some JMH
+     * versions.
+     */
+    private static Double bytesPerOp(Map<String, ?> secondaries) {
+	// JMH declares the secondary results with the raw Result type
+	for (Map.Entry<String, ?> e : secondaries.entrySet()) {
+	    if (e.getKey().endsWith(ALLOCATION_METRIC)) {
+		return ((Result<?>) e.getValue()).getScore();
+	    }
+	}
+	return null;
+    }
+
+    static boolean isAllocationFree(String benchmark) {
+	final int dot = benchmark.lastIndexOf('.');
+	try {
+	    for (Method m : Class.forName(benchmark.substring(0, dot)).getMethods()) {
+		if (m.getName().equals(benchmark.substring(dot + 1)) && m.isAnnotationPresent(AllocationFree.class)) {
+		    return true;
+		}
+	    }
+	}
+	catch(ClassNotFoundException e) {
+	    throw new IllegalStateException(e);
+	}
+	return false;
+    }
+
+}
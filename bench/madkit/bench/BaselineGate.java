@@ -0,0 +1,214 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+/**
+ * Stores JMH JSON results as named baselines and compares new runs against
+ * them.
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * BaselineGate save &lt;result.json&gt; &lt;baselines dir&gt; &lt;name&gt;
+ * BaselineGate compare &lt;result.json&gt; &lt;baselines dir&gt; &lt;name&gt; [threshold] [gated benchmarks regex] [confidence]
+ * </pre>
+ *
+ * A benchmark regresses when its score is worse than the baseline by more
+ * than <code>threshold</code> (0.10 meaning 10%) <b>and</b> the confidence
+ * intervals of both runs do not overlap. <code>compare</code> exits with
+ * status 1 when a gated benchmark regresses, 2 when the baseline does not
+ * exist. Benchmarks which are not gated are only reported.
+ *
+ * @author Fabien Michel
+ * @since MaDKit 5.2
+ * @version 0.9
+ *
+ */
+public class BaselineGate {
+
+    /**
+     * The kernel hot paths: sending, broadcasting, launching and activator
+     * steps.
+     */
+    public static final String DEFAULT_GATED = ".*\\.(SendMessageBenchmark|BroadcastBenchmark|LaunchBucketBenchmark|ActivatorBenchmark)\\..*";
+    public static final double DEFAULT_THRESHOLD = 0.10;
+    public static final double DEFAULT_CONFIDENCE = 0.99;
+
+    enum Verdict {
+	SAME, FASTER, SLOWER, REGRESSION, NEW, MISSING
+    }
+
+    private final double threshold;
+    private final double confidence;
+    private final Pattern gated;
+
+    public BaselineGate(double threshold, double confidence, String gatedRegex) {
+	this.threshold = threshold;
+	this.confidence = confidence;
+	gated = Pattern.compile(gatedRegex);
+    }
+
+    /**
+     * Compares a new result to its baseline.
+     *
+     * @param baseline
+     *            the baseline result or <code>null</code>
+     * @param current
+     *            the new result or <code>null</code>
+     * @return the verdict
+     */
+    Verdict compare(BenchmarkResult baseline, BenchmarkResult current) {
+	if (baseline == null) {
+	    return Verdict.NEW;
+	}
+	if (current == null) {
+	    return Verdict.MISSING;
+	}
+	final double[] b = baseline.confidenceInterval(confidence);
+	final double[] c = current.confidenceInterval(confidence);
+	final double change = relativeChange(baseline, current);
+	final boolean disjoint = c[0] > b[1] || c[1] < b[0];
+	if (!disjoint) {
+	    return Verdict.SAME;
+	}
+	if (change > threshold) {
+	    return Verdict.REGRESSION;
+	}
+	return change > 0 ? Verdict.SLOWER : Verdict.FASTER;
+    }
+
+    /**
+     * @return how much worse the current score is, as a fraction of the baseline
+     *         score, negative if it is better.
+     */
+    static double relativeChange(BenchmarkResult baseline, BenchmarkResult current) {
+	final double change = (current.getScore() - baseline.getScore()) / baseline.getScore();
+	return current.isHigherBetter() ? -change : change;
+    }
+
+    /**
+     * Prints the comparison of all the benchmarks of both runs.
+     *
+     * @return the number of regressions of gated benchmarks
+     */
+    int report(Map<String, BenchmarkResult> baselines, Map<String, BenchmarkResult> results) {
+	int regressions = 0;
+	final Set<String> keys = new TreeSet<>(baselines.keySet());
+	keys.addAll(results.keySet());
+	System.out.println(String.format(Locale.US, "%-90s %14s %14s %9s  %s", "benchmark", "baseline", "current", "change", "verdict"));
+	for (String key : keys) {
+	    final BenchmarkResult b = baselines.get(key);
+	    final BenchmarkResult c = results.get(key);
+	    Verdict v = compare(b, c);
+	    final boolean isGated = gated.matcher(key).matches();
+	    if (v == Verdict.REGRESSION) {
+		if (isGated) {
+		    regressions++;
+		}
+		else {
+		    v = Verdict.SLOWER;
+		}
+	    }
+	    System.out.println(String.format(Locale.US, "%-90s %14s %14s %9s  %s%s", key, format(b), format(c),
+		    b != null && c != null ? String.format(Locale.US, "%+.1f%%", relativeChange(b, c) * 100) : "", v, isGated ? "" : " (not gated)"));
+	}
+	return regressions;
+    }
+
+    private String format(BenchmarkResult r) {
+	if (r == null) {
+	    return "-";
+	}
+	final double[] ci = r.confidenceInterval(confidence);
+	return String.format(Locale.US, "%.3f+-%.3f", r.getScore(), (ci[1] - ci[0]) / 2);
+    }
+
+    static Path baselineFile(String dir, String name) {
+	return Paths.get(dir, name + ".json");
+    }
+
+    /**
+     * @param args
+     *            see the class documentation
+     */
+    public static void main(String[] args) throws IOException {
+	if (args.length < 4) {
+	    System.err.println("usage: save <result.json> <baselines dir> <name>\n" + "       compare <result.json> <baselines dir> <name> [threshold] [gated regex] [confidence]");
+	    System.exit(2);
+	}
+	final Path result = Paths.get(args[1]);
+	final Path baseline = baselineFile(args[2], args[3]);
+	switch (args[0]) {
+	case "save":
+	    BenchmarkResult.read(result);// fails if this is not a JMH result
+	    Files.createDirectories(baseline.getParent());
+	    Files.copy(result, baseline, StandardCopyOption.REPLACE_EXISTING);
+	    System.out.println(result + " saved as baseline " + baseline);
+	    break;
+	case "compare":
+	    if (!Files.exists(baseline)) {
+		System.err.println("no baseline " + baseline + " : save one first");
+		System.exit(2);
+	    }
+	    final BaselineGate gate = new BaselineGate(args.length > 4 ? Double.parseDouble(args[4]) : DEFAULT_THRESHOLD, args.length > 6 ? Double.parseDouble(args[6]) : DEFAULT_CONFIDENCE,
+		    args.length > 5 ? args[5] : DEFAULT_GATED);
+	    System.out.println("comparing " + result + " to " + baseline);
+	    final int regressions = gate.report(BenchmarkResult.read(baseline), BenchmarkResult.read(result));
+	    if (regressions > 0) {
+		System.err.println(regressions + " hot path regression(s) beyond " + gate.threshold * 100 + "%");
+		System.exit(1);
+	    }
+	    System.out.println("no hot path regression");
+	    break;
+	default:
+	    System.err.println("unknown command " + args[0]);
+	    System.exit(2);
+	}
+    }
+
+}
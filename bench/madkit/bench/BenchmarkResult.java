@@ -0,0 +1,388 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.bench;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.commons.math3.distribution.TDistribution;
+
+/**
+ * One entry of a JMH JSON result file: the primary metric of a benchmark for a
+ * given set of parameters, together with all its measurement samples so that
+ * confidence intervals can be computed the same way for a baseline and for a
+ * new run.
+ *
+ * @author Fabien Michel
+ * @since MaDKit 5.2
+ * @version 0.9
+ *
+ */
+public class BenchmarkResult {
+
+    private final String key;
+    private final String mode;
+    private final String unit;
+    private final double score;
+    private final double[] samples;
+    private final Map<String, Double> secondaryScores;
+
+    private BenchmarkResult(String key, String mode, String unit, double score, double[] samples, Map<String, Double> secondaryScores) {
+	this.key = key;
+	this.mode = mode;
+	this.unit = unit;
+	this.score = score;
+	this.samples = samples;
+	this.secondaryScores = secondaryScores;
+    }
+
+    /**
+     * @return the benchmark method name followed by its parameters, e.g.
+     *         <code>madkit.messaging.BroadcastBenchmark.broadcast{roleSize=10}</code>
+     */
+    public String getKey() {
+	return key;
+    }
+
+    /**
+     * @return the JMH mode, e.g. <code>avgt</code> or <code>thrpt</code>
+     */
+    public String getMode() {
+	return mode;
+    }
+
+    public String getUnit() {
+	return unit;
+    }
+
+    public double getScore() {
+	return score;
+    }
+
+    /**
+     * Tells if a higher score is better, which is only the case for the
+     * throughput mode.
+     *
+     * @return <code>true</code> for the throughput mode
+     */
+    public boolean isHigherBetter() {
+	return "thrpt".equals(mode);
+    }
+
+    /**
+     * Returns the score of a secondary metric, such as the ones produced by JMH
+     * profilers.
+     *
+     * @param label
+     *            the label of the secondary metric, e.g.
+     *            <code>·gc.alloc.rate.norm</code>
+     * @return the score or <code>null</code> if there is no such metric
+     */
+    public Double getSecondaryScore(String label) {
+	return secondaryScores.get(label);
+    }
+
+    /**
+     * Computes the confidence interval of the mean of the samples using the
+     * Student distribution.
+     *
+     * @param confidence
+     *            the confidence level, e.g. 0.99
+     * @return the lower and upper bounds. Both are the score when there is only
+     *         one sample.
+     */
+    public double[] confidenceInterval(double confidence) {
+	final int n = samples.length;
+	if (n < 2) {
+	    return new double[] { score, score };
+	}
+	double mean = 0;
+	for (double s : samples) {
+	    mean += s;
+	}
+	mean /= n;
+	double variance = 0;
+	for (double s : samples) {
+	    variance += (s - mean) * (s - mean);
+	}
+	variance /= n - 1;
+	final double t = new TDistribution(n - 1).inverseCumulativeProbability(1 - (1 - confidence) / 2);
+	final double error = t * Math.sqrt(variance / n);
+	return new double[] { mean - error, mean + error };
+    }
+
+    @Override
+    public String toString() {
+	return key + " " + score + " " + unit;
+    }
+
+    /**
+     * Reads a JMH result file produced with <code>-rf json</code>.
+     *
+     * @param file
+     *            the JSON file
+     * @return the results ordered by key
+     * @throws IOException
+     *             if the file cannot be read or is not a JMH JSON file
+     */
+    @SuppressWarnings("unchecked")
+    public static Map<String, BenchmarkResult> read(Path file) throws IOException {
+	final Object json = new JsonReader(new String(Files.readAllBytes(file), StandardCharsets.UTF_8)).parse();
+	if (!(json instanceof List)) {
+	    throw new IOException(file + " is not a JMH JSON result file");
+	}
+	final Map<String, BenchmarkResult> results = new TreeMap<>();
+	for (Object o : (List<Object>) json) {
+	    final Map<String, Object> entry = (Map<String, Object>) o;
+	    final StringBuilder key = new StringBuilder((String) entry.get("benchmark"));
+	    final Map<String, Object> params = (Map<String, Object>) entry.get("params");
+	    if (params != null) {
+		key.append(new TreeMap<>(params));
+	    }
+	    final Map<String, Object> primary = (Map<String, Object>) entry.get("primaryMetric");
+	    final List<Double> samples = new ArrayList<>();
+	    final List<Object> forks = (List<Object>) primary.get("rawData");
+	    if (forks != null) {
+		for (Object fork : forks) {
+		    for (Object sample : (List<Object>) fork) {
+			samples.add(toDouble(sample));
+		    }
+		}
+	    }
+	    final double[] s = new double[samples.size()];
+	    for (int i = 0; i < s.length; i++) {
+		s[i] = samples.get(i);
+	    }
+	    final Map<String, Double> secondaries = new LinkedHashMap<>();
+	    final Map<String, Object> secondary = (Map<String, Object>) entry.get("secondaryMetrics");
+	    if (secondary != null) {
+		for (Map.Entry<String, Object> e : secondary.entrySet()) {
+		    secondaries.put(e.getKey(), toDouble(((Map<String, Object>) e.getValue()).get("score")));
+		}
+	    }
+	    results.put(key.toString(),
+		    new BenchmarkResult(key.toString(), (String) entry.get("mode"), (String) primary.get("scoreUnit"), toDouble(primary.get("score")), s, Collections.unmodifiableMap(secondaries)));
+	}
+	return results;
+    }
+
+    private static double toDouble(Object o) {
+	if (o instanceof Number) {
+	    return ((Number) o).doubleValue();
+	}
+	return o == null ? Double.NaN : Double.parseDouble(o.toString());
+    }
+
+    /**
+     * A minimal JSON reader, sufficient for JMH result files: objects become
+     * maps, arrays lists, numbers doubles.
+     */
+    static final class JsonReader {
+
+	private final String text;
+	private int pos;
+
+	JsonReader(String text) {
+	    this.text = text;
+	}
+
+	Object parse() throws IOException {
+	    final Object value = value();
+	    skipSpaces();
+	    if (pos != text.length()) {
+		throw error("end of input expected");
+	    }
+	    return value;
+	}
+
+	private Object value() throws IOException {
+	    skipSpaces();
+	    if (pos == text.length()) {
+		throw error("value expected");
+	    }
+	    final char c = text.charAt(pos);
+	    switch (c) {
+	    case '{':
+		return object();
+	    case '[':
+		return array();
+	    case '"':
+		return string();
+	    default:
+		if (text.startsWith("true", pos)) {
+		    pos += 4;
+		    return Boolean.TRUE;
+		}
+		if (text.startsWith("false", pos)) {
+		    pos += 5;
+		    return Boolean.FALSE;
+		}
+		if (text.startsWith("null", pos)) {
+		    pos += 4;
+		    return null;
+		}
+		return number();
+	    }
+	}
+
+	private Map<String, Object> object() throws IOException {
+	    final Map<String, Object> map = new LinkedHashMap<>();
+	    pos++;
+	    skipSpaces();
+	    if (text.charAt(pos) == '}') {
+		pos++;
+		return map;
+	    }
+	    while (true) {
+		skipSpaces();
+		final String name = string();
+		skipSpaces();
+		expect(':');
+		map.put(name, value());
+		skipSpaces();
+		if (text.charAt(pos) == ',') {
+		    pos++;
+		}
+		else {
+		    expect('}');
+		    return map;
+		}
+	    }
+	}
+
+	private List<Object> array() throws IOException {
+	    final List<Object> list = new ArrayList<>();
+	    pos++;
+	    skipSpaces();
+	    if (text.charAt(pos) == ']') {
+		pos++;
+		return list;
+	    }
+	    while (true) {
+		list.add(value());
+		skipSpaces();
+		if (text.charAt(pos) == ',') {
+		    pos++;
+		}
+		else {
+		    expect(']');
+		    return list;
+		}
+	    }
+	}
+
+	private String string() throws IOException {
+	    expect('"');
+	    final StringBuilder sb = new StringBuilder();
+	    while (pos < text.length()) {
+		final char c = text.charAt(pos++);
+		if (c == '"') {
+		    return sb.toString();
+		}
+		if (c == '\\') {
+		    final char e = text.charAt(pos++);
+		    switch (e) {
+		    case 'n':
+			sb.append('\n');
+			break;
+		    case 't':
+			sb.append('\t');
+			break;
+		    case 'r':
+			sb.append('\r');
+			break;
+		    case 'b':
+			sb.append('\b');
+			break;
+		    case 'f':
+			sb.append('\f');
+			break;
+		    case 'u':
+			sb.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+			pos += 4;
+			break;
+		    default:
+			sb.append(e);
+		    }
+		}
+		else {
+		    sb.append(c);
+		}
+	    }
+	    throw error("unterminated string");
+	}
+
+	private Double number() throws IOException {
+	    final int start = pos;
+	    while (pos < text.length() && "+-0123456789.eE".indexOf(text.charAt(pos)) >= 0) {
+		pos++;
+	    }
+	    try {
+		return Double.valueOf(text.substring(start, pos));
+	    }
+	    catch(NumberFormatException e) {
+		throw error("number expected");
+	    }
+	}
+
+	private void expect(char c) throws IOException {
+	    if (pos >= text.length() || text.charAt(pos) != c) {
+		throw error("'" + c + "' expected");
+	    }
+	    pos++;
+	}
+
+	private void skipSpaces() {
+	    while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+		pos++;
+	    }
+	}
+
+	private IOException error(String message) {
+	    return new IOException("JSON: " + message + " at " + pos);
+	}
+    }
+
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.bench;
+
+import java.util.Arrays;
+
+/**
+ * A log-linear histogram of nanosecond latencies: each power of two is split
+ * into 32 linear buckets so that recorded values keep a relative precision of
+ * about 3%. Recording does not allocate.
+ *
+ * @author Fabien Michel
+ * @since MaDKit 5.2
+ * @version 0.9
+ *
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    private final long[] counts = new long[(64 - SUB_BITS + 1) * SUB_BUCKETS];
+    private long count;
+    private long max;
+
+    static int indexOf(long value) {
+	if (value < SUB_BUCKETS) {
+	    return (int) Math.max(value, 0);
+	}
+	final int exponent = 63 - Long.numberOfLeadingZeros(value);
+	final int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+	return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * @return the highest value which falls into this bucket
+     */
+    static long highestValueOf(int index) {
+	if (index < SUB_BUCKETS) {
+	    return index;
+	}
+	final int shift = index / SUB_BUCKETS - 1;
+	return ((long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift) + (1L << shift) - 1;
+    }
+
+    public synchronized void record(long nanos) {
+	counts[indexOf(nanos)]++;
+	count++;
+	if (nanos > max) {
+	    max = nanos;
+	}
+    }
+
+    public synchronized long getCount() {
+	return count;
+    }
+
+    public synchronized long getMax() {
+	return max;
+    }
+
+    /**
+     * @param quantile
+     *            between 0 and 1, e.g. 0.999
+     * @return the value below which this quantile of the recorded values falls,
+     *         or 0 if nothing has been recorded
+     */
+    public synchronized long getValueAtQuantile(double quantile) {
+	if (count == 0) {
+	    return 0;
+	}
+	final long rank = Math.max(1, (long) Math.ceil(quantile * count));
+	long seen = 0;
+	for (int i = 0; i < counts.length; i++) {
+	    seen += counts[i];
+	    if (seen >= rank) {
+		return Math.min(highestValueOf(i), max);
+	    }
+	}
+	return max;
+    }
+
+    /**
+     * Copies the recorded values into <code>target</code> and resets this
+     * histogram, atomically.
+     *
+     * @param target
+     *            the histogram receiving the values
+     */
+    public synchronized void moveTo(LatencyHistogram target) {
+	synchronized (target) {
+	    System.arraycopy(counts, 0, target.counts, 0, counts.length);
+	    target.count = count;
+	    target.max = max;
+	}
+	Arrays.fill(counts, 0);
+	count = 0;
+	max = 0;
+    }
+
+}
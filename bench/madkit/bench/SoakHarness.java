@@ -0,0 +1,316 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.bench;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import madkit.kernel.AbstractAgent;
+import madkit.kernel.Agent;
+import madkit.kernel.BenchKernel;
+import madkit.kernel.BenchKernel.RolePlayer;
+import madkit.kernel.Madkit.BooleanOption;
+import madkit.kernel.Message;
+
+/**
+ * Drives a kernel for a long time with a configurable load and records, for
+ * each sampling period, the throughput and the p50/p99/p999 latencies of each
+ * kind of operation, together with the heap usage, the number of threads,
+ * the population and the largest mailbox. The load is made of:
+ * <ul>
+ * <li>a population of {@link AbstractAgent}s and threaded {@link Agent}s
+ * playing the same role,</li>
+ * <li>point to point messages sent to this role and broadcasts to it,</li>
+ * <li>launch/kill churn, alternating threaded and non threaded agents,</li>
+ * <li>role churn: population members requesting and leaving a role,</li>
+ * <li>optionally, other kernels connected over the loopback network, hosting
+ * threaded agents in the same distributed group.</li>
+ * </ul>
+ * Each kind of operation is issued by its own thread at a fixed rate.
+ * Latencies are measured from the time the operation should have started so
+ * that a saturated kernel shows up in the percentiles.
+ * <p>
+ * Options, all optional, are given as <code>--name value</code>:
+ *
+ * <pre>
+ * --duration 60 (s)       --period 1 (s)              --csv soak.csv
+ * --abstractAgents 1000   --threadedAgents 50
+ * --sendRate 10000 (/s)   --broadcastRate 10 (/s)
+ * --launchKillRate 50 (/s) --roleChurnRate 100 (/s)    --kernels 1
+ * </pre>
+ *
+ * A rate of 0 disables the corresponding operation.
+ *
+ * @author Fabien Michel
+ * @since MaDKit 5.2
+ * @version 0.9
+ *
+ */
+public class SoakHarness {
+
+    static final String POPULATION = BenchKernel.ROLE;
+    static final String DRIVER = BenchKernel.ROLE2;
+    static final String CHURN = "churn";
+
+    private final Map<String, String> options = new LinkedHashMap<>();
+    private final Map<String, LatencyHistogram> histograms = new LinkedHashMap<>();
+    private final List<AbstractAgent> population = new CopyOnWriteArrayList<>();
+    private final List<BenchKernel> kernels = new ArrayList<>();
+    private final List<Thread> drivers = new ArrayList<>();
+    private final AtomicLong errors = new AtomicLong();
+    private volatile boolean running = true;
+    private BenchKernel kernel;
+    private AbstractAgent driver;
+
+    SoakHarness(String... args) {
+	options.put("duration", "60");
+	options.put("period", "1");
+	options.put("csv", "soak.csv");
+	options.put("abstractAgents", "1000");
+	options.put("threadedAgents", "50");
+	options.put("sendRate", "10000");
+	options.put("broadcastRate", "10");
+	options.put("launchKillRate", "50");
+	options.put("roleChurnRate", "100");
+	options.put("kernels", "1");
+	for (int i = 0; i < args.length - 1; i += 2) {
+	    if (!args[i].startsWith("--") || !options.containsKey(args[i].substring(2))) {
+		throw new IllegalArgumentException("unknown option " + args[i] + ", available: " + options.keySet());
+	    }
+	    options.put(args[i].substring(2), args[i + 1]);
+	}
+    }
+
+    private int intOption(String name) {
+	return Integer.parseInt(options.get(name));
+    }
+
+    /**
+     * A threaded population member which consumes its mailbox.
+     */
+    public static class SoakAgent extends Agent {
+
+	@Override
+	protected void activate() {
+	    createGroupIfAbsent(BenchKernel.COMMUNITY, BenchKernel.GROUP, true);
+	    requestRole(BenchKernel.COMMUNITY, BenchKernel.GROUP, POPULATION);
+	}
+
+	@Override
+	protected void live() {
+	    while (true) {
+		waitNextMessage();
+	    }
+	}
+    }
+
+    /**
+     * An operation issued by a driver thread.
+     */
+    interface Operation {
+
+	void run(ThreadLocalRandom random);
+    }
+
+    private void start() {
+	final int nbOfKernels = intOption("kernels");
+	final String[] network = nbOfKernels > 1 ? new String[] { BooleanOption.network.toString() } : new String[0];
+	kernel = new BenchKernel(network);
+	kernels.add(kernel);
+	driver = kernel.launch(new RolePlayer(DRIVER) {
+
+	    @Override
+	    protected void activate() {
+		createGroupIfAbsent(BenchKernel.COMMUNITY, BenchKernel.GROUP, true);
+		super.activate();
+	    }
+	});
+	final List<AbstractAgent> bucket = new ArrayList<>();
+	for (int i = intOption("abstractAgents"); i > 0; i--) {
+	    bucket.add(new AbstractAgent());
+	}
+	driver.launchAgentBucket(bucket, BenchKernel.CGR);
+	population.addAll(bucket);
+	for (int i = intOption("threadedAgents"); i > 0; i--) {
+	    population.add(kernel.launch(new SoakAgent()));
+	}
+	for (int i = 1; i < nbOfKernels; i++) {
+	    final BenchKernel remote = new BenchKernel(network);
+	    kernels.add(remote);
+	    for (int j = intOption("threadedAgents"); j > 0; j--) {
+		remote.launch(new SoakAgent());
+	    }
+	}
+
+	final Queue<AbstractAgent> churned = new ArrayDeque<>();
+	startDriver("send", intOption("sendRate"), r -> driver.sendMessage(BenchKernel.COMMUNITY, BenchKernel.GROUP, POPULATION, new Message()));
+	startDriver("broadcast", intOption("broadcastRate"), r -> driver.broadcastMessage(BenchKernel.COMMUNITY, BenchKernel.GROUP, POPULATION, new Message()));
+	startDriver("launch+kill", intOption("launchKillRate"), r -> {
+	    final AbstractAgent a = r.nextBoolean() ? new SoakAgent() : new RolePlayer(POPULATION);
+	    driver.launchAgent(a);
+	    churned.add(a);
+	    if (churned.size() > 100) {
+		driver.killAgent(churned.poll(), 2);
+	    }
+	});
+	startDriver("role", intOption("roleChurnRate"), r -> {
+	    final AbstractAgent a = population.get(r.nextInt(population.size()));
+	    a.requestRole(BenchKernel.COMMUNITY, BenchKernel.GROUP, CHURN);
+	    a.leaveRole(BenchKernel.COMMUNITY, BenchKernel.GROUP, CHURN);
+	});
+    }
+
+    private void startDriver(String name, int ratePerSecond, Operation operation) {
+	if (ratePerSecond <= 0) {
+	    return;
+	}
+	final LatencyHistogram histogram = new LatencyHistogram();
+	histograms.put(name, histogram);
+	final long interval = TimeUnit.SECONDS.toNanos(1) / ratePerSecond;
+	final Thread t = new Thread(() -> {
+	    final ThreadLocalRandom random = ThreadLocalRandom.current();
+	    long intendedStart = System.nanoTime();
+	    while (running) {
+		final long wait = intendedStart - System.nanoTime();
+		if (wait > 0) {
+		    LockSupport.parkNanos(wait);
+		    continue;
+		}
+		try {
+		    operation.run(random);
+		}
+		catch(RuntimeException e) {
+		    errors.incrementAndGet();
+		}
+		histogram.record(System.nanoTime() - intendedStart);
+		intendedStart += interval;
+	    }
+	}, "soak " + name);
+	t.setDaemon(true);
+	drivers.add(t);
+	t.start();
+    }
+
+    private void run() throws IOException, InterruptedException {
+	final long period = TimeUnit.SECONDS.toNanos(intOption("period"));
+	final long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(intOption("duration"));
+	final LatencyHistogram snapshot = new LatencyHistogram();
+	try (PrintWriter csv = new PrintWriter(Files.newBufferedWriter(Paths.get(options.get("csv")), StandardCharsets.UTF_8))) {
+	    csv.println("time_s,operation,count,throughput_per_s,p50_us,p99_us,p999_us,max_us,errors,heap_used_mb,heap_committed_mb,threads,population,max_mailbox");
+	    final long start = System.nanoTime();
+	    long next = start;
+	    while ((next += period) < end) {
+		TimeUnit.NANOSECONDS.sleep(next - System.nanoTime());
+		final double elapsed = (System.nanoTime() - start) / 1e9;
+		final int maxMailbox = drainMailboxes();
+		final MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+		final int threads = ManagementFactory.getThreadMXBean().getThreadCount();
+		final long errorCount = errors.getAndSet(0);
+		for (Map.Entry<String, LatencyHistogram> e : histograms.entrySet()) {
+		    e.getValue().moveTo(snapshot);
+		    csv.println(String.format(Locale.US, "%.1f,%s,%d,%.1f,%.1f,%.1f,%.1f,%.1f,%d,%.1f,%.1f,%d,%d,%d", elapsed, e.getKey(), snapshot.getCount(),
+			    snapshot.getCount() / (period / 1e9), snapshot.getValueAtQuantile(0.5) / 1e3, snapshot.getValueAtQuantile(0.99) / 1e3,
+			    snapshot.getValueAtQuantile(0.999) / 1e3, snapshot.getMax() / 1e3, errorCount, heap.getUsed() / 1048576.0,
+			    heap.getCommitted() / 1048576.0, threads, population.size(), maxMailbox));
+		}
+		csv.flush();
+		System.out.println(String.format(Locale.US, "%8.1fs heap %6.1f MB, %4d threads, max mailbox %d", elapsed, heap.getUsed() / 1048576.0, threads, maxMailbox));
+	    }
+	}
+    }
+
+    /**
+     * Empties the mailboxes of the non threaded agents, which nobody reads.
+     *
+     * @return the size of the largest mailbox of the population
+     */
+    private int drainMailboxes() {
+	int max = 0;
+	for (AbstractAgent a : population) {
+	    final int size = a instanceof Agent ? BenchKernel.mailboxSize(a) : a.nextMessages(null).size();
+	    if (size > max) {
+		max = size;
+	    }
+	}
+	return max;
+    }
+
+    private void stop() throws InterruptedException {
+	running = false;
+	for (Thread t : drivers) {
+	    t.join(10_000);
+	}
+	for (BenchKernel k : kernels) {
+	    k.exit();
+	}
+    }
+
+    /**
+     * @param args
+     *            see the class documentation
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+	final SoakHarness harness = new SoakHarness(args);
+	System.out.println("soak test " + harness.options);
+	harness.start();
+	try {
+	    harness.run();
+	}
+	finally {
+	    harness.stop();
+	}
+	System.out.println("results in " + harness.options.get("csv"));
+    }
+
+}
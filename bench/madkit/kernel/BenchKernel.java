@@ -0,0 +1,163 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.kernel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import madkit.action.KernelAction;
+import madkit.agr.DefaultMaDKitRoles;
+import madkit.agr.LocalCommunity;
+import madkit.agr.LocalCommunity.Groups;
+import madkit.kernel.AbstractAgent.ReturnCode;
+import madkit.kernel.Madkit.BooleanOption;
+import madkit.kernel.Madkit.LevelOption;
+import madkit.kernel.Madkit.Option;
+
+/**
+ * A headless kernel used by the JMH benchmarks to get launched agents. All the
+ * loggers are turned off so that measures only reflect the kernel work.
+ *
+ * @author Fabien Michel
+ * @since MaDKit 5.2
+ * @version 0.9
+ *
+ */
+public class BenchKernel {
+
+    public static final String COMMUNITY = "bench";
+    public static final String GROUP = "bench";
+    public static final String ROLE = "agent";
+    public static final String ROLE2 = "other";
+    public static final String CGR = COMMUNITY + "," + GROUP + "," + ROLE;
+
+    private final Madkit madkit;
+    private final AbstractAgent kernelAgent;
+
+    /**
+     * Boots a new kernel without desktop nor logging.
+     *
+     * @param options
+     *            additional MaDKit options
+     */
+    public BenchKernel(String... options) {
+	final List<String> args = new ArrayList<>(Arrays.asList(
+		BooleanOption.desktop.toString(), "false",
+		Option.launchAgents.toString(), AbstractAgent.class.getName(),
+		LevelOption.madkitLogLevel.toString(), "OFF",
+		LevelOption.kernelLogLevel.toString(), "OFF",
+		LevelOption.networkLogLevel.toString(), "OFF",
+		LevelOption.agentLogLevel.toString(), "OFF"));
+	args.addAll(Arrays.asList(options));
+	madkit = new Madkit(args.toArray(new String[args.size()]));
+	kernelAgent = madkit.getKernel().getAgentWithRole(null, LocalCommunity.NAME, Groups.SYSTEM, DefaultMaDKitRoles.GROUP_MANAGER_ROLE).getAgent();
+    }
+
+    /**
+     * Launches an agent on this kernel.
+     *
+     * @param agent
+     *            the agent to launch
+     * @return the launched agent
+     * @throws IllegalStateException
+     *             if the launch does not succeed
+     */
+    public <A extends AbstractAgent> A launch(final A agent) {
+	final ReturnCode r = kernelAgent.launchAgent(agent);
+	if (r != ReturnCode.SUCCESS) {
+	    throw new IllegalStateException("launching " + agent + " : " + r);
+	}
+	return agent;
+    }
+
+    /**
+     * Launches an agent which only plays {@link #ROLE} in {@link #COMMUNITY},
+     * {@link #GROUP}.
+     *
+     * @return the launched agent
+     */
+    public AbstractAgent launchRolePlayer() {
+	return launch(new RolePlayer(ROLE));
+    }
+
+    /**
+     * @param agent
+     *            any agent
+     * @return the number of messages in its mailbox
+     */
+    public static int mailboxSize(final AbstractAgent agent) {
+	return agent.messageBox.size();
+    }
+
+    /**
+     * Shuts down the kernel.
+     */
+    public void exit() {
+	madkit.doAction(KernelAction.EXIT);
+    }
+
+    /**
+     * An agent taking a role at activation.
+     */
+    public static class RolePlayer extends AbstractAgent {
+
+	private final String role;
+
+	public RolePlayer(String role) {
+	    this.role = role;
+	}
+
+	@Override
+	protected void activate() {
+	    createGroupIfAbsent(COMMUNITY, GROUP);
+	    requestRole(COMMUNITY, GROUP, role);
+	}
+    }
+
+    /**
+     * An agent which drops the messages it receives, so that long benchmarks do
+     * not fill up mailboxes.
+     */
+    public static class Sink extends AbstractAgent {
+
+	@Override
+	public void receiveMessage(Message m) {
+	}
+    }
+
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.messaging;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import madkit.kernel.AbstractAgent;
+import madkit.kernel.AbstractAgent.ReturnCode;
+import madkit.kernel.AgentAddress;
+import madkit.kernel.BenchKernel;
+import madkit.kernel.BenchKernel.RolePlayer;
+import madkit.kernel.BenchKernel.Sink;
+import madkit.kernel.Message;
+
+/**
+ * Point to point messaging: sending using an {@link AgentAddress} and sending
+ * using a community, group, role triplet.
+ *
+ * @author Fabien Michel
+ * @since MaDKit 5.2
+ * @version 0.9
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SendMessageBenchmark {
+
+    private BenchKernel kernel;
+    private AbstractAgent sender;
+    private AgentAddress receiver;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+	kernel = new BenchKernel();
+	sender = kernel.launchRolePlayer();
+	kernel.launch(new Sink() {
+
+	    @Override
+	    protected void activate() {
+		createGroupIfAbsent(BenchKernel.COMMUNITY, BenchKernel.GROUP);
+		requestRole(BenchKernel.COMMUNITY, BenchKernel.GROUP, BenchKernel.ROLE2);
+	    }
+	});
+	receiver = sender.getAgentWithRole(BenchKernel.COMMUNITY, BenchKernel.GROUP, BenchKernel.ROLE2);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+	kernel.exit();
+    }
+
+    @Benchmark
+    public ReturnCode sendByAddress() {
+	return sender.sendMessage(receiver, new Message());
+    }
+
+    @Benchmark
+    public ReturnCode sendByCGR() {
+	return sender.sendMessage(BenchKernel.COMMUNITY, BenchKernel.GROUP, BenchKernel.ROLE2, new Message());
+    }
+
+    /**
+     * Sending to an agent which keeps the message in its mailbox, which is then
+     * emptied: the whole point to point round.
+     */
+    @State(Scope.Benchmark)
+    public static class Delivered {
+
+	private BenchKernel kernel;
+	private AbstractAgent sender;
+	private AbstractAgent receiver;
+	private AgentAddress receiverAddress;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+	    kernel = new BenchKernel();
+	    sender = kernel.launchRolePlayer();
+	    receiver = kernel.launch(new RolePlayer(BenchKernel.ROLE2));
+	    receiverAddress = sender.getAgentWithRole(BenchKernel.COMMUNITY, BenchKernel.GROUP, BenchKernel.ROLE2);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+	    kernel.exit();
+	}
+    }
+
+    @Benchmark
+    public Message sendByAddressAndReceive(Delivered d) {
+	d.sender.sendMessage(d.receiverAddress, new Message());
+	return d.receiver.nextMessage();
+    }
+
+}
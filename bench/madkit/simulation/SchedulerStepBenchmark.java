@@ -0,0 +1,130 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.simulation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import madkit.kernel.AbstractAgent;
+import madkit.kernel.BenchKernel;
+import madkit.kernel.Scheduler;
+import madkit.simulation.ActivatorBenchmark.SimulatedAgent;
+import madkit.simulation.activator.GenericBehaviorActivator;
+
+/**
+ * One {@link Scheduler#doSimulationStep()} over <code>activators</code>
+ * activators of cheap agents, so that the cost of dispatching the activators
+ * to the cores is visible: sequential, multicore and work stealing activators,
+ * or the worker gang of the scheduler.
+ *
+ * @author Fabien Michel
+ * @since MaDKit 5.2
+ * @version 0.9
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SchedulerStepBenchmark {
+
+    @Param({ "1000", "100000" })
+    public int agents;
+
+    @Param({ "4" })
+    public int activators;
+
+    @Param({ "sequential", "multicore", "workStealing", "workerGang" })
+    public String mode;
+
+    private BenchKernel kernel;
+    private Scheduler scheduler;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+	kernel = new BenchKernel();
+	scheduler = kernel.launch(new Scheduler());
+	final List<AbstractAgent> bucket = new ArrayList<>(agents);
+	for (int i = 0; i < agents; i++) {
+	    bucket.add(new SimulatedAgent());
+	}
+	scheduler.launchAgentBucket(bucket, BenchKernel.CGR);
+	final int cores = Runtime.getRuntime().availableProcessors();
+	for (int i = 0; i < activators; i++) {
+	    final GenericBehaviorActivator<AbstractAgent> a = new GenericBehaviorActivator<>(BenchKernel.COMMUNITY, BenchKernel.GROUP, BenchKernel.ROLE, "doIt");
+	    scheduler.addActivator(a);
+	    if (mode.equals("multicore")) {
+		a.useMulticore(cores);
+	    }
+	    else if (mode.equals("workStealing")) {
+		a.useWorkStealing(true);
+	    }
+	}
+	if (mode.equals("workerGang")) {
+	    scheduler.useWorkerGang(cores);
+	}
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+	scheduler.useWorkerGang(1);
+	kernel.exit();
+    }
+
+    @Benchmark
+    public void doSimulationStep() {
+	scheduler.doSimulationStep();
+    }
+
+}
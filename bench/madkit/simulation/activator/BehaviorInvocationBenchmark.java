@@ -0,0 +1,111 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.simulation.activator;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import madkit.kernel.AbstractAgent;
+import madkit.kernel.Activator;
+import madkit.simulation.ActivatorBenchmark.SimulatedAgent;
+
+/**
+ * 10 million invocations of an agent behavior, using
+ * {@link Method#invoke(Object, Object...)} as {@link GenericBehaviorActivator}
+ * used to do, or using the consumer it now compiles once per agent class. The
+ * score is the time of a single invocation.
+ *
+ * @author Fabien Michel
+ * @since MaDKit 5.2
+ * @version 0.9
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BehaviorInvocationBenchmark {
+
+    static final int INVOCATIONS = 10_000_000;
+    static final int AGENTS = 1000;
+
+    private final AbstractAgent[] agents = new AbstractAgent[AGENTS];
+    private Method method;
+    private Consumer<AbstractAgent> behavior;
+
+    @Setup
+    public void setUp() throws NoSuchMethodException, IllegalAccessException {
+	for (int i = 0; i < AGENTS; i++) {
+	    agents[i] = new SimulatedAgent();
+	}
+	method = Activator.findMethodOn(SimulatedAgent.class, "doIt");
+	behavior = GenericBehaviorActivator.compileBehavior(method);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INVOCATIONS)
+    public void reflective() throws IllegalAccessException, InvocationTargetException {
+	for (int i = 0; i < INVOCATIONS; i++) {
+	    method.invoke(agents[i % AGENTS]);
+	}
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INVOCATIONS)
+    public void compiled() {
+	for (int i = 0; i < INVOCATIONS; i++) {
+	    behavior.accept(agents[i % AGENTS]);
+	}
+    }
+
+}
@@ -306,6 +306,7 @@ public class AbstractAgent implements Comparable<AbstractAgent> {
      * @return <code>true</code> if the agent did not crash
      */
     final ReturnCode activation() {
+	final FlightRecorderEvents.AgentActivation event = FlightRecorderEvents.agentActivationBegin();
 	ReturnCode result = ReturnCode.AGENT_CRASH;
 	try {
 	    try {
@@ -320,6 +321,7 @@ public class AbstractAgent implements Comparable<AbstractAgent> {
 		logLifeException(e);
 		logMethod(false);
 		state.set(LIVING);// for the following kill to work
+		FlightRecorderEvents.agentActivationEnd(event, this, SUCCESS);
 		suicide(e);
 		return SUCCESS;
 	    }
@@ -331,6 +333,7 @@ public class AbstractAgent implements Comparable<AbstractAgent> {
 	    logLifeException(e);
 	}
 	logMethod(false);
+	FlightRecorderEvents.agentActivationEnd(event, this, result);
 	return result;
     }
 
@@ -373,6 +376,7 @@ public class AbstractAgent implements Comparable<AbstractAgent> {
     }
 
     final boolean ending() { // TODO boolean need ? NO
+	final FlightRecorderEvents.AgentEnd event = FlightRecorderEvents.agentEndBegin();
 	state.set(ENDING);
 	Thread.currentThread().setName(getAgentThreadName(ENDING));
 	logMethod(true);
@@ -395,6 +399,7 @@ public class AbstractAgent implements Comparable<AbstractAgent> {
 	    logLifeException(e);
 	}
 	logMethod(false);
+	FlightRecorderEvents.agentEndEnd(event, this);
 	synchronized (state) {// notifying for AA
 	    state.notify();
 	}
@@ -1687,6 +1692,9 @@ public class AbstractAgent implements Comparable<AbstractAgent> {
      */
     public void receiveMessage(final Message m) {
 	messageBox.offer(m); // TODO test vs. arraylist and synchronized
+	if (FlightRecorderEvents.isRecording()) {
+	    FlightRecorderEvents.messageReceived(this, m, messageBox.size());
+	}
 	// if(messageBox == null)
 	// messageBox = new LinkedBlockingDeque<Message>();
 	// messageBox.offer(m); // TODO test vs. arraylist and synchronized
@@ -1992,6 +2000,18 @@ public class AbstractAgent implements Comparable<AbstractAgent> {
 	return getKernel().getMadkitConfig();
     }
 
+    /**
+     * Returns the random service of the kernel, which should be used by simulation models so that they could be
+     * replicated using the {@link Option#randomSeed} option.
+     * 
+     * @return the random service of the kernel on which this agent is running
+     * @see SimulationRandom
+     * @since MaDKit 5.2
+     */
+    public SimulationRandom getSimulationRandom() {
+	return getMadkitKernel().getKernelRandom();
+    }
+
     /**
      * The kernel's address on which this agent is running.
      * 
@@ -38,8 +38,12 @@ package madkit.kernel;
 
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.ConcurrentModificationException;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 
@@ -62,6 +66,11 @@ import madkit.simulation.activator.GenericBehaviorActivator;
 public abstract class Activator<A extends AbstractAgent> extends Overlooker<A> {
 
     private int nbOfsimultaneousTasks = 1;
+    private boolean workStealing = false;
+    private ActivatorRangeTask<A> workStealingTasks;
+    private Set<Object> readResources;
+    private Set<Object> writtenResources;
+    private int accessVersion;
 
     /**
      * Builds a new Activator on the given CGR location of the artificial society with multicore mode set to
@@ -76,21 +85,57 @@ public abstract class Activator<A extends AbstractAgent> extends Overlooker<A> {
 	super(community, group, role);
     }
 
+    /**
+     * Builds a new Activator observing several roles of a group. An agent playing several of these roles is only
+     * activated once per execution, {@link #getCurrentAgentsList()} being maintained incrementally.
+     * 
+     * @param community
+     * @param group
+     * @param role
+     * @param otherRoles
+     *            the other observed roles
+     * @see Overlooker#Overlooker(String, String, String[])
+     * @since MaDKit 5.2
+     */
+    public Activator(String community, String group, String role, String... otherRoles) {
+	super(community, group, roles(role, otherRoles));
+    }
+
+    /**
+     * Builds a new Activator observing all the roles of a group but the manager role. An agent playing several roles is
+     * only activated once per execution.
+     * 
+     * @param community
+     * @param group
+     * @see Overlooker#Overlooker(String, String, String[])
+     * @since MaDKit 5.2
+     */
+    public Activator(String community, String group) {
+	super(community, group, new String[0]);
+    }
+
     /**
      * Call #execute(List<A> agentsList) on all the agents, i.e. using {@link Overlooker#getCurrentAgentsList()}. By
-     * default, this is automatically called by the default scheduler's loop once the activator is added.
+     * default, this is automatically called by the default scheduler's loop once the activator is added. When the batched
+     * notifications are on, the scheduler delivers the pending membership changes before calling this method (see
+     * {@link #useBatchedNotifications(boolean)}).
      * 
      * @param args
      *            arguments that could be used by the scheduler to pass information to this activator for an activation
      * @see Scheduler#doSimulationStep()
      */
     public void execute(Object... args) {
-	if (isMulticoreModeOn()) {
-	    multicoreExecute();
+	final FlightRecorderEvents.ActivatorExecution event = FlightRecorderEvents.activatorExecutionBegin();
+	if (workStealing) {
+	    workStealingExecute(args);
+	}
+	else if (isMulticoreModeOn()) {
+	    multicoreExecute(args);
 	}
 	else {
 	    execute(getCurrentAgentsList(), args);
 	}
+	FlightRecorderEvents.activatorExecutionEnd(event, this);
     }
 
     /**
@@ -147,9 +192,56 @@ public abstract class Activator<A extends AbstractAgent> extends Overlooker<A> {
 	}
     }
 
+    /**
+     * Executes the behavior on all the agents using the fork/join pool dedicated to activators, which is sized to the
+     * available cores. The agent list is recursively split in halves: a half is only handed over to the pool when the
+     * current worker thread has not already enough pending work, and idle workers steal pending halves. So, unlike
+     * {@link #multicoreExecute(Object...)}, a few agents having costly behaviors do not stall the whole step. The tasks
+     * are reused between steps as long as the number of agents does not change.
+     * <p>
+     * As for {@link #multicoreExecute(Object...)}, {@link #execute(List, Object...)} is concurrently called on
+     * disjoint parts of the list, so the model has to support concurrent activations.
+     * 
+     * @param args
+     *            the arguments passed to {@link #execute(List, Object...)}
+     * @since MaDKit 5.2
+     */
+    protected void workStealingExecute(final Object... args) {
+	final List<A> list = getCurrentAgentsList();
+	ActivatorRangeTask<A> tasks = workStealingTasks;
+	if (tasks == null || tasks.size() != list.size()) {
+	    workStealingTasks = tasks = new ActivatorRangeTask<>(this, list.size());
+	}
+	tasks.executeOn(list, args);
+    }
+
     @Override
     public String toString() {
-	return super.toString() + (isMulticoreModeOn() ? " multicore mode " : "");
+	return super.toString() + (workStealing ? " work stealing mode " : (isMulticoreModeOn() ? " multicore mode " : ""));
+    }
+
+    /**
+     * Turns the work stealing mode on or off. When on, {@link #execute(Object...)} uses
+     * {@link #workStealingExecute(Object...)}, whatever the value of {@link #nbOfParallelTasks()}.
+     * 
+     * @param on
+     *            <code>true</code> to use the work stealing mode
+     * @since MaDKit 5.2
+     */
+    public void useWorkStealing(final boolean on) {
+	workStealing = on;
+	if (!on) {
+	    workStealingTasks = null;
+	}
+    }
+
+    /**
+     * @return <code>true</code> if the work stealing mode is on
+     * @see #useWorkStealing(boolean)
+     * @since MaDKit 5.2
+     */
+    public boolean isWorkStealingModeOn() {
+	return workStealing;
     }
 
     /**
@@ -193,6 +285,76 @@ public abstract class Activator<A extends AbstractAgent> extends Overlooker<A> {
 	return MadkitKernel.getMadkitServiceExecutor();
     }
 
+    /**
+     * Declares the resources which are read by this activator during its execution. A resource is any object identifying
+     * a part of the model, such as a role name or an environment, and resources are compared using
+     * {@link Object#equals(Object)}. This is used by a {@link Scheduler} running its activators concurrently: two
+     * activators could run at the same time only if none of them writes a resource which is read or written by the other.
+     * An activator which has not declared any access conflicts with all the others.
+     * 
+     * @param resources
+     *            the resources read by this activator, replacing the ones previously declared
+     * @see Scheduler#useConcurrentActivators(boolean)
+     * @since MaDKit 5.2
+     */
+    public void declareReads(final Object... resources) {
+	readResources = new HashSet<>(Arrays.asList(resources));
+	accessVersion++;
+    }
+
+    /**
+     * Declares the resources which are written by this activator during its execution.
+     * 
+     * @param resources
+     *            the resources written by this activator, replacing the ones previously declared
+     * @see #declareReads(Object...)
+     * @since MaDKit 5.2
+     */
+    public void declareWrites(final Object... resources) {
+	writtenResources = new HashSet<>(Arrays.asList(resources));
+	accessVersion++;
+    }
+
+    /**
+     * @return the resources declared as read by this activator
+     * @see #declareReads(Object...)
+     * @since MaDKit 5.2
+     */
+    public Set<Object> getReadResources() {
+	return readResources == null ? Collections.emptySet() : Collections.unmodifiableSet(readResources);
+    }
+
+    /**
+     * @return the resources declared as written by this activator
+     * @see #declareWrites(Object...)
+     * @since MaDKit 5.2
+     */
+    public Set<Object> getWrittenResources() {
+	return writtenResources == null ? Collections.emptySet() : Collections.unmodifiableSet(writtenResources);
+    }
+
+    /**
+     * @return a number which changes each time the accesses of this activator are declared
+     */
+    int getAccessVersion() {
+	return accessVersion;
+    }
+
+    /**
+     * Tells if this activator and another one could not run at the same time, according to their declared accesses.
+     */
+    boolean conflictsWith(final Activator<?> other) {
+	if ((readResources == null && writtenResources == null) || (other.readResources == null && other.writtenResources == null)) {
+	    return true;
+	}
+	return intersects(writtenResources, other.readResources) || intersects(writtenResources, other.writtenResources)
+		|| intersects(readResources, other.writtenResources);
+    }
+
+    private static boolean intersects(final Set<Object> s1, final Set<Object> s2) {
+	return s1 != null && s2 != null && !Collections.disjoint(s1, s2);
+    }
+
     /**
      * Returns the agent's method named <code>methodName</code> considering a given agentClass. This also works for the
      * private methods of the class, even inherited ones.
@@ -0,0 +1,220 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.kernel;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The dependency graph used by a {@link Scheduler} for running its activators concurrently during a step. The
+ * activators are first ordered according to the explicit ordering constraints, the insertion order breaking the ties.
+ * Then an edge goes from an activator to a following one if there is an ordering constraint between them or if their
+ * declared accesses conflict, so that the graph is acyclic.
+ * <p>
+ * For each step, the activators having no predecessor are started, and an activator is started as soon as all its
+ * predecessors are done. A thread which has executed an activator directly continues with one of the successors it has
+ * made ready, so that a chain of dependent activators does not hop from thread to thread. The graph is kept as long as
+ * the declared accesses of its activators do not change.
+ *
+ * @author Fabien Michel
+ * @since MaDKit 5.2
+ * @version 0.9
+ * @see Scheduler#useConcurrentActivators(boolean)
+ */
+final class ActivatorGraph {
+
+    private final Activator<?>[] nodes;
+    private final int[] versions;
+    private final int[][] successors;
+    private final int[] indegrees;
+    private final AtomicInteger[] pending;
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    // the current step
+    private CountDownLatch done;
+    private Executor executor;
+
+    /**
+     * @param activators
+     *            the activators in insertion order
+     * @param constraints
+     *            for each activator, the activators which have to be executed after it
+     */
+    ActivatorGraph(final Collection<Activator<? extends AbstractAgent>> activators, final Map<Activator<?>, Set<Activator<?>>> constraints) {
+	final List<Activator<?>> order = order(activators, constraints);
+	final int n = order.size();
+	nodes = order.toArray(new Activator<?>[n]);
+	versions = new int[n];
+	successors = new int[n][];
+	indegrees = new int[n];
+	pending = new AtomicInteger[n];
+	for (int i = 0; i < n; i++) {
+	    versions[i] = nodes[i].getAccessVersion();
+	    pending[i] = new AtomicInteger();
+	    final Set<Activator<?>> after = constraints.getOrDefault(nodes[i], Collections.emptySet());
+	    final List<Integer> next = new ArrayList<>();
+	    for (int j = i + 1; j < n; j++) {
+		if (after.contains(nodes[j]) || nodes[i].conflictsWith(nodes[j])) {
+		    next.add(j);
+		    indegrees[j]++;
+		}
+	    }
+	    successors[i] = next.stream().mapToInt(Integer::intValue).toArray();
+	}
+    }
+
+    /**
+     * Sorts the activators so that the constraints are respected, keeping the insertion order as far as possible: an
+     * activator which has to wait for others is placed just after them.
+     */
+    private static List<Activator<?>> order(final Collection<Activator<? extends AbstractAgent>> activators, final Map<Activator<?>, Set<Activator<?>>> constraints) {
+	final Map<Activator<?>, List<Activator<?>>> predecessors = new IdentityHashMap<>();
+	for (final Activator<?> a : activators) {
+	    for (final Activator<?> b : constraints.getOrDefault(a, Collections.emptySet())) {
+		predecessors.computeIfAbsent(b, k -> new ArrayList<>()).add(a);
+	    }
+	}
+	final List<Activator<?>> order = new ArrayList<>(activators.size());
+	final Set<Activator<?>> placed = Collections.newSetFromMap(new IdentityHashMap<>());
+	for (final Activator<?> a : activators) {
+	    place(a, predecessors, placed, order);
+	}
+	return order;
+    }
+
+    private static void place(final Activator<?> a, final Map<Activator<?>, List<Activator<?>>> predecessors, final Set<Activator<?>> placed, final List<Activator<?>> order) {
+	if (placed.add(a)) {// cycles are refused when constraints are added
+	    for (final Activator<?> p : predecessors.getOrDefault(a, Collections.emptyList())) {
+		place(p, predecessors, placed, order);
+	    }
+	    order.add(a);
+	}
+    }
+
+    /**
+     * @return <code>false</code> if the accesses of one of the activators have been declared again since the graph has
+     *         been built
+     */
+    boolean isUpToDate() {
+	for (int i = 0; i < nodes.length; i++) {
+	    if (nodes[i].getAccessVersion() != versions[i]) {
+		return false;
+	    }
+	}
+	return true;
+    }
+
+    /**
+     * Executes all the activators, the calling thread taking part, and returns when they are all done. The first failure
+     * is rethrown, the activators which were not already started being then skipped.
+     */
+    void execute(final Executor pool) {
+	if (nodes.length == 0) {
+	    return;
+	}
+	executor = pool;
+	done = new CountDownLatch(nodes.length);
+	int first = -1;
+	for (int i = 0; i < nodes.length; i++) {
+	    pending[i].set(indegrees[i]);
+	}
+	for (int i = 0; i < nodes.length; i++) {
+	    if (indegrees[i] == 0) {
+		if (first < 0) {
+		    first = i;
+		}
+		else {
+		    submit(i);
+		}
+	    }
+	}
+	run(first);
+	try {
+	    done.await();
+	}
+	catch(InterruptedException e) {
+	    Thread.currentThread().interrupt();// do not swallow it !
+	}
+	final Throwable t = failure.getAndSet(null);
+	if (t instanceof RuntimeException) {
+	    throw (RuntimeException) t;
+	}
+	if (t instanceof Error) {
+	    throw (Error) t;
+	}
+    }
+
+    private void submit(final int node) {
+	executor.execute(() -> run(node));
+    }
+
+    private void run(int node) {
+	while (node >= 0) {
+	    if (failure.get() == null) {
+		try {
+		    Scheduler.executeActivator(nodes[node], null);
+		}
+		catch(RuntimeException | Error e) {
+		    failure.compareAndSet(null, e);
+		}
+	    }
+	    int next = -1;
+	    for (final int s : successors[node]) {
+		if (pending[s].decrementAndGet() == 0) {
+		    if (next < 0) {
+			next = s;
+		    }
+		    else {
+			submit(s);
+		    }
+		}
+	    }
+	    done.countDown();
+	    node = next;
+	}
+    }
+
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.kernel;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A node of the binary tree of tasks used by the work stealing mode of an {@link Activator}. The tree is built once for
+ * a given number of agents and reused for every step: each node covers a range of the agent list and forks its right
+ * half only when its worker has no surplus of queued tasks, so that the chunk size adapts to the load while idle
+ * workers steal the pending halves.
+ *
+ * @author Fabien Michel
+ * @since MaDKit 5.2
+ * @version 0.9
+ */
+final class ActivatorRangeTask<A extends AbstractAgent> extends RecursiveAction {
+
+    private static final long serialVersionUID = 6021524453541357203L;
+
+    /**
+     * leaves per worker thread when the tree is built
+     */
+    private static final int LEAVES_PER_WORKER = 8;
+
+    /**
+     * a node does not fork when its worker already has more queued tasks than this
+     */
+    private static final int SURPLUS = 2;
+
+    private final Activator<A> activator;
+    private final ActivatorRangeTask<A> root;
+    private final int from;
+    private final int to;
+    private final ActivatorRangeTask<A> left;
+    private final ActivatorRangeTask<A> right;
+
+    // only used by the root
+    private transient List<A> agents;
+    private transient Object[] args;
+
+    /**
+     * The pool dedicated to activators, sized to the available cores.
+     */
+    private static final class Pool {
+
+	static final ForkJoinPool INSTANCE = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    static ForkJoinPool activatorPool() {
+	return Pool.INSTANCE;
+    }
+
+    /**
+     * Builds the tree of tasks for a list of <code>size</code> agents.
+     */
+    ActivatorRangeTask(final Activator<A> activator, final int size) {
+	this(activator, null, 0, size, Math.max(1, size / (activatorPool().getParallelism() * LEAVES_PER_WORKER)));
+    }
+
+    private ActivatorRangeTask(final Activator<A> activator, final ActivatorRangeTask<A> root, final int from, final int to, final int grain) {
+	this.activator = activator;
+	this.root = root == null ? this : root;
+	this.from = from;
+	this.to = to;
+	if (to - from > grain) {
+	    final int middle = (from + to) >>> 1;
+	    left = new ActivatorRangeTask<>(activator, this.root, from, middle, grain);
+	    right = new ActivatorRangeTask<>(activator, this.root, middle, to, grain);
+	}
+	else {
+	    left = right = null;
+	}
+    }
+
+    /**
+     * @return the number of agents this tree has been built for
+     */
+    int size() {
+	return to - from;
+    }
+
+    /**
+     * Executes the activator on the whole list, using the dedicated pool. Only called on the root.
+     */
+    void executeOn(final List<A> list, final Object[] arguments) {
+	agents = list;
+	args = arguments;
+	reinitialize();
+	try {
+	    activatorPool().invoke(this);
+	}
+	finally {
+	    agents = null;
+	    args = null;
+	}
+    }
+
+    @Override
+    protected void compute() {
+	if (left == null || getSurplusQueuedTaskCount() > SURPLUS) {
+	    activator.execute(root.agents.subList(from, to), root.args);
+	    return;
+	}
+	right.reinitialize();
+	right.fork();
+	try {
+	    left.compute();
+	}
+	catch(RuntimeException | Error e) {
+	    // the right half must be done before the tree could be reused
+	    right.quietlyJoin();
+	    throw e;
+	}
+	if (right.tryUnfork()) {
+	    right.compute();
+	}
+	else {
+	    right.join();
+	}
+    }
+
+}
@@ -0,0 +1,330 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.kernel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import madkit.message.SchedulingMessage;
+
+/**
+ * A scheduler driven by timestamped events rather than by a fixed step. Activators and agents schedule their next
+ * activation at a given time, and each simulation step jumps the GVT to the time of the next event and processes all
+ * the events having this time:
+ * <ul>
+ * <li>an activator event triggers {@link Activator#execute(Object...)}, using {@link #executeAndLog(Activator)};</li>
+ * <li>the agent events scheduled on the same activator are batched, so that
+ * {@link Activator#execute(List, Object...)} is called once with all of them.</li>
+ * </ul>
+ * Events having the same time are processed in the order they have been scheduled. Events scheduled during a step
+ * for its own time are processed by the next step, at the same GVT.
+ * <p>
+ * Activators added using {@link #addActivator(Activator)} are activated every time unit starting from the current
+ * GVT, as with a {@link Scheduler}, whereas {@link #addActivator(Activator, double, double)} sets their first time and
+ * period. The simulation is controlled as usual, using the GUI actions or {@link SchedulingMessage}s: one step
+ * processes one date. When there is no more event, the simulation is paused.
+ *
+ * <pre>
+ * addActivator(move, 0, 0);// registered, no periodic activation
+ * schedule(move, agent, 3.2);// agent will be moved at t = 3.2
+ * </pre>
+ *
+ * @author Fabien Michel
+ * @since MaDKit 5.2
+ * @version 0.9
+ * @see Scheduler
+ */
+public class DiscreteEventScheduler extends Scheduler {
+
+    private final PriorityQueue<Event> events = new PriorityQueue<>();
+    private final Set<Activator<? extends AbstractAgent>> registered = Collections.newSetFromMap(new IdentityHashMap<>());
+    private long sequence;
+
+    // reused by each step
+    private final List<Event> current = new ArrayList<>();
+    private final Map<Activator<? extends AbstractAgent>, List<AbstractAgent>> batches = new IdentityHashMap<>();
+
+    /**
+     * This constructor is equivalent to <code>DiscreteEventScheduler(Double.MAX_VALUE)</code>
+     */
+    public DiscreteEventScheduler() {
+	this(Double.MAX_VALUE);
+    }
+
+    /**
+     * Constructor specifying the time at which the simulation ends.
+     *
+     * @param endTime
+     *            the GVT at which the simulation will automatically stop
+     */
+    public DiscreteEventScheduler(final double endTime) {
+	super(endTime);
+    }
+
+    /**
+     * Adds an activator which is activated every time unit, starting from the current GVT.
+     *
+     * @see #addActivator(Activator, double, double)
+     */
+    @Override
+    public void addActivator(final Activator<? extends AbstractAgent> activator) {
+	addActivator(activator, getGVT(), 1);
+    }
+
+    /**
+     * Adds an activator, setting its periodic activation.
+     *
+     * @param activator
+     *            an activator
+     * @param firstTime
+     *            the time of its first activation
+     * @param period
+     *            the time between two activations, or 0 for no periodic activation, the activator being then only
+     *            activated by the events scheduled using {@link #schedule(Activator, double)} or
+     *            {@link #schedule(Activator, AbstractAgent, double)}.
+     */
+    public void addActivator(final Activator<? extends AbstractAgent> activator, final double firstTime, final double period) {
+	super.addActivator(activator);
+	synchronized (events) {
+	    if (registered.add(activator) && period > 0) {
+		add(new Event(firstTime, activator, null, period));
+	    }
+	}
+    }
+
+    /**
+     * Removes an activator and forgets its pending events.
+     */
+    @Override
+    public void removeActivator(final Activator<? extends AbstractAgent> activator) {
+	synchronized (events) {
+	    registered.remove(activator);
+	}
+	super.removeActivator(activator);
+    }
+
+    @Override
+    public void removeAllActivators() {
+	synchronized (events) {
+	    registered.clear();
+	    events.clear();
+	}
+	super.removeAllActivators();
+    }
+
+    /**
+     * Schedules an activation of an activator, i.e. a call to {@link Activator#execute(Object...)}.
+     *
+     * @param activator
+     *            an activator added to this scheduler
+     * @param time
+     *            the time of the activation, which cannot be lower than the GVT
+     */
+    public void schedule(final Activator<? extends AbstractAgent> activator, final double time) {
+	schedule(new Event(time, activator, null, 0));
+    }
+
+    /**
+     * Schedules the activation of one agent by an activator. All the agents scheduled on the same activator for the same
+     * time are activated by a single call to {@link Activator#execute(List, Object...)}. This could be called by the
+     * agents themselves for scheduling their next action.
+     *
+     * @param activator
+     *            an activator added to this scheduler
+     * @param agent
+     *            the agent to activate
+     * @param time
+     *            the time of the activation, which cannot be lower than the GVT
+     */
+    public <A extends AbstractAgent> void schedule(final Activator<A> activator, final A agent, final double time) {
+	schedule(new Event(time, activator, agent, 0));
+    }
+
+    private void schedule(final Event e) {
+	if (e.time < getGVT()) {
+	    throw new IllegalArgumentException("cannot schedule in the past: " + e.time + " < GVT " + getGVT());
+	}
+	synchronized (events) {
+	    if (!registered.contains(e.activator)) {
+		throw new IllegalStateException(e.activator + " has not been added to " + this);
+	    }
+	    add(e);
+	}
+    }
+
+    private void add(final Event e) {
+	e.sequence = sequence++;
+	events.add(e);
+    }
+
+    /**
+     * @return the number of events which are waiting to be processed
+     */
+    public int getNbOfPendingEvents() {
+	synchronized (events) {
+	    return events.size();
+	}
+    }
+
+    /**
+     * @return the time of the next event, or {@link Double#NaN} if there is none
+     */
+    public double getNextEventTime() {
+	synchronized (events) {
+	    final Event e = events.peek();
+	    return e == null ? Double.NaN : e.time;
+	}
+    }
+
+    /**
+     * Jumps to the time of the next event and processes all the events having this time. Periodic activators are then
+     * rescheduled. If the next event is after the end of the simulation, only the GVT is updated, so that the simulation
+     * stops.
+     */
+    @Override
+    public void doSimulationStep() {
+	final double time;
+	synchronized (events) {
+	    Event next = events.peek();
+	    while (next != null && !registered.contains(next.activator)) {// removed
+		events.poll();
+		next = events.peek();
+	    }
+	    if (next == null) {
+		getLogger().fine("No more event: pausing");
+		setSimulationState(SimulationState.PAUSED);
+		return;
+	    }
+	    time = next.time;
+	    if (time > getSimulationDuration()) {
+		setGVT(time);
+		return;
+	    }
+	    while (!events.isEmpty() && events.peek().time == time) {
+		final Event e = events.poll();
+		if (registered.contains(e.activator)) {
+		    current.add(e);
+		}
+	    }
+	}
+	setGVT(time);
+	getLogger().finer(() -> "Doing simulation step " + time + " : " + current.size() + " events");
+	try {
+	    for (final Event e : current) {
+		if (e.agent != null) {
+		    List<AbstractAgent> batch = batches.get(e.activator);
+		    if (batch == null) {
+			batches.put(e.activator, batch = new ArrayList<>());
+		    }
+		    batch.add(e.agent);
+		}
+	    }
+	    for (final Event e : current) {
+		if (e.agent == null) {
+		    executeAndLog(e.activator);
+		}
+		else {
+		    executeBatch(e.activator);
+		}
+	    }
+	}
+	finally {
+	    synchronized (events) {
+		for (final Event e : current) {
+		    if (e.period > 0 && registered.contains(e.activator)) {
+			e.time += e.period;
+			add(e);
+		    }
+		}
+	    }
+	    current.clear();
+	    for (final List<AbstractAgent> batch : batches.values()) {
+		batch.clear();
+	    }
+	}
+    }
+
+    /**
+     * Executes the batch of agents of this activator, if not already done during this step. As for an activator event,
+     * the pending membership changes of the activator are delivered first. The agents which no longer play the role of
+     * the activator, e.g. because they have been killed since they have been scheduled, are then skipped.
+     */
+    @SuppressWarnings("unchecked")
+    private void executeBatch(final Activator<? extends AbstractAgent> activator) {
+	final List<AbstractAgent> batch = batches.get(activator);
+	activator.deliverPendingNotifications();
+	batch.removeIf(a -> !activator.isOverlooking(a));
+	if (!batch.isEmpty()) {
+	    getLogger().finer(() -> "Activating " + batch.size() + " agents --------> " + activator);
+	    final FlightRecorderEvents.ActivatorExecution event = FlightRecorderEvents.activatorExecutionBegin();
+	    ((Activator<AbstractAgent>) activator).execute(batch);
+	    FlightRecorderEvents.activatorExecutionEnd(event, activator);
+	    batch.clear();
+	}
+    }
+
+    /**
+     * A timestamped activation
+     */
+    private static final class Event implements Comparable<Event> {
+
+	double time;
+	long sequence;
+	final Activator<? extends AbstractAgent> activator;
+	final AbstractAgent agent;
+	final double period;
+
+	Event(final double time, final Activator<? extends AbstractAgent> activator, final AbstractAgent agent, final double period) {
+	    this.time = time;
+	    this.activator = activator;
+	    this.agent = agent;
+	    this.period = period;
+	}
+
+	@Override
+	public int compareTo(final Event o) {
+	    final int c = Double.compare(time, o.time);
+	    return c != 0 ? c : Long.compare(sequence, o.sequence);
+	}
+    }
+
+}
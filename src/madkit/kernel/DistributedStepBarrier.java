@@ -0,0 +1,173 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.kernel;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import madkit.message.MessageFilter;
+
+/**
+ * The conservative synchronization used by a {@link Scheduler} running in distributed mode. The schedulers taking part
+ * in the simulation play the role {@link Scheduler#DISTRIBUTED_SCHEDULER_ROLE} in a distributed group, so that they are
+ * known on all the connected kernels. At the end of each step, a scheduler sends a {@link StepDone} message to all the
+ * others and waits until it has received theirs, so that no kernel starts a step before all the kernels have finished
+ * the previous one.
+ * <p>
+ * Messages going from a kernel to another one travel through a single {@link KernelConnection} and are handled in
+ * order by the network agents on both sides. Since a {@link StepDone} message is sent after all the messages the agents
+ * have sent during the step, these messages are already in the mailboxes of their receivers when the barrier is
+ * passed: cross-kernel messages are thus delivered before the next step.
+ *
+ * @author Fabien Michel
+ * @since MaDKit 5.2
+ * @version 0.9
+ * @see Scheduler#useDistributedMode(String, String, int)
+ */
+final class DistributedStepBarrier {
+
+    /**
+     * the maximum time to wait before checking again which schedulers are still part of the simulation
+     */
+    static final int POLLING_TIME = 200;
+
+    private static final MessageFilter STEP_DONE_FILTER = m -> m instanceof StepDone;
+
+    /**
+     * selects the messages which are not used by the barrier, such as the {@link SchedulingMessage}s
+     */
+    static final MessageFilter CONTROL_FILTER = m -> !(m instanceof StepDone);
+
+    private final Scheduler scheduler;
+    private final String community;
+    private final String group;
+    private final int nbOfSchedulers;
+    private long step;
+    // the arrivals of the steps which are not passed yet
+    private final Map<Long, Map<AgentAddress, Double>> arrivals = new HashMap<>();
+
+    /**
+     * The message sent by a scheduler when it has finished a step
+     */
+    static final class StepDone extends Message {
+
+	private static final long serialVersionUID = 4467071929264358226L;
+	private final long step;
+	private final double gvt;
+
+	StepDone(final long step, final double gvt) {
+	    this.step = step;
+	    this.gvt = gvt;
+	}
+
+	@Override
+	public String toString() {
+	    return super.toString() + " step " + step + " GVT " + gvt;
+	}
+    }
+
+    DistributedStepBarrier(final Scheduler scheduler, final String community, final String group, final int nbOfSchedulers) {
+	this.scheduler = scheduler;
+	this.community = community;
+	this.group = group;
+	this.nbOfSchedulers = nbOfSchedulers;
+    }
+
+    /**
+     * @return the number of steps which have been synchronized
+     */
+    long getStep() {
+	return step;
+    }
+
+    /**
+     * Joins the distributed group and waits until the expected number of schedulers are part of the simulation.
+     *
+     * @return <code>false</code> if the scheduler has been killed while waiting
+     */
+    boolean join() {
+	scheduler.createGroup(community, group, true);
+	scheduler.requestRole(community, group, Scheduler.DISTRIBUTED_SCHEDULER_ROLE);
+	scheduler.getLogger().fine(() -> "Waiting for " + nbOfSchedulers + " schedulers in " + community + "," + group);
+	while (scheduler.isAlive() && getPeers().size() < nbOfSchedulers - 1) {
+	    collect(scheduler.waitNextMessage(POLLING_TIME, STEP_DONE_FILTER));
+	}
+	scheduler.getLogger().fine(() -> "Distributed simulation started with " + getPeers());
+	return scheduler.isAlive();
+    }
+
+    /**
+     * Tells the other schedulers that the current step is done and waits for them to be done as well. A scheduler
+     * leaving the role is no longer waited for.
+     *
+     * @return the smallest GVT of the schedulers, which is the global GVT of the simulation
+     */
+    double synchronize() {
+	final long current = step++;
+	double gvt = scheduler.getGVT();
+	scheduler.broadcastMessage(community, group, Scheduler.DISTRIBUTED_SCHEDULER_ROLE, new StepDone(current, gvt));
+	while (scheduler.isAlive()) {
+	    final List<AgentAddress> peers = getPeers();
+	    final Map<AgentAddress, Double> done = arrivals.getOrDefault(current, new HashMap<>());
+	    if (done.keySet().containsAll(peers)) {
+		for (final AgentAddress peer : peers) {
+		    gvt = Math.min(gvt, done.get(peer));
+		}
+		break;
+	    }
+	    collect(scheduler.waitNextMessage(POLLING_TIME, STEP_DONE_FILTER));
+	}
+	arrivals.remove(current);
+	return gvt;
+    }
+
+    private void collect(final Message m) {
+	if (m != null) {
+	    final StepDone done = (StepDone) m;
+	    // a fast peer could already be done with the next step
+	    arrivals.computeIfAbsent(done.step, k -> new HashMap<>()).put(m.getSender(), done.gvt);
+	}
+    }
+
+    private List<AgentAddress> getPeers() {
+	final List<AgentAddress> peers = scheduler.getAgentsWithRole(community, group, Scheduler.DISTRIBUTED_SCHEDULER_ROLE);
+	return peers == null ? Collections.emptyList() : peers;
+    }
+
+}
@@ -191,6 +191,11 @@ class FakeKernel extends MadkitKernel{
 		return Madkit.DEFAULT_CONFIG;
 	}
 
+	@Override
+	final SimulationRandom getKernelRandom() {
+		throw buildKernelException(null);
+	}
+
 	@Override
 	final List<Message> broadcastMessageWithRoleAndWaitForReplies(AbstractAgent agent,
 			String community, String group, String role, Message message,
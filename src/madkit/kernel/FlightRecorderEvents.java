@@ -0,0 +1,680 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.kernel;
+
+import java.util.List;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder events emitted by the kernel. They cover the agents' life cycle, the messaging, the role
+ * requests, the simulation steps, the activators and the connections with other kernels.
+ * <p>
+ * The messages exchanged by local agents are passed by reference, so that the messaging events do not give a size: the
+ * size of a message is only recorded, as its serialized length, when it is written on a connection with another
+ * kernel.
+ * <p>
+ * All these events are disabled by default, so that they have to be enabled by the recording settings. The
+ * <code>madkit/kernel/madkit.jfc</code> file, which is available in the MaDKit jar file, enables all of them. With a
+ * JDK 17+, they can be recorded together with the default JVM events using:
+ *
+ * <pre>
+ * jcmd &lt;pid&gt; JFR.start settings=default,madkit.jfc filename=run.jfr
+ * </pre>
+ * <p>
+ * When no recording is running, the kernel only reads a volatile flag, so that no event object is ever created. The
+ * <code>jdk.jfr</code> API is available since Java 8u262: With an older JVM, nothing is recorded. That is why the
+ * methods of this class never rely on a type relation between two <code>jdk.jfr</code> types: It can be verified and
+ * loaded without that API.
+ *
+ * @author Fabien Michel
+ * @since MaDKit 5.2.2
+ * @version 0.9
+ */
+final class FlightRecorderEvents {
+
+    private static final String PREFIX = "madkit.";
+    private static final String MADKIT = "MaDKit";
+
+    private static volatile boolean recording;
+
+    static {
+	if (isJfrAvailable()) {
+	    RecordingListener.register();
+	}
+    }
+
+    private FlightRecorderEvents() {
+    }
+
+    private static boolean isJfrAvailable() {
+	try {
+	    Class.forName("jdk.jfr.FlightRecorder");
+	    return FlightRecorder.isAvailable();
+	}
+	catch(ClassNotFoundException | LinkageError e) {
+	    return false;
+	}
+    }
+
+    /**
+     * Tells if at least one flight recording is running.
+     *
+     * @return <code>true</code> if a flight recording is running
+     */
+    static boolean isRecording() {
+	return recording;
+    }
+
+    /**
+     * Keeps {@link FlightRecorderEvents#recording} up to date.
+     */
+    private static final class RecordingListener implements FlightRecorderListener {
+
+	static void register() {
+	    FlightRecorder.addListener(new RecordingListener());
+	}
+
+	@Override
+	public void recorderInitialized(FlightRecorder recorder) {
+	    update(recorder);
+	}
+
+	@Override
+	public void recordingStateChanged(Recording r) {
+	    update(FlightRecorder.getFlightRecorder());
+	}
+
+	private static void update(FlightRecorder recorder) {
+	    for (final Recording r : recorder.getRecordings()) {
+		if (r.getState() == RecordingState.RUNNING) {
+		    recording = true;
+		    return;
+		}
+	    }
+	    recording = false;
+	}
+    }
+
+    // /////////////////////////////////////////////////////////////////////////
+    // //////////////////////// Life cycle
+    // /////////////////////////////////////////////////////////////////////////
+
+    static AgentLaunch agentLaunchBegin() {
+	if (recording) {
+	    final AgentLaunch e = new AgentLaunch();
+	    if (e.isEnabled()) {
+		e.begin();
+		return e;
+	    }
+	}
+	return null;
+    }
+
+    static void agentLaunchEnd(final AgentLaunch e, final AbstractAgent agent, final AbstractAgent.ReturnCode result) {
+	if (e != null) {
+	    e.end();
+	    if (e.shouldCommit()) {
+		e.agentClass = agent.getClass();
+		e.agentId = agent.hashCode();
+		e.result = String.valueOf(result);
+		e.commit();
+	    }
+	}
+    }
+
+    static AgentBucketLaunch agentBucketLaunchBegin() {
+	if (recording) {
+	    final AgentBucketLaunch e = new AgentBucketLaunch();
+	    if (e.isEnabled()) {
+		e.begin();
+		return e;
+	    }
+	}
+	return null;
+    }
+
+    static void agentBucketLaunchEnd(final AgentBucketLaunch e, final List<AbstractAgent> bucket, final String[] cgrLocations) {
+	if (e != null) {
+	    e.end();
+	    if (e.shouldCommit()) {
+		final AbstractAgent first = bucket.isEmpty() ? null : bucket.get(0);
+		e.agentClass = first == null ? null : first.getClass();
+		e.size = bucket.size();
+		e.roles = cgrLocations == null ? null : String.join(";", cgrLocations);
+		e.commit();
+	    }
+	}
+    }
+
+    static AgentActivation agentActivationBegin() {
+	if (recording) {
+	    final AgentActivation e = new AgentActivation();
+	    if (e.isEnabled()) {
+		e.begin();
+		return e;
+	    }
+	}
+	return null;
+    }
+
+    static void agentActivationEnd(final AgentActivation e, final AbstractAgent agent, final AbstractAgent.ReturnCode result) {
+	if (e != null) {
+	    e.end();
+	    if (e.shouldCommit()) {
+		e.agentClass = agent.getClass();
+		e.agentId = agent.hashCode();
+		e.result = String.valueOf(result);
+		e.commit();
+	    }
+	}
+    }
+
+    static AgentEnd agentEndBegin() {
+	if (recording) {
+	    final AgentEnd e = new AgentEnd();
+	    if (e.isEnabled()) {
+		e.begin();
+		return e;
+	    }
+	}
+	return null;
+    }
+
+    static void agentEndEnd(final AgentEnd e, final AbstractAgent agent) {
+	if (e != null) {
+	    e.end();
+	    if (e.shouldCommit()) {
+		e.agentClass = agent.getClass();
+		e.agentId = agent.hashCode();
+		e.commit();
+	    }
+	}
+    }
+
+    static AgentKill agentKillBegin() {
+	if (recording) {
+	    final AgentKill e = new AgentKill();
+	    if (e.isEnabled()) {
+		e.begin();
+		return e;
+	    }
+	}
+	return null;
+    }
+
+    static void agentKillEnd(final AgentKill e, final AbstractAgent target, final AbstractAgent.ReturnCode result) {
+	if (e != null) {
+	    e.end();
+	    if (e.shouldCommit()) {
+		e.agentClass = target.getClass();
+		e.agentId = target.hashCode();
+		e.result = String.valueOf(result);
+		e.commit();
+	    }
+	}
+    }
+
+    // /////////////////////////////////////////////////////////////////////////
+    // //////////////////////// Organization and messaging
+    // /////////////////////////////////////////////////////////////////////////
+
+    static void roleRequested(final AbstractAgent requester, final String community, final String group, final String role, final AbstractAgent.ReturnCode result) {
+	if (recording) {
+	    final RoleRequest e = new RoleRequest();
+	    if (e.shouldCommit()) {
+		e.agentId = requester.hashCode();
+		e.community = community;
+		e.group = group;
+		e.role = role;
+		e.result = String.valueOf(result);
+		e.commit();
+	    }
+	}
+    }
+
+    static void roleLeft(final AbstractAgent requester, final String community, final String group, final String role, final AbstractAgent.ReturnCode result) {
+	if (recording) {
+	    final RoleLeave e = new RoleLeave();
+	    if (e.shouldCommit()) {
+		e.agentId = requester.hashCode();
+		e.community = community;
+		e.group = group;
+		e.role = role;
+		e.result = String.valueOf(result);
+		e.commit();
+	    }
+	}
+    }
+
+    /**
+     * @param m
+     *            the sent message, its receiver being already set
+     * @param receivers
+     *            the number of receivers, i.e. 1 if this is not a broadcast
+     */
+    static void messageSent(final Message m, final int receivers) {
+	if (recording) {
+	    final MessageSend e = new MessageSend();
+	    if (e.shouldCommit()) {
+		final AgentAddress receiver = m.getReceiver();
+		if (receiver != null) {
+		    e.community = receiver.getCommunity();
+		    e.group = receiver.getGroup();
+		    e.role = receiver.getRole();
+		}
+		final AgentAddress sender = m.getSender();
+		if (sender != null) {
+		    e.senderRole = sender.getRole();
+		}
+		e.messageClass = m.getClass();
+		e.receivers = receivers;
+		e.commit();
+	    }
+	}
+    }
+
+    static void messageReceived(final AbstractAgent receiver, final Message m, final int mailboxSize) {
+	if (recording) {
+	    final MessageReceive e = new MessageReceive();
+	    if (e.shouldCommit()) {
+		e.agentId = receiver.hashCode();
+		e.messageClass = m.getClass();
+		final AgentAddress aa = m.getReceiver();
+		if (aa != null) {
+		    e.community = aa.getCommunity();
+		    e.group = aa.getGroup();
+		    e.role = aa.getRole();
+		}
+		e.mailboxSize = mailboxSize;
+		e.commit();
+	    }
+	}
+    }
+
+    // /////////////////////////////////////////////////////////////////////////
+    // //////////////////////// Simulation
+    // /////////////////////////////////////////////////////////////////////////
+
+    static SimulationStep simulationStepBegin() {
+	if (recording) {
+	    final SimulationStep e = new SimulationStep();
+	    if (e.isEnabled()) {
+		e.begin();
+		return e;
+	    }
+	}
+	return null;
+    }
+
+    static void simulationStepEnd(final SimulationStep e, final Scheduler s, final double gvt, final int activators) {
+	if (e != null) {
+	    e.end();
+	    if (e.shouldCommit()) {
+		e.scheduler = s.getName();
+		e.gvt = gvt;
+		e.activators = activators;
+		e.commit();
+	    }
+	}
+    }
+
+    static ActivatorExecution activatorExecutionBegin() {
+	if (recording) {
+	    final ActivatorExecution e = new ActivatorExecution();
+	    if (e.isEnabled()) {
+		e.begin();
+		return e;
+	    }
+	}
+	return null;
+    }
+
+    static void activatorExecutionEnd(final ActivatorExecution e, final Activator<? extends AbstractAgent> a) {
+	if (e != null) {
+	    e.end();
+	    if (e.shouldCommit()) {
+		e.activatorClass = a.getClass();
+		e.community = a.getCommunity();
+		e.group = a.getGroup();
+		e.role = a.getRole();
+		e.agents = a.size();
+		e.parallelTasks = a.nbOfParallelTasks();
+		e.commit();
+	    }
+	}
+    }
+
+    // /////////////////////////////////////////////////////////////////////////
+    // //////////////////////// Networking
+    // /////////////////////////////////////////////////////////////////////////
+
+    static ConnectionWrite connectionWriteBegin() {
+	if (recording) {
+	    final ConnectionWrite e = new ConnectionWrite();
+	    if (e.isEnabled()) {
+		e.begin();
+		return e;
+	    }
+	}
+	return null;
+    }
+
+    /**
+     * @param bytes
+     *            the serialized size of the written object
+     */
+    static void connectionWriteEnd(final ConnectionWrite e, final KernelAddress distantKernel, final Object written, final long bytes) {
+	if (e != null) {
+	    e.end();
+	    if (e.shouldCommit()) {
+		e.distantKernel = String.valueOf(distantKernel);
+		e.objectClass = written == null ? null : written.getClass();
+		e.size = bytes;
+		e.commit();
+	    }
+	}
+    }
+
+    static ConnectionRead connectionReadBegin() {
+	if (recording) {
+	    final ConnectionRead e = new ConnectionRead();
+	    if (e.isEnabled()) {
+		e.begin();
+		return e;
+	    }
+	}
+	return null;
+    }
+
+    static void connectionReadEnd(final ConnectionRead e, final KernelAddress distantKernel, final Object read) {
+	if (e != null) {
+	    e.end();
+	    if (e.shouldCommit()) {
+		e.distantKernel = String.valueOf(distantKernel);
+		e.objectClass = read == null ? null : read.getClass();
+		e.commit();
+	    }
+	}
+    }
+
+    // /////////////////////////////////////////////////////////////////////////
+    // //////////////////////// Event types
+    // /////////////////////////////////////////////////////////////////////////
+
+    @Name(PREFIX + "AgentLaunch")
+    @Label("Agent Launch")
+    @Description("Launch of an agent, from the launch request to the end of its activation")
+    @Category({ MADKIT, "Life Cycle" })
+    @Enabled(false)
+    @StackTrace(false)
+    static final class AgentLaunch extends Event {
+
+	@Label("Agent Class")
+	Class<?> agentClass;
+	@Label("Agent ID")
+	int agentId;
+	@Label("Result")
+	String result;
+    }
+
+    @Name(PREFIX + "AgentBucketLaunch")
+    @Label("Agent Bucket Launch")
+    @Description("Launch of a bucket of agents, from their initialization to the end of their activation")
+    @Category({ MADKIT, "Life Cycle" })
+    @Enabled(false)
+    @StackTrace(false)
+    static final class AgentBucketLaunch extends Event {
+
+	@Label("Agent Class")
+	Class<?> agentClass;
+	@Label("Bucket Size")
+	int size;
+	@Label("Roles")
+	String roles;
+    }
+
+    @Name(PREFIX + "AgentActivation")
+    @Label("Agent Activation")
+    @Description("Execution of the activate method of an agent")
+    @Category({ MADKIT, "Life Cycle" })
+    @Enabled(false)
+    @StackTrace(false)
+    static final class AgentActivation extends Event {
+
+	@Label("Agent Class")
+	Class<?> agentClass;
+	@Label("Agent ID")
+	int agentId;
+	@Label("Result")
+	String result;
+    }
+
+    @Name(PREFIX + "AgentEnd")
+    @Label("Agent End")
+    @Description("Execution of the end method of an agent")
+    @Category({ MADKIT, "Life Cycle" })
+    @Enabled(false)
+    @StackTrace(false)
+    static final class AgentEnd extends Event {
+
+	@Label("Agent Class")
+	Class<?> agentClass;
+	@Label("Agent ID")
+	int agentId;
+    }
+
+    @Name(PREFIX + "AgentKill")
+    @Label("Agent Kill")
+    @Description("Kill of an agent, from the kill request to its termination")
+    @Category({ MADKIT, "Life Cycle" })
+    @Enabled(false)
+    @StackTrace(false)
+    static final class AgentKill extends Event {
+
+	@Label("Agent Class")
+	Class<?> agentClass;
+	@Label("Agent ID")
+	int agentId;
+	@Label("Result")
+	String result;
+    }
+
+    @Name(PREFIX + "RoleRequest")
+    @Label("Role Request")
+    @Category({ MADKIT, "Organization" })
+    @Enabled(false)
+    @StackTrace(false)
+    static final class RoleRequest extends Event {
+
+	@Label("Agent ID")
+	int agentId;
+	@Label("Community")
+	String community;
+	@Label("Group")
+	String group;
+	@Label("Role")
+	String role;
+	@Label("Result")
+	String result;
+    }
+
+    @Name(PREFIX + "RoleLeave")
+    @Label("Role Leave")
+    @Category({ MADKIT, "Organization" })
+    @Enabled(false)
+    @StackTrace(false)
+    static final class RoleLeave extends Event {
+
+	@Label("Agent ID")
+	int agentId;
+	@Label("Community")
+	String community;
+	@Label("Group")
+	String group;
+	@Label("Role")
+	String role;
+	@Label("Result")
+	String result;
+    }
+
+    @Name(PREFIX + "MessageSend")
+    @Label("Message Send")
+    @Description("A message sent to one agent or broadcast to several ones")
+    @Category({ MADKIT, "Messaging" })
+    @Enabled(false)
+    @StackTrace(false)
+    static final class MessageSend extends Event {
+
+	@Label("Community")
+	String community;
+	@Label("Group")
+	String group;
+	@Label("Role")
+	String role;
+	@Label("Sender Role")
+	String senderRole;
+	@Label("Message Class")
+	Class<?> messageClass;
+	@Label("Receivers")
+	int receivers;
+    }
+
+    @Name(PREFIX + "MessageReceive")
+    @Label("Message Receive")
+    @Description("A message put in the mailbox of an agent")
+    @Category({ MADKIT, "Messaging" })
+    @Enabled(false)
+    @StackTrace(false)
+    static final class MessageReceive extends Event {
+
+	@Label("Agent ID")
+	int agentId;
+	@Label("Message Class")
+	Class<?> messageClass;
+	@Label("Community")
+	String community;
+	@Label("Group")
+	String group;
+	@Label("Role")
+	String role;
+	@Label("Mailbox Size")
+	int mailboxSize;
+    }
+
+    @Name(PREFIX + "SimulationStep")
+    @Label("Simulation Step")
+    @Description("A call to doSimulationStep made by the life cycle of a scheduler")
+    @Category({ MADKIT, "Simulation" })
+    @Enabled(false)
+    @StackTrace(false)
+    static final class SimulationStep extends Event {
+
+	@Label("Scheduler")
+	String scheduler;
+	@Label("GVT")
+	@Description("The GVT at the beginning of the step")
+	double gvt;
+	@Label("Activators")
+	int activators;
+    }
+
+    @Name(PREFIX + "ActivatorExecution")
+    @Label("Activator Execution")
+    @Category({ MADKIT, "Simulation" })
+    @Enabled(false)
+    @StackTrace(false)
+    static final class ActivatorExecution extends Event {
+
+	@Label("Activator Class")
+	Class<?> activatorClass;
+	@Label("Community")
+	String community;
+	@Label("Group")
+	String group;
+	@Label("Role")
+	String role;
+	@Label("Agents")
+	int agents;
+	@Label("Parallel Tasks")
+	int parallelTasks;
+    }
+
+    @Name(PREFIX + "ConnectionWrite")
+    @Label("Kernel Connection Write")
+    @Description("An object written on the socket of a connection with another kernel")
+    @Category({ MADKIT, "Networking" })
+    @Enabled(false)
+    @StackTrace(false)
+    static final class ConnectionWrite extends Event {
+
+	@Label("Distant Kernel")
+	String distantKernel;
+	@Label("Object Class")
+	Class<?> objectClass;
+	@Label("Size")
+	@Description("The number of bytes of the serialized object")
+	@DataAmount
+	long size;
+    }
+
+    @Name(PREFIX + "ConnectionRead")
+    @Label("Kernel Connection Read")
+    @Description("An object read from the socket of a connection with another kernel, including the wait")
+    @Category({ MADKIT, "Networking" })
+    @Enabled(false)
+    @StackTrace(false)
+    static final class ConnectionRead extends Event {
+
+	@Label("Distant Kernel")
+	String distantKernel;
+	@Label("Object Class")
+	Class<?> objectClass;
+    }
+
+}
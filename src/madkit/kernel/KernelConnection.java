@@ -37,9 +37,11 @@ knowledge of the CeCILL-C license and that you accept its terms.
 package madkit.kernel;
 
 import java.io.EOFException;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.net.InetAddress;
 import java.net.Socket;
 import java.net.SocketException;
@@ -74,6 +76,7 @@ final class KernelConnection extends Thread{
 
 	private final ObjectOutputStream oos;
 	private final ObjectInputStream ois;
+	private final ByteCounter written;
 
 	/**
 	 * @return the distantKernelAddress
@@ -90,7 +93,8 @@ final class KernelConnection extends Thread{
 	public KernelConnection(NetworkAgent netAgent, Socket kernelClient) throws IOException{
 		myNetAgent = netAgent;
 		distantKernelSocket = kernelClient;
-		oos = new ObjectOutputStream(distantKernelSocket.getOutputStream());
+		written = new ByteCounter(distantKernelSocket.getOutputStream());
+		oos = new ObjectOutputStream(written);
 		ois = new ObjectInputStream(distantKernelSocket.getInputStream());
 	}
 
@@ -129,7 +133,10 @@ final class KernelConnection extends Thread{
 		activated = true;
 		while(distantKernelSocket.isConnected()){
 			try {
-				myNetAgent.receiveMessage((Message) ois.readObject());
+				final FlightRecorderEvents.ConnectionRead event = FlightRecorderEvents.connectionReadBegin();
+				final Message m = (Message) ois.readObject();
+				FlightRecorderEvents.connectionReadEnd(event, distantKernelAddress, m);
+				myNetAgent.receiveMessage(m);
 			} catch (ClassNotFoundException e) {
 				myNetAgent.getLogger().log(Level.SEVERE,"Unable to deserialize object", e);
 			} catch (IOException e) {
@@ -158,7 +165,11 @@ final class KernelConnection extends Thread{
 	 */
 	synchronized void sendMessage(final Message m) {
 		try {
+			final FlightRecorderEvents.ConnectionWrite event = FlightRecorderEvents.connectionWriteBegin();
+			final long before = written.count;
 			oos.writeObject(m);
+			// the object stream drains its buffer at the end of writeObject
+			FlightRecorderEvents.connectionWriteEnd(event, distantKernelAddress, m, written.count - before);
 		} catch (IOException e) {
 			logIOException(e);
 		}
@@ -192,4 +203,28 @@ final class KernelConnection extends Thread{
 		return distantKernelSocket.getInetAddress();
 	}
 
+	/**
+	 * Counts the bytes written on the socket, so that the serialized size of the messages can be recorded.
+	 */
+	private static final class ByteCounter extends FilterOutputStream {
+
+		private long count;
+
+		ByteCounter(final OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void write(final int b) throws IOException {
+			out.write(b);
+			count++;
+		}
+
+		@Override
+		public void write(final byte[] b, final int off, final int len) throws IOException {
+			out.write(b, off, len);
+			count += len;
+		}
+	}
+
 }
@@ -481,7 +481,16 @@ public final class Madkit {
 	 * @see AgentLogger
 	 */
 	loadLocalDemos,
-	cgrWarnings;
+	cgrWarnings,
+	/**
+	 * Runs the {@link Scheduler}s in batch mode: no GUI nor user preferences for the scheduler, no pause between the
+	 * simulation steps and control messages checked only every {@link Scheduler#getControlPollingInterval()} steps.
+	 * Default value is "false".
+	 * 
+	 * @see Scheduler#setBatchMode(boolean)
+	 * @since MaDKit 5.2
+	 */
+	batchMode;
 
 	/**
 	 * Tells if this option is activated for this session.
@@ -614,7 +623,15 @@ public final class Madkit {
 	/**
 	 * the agent frame class which should be used by the GUI manager, default is {@link AgentFrame}
 	 */
-	agentFrameClass;
+	agentFrameClass,
+
+	/**
+	 * the seed of the {@link SimulationRandom} of the kernel, so that simulations could be replicated. Default is "null",
+	 * meaning that a seed is chosen at random and logged by the kernel.
+	 * 
+	 * @since MaDKit 5.2
+	 */
+	randomSeed;
 
 	/**
 	 * Returns the constant's name prefixed by "<code>--</code>" so that it could interpreted as an option of the command
@@ -173,6 +173,7 @@ class MadkitKernel extends Agent {
     private final AgentThreadFactory daemonAgentThreadFactory;
 
     private AgentAddress netAgent;
+    private SimulationRandom simulationRandom;
     // my private addresses for optimizing the message building
     private AgentAddress netUpdater, netEmmiter, kernelRole;
     private final Set<Agent> threadedAgents;
@@ -727,6 +728,7 @@ class MadkitKernel extends Agent {
 	    return e.getCode();
 	}
 	final ReturnCode result = g.requestRole(requester, role, memberCard);
+	FlightRecorderEvents.roleRequested(requester, community, group, role, result);
 	if (result == SUCCESS) {
 	    if (g.isDistributed()) {
 		sendNetworkMessageWithRole(new CGRSynchro(REQUEST_ROLE, new AgentAddress(requester, g.get(role), kernelAddress)), netUpdater);
@@ -801,6 +803,7 @@ class MadkitKernel extends Agent {
 	    else {
 		rc = r.removeMember(requester);
 	    }
+	    FlightRecorderEvents.roleLeft(requester, community, group, role, rc);
 	    if (rc == SUCCESS) {
 		r.removeFromOverlookers(requester);
 		if (hooks != null) {
@@ -909,6 +912,10 @@ class MadkitKernel extends Agent {
 	    messageToSend.setSender(senderAgentAddress);
 	    // TODO consistency on senderRole
 	    broadcasting(receivers, messageToSend);
+	    if (FlightRecorderEvents.isRecording()) {
+		messageToSend.setReceiver(receivers.get(0));
+		FlightRecorderEvents.messageSent(messageToSend, receivers.size());
+	    }
 	    if (hooks != null) {
 		messageToSend.setReceiver(receivers.get(0));
 		informHooks(AgentActionEvent.BROADCAST_MESSAGE, messageToSend.clone());
@@ -928,6 +935,10 @@ class MadkitKernel extends Agent {
 		return null; // the requester is the only agent in this group
 	    message.setSender(getSenderAgentAddress(requester, receivers.get(0), senderRole));
 	    broadcasting(receivers, message);
+	    if (FlightRecorderEvents.isRecording()) {
+		message.setReceiver(receivers.get(0));
+		FlightRecorderEvents.messageSent(message, receivers.size());
+	    }
 	    return requester.waitAnswers(message, receivers.size(), timeOutMilliSeconds);
 	}
 	catch(CGRNotAvailable e) {
@@ -994,6 +1005,7 @@ class MadkitKernel extends Agent {
      * @param cgrLocations
      */
     void launchAgentBucketWithRoles(final AbstractAgent requester, List<AbstractAgent> bucket, int cpuCoreNb, String... cgrLocations) {
+	final FlightRecorderEvents.AgentBucketLaunch event = FlightRecorderEvents.agentBucketLaunchBegin();
 	if (cgrLocations != null && cgrLocations.length != 0) {// TODO check lambda
 	    AgentsJob init = new AgentsJob() {
 
@@ -1091,6 +1103,7 @@ class MadkitKernel extends Agent {
 	    };
 	    doMulticore(aj.getJobs(bucket, cpuCoreNb));
 	}
+	FlightRecorderEvents.agentBucketLaunchEnd(event, bucket, cgrLocations);
     }
 
     /**
@@ -1160,13 +1173,15 @@ class MadkitKernel extends Agent {
     }
 
     ReturnCode launchAgent(final AbstractAgent requester, final AbstractAgent agent, final int timeOutSeconds, final boolean defaultGUI) {
+	final FlightRecorderEvents.AgentLaunch event = FlightRecorderEvents.agentLaunchBegin();
+	ReturnCode returnCode = SEVERE;
 	try {
 	    if (logger != null) {
 		logger.finest(() -> requester + " launching " + agent + " by " + Thread.currentThread());
 	    }
 	    // if to == 0, this is still quicker than treating the case, this also
 	    // holds for Integer.MAX_VALUE
-	    final ReturnCode returnCode = lifeExecutor.submit(new Callable<ReturnCode>() {
+	    returnCode = lifeExecutor.submit(new Callable<ReturnCode>() {
 
 		public ReturnCode call() {
 		    return launchingAgent(agent, defaultGUI);
@@ -1180,14 +1195,17 @@ class MadkitKernel extends Agent {
 	catch(InterruptedException e) {// requester has been killed or
 				       // something
 	    requester.handleInterruptedException();
-	    return TIMEOUT;
+	    return returnCode = TIMEOUT;
 	}
 	catch(ExecutionException e) {// BUG on launching agent
 	    bugReport("Launching task failed on " + agent, e);
 	    return SEVERE;
 	}
 	catch(TimeoutException e) {// launch task time out
-	    return TIMEOUT;
+	    return returnCode = TIMEOUT;
+	}
+	finally {
+	    FlightRecorderEvents.agentLaunchEnd(event, agent, returnCode);
 	}
     }
 
@@ -1269,6 +1287,8 @@ class MadkitKernel extends Agent {
 	if (target.getState().compareTo(ACTIVATED) < 0) {
 	    return NOT_YET_LAUNCHED;
 	}
+	final FlightRecorderEvents.AgentKill event = FlightRecorderEvents.agentKillBegin();
+	ReturnCode returnCode = SEVERE;
 	final Future<ReturnCode> killAttempt = serviceExecutor.submit(new Callable<ReturnCode>() {
 
 	    public ReturnCode call() {
@@ -1276,12 +1296,12 @@ class MadkitKernel extends Agent {
 	    }
 	});
 	try {
-	    return killAttempt.get();
+	    return returnCode = killAttempt.get();
 	}
 	catch(InterruptedException e) {// requester has been killed or
 				       // something
 	    requester.handleInterruptedException();
-	    return TIMEOUT;
+	    return returnCode = TIMEOUT;
 	}
 	catch(ExecutionException e) {// BUG kill failed
 	    bugReport("Kill failed: " + target, e);
@@ -1289,6 +1309,9 @@ class MadkitKernel extends Agent {
 	    // } catch (TimeoutException e) {// kill task time out
 	    // return TIMEOUT;
 	}
+	finally {
+	    FlightRecorderEvents.agentKillEnd(event, target, returnCode);
+	}
     }
 
     private final ReturnCode killingAgent(final AbstractAgent target, int timeOutSeconds) {
@@ -1434,6 +1457,14 @@ class MadkitKernel extends Agent {
 	return org;
     }
 
+    /**
+     * @return the group, or <code>null</code> if it does not exist
+     */
+    final Group getExistingGroup(final String community, final String group) {
+	final Organization org = organizations.get(community);
+	return org == null ? null : org.get(group);
+    }
+
     final Group getGroup(final String community, final String group) throws CGRNotAvailable {
 	// System.err.println("HHHHHHHHHHHHHHHHHHHH "+community);
 	Group g = getCommunity(community).get(group);
@@ -1471,7 +1502,7 @@ class MadkitKernel extends Agent {
     final AgentAddress getAnotherRolePlayer(AbstractAgent abstractAgent, String community, String group, String role) throws CGRNotAvailable {
 	List<AgentAddress> others = getOtherRolePlayers(abstractAgent, community, group, role);
 	if (others != null) {
-	    return others.get((int) (Math.random() * others.size()));
+	    return others.get(getKernelRandom().nextInt(others.size()));
 	}
 	return null;
     }
@@ -1484,8 +1515,11 @@ class MadkitKernel extends Agent {
 	m.setSender(sender);
 	m.setReceiver(receiver);
 	final ReturnCode r = sendMessage(m, receiver.getAgent());
-	if (r == SUCCESS && hooks != null) {
-	    informHooks(AgentActionEvent.SEND_MESSAGE, m);
+	if (r == SUCCESS) {
+	    FlightRecorderEvents.messageSent(m, 1);
+	    if (hooks != null) {
+		informHooks(AgentActionEvent.SEND_MESSAGE, m);
+	    }
 	}
 	return r;
     }
@@ -1532,7 +1566,16 @@ class MadkitKernel extends Agent {
     synchronized boolean addOverlooker(@SuppressWarnings("unused") final AbstractAgent requester, Overlooker<? extends AbstractAgent> o) {
 	if (operatingOverlookers.add(o)) {
 	    try {
-		getRole(o.getCommunity(), o.getGroup(), o.getRole()).addOverlooker(o);
+		if (o.overlooksSeveralRoles()) {
+		    for (final Role r : new ArrayList<>(getGroup(o.getCommunity(), o.getGroup()).values())) {
+			if (o.overlooks(o.getCommunity(), o.getGroup(), r.getRoleName())) {
+			    r.addOverlooker(o);
+			}
+		    }
+		}
+		else {
+		    getRole(o.getCommunity(), o.getGroup(), o.getRole()).addOverlooker(o);
+		}
 	    }
 	    catch(CGRNotAvailable e) {// the role does not exist yet
 	    }
@@ -1547,8 +1590,7 @@ class MadkitKernel extends Agent {
      */
 
     synchronized boolean removeOverlooker(@SuppressWarnings("unused") final AbstractAgent requester, Overlooker<? extends AbstractAgent> o) {
-	final Role r = o.getOverlookedRole();
-	if (r != null) {
+	for (final Role r : o.getOverlookedRoles()) {
 	    r.removeOverlooker(o);
 	}
 	return operatingOverlookers.remove(o);
@@ -1603,6 +1645,32 @@ class MadkitKernel extends Agent {
 	return this;
     }
 
+    /**
+     * @return the random service of this kernel, which is seeded using {@link Option#randomSeed}
+     */
+    synchronized SimulationRandom getKernelRandom() {
+	if (simulationRandom == null) {
+	    final String seed = getMadkitConfig().getProperty(Option.randomSeed.name());
+	    simulationRandom = new SimulationRandom(seed == null || seed.equals("null") ? System.nanoTime() : Long.parseLong(seed.trim()));
+	    getLogger().info(() -> "Random seed = " + simulationRandom.getSeed());
+	}
+	return simulationRandom;
+    }
+
+    /**
+     * Replaces the random service, when a simulation is restored.
+     */
+    synchronized void setKernelRandom(final SimulationRandom random) {
+	simulationRandom = random;
+    }
+
+    /**
+     * @return the organizations of this kernel, by community name
+     */
+    final Map<String, Organization> getOrganizations() {
+	return organizations;
+    }
+
     @Override
     public TreeSet<String> getExistingCommunities() {
 	return new TreeSet<>(organizations.keySet());
@@ -0,0 +1,183 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.kernel;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The membership changes of a {@link Role} which have not been delivered yet to all the overlookers using batched
+ * notifications. Each change is appended once, whatever the number of these overlookers: an overlooker only keeps the
+ * position of the next change it has to read, and the changes which have been read by all of them are discarded.
+ * Positions are absolute, so that they remain valid when the log is compacted.
+ * <p>
+ * The changes are not synchronized here: the {@link Role} uses the log as its lock.
+ *
+ * @author Fabien Michel
+ * @since MaDKit 5.2
+ * @version 0.9
+ * @see Overlooker#useBatchedNotifications(boolean)
+ */
+final class MembershipChangeLog {
+
+    private static final AbstractAgent[] EMPTY = new AbstractAgent[0];
+
+    private AbstractAgent[] agents = EMPTY;
+    private boolean[] additions = new boolean[0];
+    // the absolute position of agents[0]
+    private long first;
+    private int size;
+
+    /**
+     * @return the position of the next change which will be appended
+     */
+    long end() {
+	return first + size;
+    }
+
+    /**
+     * @return the number of changes which are kept
+     */
+    int size() {
+	return size;
+    }
+
+    void append(final AbstractAgent agent, final boolean added) {
+	ensureCapacity(size + 1);
+	agents[size] = agent;
+	additions[size++] = added;
+    }
+
+    void append(final List<AbstractAgent> l, final boolean added) {
+	ensureCapacity(size + l.size());
+	for (final AbstractAgent a : l) {
+	    agents[size] = a;
+	    additions[size++] = added;
+	}
+    }
+
+    /**
+     * Reads the net effect of the changes appended since a position: an agent whose first change is a removal was playing
+     * the role and is part of the removed agents, an agent whose last change is an addition is playing the role and is
+     * part of the added ones. So an agent which has joined and then leaved the role is not reported at all, while an agent
+     * which has leaved and then joined it again is reported in both lists.
+     *
+     * @param from
+     *            the position of the first change to read
+     * @param removed
+     *            the list where the removed agents are added, in the order of their first change
+     * @param added
+     *            the list where the added agents are added, in the order of their last change
+     * @return the position following the last change which has been read
+     */
+    long read(final long from, final List<AbstractAgent> removed, final List<AbstractAgent> added) {
+	final int start = (int) Math.max(0, from - first);
+	if (start >= size) {
+	    return end();
+	}
+	final Map<AbstractAgent, Boolean> firstChanges = new IdentityHashMap<>();
+	final Map<AbstractAgent, Boolean> lastChanges = new IdentityHashMap<>();
+	for (int i = start; i < size; i++) {
+	    firstChanges.putIfAbsent(agents[i], additions[i]);
+	    lastChanges.put(agents[i], additions[i]);
+	}
+	for (int i = start; i < size; i++) {
+	    if (firstChanges.remove(agents[i]) == Boolean.FALSE) {
+		removed.add(agents[i]);
+	    }
+	}
+	final int addedBefore = added.size();
+	for (int i = size - 1; i >= start; i--) {
+	    if (lastChanges.remove(agents[i]) == Boolean.TRUE) {
+		added.add(agents[i]);
+	    }
+	}
+	Collections.reverse(added.subList(addedBefore, added.size()));
+	return end();
+    }
+
+    /**
+     * Discards the changes preceding a position, which have been read by all the overlookers.
+     *
+     * @param position
+     *            the smallest position of the overlookers
+     */
+    void discardBefore(final long position) {
+	final int n = (int) Math.min(size, Math.max(0, position - first));
+	if (n == 0) {
+	    return;
+	}
+	if (n == size) {
+	    Arrays.fill(agents, 0, size, null);
+	    if (agents.length > 1024) {// do not keep the memory of a burst
+		agents = EMPTY;
+		additions = new boolean[0];
+	    }
+	}
+	else {
+	    System.arraycopy(agents, n, agents, 0, size - n);
+	    System.arraycopy(additions, n, additions, 0, size - n);
+	    Arrays.fill(agents, size - n, size, null);
+	}
+	first += n;
+	size -= n;
+    }
+
+    /**
+     * Drops all the changes, e.g. when the role is removed.
+     */
+    void clear() {
+	discardBefore(end());
+    }
+
+    private void ensureCapacity(final int capacity) {
+	if (capacity > agents.length) {
+	    final int newLength = Math.max(16, Math.max(capacity, agents.length + (agents.length >> 1)));
+	    agents = Arrays.copyOf(agents, newLength);
+	    additions = Arrays.copyOf(additions, newLength);
+	}
+    }
+
+    @Override
+    public String toString() {
+	return "membership changes [" + first + "," + end() + "[";
+    }
+
+}
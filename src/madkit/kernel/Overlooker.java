@@ -38,10 +38,16 @@ knowledge of the CeCILL-C license and that you accept its terms.
 package madkit.kernel;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 
+import madkit.agr.DefaultMaDKitRoles;
 import madkit.i18n.ErrorMessages;
 import madkit.simulation.SimulationException;
 
@@ -55,10 +61,17 @@ import madkit.simulation.SimulationException;
 @SuppressWarnings("unchecked")
 abstract class Overlooker<A extends AbstractAgent> {
 
+    private static final Comparator<AbstractAgent> BY_CREATION = Comparator.comparingInt(AbstractAgent::hashCode);
+
     private Role overlookedRole;
     private final String community;
     private final String group;
     private final String role;
+    // when several roles are observed: their names, empty for the whole group, and the deduplicated view
+    private final Set<String> roles;
+    private final RoleUnion union;
+    private long shuffles;
+    private volatile boolean batchedNotifications;
 
     /**
      * Builds a new Activator or Probe on the given CGR location of the artificial society.
@@ -71,6 +84,136 @@ abstract class Overlooker<A extends AbstractAgent> {
 	community = Objects.requireNonNull(communityName, ErrorMessages.C_NULL.toString());
 	group = Objects.requireNonNull(groupName, ErrorMessages.G_NULL.toString());
 	role = Objects.requireNonNull(roleName, ErrorMessages.R_NULL.toString());
+	roles = null;
+	union = null;
+    }
+
+    /**
+     * Builds a new Activator or Probe observing several roles of a group: an agent playing several of these roles is
+     * only considered once, e.g. in {@link #getCurrentAgentsList()}, {@link #adding(AbstractAgent)} being called when
+     * it starts playing one of them and {@link #removing(AbstractAgent)} when it no longer plays any of them. If no
+     * role is given, all the roles of the group are observed, except
+     * {@link DefaultMaDKitRoles#GROUP_MANAGER_ROLE}, so that the agent which has created the group, e.g. the
+     * scheduler, is not considered. {@link #getRole()} then returns <code>"*"</code>.
+     * 
+     * @param communityName
+     * @param groupName
+     * @param roleNames
+     *            the observed roles, or none for the whole group
+     */
+    Overlooker(final String communityName, final String groupName, final String[] roleNames) {
+	community = Objects.requireNonNull(communityName, ErrorMessages.C_NULL.toString());
+	group = Objects.requireNonNull(groupName, ErrorMessages.G_NULL.toString());
+	for (final String r : roleNames) {
+	    Objects.requireNonNull(r, ErrorMessages.R_NULL.toString());
+	}
+	roles = Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(roleNames)));
+	role = roles.isEmpty() ? "*" : String.join(",", roles);
+	union = new RoleUnion();
+    }
+
+    static String[] roles(final String role, final String... otherRoles) {
+	final String[] all = new String[otherRoles.length + 1];
+	all[0] = role;
+	System.arraycopy(otherRoles, 0, all, 1, otherRoles.length);
+	return all;
+    }
+
+    /**
+     * @return <code>true</code> if the role <code>r</code> of the group <code>g</code> in the community
+     *         <code>c</code> is observed by this overlooker
+     */
+    final boolean overlooks(final String c, final String g, final String r) {
+	if (!community.equals(c) || !group.equals(g)) {
+	    return false;
+	}
+	if (union == null) {
+	    return role.equals(r);
+	}
+	return roles.isEmpty() ? !DefaultMaDKitRoles.GROUP_MANAGER_ROLE.equals(r) : roles.contains(r);
+    }
+
+    /**
+     * @return the number of calls to {@link #getShuffledList()}, which is part of the key of the next shuffle
+     */
+    final long getShuffleCount() {
+	return shuffles;
+    }
+
+    final void setShuffleCount(final long count) {
+	shuffles = count;
+    }
+
+    /**
+     * @return the names of the observed roles when several roles are observed, empty for a whole group, and
+     *         <code>null</code> when a single role is observed
+     */
+    final Set<String> getRoleNames() {
+	return roles;
+    }
+
+    /**
+     * @return <code>true</code> if this overlooker observes several roles
+     */
+    final boolean overlooksSeveralRoles() {
+	return union != null;
+    }
+
+    /**
+     * Called by a role when this overlooker starts observing it.
+     */
+    final void attach(final Role r) {
+	if (union == null) {
+	    setOverlookedRole(r);
+	    return;
+	}
+	final boolean first = union.addRole(r);
+	final List<AbstractAgent> newcomers = union.add(r, r.getAgentsList());
+	try {
+	    if (first) {
+		initialize();
+	    }
+	    else if (!newcomers.isEmpty()) {
+		adding((List<A>) newcomers);
+	    }
+	}
+	catch(Throwable e) {
+	    throw new SimulationException("initialize problem on " + this, e);
+	}
+    }
+
+    /**
+     * Called by a role when this overlooker stops observing it.
+     */
+    final void detach(final Role r) {
+	if (union == null) {
+	    setOverlookedRole(null);
+	}
+	else {
+	    union.removeRole(r);
+	}
+    }
+
+    /**
+     * @return <code>true</code> if the agent currently plays an observed role
+     */
+    final boolean isOverlooking(final AbstractAgent a) {
+	if (union != null) {
+	    return union.contains(a);
+	}
+	final Role r = overlookedRole;
+	return r != null && r.contains(a);
+    }
+
+    /**
+     * @return the roles which are currently observed
+     */
+    final List<Role> getOverlookedRoles() {
+	if (union != null) {
+	    return union.getRoles();
+	}
+	final Role r = overlookedRole;
+	return r == null ? Collections.emptyList() : Collections.singletonList(r);
     }
 
     final void setOverlookedRole(final Role theRole) {
@@ -212,11 +355,15 @@ abstract class Overlooker<A extends AbstractAgent> {
     /**
      * Returns a snapshot at moment t of the agents handling the group/role couple
      * 
-     * @return a list view (a snapshot at moment t) of the agents that handle the group/role couple (in proper sequence)
+     * @return an unmodifiable list view (a snapshot at moment t) of the agents that handle the group/role couple (in
+     *         proper sequence)
      * @since MaDKit 3.0
      */
     public List<A> getCurrentAgentsList()// TODO log if not already added !
     {
+	if (union != null) {
+	    return (List<A>) union.getAgentsList();
+	}
 	if (overlookedRole != null) {
 	    return (List<A>) overlookedRole.getAgentsList();
 	}
@@ -224,21 +371,28 @@ abstract class Overlooker<A extends AbstractAgent> {
     }
 
     /**
-     * Returns a ListIterator over the agents which is shuffled
+     * Returns a shuffled copy of the agents list, the list returned by {@link #getCurrentAgentsList()} being left
+     * untouched. The shuffle is drawn from the {@link SimulationRandom} of the kernel, using a key which only depends on
+     * the CGR location, the class of this overlooker and the number of previous calls. As the order of a role depends
+     * on the scheduling of concurrent launches, e.g. by {@link AbstractAgent#launchAgentBucket(List, String...)}, the
+     * agents are first sorted by creation order, i.e. by {@link AbstractAgent#hashCode()}. So the successive orders are
+     * reproducible for a given seed, whatever the number of threads used by the simulation, as long as the agents are
+     * created in the same order.
      * 
-     * @return a ListIterator which has been previously shuffled
+     * @return a new shuffled list of the agents
+     * @see SimulationRandom#shuffle(List, long)
      * @since MaDKit 3.0
      */
     public List<A> getShuffledList() {
-	try {
-	    List<A> l = getCurrentAgentsList();
-	    Collections.shuffle(l);
-	    return l;
-	}
-	catch(NullPointerException e) {
-	    e.printStackTrace();
+	final List<Role> observed = getOverlookedRoles();
+	if (observed.isEmpty()) {
+	    return Collections.emptyList();
 	}
-	return Collections.emptyList();
+	final Role r = observed.get(0);
+	final long key = ((long) Objects.hash(getClass().getName(), community, group, role) << 32) + shuffles++;
+	final List<A> agents = new ArrayList<>(getCurrentAgentsList());
+	agents.sort(BY_CREATION);
+	return r.getMyGroup().getCommunityObject().getMyKernel().getKernelRandom().shuffle(agents, key);
     }
 
     /**
@@ -251,20 +405,164 @@ abstract class Overlooker<A extends AbstractAgent> {
 	return getClass().getSimpleName() + " <" + community + "," + group + "," + role + "> " + size() + " agents";
     }
 
-    final void addAgent(final AbstractAgent a) {
-	adding((A) a);
+    /**
+     * Sets how this overlooker is notified of the agents joining or leaving the overlooked role. By default, each change
+     * immediately triggers a call to {@link #adding(AbstractAgent)} or {@link #removing(AbstractAgent)}, by the thread of
+     * the agent which has changed its membership.
+     * <p>
+     * When the batched mode is on, the changes are accumulated in a log which is kept by the role, whatever the number
+     * of overlookers using it, and delivered by {@link #deliverPendingNotifications()}: the net effect of all the changes
+     * which have occurred since the previous delivery is notified using at most one call to {@link #removing(List)}
+     * followed by at most one call to {@link #adding(List)}. So an agent which has joined and then leaved the role
+     * between two deliveries is not notified at all. A {@link Scheduler} delivers the pending notifications of an
+     * {@link Activator} before each execution, see {@link Scheduler#executeAndLog(Activator)}, so that births and deaths
+     * are taken into account at step boundaries, by the thread executing the activator. An activator executed directly,
+     * or a probe, has to call {@link #deliverPendingNotifications()} explicitly, e.g. before reading the agents: changes
+     * are kept by the role until all its batched overlookers have read them.
+     * <p>
+     * The initial call to {@link #initialize()} is still made when the overlooker is added.
+     *
+     * @param on
+     *            <code>true</code> for turning on batched notifications
+     * @since MaDKit 5.2
+     */
+    public void useBatchedNotifications(final boolean on) {
+	synchronized (this) {
+	    if (batchedNotifications == on) {
+		return;
+	    }
+	    batchedNotifications = on;
+	}
+	for (final Role r : getOverlookedRoles()) {
+	    r.setBatchedNotifications(this, on);
+	}
     }
 
-    final void removeAgent(final AbstractAgent a) {
-	removing((A) a);
+    /**
+     * @return <code>true</code> if the membership changes are delivered in batches
+     * @see #useBatchedNotifications(boolean)
+     * @since MaDKit 5.2
+     */
+    public boolean isBatchedNotificationsOn() {
+	return batchedNotifications;
     }
 
-    final void addAgents(final List<AbstractAgent> l) {
-	adding((List<A>) l);
+    /**
+     * Delivers the membership changes which have been accumulated since the previous delivery, when the batched mode is
+     * on. This does nothing otherwise.
+     *
+     * @see #useBatchedNotifications(boolean)
+     * @since MaDKit 5.2
+     */
+    public void deliverPendingNotifications() {
+	if (!batchedNotifications) {
+	    return;
+	}
+	if (union == null) {
+	    final Role r = overlookedRole;
+	    if (r != null) {
+		r.deliverChanges(this);
+	    }
+	    return;
+	}
+	// all the additions first, so that an agent moving from an observed role to another one is not notified
+	final List<Role> observed = union.getRoles();
+	final List<List<AbstractAgent>> removed = new ArrayList<>(observed.size());
+	final List<AbstractAgent> newcomers = new ArrayList<>();
+	for (final Role r : observed) {
+	    final List<AbstractAgent> added = new ArrayList<>();
+	    removed.add(new ArrayList<>());
+	    r.readChanges(this, removed.get(removed.size() - 1), added);
+	    keepMembershipChanges(removed.get(removed.size() - 1), added);
+	    newcomers.addAll(union.add(r, added));
+	}
+	final List<AbstractAgent> gone = new ArrayList<>();
+	for (int i = 0; i < observed.size(); i++) {
+	    gone.addAll(union.remove(observed.get(i), removed.get(i)));
+	}
+	notify(gone, newcomers);
     }
 
-    final void removeAgents(final List<AbstractAgent> l) {
-	removing((List<A>) l);
+    /**
+     * Applies the net changes of a role which have been accumulated for batched notifications.
+     */
+    final void applyChanges(final Role r, final List<AbstractAgent> removed, final List<AbstractAgent> added) {
+	if (union == null) {
+	    notify(removed, added);
+	}
+	else {
+	    keepMembershipChanges(removed, added);
+	    final List<AbstractAgent> newcomers = union.add(r, added);
+	    notify(union.remove(r, removed), newcomers);
+	}
+    }
+
+    /**
+     * Removes from the net changes of a role the agents which are reported in both lists: having leaved and then joined
+     * the role again, they are still playing it, so that applying the removal after the addition would wrongly drop
+     * them from the union.
+     */
+    private static void keepMembershipChanges(final List<AbstractAgent> removed, final List<AbstractAgent> added) {
+	if (removed.isEmpty() || added.isEmpty()) {
+	    return;
+	}
+	final Set<AbstractAgent> present = Collections.newSetFromMap(new IdentityHashMap<>());
+	present.addAll(added);
+	final Set<AbstractAgent> rejoined = Collections.newSetFromMap(new IdentityHashMap<>());
+	for (final AbstractAgent a : removed) {
+	    if (present.contains(a)) {
+		rejoined.add(a);
+	    }
+	}
+	if (!rejoined.isEmpty()) {
+	    removed.removeAll(rejoined);
+	    added.removeAll(rejoined);
+	}
+    }
+
+    private void notify(final List<AbstractAgent> removed, final List<AbstractAgent> added) {
+	if (!removed.isEmpty()) {
+	    removing((List<A>) removed);
+	}
+	if (!added.isEmpty()) {
+	    adding((List<A>) added);
+	}
+    }
+
+    final void addAgent(final Role r, final AbstractAgent a) {
+	if (union == null) {
+	    adding((A) a);
+	}
+	else {
+	    for (final AbstractAgent newcomer : union.add(r, Collections.singletonList(a))) {
+		adding((A) newcomer);
+	    }
+	}
+    }
+
+    final void removeAgent(final Role r, final AbstractAgent a) {
+	if (union == null) {
+	    removing((A) a);
+	}
+	else {
+	    for (final AbstractAgent gone : union.remove(r, Collections.singletonList(a))) {
+		removing((A) gone);
+	    }
+	}
+    }
+
+    final void addAgents(final Role r, final List<AbstractAgent> l) {
+	final List<AbstractAgent> newcomers = union == null ? l : union.add(r, l);
+	if (!newcomers.isEmpty()) {
+	    adding((List<A>) newcomers);
+	}
+    }
+
+    final void removeAgents(final Role r, final List<AbstractAgent> l) {
+	final List<AbstractAgent> gone = union == null ? l : union.remove(r, l);
+	if (!gone.isEmpty()) {
+	    removing((List<A>) gone);
+	}
     }
 
     /**
@@ -282,8 +580,8 @@ abstract class Overlooker<A extends AbstractAgent> {
      * Makes all the agents leave the corresponding role at once.
      */
     public void allAgentsLeaveRole() {
-	if (overlookedRole != null) {
-	    overlookedRole.removeMembers((List<AbstractAgent>) getCurrentAgentsList());
+	for (final Role r : getOverlookedRoles()) {
+	    r.removeMembers(new ArrayList<>(r.getAgentsList()));
 	}
     }
 
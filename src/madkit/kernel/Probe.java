@@ -66,6 +66,35 @@ public class Probe<A extends AbstractAgent> extends Overlooker<A> {
 	super(communityName, groupName, roleName);
     }
 
+    /**
+     * Builds a new Probe<> observing several roles of a group. An agent playing several of these roles is only probed
+     * once.
+     * 
+     * @param communityName
+     * @param groupName
+     * @param roleName
+     * @param otherRoleNames
+     *            the other observed roles
+     * @see Overlooker#Overlooker(String, String, String[])
+     * @since MaDKit 5.2
+     */
+    public Probe(final String communityName, final String groupName, final String roleName, final String... otherRoleNames) {
+	super(communityName, groupName, roles(roleName, otherRoleNames));
+    }
+
+    /**
+     * Builds a new Probe<> observing all the roles of a group but the manager role. An agent playing several roles is
+     * only probed once.
+     * 
+     * @param communityName
+     * @param groupName
+     * @see Overlooker#Overlooker(String, String, String[])
+     * @since MaDKit 5.2
+     */
+    public Probe(final String communityName, final String groupName) {
+	super(communityName, groupName, new String[0]);
+    }
+
     /**
      * Returns the agent's field named <code>fieldName</code>. This also works on <code>private</code> fields, even
      * inherited ones.
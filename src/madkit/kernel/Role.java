@@ -45,8 +45,10 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.logging.Logger;
 
@@ -63,11 +65,14 @@ class Role implements Serializable {// TODO test with arraylist
 
     private static final long serialVersionUID = 4447153943733812916L;
 
-    protected final transient List<AbstractAgent> players;// TODO test copyonarraylist and linkedhashset
+    protected final transient SegmentedAgentList players;
     private transient List<AbstractAgent> tmpReferenceableAgents;
     protected transient Set<AgentAddress> agentAddresses;
     protected transient boolean modified = true;
     private final transient Set<Overlooker<? extends AbstractAgent>> overlookers;
+    // the overlookers using batched notifications with the position of their next change in the log, guarded by the log
+    private final transient Map<Overlooker<? extends AbstractAgent>, Long> batchedOverlookers;
+    private final transient MembershipChangeLog changeLog;
     protected final transient Group myGroup;
     private final transient Logger logger;
     private final transient KernelAddress kernelAddress;
@@ -84,7 +89,7 @@ class Role implements Serializable {// TODO test with arraylist
     }
 
     Role(final Group groupObject, final String roleName) {
-	players = new ArrayList<>();
+	players = new SegmentedAgentList();
 	tmpReferenceableAgents = new ArrayList<>();// should not be necessary but ...
 	communityName = groupObject.getCommunityObject().getName();
 	groupName = groupObject.getName();
@@ -97,6 +102,8 @@ class Role implements Serializable {// TODO test with arraylist
 	    logger.finer(() -> toString() + " created");
 	}
 	overlookers = new LinkedHashSet<>();
+	batchedOverlookers = new LinkedHashMap<>();
+	changeLog = new MembershipChangeLog();
 	initializeOverlookers();
     }
 
@@ -112,7 +119,7 @@ class Role implements Serializable {// TODO test with arraylist
 
     private synchronized void initializeOverlookers() {
 	for (final Overlooker<? extends AbstractAgent> o : myGroup.getCommunityObject().getMyKernel().getOperatingOverlookers()) {
-	    if (o.getRole().equals(roleName) && o.getGroup().equals(groupName) && o.getCommunity().equals(communityName))
+	    if (o.overlooks(communityName, groupName, roleName))
 		addOverlooker(o);
 	}
     }
@@ -129,6 +136,8 @@ class Role implements Serializable {// TODO test with arraylist
 	roleName = null;
 	players = null;
 	overlookers = null;
+	batchedOverlookers = null;
+	changeLog = null;
 	myGroup = null;
 	logger = null;
 	kernelAddress = null;
@@ -163,13 +172,100 @@ class Role implements Serializable {// TODO test with arraylist
     }
 
     final void addOverlooker(final Overlooker<? extends AbstractAgent> o) {
-	overlookers.add(o);
-	o.setOverlookedRole(this);
+	if (o.isBatchedNotificationsOn()) {
+	    synchronized (changeLog) {
+		batchedOverlookers.put(o, changeLog.end());
+	    }
+	}
+	else {
+	    overlookers.add(o);
+	}
+	o.attach(this);
     }
 
     final void removeOverlooker(final Overlooker<? extends AbstractAgent> o) {
 	overlookers.remove(o);
-	o.setOverlookedRole(null);
+	synchronized (changeLog) {
+	    if (batchedOverlookers.remove(o) != null) {
+		discardDeliveredChanges();
+	    }
+	}
+	o.detach(this);
+    }
+
+    /**
+     * Switches an overlooker of this role to or from batched notifications. The changes which are pending when the
+     * batched mode is turned off are delivered first.
+     */
+    final void setBatchedNotifications(final Overlooker<? extends AbstractAgent> o, final boolean on) {
+	if (on) {
+	    synchronized (changeLog) {
+		if (overlookers.remove(o)) {
+		    batchedOverlookers.put(o, changeLog.end());
+		}
+	    }
+	}
+	else {
+	    deliverChanges(o);
+	    synchronized (changeLog) {
+		if (batchedOverlookers.remove(o) != null) {
+		    overlookers.add(o);
+		    discardDeliveredChanges();
+		}
+	    }
+	}
+    }
+
+    /**
+     * Delivers to an overlooker using batched notifications the net effect of the membership changes which have occurred
+     * since its last delivery, as at most one call to {@link Overlooker#removing(List)} followed by at most one call to
+     * {@link Overlooker#adding(List)}.
+     */
+    final void deliverChanges(final Overlooker<? extends AbstractAgent> o) {
+	final List<AbstractAgent> removed = new ArrayList<>();
+	final List<AbstractAgent> added = new ArrayList<>();
+	if (readChanges(o, removed, added)) {
+	    o.applyChanges(this, removed, added);
+	}
+    }
+
+    /**
+     * Reads the net effect of the membership changes which have occurred since the last delivery to an overlooker.
+     * 
+     * @return <code>false</code> if the overlooker does not use batched notifications for this role
+     */
+    final boolean readChanges(final Overlooker<? extends AbstractAgent> o, final List<AbstractAgent> removed, final List<AbstractAgent> added) {
+	synchronized (changeLog) {
+	    final Long cursor = batchedOverlookers.get(o);
+	    if (cursor == null) {
+		return false;
+	    }
+	    batchedOverlookers.put(o, changeLog.read(cursor, removed, added));
+	    discardDeliveredChanges();
+	    return true;
+	}
+    }
+
+    /**
+     * @return the number of membership changes which are kept for the overlookers using batched notifications
+     */
+    final int getPendingChangesCount() {
+	synchronized (changeLog) {
+	    return changeLog.size();
+	}
+    }
+
+    // requires the lock of the log
+    private void discardDeliveredChanges() {
+	if (batchedOverlookers.isEmpty()) {
+	    changeLog.clear();
+	    return;
+	}
+	long min = Long.MAX_VALUE;
+	for (final long cursor : batchedOverlookers.values()) {
+	    min = Math.min(min, cursor);
+	}
+	changeLog.discardBefore(min);
     }
 
     /**
@@ -197,7 +293,7 @@ class Role implements Serializable {// TODO test with arraylist
      */
     boolean addMember(final AbstractAgent requester) {
 	synchronized (players) {
-	    if (players.contains(requester)) {// TODO looks like I should use linkedhashset
+	    if (players.contains(requester)) {
 		return false;
 	    }
 	    players.add(requester);
@@ -352,7 +448,18 @@ class Role implements Serializable {// TODO test with arraylist
      */
     private void cleanAndRemove() {
 	for (final Overlooker<? extends AbstractAgent> o : overlookers) {
-	    o.setOverlookedRole(null);
+	    o.detach(this);
+	}
+	final List<Overlooker<? extends AbstractAgent>> batched;
+	synchronized (changeLog) {
+	    batched = new ArrayList<>(batchedOverlookers.keySet());
+	}
+	for (final Overlooker<? extends AbstractAgent> o : batched) {// the last agents have leaved the role
+	    deliverChanges(o);
+	    o.detach(this);
+	}
+	synchronized (changeLog) {
+	    changeLog.clear();
 	}
 	myGroup.removeRole(roleName);
 	// overlookers = null;
@@ -408,33 +515,61 @@ class Role implements Serializable {// TODO test with arraylist
 	return myGroup.getAgentAddressOf(abstractAgent);
     }
 
+    /**
+     * @return an unmodifiable snapshot of the players, which is rebuilt only if the role has changed
+     */
     final List<AbstractAgent> getAgentsList() {
 	if (modified) {
 	    synchronized (players) {
 		modified = false;
-		// long startTime = System.nanoTime();
-		tmpReferenceableAgents = new ArrayList<>(players);// new seems a little bit better
-		// tmpReferenceableAgents = (ArrayList<AbstractAgent>)referenceableAgents.clone();
-		// long estimatedTime = System.nanoTime() - startTime; System.err.println(estimatedTime);
+		tmpReferenceableAgents = players.snapshot();// shares the segments: not a copy of the agents
 	    }
 	}
 	return tmpReferenceableAgents;
     }
 
     final void addToOverlookers(AbstractAgent a) {
-	overlookers.parallelStream().forEach(o -> o.addAgent(a));
+	logChange(a, true);
+	if (!overlookers.isEmpty()) {
+	    overlookers.parallelStream().forEach(o -> o.addAgent(this, a));
+	}
     }
 
     private final void addToOverlookers(List<AbstractAgent> l) {
-	overlookers.parallelStream().forEach(o -> o.addAgents(l));
+	logChanges(l, true);
+	if (!overlookers.isEmpty()) {
+	    overlookers.parallelStream().forEach(o -> o.addAgents(this, l));
+	}
     }
 
     final void removeFromOverlookers(AbstractAgent a) {
-	overlookers.parallelStream().forEach(o -> o.removeAgent(a));
+	logChange(a, false);
+	if (!overlookers.isEmpty()) {
+	    overlookers.parallelStream().forEach(o -> o.removeAgent(this, a));
+	}
     }
 
     private final void removeFromOverlookers(List<AbstractAgent> l) {
-	overlookers.parallelStream().forEach(o -> o.removeAgents(l));
+	logChanges(l, false);
+	if (!overlookers.isEmpty()) {
+	    overlookers.parallelStream().forEach(o -> o.removeAgents(this, l));
+	}
+    }
+
+    private void logChange(final AbstractAgent a, final boolean added) {
+	synchronized (changeLog) {
+	    if (!batchedOverlookers.isEmpty()) {
+		changeLog.append(a, added);
+	    }
+	}
+    }
+
+    private void logChanges(final List<AbstractAgent> l, final boolean added) {
+	synchronized (changeLog) {
+	    if (!batchedOverlookers.isEmpty()) {
+		changeLog.append(l, added);
+	    }
+	}
     }
 
     /**
@@ -0,0 +1,166 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.kernel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The deduplicated view of an {@link Overlooker} observing several roles: each agent appears once, whatever the number
+ * of observed roles it plays, in the order it has first joined one of them. The view is maintained incrementally from
+ * the membership changes notified by the roles, so that no set has to be built when the agents are iterated.
+ * <p>
+ * For each agent, the view records the roles it has been notified for, so that a change notified twice, e.g. by the
+ * initialization and by a concurrent request, is not counted twice. The agents are kept in a
+ * {@link SegmentedAgentList}, so that the snapshots returned by {@link #getAgentsList()} are cheap.
+ *
+ * @author Fabien Michel
+ * @since MaDKit 5.2
+ * @version 0.9
+ */
+final class RoleUnion {
+
+    // the observed roles an agent plays: a Role or a Set<Role>
+    private final Map<AbstractAgent, Object> memberships = new IdentityHashMap<>();
+    private final SegmentedAgentList members = new SegmentedAgentList();
+    private final Set<Role> roles = new LinkedHashSet<>();
+    private List<AbstractAgent> snapshot = Collections.emptyList();
+    private boolean modified;
+
+    /**
+     * @return <code>true</code> if this is the first role of the union
+     */
+    synchronized boolean addRole(final Role r) {
+	roles.add(r);
+	return roles.size() == 1;
+    }
+
+    /**
+     * Removes a role and forgets the memberships of its players, without notifying them.
+     */
+    synchronized void removeRole(final Role r) {
+	if (roles.remove(r)) {
+	    if (roles.isEmpty()) {
+		memberships.clear();
+		members.clear();
+		modified = true;
+	    }
+	    else {
+		remove(r, r.getAgentsList());
+	    }
+	}
+    }
+
+    synchronized List<Role> getRoles() {
+	return new ArrayList<>(roles);
+    }
+
+    synchronized boolean contains(final AbstractAgent a) {
+	return memberships.containsKey(a);
+    }
+
+    /**
+     * @return the agents which were not playing any of the observed roles
+     */
+    synchronized List<AbstractAgent> add(final Role r, final List<AbstractAgent> agents) {
+	final List<AbstractAgent> newcomers = new ArrayList<>();
+	for (final AbstractAgent a : agents) {
+	    final Object current = memberships.get(a);
+	    if (current == null) {
+		memberships.put(a, r);
+		members.add(a);
+		newcomers.add(a);
+	    }
+	    else if (current instanceof Role) {
+		if (current != r) {
+		    final Set<Role> several = new LinkedHashSet<>(4);
+		    several.add((Role) current);
+		    several.add(r);
+		    memberships.put(a, several);
+		}
+	    }
+	    else {
+		@SuppressWarnings("unchecked")
+		final Set<Role> several = (Set<Role>) current;
+		several.add(r);
+	    }
+	}
+	modified |= !newcomers.isEmpty();
+	return newcomers;
+    }
+
+    /**
+     * @return the agents which no longer play any of the observed roles
+     */
+    synchronized List<AbstractAgent> remove(final Role r, final List<AbstractAgent> agents) {
+	final List<AbstractAgent> gone = new ArrayList<>();
+	for (final AbstractAgent a : agents) {
+	    final Object current = memberships.get(a);
+	    if (current == r) {
+		memberships.remove(a);
+		members.remove(a);
+		gone.add(a);
+	    }
+	    else if (current instanceof Set) {
+		@SuppressWarnings("unchecked")
+		final Set<Role> several = (Set<Role>) current;
+		if (several.remove(r) && several.size() == 1) {
+		    memberships.put(a, several.iterator().next());
+		}
+	    }
+	}
+	modified |= !gone.isEmpty();
+	return gone;
+    }
+
+    /**
+     * @return an unmodifiable snapshot of the agents, which is rebuilt only if the view has changed
+     */
+    synchronized List<AbstractAgent> getAgentsList() {
+	if (modified) {
+	    modified = false;
+	    snapshot = members.snapshot();
+	}
+	return snapshot;
+    }
+
+}
@@ -42,7 +42,12 @@ import java.awt.BorderLayout;
 import java.awt.event.KeyEvent;
 import java.awt.event.MouseWheelEvent;
 import java.awt.event.MouseWheelListener;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Observable;
 import java.util.Observer;
 import java.util.Set;
@@ -116,7 +121,22 @@ public class Scheduler extends Agent {
 	SHUTDOWN
     }
 
-    private static final Preferences SCHEDULER_UI_PREFERENCES = Preferences.userRoot().node(Scheduler.class.getName());
+    /**
+     * The role played by the schedulers of a distributed simulation
+     * 
+     * @see #useDistributedMode(String, String, int)
+     * @since MaDKit 5.2
+     */
+    public static final String DISTRIBUTED_SCHEDULER_ROLE = "distributed scheduler";
+
+    /**
+     * The preferences node is only created when the GUI or the speed setting require it, so that batch runs never touch
+     * it.
+     */
+    private static final class UIPreferences {
+
+	static final Preferences SCHEDULER_UI_PREFERENCES = Preferences.userRoot().node(Scheduler.class.getName());
+    }
 
     private final Set<Activator<? extends AbstractAgent>> activators = new LinkedHashSet<>();
 
@@ -124,6 +144,11 @@ public class Scheduler extends Agent {
 
     private Action run, step, speedUp, speedDown;
 
+    private boolean batchMode;
+    private int controlPollingInterval = 1000;
+    private long batchRunSteps;
+    private long batchRunTime;
+
     // private JLabel timer;
     private int delay;
 
@@ -137,7 +162,9 @@ public class Scheduler extends Agent {
 	public void setValue(int n) {
 	    super.setValue(n);
 	    delay = 400 - getValue();
-	    SCHEDULER_UI_PREFERENCES.putInt(getName() + "speed", getValue());
+	    if (!isBatchMode()) {
+		UIPreferences.SCHEDULER_UI_PREFERENCES.putInt(getName() + "speed", getValue());
+	    }
 	}
     };
 
@@ -189,6 +216,14 @@ public class Scheduler extends Agent {
 
     private GVTModel gvtModel;
 
+    private SchedulerWorkerGang workerGang;
+
+    private boolean concurrentActivators;
+    private final Map<Activator<?>, Set<Activator<?>>> orderingConstraints = new IdentityHashMap<>();
+    private ActivatorGraph activatorGraph;
+
+    private DistributedStepBarrier distributedBarrier;
+
     /**
      * This constructor is equivalent to <code>Scheduler(Double.MAX_VALUE)</code>
      */
@@ -207,7 +242,6 @@ public class Scheduler extends Agent {
      *            the GVT at which the simulation will automatically stop
      */
     public Scheduler(final double endTime) {
-	buildActions();
 	setSimulationDuration(endTime);
     }
 
@@ -223,8 +257,8 @@ public class Scheduler extends Agent {
 	frame.add(getSchedulerStatusLabel(), BorderLayout.PAGE_END);
 	setGVT(GVT);
 	frame.getJMenuBar().add(getSchedulerMenu(), 2);
-	speedModel.setValue(SCHEDULER_UI_PREFERENCES.getInt(getName() + "speed", speedModel.getValue()));
-	setSimulationState(SCHEDULER_UI_PREFERENCES.getBoolean(getName() + "autostart", false) ? SimulationState.RUNNING : SimulationState.PAUSED);
+	speedModel.setValue(UIPreferences.SCHEDULER_UI_PREFERENCES.getInt(getName() + "speed", speedModel.getValue()));
+	setSimulationState(UIPreferences.SCHEDULER_UI_PREFERENCES.getBoolean(getName() + "autostart", false) ? SimulationState.RUNNING : SimulationState.PAUSED);
 	// TODO make startSimu an action
     }
 
@@ -236,8 +270,10 @@ public class Scheduler extends Agent {
      * @since MaDKit 5.0.0.8
      */
     public void addActivator(final Activator<? extends AbstractAgent> activator) {
-	if (kernel.addOverlooker(this, activator))
+	if (kernel.addOverlooker(this, activator)) {
 	    activators.add(activator);
+	    activatorGraph = null;
+	}
 	getLogger().fine(() -> "Activator added: " + activator);
     }
 
@@ -250,6 +286,14 @@ public class Scheduler extends Agent {
     public void removeActivator(final Activator<? extends AbstractAgent> activator) {
 	kernel.removeOverlooker(this, activator);
 	activators.remove(activator);
+	if (workerGang != null) {
+	    workerGang.remove(activator);
+	}
+	orderingConstraints.remove(activator);
+	for (final Set<Activator<?>> after : orderingConstraints.values()) {
+	    after.remove(activator);
+	}
+	activatorGraph = null;
 	getLogger().fine(() -> "Activator removed: " + activator);
     }
 
@@ -275,25 +319,207 @@ public class Scheduler extends Agent {
      */
     public void doSimulationStep() {
 	getLogger().finer(() -> "Doing simulation step " + GVT);
-	for (final Activator<? extends AbstractAgent> activator : activators) {
-	    executeAndLog(activator);
-	    // try {
-	    // } catch (SimulationException e) {//TODO is it better ?
-	    // setSimulationState(SimulationState.SHUTDOWN);
-	    // getLogger().log(Level.SEVERE, e.getMessage(), e);
-	    // }
+	if (concurrentActivators) {
+	    executeActivatorsConcurrently();
+	}
+	else {
+	    for (final Activator<? extends AbstractAgent> activator : activators) {
+		executeAndLog(activator);
+		// try {
+		// } catch (SimulationException e) {//TODO is it better ?
+		// setSimulationState(SimulationState.SHUTDOWN);
+		// getLogger().log(Level.SEVERE, e.getMessage(), e);
+		// }
+	    }
 	}
 	setGVT(GVT + 1);
     }
 
     /**
-     * Triggers the execute method of this <code>activator</code> and logs it using the {@link Level#FINER} logging level
+     * Executes all the activators, running at the same time the ones which do not depend on each other. The dependencies
+     * are given by the accesses declared using {@link Activator#declareReads(Object...)} and
+     * {@link Activator#declareWrites(Object...)}, and by the constraints added using
+     * {@link #addOrderingConstraint(Activator, Activator)}: an activator is started as soon as all the activators it
+     * depends on are done. The scheduler's thread takes part in the execution, the other activators being run by
+     * {@link Activator#getMadkitServiceExecutor()}. This returns when all the activators are done.
+     * <p>
+     * This is used by {@link #doSimulationStep()} when {@link #isConcurrentActivatorsModeOn()} is <code>true</code>.
+     * 
+     * @since MaDKit 5.2
+     */
+    protected void executeActivatorsConcurrently() {
+	ActivatorGraph graph = activatorGraph;
+	if (graph == null || !graph.isUpToDate()) {
+	    activatorGraph = graph = new ActivatorGraph(activators, orderingConstraints);
+	}
+	graph.execute(Activator.getMadkitServiceExecutor());
+    }
+
+    /**
+     * Turns on or off the concurrent execution of the activators in {@link #doSimulationStep()}, see
+     * {@link #executeActivatorsConcurrently()}. Activators which have not declared their accesses conflict with all the
+     * others, so that turning this on without any declaration keeps the sequential order. When this is on, the activators
+     * are executed using {@link Activator#execute(Object...)} and the worker gang is not used. Default is
+     * <code>false</code>: the activators are sequentially executed in the order they have been added.
+     * 
+     * @param on
+     *            <code>true</code> to execute independent activators at the same time
+     * @see Activator#declareReads(Object...)
+     * @see Activator#declareWrites(Object...)
+     * @since MaDKit 5.2
+     */
+    public void useConcurrentActivators(final boolean on) {
+	concurrentActivators = on;
+	activatorGraph = null;
+    }
+
+    /**
+     * @return <code>true</code> if independent activators are executed at the same time
+     * @see #useConcurrentActivators(boolean)
+     * @since MaDKit 5.2
+     */
+    public boolean isConcurrentActivatorsModeOn() {
+	return concurrentActivators;
+    }
+
+    /**
+     * Forces an activator to be executed after another one when the activators are executed concurrently, whatever their
+     * declared accesses and the order in which they have been added. This has no effect on the sequential execution.
+     * 
+     * @param before
+     *            the activator which has to be done first
+     * @param after
+     *            the activator which has to wait for <code>before</code>
+     * @throws IllegalArgumentException
+     *             if this constraint would create a cycle
+     * @see #useConcurrentActivators(boolean)
+     * @since MaDKit 5.2
+     */
+    public void addOrderingConstraint(final Activator<? extends AbstractAgent> before, final Activator<? extends AbstractAgent> after) {
+	if (before == after || precedes(after, before)) {
+	    throw new IllegalArgumentException("cyclic ordering constraint: " + before + " -> " + after);
+	}
+	orderingConstraints.computeIfAbsent(before, k -> new LinkedHashSet<>()).add(after);
+	activatorGraph = null;
+    }
+
+    /**
+     * Makes this scheduler part of a simulation distributed over several connected kernels, each kernel running its own
+     * agents and activators. The schedulers of the simulation play the role {@link #DISTRIBUTED_SCHEDULER_ROLE} in the
+     * given distributed group, which is created if needed, and the steps are synchronized using a conservative barrier:
+     * <ul>
+     * <li>{@link #live()} first waits until <code>nbOfSchedulers</code> schedulers are playing the role;</li>
+     * <li>after each step, the scheduler tells the others it is done and waits for all of them before going on. So no
+     * kernel starts a step before all the others have finished the previous one, and the messages which have been sent
+     * to the agents of other kernels during a step are in their mailbox before the next step starts. As usual with
+     * MaDKit, messages are not buffered: a message sent by a kernel which is ahead could arrive during the current
+     * step;</li>
+     * <li>the GVT is then set to the smallest GVT of the schedulers, so that all the kernels share the same time.</li>
+     * </ul>
+     * A scheduler which leaves the role, e.g. because it is killed, is no longer waited for. The network has to be on, see
+     * {@link Madkit.BooleanOption#network}. The synchronization is done by {@link #live()}: calling
+     * {@link #doSimulationStep()} directly is not synchronized.
+     * 
+     * @param community
+     *            the community of the distributed group
+     * @param group
+     *            the distributed group used by the schedulers
+     * @param nbOfSchedulers
+     *            the number of schedulers, i.e. of kernels, taking part in the simulation
+     * @since MaDKit 5.2
+     */
+    public void useDistributedMode(final String community, final String group, final int nbOfSchedulers) {
+	distributedBarrier = new DistributedStepBarrier(this, community, group, nbOfSchedulers);
+    }
+
+    /**
+     * @return <code>true</code> if this scheduler is part of a distributed simulation
+     * @see #useDistributedMode(String, String, int)
+     * @since MaDKit 5.2
+     */
+    public boolean isDistributedModeOn() {
+	return distributedBarrier != null;
+    }
+
+    /**
+     * Tells if a path of ordering constraints goes from an activator to another.
+     */
+    private boolean precedes(final Activator<?> from, final Activator<?> to) {
+	final Set<Activator<?>> after = orderingConstraints.get(from);
+	if (after != null) {
+	    for (final Activator<?> a : after) {
+		if (a == to || precedes(a, to)) {
+		    return true;
+		}
+	    }
+	}
+	return false;
+    }
+
+    /**
+     * Triggers the execute method of this <code>activator</code> and logs it using the {@link Level#FINER} logging level.
+     * The pending membership changes of the activator are delivered first (see
+     * {@link Activator#useBatchedNotifications(boolean)}).
      * 
      * @param activator
      */
     public void executeAndLog(final Activator<? extends AbstractAgent> activator) {
 	getLogger().finer(() -> "Activating --------> " + activator);
-	activator.execute();
+	executeActivator(activator, workerGang);
+    }
+
+    /**
+     * Executes an activator for a simulation step, after delivering its pending membership changes. This is done here
+     * rather than in {@link Activator#execute(Object...)}, which is bypassed by the worker gang and may be overridden.
+     * 
+     * @param gang
+     *            the worker gang to use, or <code>null</code>
+     */
+    static void executeActivator(final Activator<? extends AbstractAgent> activator, final SchedulerWorkerGang gang) {
+	activator.deliverPendingNotifications();
+	if (gang != null) {
+	    gang.execute(activator);
+	}
+	else {
+	    activator.execute();
+	}
+    }
+
+    /**
+     * Uses a fixed gang of threads for executing the activators in {@link #executeAndLog(Activator)}, and thus in
+     * {@link #doSimulationStep()}. The threads are kept alive across the simulation steps and each of them always executes
+     * the same part of the agents list of an activator, so that executing an activator costs one barrier round instead of
+     * submitting tasks as {@link Activator#multicoreExecute(Object...)} does. This is intended for simulations having a lot
+     * of cheap agent behaviors and a lot of steps.
+     * <p>
+     * As for the multicore mode of the activators, {@link Activator#execute(List, Object...)} is concurrently called on
+     * disjoint parts of the agents list, so the model has to support concurrent activations. Activators overriding
+     * {@link Activator#execute(Object...)} are still executed by the scheduler's thread. The threads are stopped when the
+     * scheduler ends.
+     * 
+     * @param nbOfThreads
+     *            the number of threads executing an activator, including the scheduler's thread. A value lower than 2
+     *            stops the gang.
+     * @since MaDKit 5.2
+     */
+    public void useWorkerGang(final int nbOfThreads) {
+	if (workerGang != null) {
+	    workerGang.shutdown();
+	    workerGang = null;
+	}
+	if (nbOfThreads > 1) {
+	    workerGang = new SchedulerWorkerGang(getName(), nbOfThreads);
+	}
+	getLogger().fine(() -> "Worker gang size: " + getWorkerGangSize());
+    }
+
+    /**
+     * @return the number of threads used by the worker gang, or 1 if it is not used
+     * @see #useWorkerGang(int)
+     * @since MaDKit 5.2
+     */
+    public int getWorkerGangSize() {
+	return workerGang == null ? 1 : workerGang.size();
     }
 
     @Override
@@ -321,6 +547,9 @@ public class Scheduler extends Agent {
     protected void setSimulationState(final SimulationState newState) {// TODO proceedEnumMessage
 	if (simulationState != newState) {
 	    simulationState = newState;
+	    if (run == null) {// no GUI built
+		return;
+	    }
 	    switch (simulationState) {
 	    case STEP:
 		run.setEnabled(true);
@@ -375,23 +604,30 @@ public class Scheduler extends Agent {
      */
     @Override
     protected void live() {
+	if (distributedBarrier != null && !distributedBarrier.join()) {
+	    return;
+	}
+	if (isBatchMode()) {
+	    batchLive();
+	    return;
+	}
 	while (isAlive()) {
 	    if (GVT > simulationDuration) {
 		getLogger().info(() -> "Quitting: Simulation has reached end time " + simulationDuration);
 		return;
 	    }
 	    pause(delay);
-	    checkMail(nextMessage());
+	    checkMail(nextControlMessage());
 	    switch (simulationState) {
 	    case RUNNING:
-		doSimulationStep();
+		doRecordedSimulationStep();
 		break;
 	    case PAUSED:
 		paused();
 		break;
 	    case STEP:
 		simulationState = PAUSED;
-		doSimulationStep();
+		doRecordedSimulationStep();
 		break;
 	    case SHUTDOWN:
 		return; // shutdown
@@ -401,6 +637,134 @@ public class Scheduler extends Agent {
 	}
     }
 
+    /**
+     * The batch mode loop: no pause between the steps, and the mailbox is only checked every
+     * {@link #getControlPollingInterval()} steps.
+     */
+    private void batchLive() {
+	setSimulationState(SimulationState.RUNNING);
+	batchRunSteps = 0;
+	final long start = System.nanoTime();
+	try {
+	    int countdown = 0;
+	    while (isAlive()) {
+		if (GVT > simulationDuration) {
+		    getLogger().info(() -> "Quitting: Simulation has reached end time " + simulationDuration);
+		    return;
+		}
+		if (--countdown <= 0) {
+		    checkMail(nextControlMessage());
+		    countdown = controlPollingInterval;
+		}
+		switch (simulationState) {
+		case RUNNING:
+		    doRecordedSimulationStep();
+		    batchRunSteps++;
+		    break;
+		case PAUSED:
+		    paused();
+		    break;
+		case STEP:
+		    simulationState = PAUSED;
+		    doRecordedSimulationStep();
+		    batchRunSteps++;
+		    break;
+		case SHUTDOWN:
+		    return; // shutdown
+		default:
+		    getLogger().severeLog("state not handled " + simulationState);
+		}
+	    }
+	}
+	finally {
+	    batchRunTime = System.nanoTime() - start;
+	    getLogger().info(() -> "Batch run: " + batchRunSteps + " steps in " + batchRunTime / 1_000_000 + " ms ("
+		    + (long) (batchRunSteps / (batchRunTime / 1e9)) + " steps/s)");
+	}
+    }
+
+    /**
+     * Runs the simulation in batch mode: {@link #live()} then does the simulation steps in a tight loop, without any pause
+     * whatever the delay is, and only checks the mailbox every {@link #getControlPollingInterval()} steps, so that
+     * {@link SchedulingMessage}s are still handled. The duration of the run is logged at the end of the loop and is
+     * available using {@link #getBatchRunTime()}.
+     * <p>
+     * The GUI components of the scheduler, and the user preferences they use, are only built when requested, so that a
+     * scheduler which is launched without GUI does not initialize them. The batch mode could also be activated for all
+     * the schedulers using the {@link Madkit.BooleanOption#batchMode} option.
+     * 
+     * @param batchMode
+     *            <code>true</code> for running the next {@link #live()} in batch mode
+     * @since MaDKit 5.2
+     */
+    public void setBatchMode(final boolean batchMode) {
+	this.batchMode = batchMode;
+    }
+
+    /**
+     * Tells if the scheduler runs in batch mode, either because it has been set so or because the
+     * {@link Madkit.BooleanOption#batchMode} option is activated.
+     * 
+     * @return <code>true</code> if the scheduler runs in batch mode
+     * @see #setBatchMode(boolean)
+     * @since MaDKit 5.2
+     */
+    public boolean isBatchMode() {
+	if (!batchMode && isAlive() && Madkit.BooleanOption.batchMode.isActivated(getMadkitConfig())) {
+	    batchMode = true;
+	}
+	return batchMode;
+    }
+
+    /**
+     * Sets the number of steps between two checks of the mailbox in batch mode.
+     * 
+     * @param nbOfSteps
+     *            a number of steps, values lower than 1 meaning every step
+     * @since MaDKit 5.2
+     */
+    public void setControlPollingInterval(final int nbOfSteps) {
+	controlPollingInterval = Math.max(1, nbOfSteps);
+    }
+
+    /**
+     * @return the number of steps between two checks of the mailbox in batch mode. Default is 1000.
+     * @since MaDKit 5.2
+     */
+    public int getControlPollingInterval() {
+	return controlPollingInterval;
+    }
+
+    /**
+     * @return the number of simulation steps done by the last batch run
+     * @since MaDKit 5.2
+     */
+    public long getBatchRunSteps() {
+	return batchRunSteps;
+    }
+
+    /**
+     * @return the wall-clock duration of the last batch run in nanoseconds, or 0 if there was none
+     * @since MaDKit 5.2
+     */
+    public long getBatchRunTime() {
+	return batchRunTime;
+    }
+
+    /**
+     * Calls {@link #doSimulationStep()}, synchronizing with the other kernels in distributed mode, and emitting a flight
+     * recorder event if required.
+     */
+    private void doRecordedSimulationStep() {
+	final FlightRecorderEvents.SimulationStep event = FlightRecorderEvents.simulationStepBegin();
+	final double startGVT = GVT;
+	doSimulationStep();
+	if (distributedBarrier != null) {
+	    setGVT(distributedBarrier.synchronize());
+	}
+	FlightRecorderEvents.simulationStepEnd(event, this, startGVT, activators.size());
+    }
+
     /**
      * Changes my state according to a {@link SchedulingMessage} and sends a reply to the sender as acknowledgment.
      * 
@@ -445,7 +809,15 @@ public class Scheduler extends Agent {
      * Runs {@link #checkMail(Message)} every 1000 ms.
      */
     protected void paused() {
-	checkMail(waitNextMessage(1000));
+	checkMail(distributedBarrier == null ? waitNextMessage(1000) : waitNextMessage(1000, DistributedStepBarrier.CONTROL_FILTER));
+    }
+
+    /**
+     * @return the next message to handle using {@link #checkMail(Message)}: in distributed mode, the messages of the
+     *         step barrier are left in the mailbox, a faster scheduler being possibly already done with the current step
+     */
+    private Message nextControlMessage() {
+	return distributedBarrier == null ? nextMessage() : nextMessage(DistributedStepBarrier.CONTROL_FILTER);
     }
 
     /**
@@ -454,6 +826,7 @@ public class Scheduler extends Agent {
     @Override
     final void terminate() {
 	removeAllActivators();
+	useWorkerGang(1);
 	super.terminate();
     }
 
@@ -465,6 +838,8 @@ public class Scheduler extends Agent {
 	    kernel.removeOverlooker(this, a);
 	}
 	activators.clear();
+	orderingConstraints.clear();
+	activatorGraph = null;
     }
 
     /**
@@ -484,11 +859,89 @@ public class Scheduler extends Agent {
 	return simulationDuration;
     }
 
+    /**
+     * Saves the current state of the simulation in a file, so that it could be resumed later using
+     * {@link #restore(Path)}, possibly in another kernel. The checkpoint contains the GVT, the simulation duration, the
+     * state of the kernel's {@link SimulationRandom}, the configuration of the activators and the agents which play
+     * roles in the artificial society, together with their roles and their fields. It is written in a compact binary
+     * format, field by field, without using Java serialization.
+     * <p>
+     * Only the primitive, String, enum, int[], long[] and double[] fields which are not static nor transient are saved.
+     * Threaded agents and watchers are not saved: they are considered as part of the simulation setup, so that they
+     * should be launched again before restoring, the probes of the watchers being then rebuilt as usual. This method
+     * should be called between two simulation steps.
+     *
+     * @param file
+     *            the file to write, which is replaced if it exists
+     * @throws IOException
+     *             if the file cannot be written
+     * @since MaDKit 5.2
+     */
+    public void checkpoint(final Path file) throws IOException {
+	final long start = System.nanoTime();
+	SimulationCheckpoint.write(this, file);
+	getLogger().fine(() -> "Checkpoint " + file + " written in " + (System.nanoTime() - start) / 1000000 + " ms");
+    }
+
+    /**
+     * Restores a checkpoint written by {@link #checkpoint(Path)}, mapping the file in memory.
+     *
+     * @param file
+     *            a checkpoint file
+     * @throws IOException
+     *             if the file cannot be read or is not a valid checkpoint
+     * @see #restore(Path, boolean)
+     * @since MaDKit 5.2
+     */
+    public void restore(final Path file) throws IOException {
+	restore(file, true);
+    }
+
+    /**
+     * Restores a checkpoint written by {@link #checkpoint(Path)}. This should be done in a kernel which does not contain
+     * the saved agents, typically a fresh one. The saved agents are created again using their no-arg constructor, their
+     * fields are set to the saved values and they are put back in their roles without being activated, so that
+     * {@link AbstractAgent#activate()} is not called. The GVT, the simulation duration and the state of the kernel's
+     * {@link SimulationRandom} are restored. The saved configuration is applied to the activators of this scheduler
+     * having the same class and CGR location, and the missing ones are created if they have a public
+     * <code>(community, group, role)</code> constructor. The agents are created in the order they have been created
+     * in the saved run and the number of shuffles of each activator is restored, so that
+     * {@link Activator#getShuffledList()} goes on giving the same orders.
+     *
+     * @param file
+     *            a checkpoint file
+     * @param mapped
+     *            <code>true</code> for mapping the file in memory, which is faster for large checkpoints,
+     *            <code>false</code> for reading it in the heap
+     * @throws IOException
+     *             if the file cannot be read or is not a valid checkpoint
+     * @since MaDKit 5.2
+     */
+    public void restore(final Path file, final boolean mapped) throws IOException {
+	final long start = System.nanoTime();
+	SimulationCheckpoint.read(this, file, mapped);
+	getLogger().fine(() -> "Checkpoint " + file + " restored in " + (System.nanoTime() - start) / 1000000 + " ms");
+    }
+
+    /**
+     * @return the activators of this scheduler
+     */
+    final Set<Activator<? extends AbstractAgent>> getActivators() {
+	return activators;
+    }
+
+    /**
+     * Builds the actions on first use, so that schedulers without GUI do not create them.
+     */
     private void buildActions() {
+	if (run != null) {
+	    return;
+	}
 	run = SchedulingAction.RUN.getActionFor(this);
 	step = SchedulingAction.STEP.getActionFor(this);
 	speedUp = SchedulingAction.SPEED_UP.getActionFor(this);
 	speedDown = SchedulingAction.SPEED_DOWN.getActionFor(this);
+	run.setEnabled(simulationState == PAUSED || simulationState == SimulationState.STEP);
     }
 
     /**
@@ -497,6 +950,7 @@ public class Scheduler extends Agent {
      * @return a toolBar controlling the scheduler's actions
      */
     public JToolBar getSchedulerToolBar() {
+	buildActions();
 	final JToolBar toolBar = new JToolBar("scheduler toolbar");
 	toolBar.add(run);
 	toolBar.add(step);
@@ -555,12 +1009,13 @@ public class Scheduler extends Agent {
     public JMenu getSchedulerMenu() {
 	JMenu myMenu = new JMenu("Scheduling");
 	myMenu.setMnemonic(KeyEvent.VK_S);
+	buildActions();
 	myMenu.add(run);
 	myMenu.add(step);
 	myMenu.add(speedUp);
 	myMenu.add(speedDown);
-	final JCheckBoxMenuItem menuItem = new JCheckBoxMenuItem("autostart", SCHEDULER_UI_PREFERENCES.getBoolean(getName() + "autostart", false));
-	menuItem.addChangeListener(e -> SCHEDULER_UI_PREFERENCES.putBoolean(getName() + "autostart", menuItem.isSelected()));
+	final JCheckBoxMenuItem menuItem = new JCheckBoxMenuItem("autostart", UIPreferences.SCHEDULER_UI_PREFERENCES.getBoolean(getName() + "autostart", false));
+	menuItem.addChangeListener(e -> UIPreferences.SCHEDULER_UI_PREFERENCES.putBoolean(getName() + "autostart", menuItem.isSelected()));
 	myMenu.add(menuItem);
 	return myMenu;
     }
@@ -0,0 +1,205 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.kernel;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A fixed gang of worker threads kept alive across the steps of a {@link Scheduler}. The agents list of each activator
+ * is cut into as many stable partitions as there are threads in the gang, the scheduler's thread included: each thread
+ * always executes the same partition. Executing an activator is one round on a reusable {@link Phaser}: the scheduler
+ * publishes the activator, all the threads execute their partition and the scheduler waits for the others to be done.
+ * <p>
+ * The partition views are rebuilt only when the agents list of the activator changes. Activators overriding
+ * {@link Activator#execute(Object...)} are executed as usual by the scheduler's thread.
+ *
+ * @author Fabien Michel
+ * @since MaDKit 5.2
+ * @version 0.9
+ * @see Scheduler#useWorkerGang(int)
+ */
+final class SchedulerWorkerGang {
+
+    private final Phaser phaser;
+    private final int size;
+    private final Map<Activator<?>, Partitions> partitions = new IdentityHashMap<>();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    // published by the scheduler before a round
+    private Partitions current;
+    private Object[] currentArgs;
+
+    /**
+     * Starts <code>size - 1</code> worker threads, the scheduler's thread being the last member of the gang.
+     */
+    SchedulerWorkerGang(final String name, final int size) {
+	this.size = size;
+	phaser = new Phaser(size);
+	for (int i = 1; i < size; i++) {
+	    final int index = i;
+	    final Thread t = new Thread(() -> work(index), name + "-gang-" + i);
+	    t.setDaemon(true);
+	    t.start();
+	}
+    }
+
+    /**
+     * @return the number of threads of the gang, including the scheduler's
+     */
+    int size() {
+	return size;
+    }
+
+    private void work(final int index) {
+	while (phaser.arriveAndAwaitAdvance() >= 0) {
+	    execute(current, index, currentArgs);
+	    if (phaser.arriveAndAwaitAdvance() < 0) {
+		return;
+	    }
+	}
+    }
+
+    private void execute(final Partitions p, final int index, final Object[] args) {
+	try {
+	    p.execute(index, args);
+	}
+	catch(RuntimeException | Error e) {
+	    failure.compareAndSet(null, e);
+	}
+    }
+
+    /**
+     * Executes the activator using the whole gang. Only called by the scheduler's thread.
+     */
+    void execute(final Activator<?> activator, final Object... args) {
+	Partitions p = partitions.get(activator);
+	if (p == null) {
+	    p = new Partitions(activator, size);
+	    partitions.put(activator, p);
+	}
+	if (!p.partitionable) {
+	    activator.execute(args);
+	    return;
+	}
+	final FlightRecorderEvents.ActivatorExecution event = FlightRecorderEvents.activatorExecutionBegin();
+	p.update();
+	current = p;
+	currentArgs = args;
+	phaser.arriveAndAwaitAdvance();
+	execute(p, 0, args);
+	phaser.arriveAndAwaitAdvance();
+	current = null;
+	currentArgs = null;
+	FlightRecorderEvents.activatorExecutionEnd(event, activator);
+	final Throwable t = failure.getAndSet(null);
+	if (t instanceof RuntimeException) {
+	    throw (RuntimeException) t;
+	}
+	if (t instanceof Error) {
+	    throw (Error) t;
+	}
+    }
+
+    /**
+     * Forgets the partitions of an activator which has been removed.
+     */
+    void remove(final Activator<?> activator) {
+	partitions.remove(activator);
+    }
+
+    /**
+     * Stops the worker threads.
+     */
+    void shutdown() {
+	phaser.forceTermination();
+	partitions.clear();
+    }
+
+    /**
+     * The stable partitions of the agents list of an activator.
+     */
+    private static final class Partitions {
+
+	private final Activator<AbstractAgent> activator;
+	private final List<AbstractAgent>[] views;
+	private List<AbstractAgent> list;
+	/**
+	 * <code>false</code> if the activator overrides {@link Activator#execute(Object...)}
+	 */
+	final boolean partitionable;
+
+	@SuppressWarnings("unchecked")
+	Partitions(final Activator<?> activator, final int size) {
+	    this.activator = (Activator<AbstractAgent>) activator;
+	    views = (List<AbstractAgent>[]) new List<?>[size];
+	    boolean plain;
+	    try {
+		plain = activator.getClass().getMethod("execute", Object[].class).getDeclaringClass() == Activator.class;
+	    }
+	    catch(NoSuchMethodException e) {
+		plain = false;
+	    }
+	    partitionable = plain;
+	}
+
+	/**
+	 * Rebuilds the views if the agents list has changed since the last round.
+	 */
+	void update() {
+	    final List<AbstractAgent> l = activator.getCurrentAgentsList();
+	    if (l != list) {
+		list = l;
+		final int n = l.size();
+		for (int i = 0; i < views.length; i++) {
+		    views[i] = l.subList((int) ((long) n * i / views.length), (int) ((long) n * (i + 1) / views.length));
+		}
+	    }
+	}
+
+	void execute(final int index, final Object[] args) {
+	    final List<AbstractAgent> view = views[index];
+	    if (!view.isEmpty()) {
+		activator.execute(view, args);
+	    }
+	}
+    }
+
+}
@@ -0,0 +1,345 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.kernel;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * The players of a {@link Role}: a list of agents, in the order they have joined the role, from which unmodifiable
+ * snapshots could be taken at a cost which does not depend on the number of agents, but on the number of changes made
+ * since the previous snapshot.
+ * <p>
+ * The agents are stored in segments of at most {@link #SEGMENT_SIZE} agents. A snapshot only copies the references to
+ * the segment arrays, which are then shared: an agent is appended after the part of the array which is visible to the
+ * snapshots, while removing an agent from a shared segment copies the segment first. So a birth costs a constant time
+ * and a death the size of a segment, whatever the size of the role. Empty segments are dropped, and the segments are
+ * compacted when there are too many partially filled ones.
+ * <p>
+ * The list itself is not synchronized: the role uses it as its lock. The snapshots are immutable and could be iterated
+ * by any thread while the role changes.
+ *
+ * @author Fabien Michel
+ * @since MaDKit 5.2
+ * @version 0.9
+ */
+final class SegmentedAgentList extends AbstractList<AbstractAgent> {
+
+    /**
+     * the maximum number of agents in a segment
+     */
+    static final int SEGMENT_SIZE = 1024;
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private static final class Segment {
+
+	private AbstractAgent[] agents = new AbstractAgent[INITIAL_CAPACITY];
+	private int size;
+	// true if the array is seen by a snapshot: its first size agents cannot be changed
+	private boolean shared;
+
+	private int indexOf(final Object agent) {
+	    for (int i = 0; i < size; i++) {
+		if (agents[i] == agent) {
+		    return i;
+		}
+	    }
+	    return -1;
+	}
+    }
+
+    private final ArrayList<Segment> segments = new ArrayList<>();
+    private final IdentityHashMap<AbstractAgent, Segment> locations = new IdentityHashMap<>();
+    private int size;
+
+    @Override
+    public int size() {
+	return size;
+    }
+
+    @Override
+    public boolean contains(final Object o) {
+	return locations.containsKey(o);
+    }
+
+    /**
+     * Appends an agent which is not already in the list.
+     */
+    @Override
+    public boolean add(final AbstractAgent a) {
+	if (locations.containsKey(a)) {
+	    return false;
+	}
+	Segment last = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+	if (last == null || last.size == SEGMENT_SIZE) {
+	    last = new Segment();
+	    segments.add(last);
+	}
+	else if (last.size == last.agents.length) {// the snapshots keep the former array
+	    final AbstractAgent[] bigger = new AbstractAgent[Math.min(SEGMENT_SIZE, last.size * 2)];
+	    System.arraycopy(last.agents, 0, bigger, 0, last.size);
+	    last.agents = bigger;
+	    last.shared = false;
+	}
+	last.agents[last.size++] = a;
+	locations.put(a, last);
+	size++;
+	modCount++;
+	return true;
+    }
+
+    @Override
+    public boolean addAll(final Collection<? extends AbstractAgent> c) {
+	boolean changed = false;
+	for (final AbstractAgent a : c) {
+	    changed |= add(a);
+	}
+	return changed;
+    }
+
+    @Override
+    public boolean remove(final Object o) {
+	final Segment s = locations.remove(o);
+	if (s == null) {
+	    return false;
+	}
+	final int index = s.indexOf(o);
+	final int moved = s.size - index - 1;
+	if (s.shared) {
+	    final AbstractAgent[] copy = new AbstractAgent[s.agents.length];
+	    System.arraycopy(s.agents, 0, copy, 0, index);
+	    System.arraycopy(s.agents, index + 1, copy, index, moved);
+	    s.agents = copy;
+	    s.shared = false;
+	    s.size--;
+	}
+	else {
+	    System.arraycopy(s.agents, index + 1, s.agents, index, moved);
+	    s.agents[--s.size] = null;
+	}
+	size--;
+	modCount++;
+	if (s.size == 0) {
+	    segments.remove(s);
+	}
+	else if (segments.size() > 2 * (size / SEGMENT_SIZE + 1)) {
+	    compact();
+	}
+	return true;
+    }
+
+    @Override
+    public boolean removeAll(final Collection<?> c) {
+	boolean changed = false;
+	for (final Object o : c) {
+	    changed |= remove(o);
+	}
+	return changed;
+    }
+
+    @Override
+    public void clear() {
+	segments.clear();
+	locations.clear();
+	size = 0;
+	modCount++;
+    }
+
+    /**
+     * Linear in the number of segments: {@link #snapshot()} should be used for an indexed access.
+     */
+    @Override
+    public AbstractAgent get(int index) {
+	if (index < 0 || index >= size) {
+	    throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+	}
+	for (final Segment s : segments) {
+	    if (index < s.size) {
+		return s.agents[index];
+	    }
+	    index -= s.size;
+	}
+	throw new AssertionError();
+    }
+
+    /**
+     * The returned iterator does not support removal.
+     */
+    @Override
+    public Iterator<AbstractAgent> iterator() {
+	return new Iterator<AbstractAgent>() {
+
+	    private final int expectedModCount = modCount;
+	    private int segment;
+	    private int index;
+
+	    @Override
+	    public boolean hasNext() {
+		return segment < segments.size() && (index < segments.get(segment).size || segment < segments.size() - 1);
+	    }
+
+	    @Override
+	    public AbstractAgent next() {
+		if (modCount != expectedModCount) {
+		    throw new ConcurrentModificationException();
+		}
+		if (!hasNext()) {
+		    throw new NoSuchElementException();
+		}
+		if (index == segments.get(segment).size) {// segments are never empty
+		    segment++;
+		    index = 0;
+		}
+		return segments.get(segment).agents[index++];
+	    }
+	};
+    }
+
+    /**
+     * Takes an unmodifiable snapshot of the list, in a time which is linear in the number of segments.
+     *
+     * @return the agents currently in the list
+     */
+    List<AbstractAgent> snapshot() {
+	final int n = segments.size();
+	final AbstractAgent[][] arrays = new AbstractAgent[n][];
+	final int[] ends = new int[n];
+	int total = 0;
+	for (int i = 0; i < n; i++) {
+	    final Segment s = segments.get(i);
+	    s.shared = true;
+	    arrays[i] = s.agents;
+	    total += s.size;
+	    ends[i] = total;
+	}
+	return new Snapshot(arrays, ends);
+    }
+
+    /**
+     * @return the number of segments, for testing purposes
+     */
+    int getSegmentsCount() {
+	return segments.size();
+    }
+
+    private void compact() {
+	final List<AbstractAgent> agents = new ArrayList<>(size);
+	for (final Segment s : segments) {
+	    for (int i = 0; i < s.size; i++) {
+		agents.add(s.agents[i]);
+	    }
+	}
+	clear();
+	addAll(agents);
+    }
+
+    /**
+     * An immutable view on the segment arrays, which are never changed below the captured sizes.
+     */
+    static final class Snapshot extends AbstractList<AbstractAgent> implements RandomAccess {
+
+	private final AbstractAgent[][] arrays;
+	// the cumulated sizes of the segments
+	private final int[] ends;
+
+	private Snapshot(final AbstractAgent[][] arrays, final int[] ends) {
+	    this.arrays = arrays;
+	    this.ends = ends;
+	}
+
+	@Override
+	public int size() {
+	    return ends.length == 0 ? 0 : ends[ends.length - 1];
+	}
+
+	@Override
+	public AbstractAgent get(final int index) {
+	    if (index < 0 || index >= size()) {
+		throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+	    }
+	    int low = 0;
+	    int high = ends.length - 1;
+	    while (low < high) {// the first segment ending after index
+		final int mid = (low + high) >>> 1;
+		if (ends[mid] > index) {
+		    high = mid;
+		}
+		else {
+		    low = mid + 1;
+		}
+	    }
+	    return arrays[low][low == 0 ? index : index - ends[low - 1]];
+	}
+
+	@Override
+	public Iterator<AbstractAgent> iterator() {
+	    return new Iterator<AbstractAgent>() {
+
+		private int segment;
+		private int index;
+		private int position;
+
+		@Override
+		public boolean hasNext() {
+		    return position < size();
+		}
+
+		@Override
+		public AbstractAgent next() {
+		    if (!hasNext()) {
+			throw new NoSuchElementException();
+		    }
+		    while (position == ends[segment]) {
+			segment++;
+			index = 0;
+		    }
+		    position++;
+		    return arrays[segment][index++];
+		}
+	    };
+	}
+    }
+
+}
@@ -0,0 +1,722 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.kernel;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import madkit.agr.LocalCommunity;
+import madkit.agr.NetworkCommunity;
+import madkit.simulation.activator.GenericBehaviorActivator;
+
+/**
+ * Writes and reads the checkpoints of a {@link Scheduler}. A checkpoint is a binary file which is streamed through a
+ * {@link FileChannel} and contains, in this order:
+ * <ol>
+ * <li>the GVT and the simulation duration of the scheduler;</li>
+ * <li>the seed and the state of the {@link SimulationRandom} of the kernel;</li>
+ * <li>a table of the agent classes, giving the name and the type of the fields which are saved;</li>
+ * <li>the agents in creation order, each one being its class index followed by the values of its fields;</li>
+ * <li>the organization: for each community, group and role, the indexes of its players;</li>
+ * <li>the configuration of the activators of the scheduler, including the observed roles of those observing several
+ * roles and the number of their shuffled lists.</li>
+ * </ol>
+ * The saved agents are the ones which play roles outside of the local and network communities, except threaded agents
+ * and watchers, which are part of the simulation setup. Their state is made of the fields declared by their classes
+ * below {@link AbstractAgent} which are not static nor transient, and whose type is primitive, String, enum, int[],
+ * long[] or double[]. The fields are written one by one: no Java serialization is used.
+ *
+ * @author Fabien Michel
+ * @since MaDKit 5.2
+ * @version 0.9
+ * @see Scheduler#checkpoint(Path)
+ * @see Scheduler#restore(Path, boolean)
+ */
+final class SimulationCheckpoint {
+
+    static final int MAGIC = 0x4D444B43;// MDKC
+    static final int VERSION = 3;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    // field types
+    private static final byte BOOLEAN = 0, BYTE = 1, SHORT = 2, CHAR = 3, INT = 4, LONG = 5, FLOAT = 6, DOUBLE = 7, STRING = 8, ENUM = 9,
+	    INTS = 10, LONGS = 11, DOUBLES = 12;
+
+    private static final Map<Class<?>, List<SavedField>> SAVED_FIELDS = new ConcurrentHashMap<>();
+
+    private SimulationCheckpoint() {
+    }
+
+    /**
+     * A field of an agent class which is saved
+     */
+    private static final class SavedField {
+
+	final Field field;
+	final byte type;
+
+	SavedField(final Field field, final byte type) {
+	    this.field = field;
+	    this.type = type;
+	}
+    }
+
+    private static List<SavedField> savedFieldsOf(final Class<?> agentClass) {
+	return SAVED_FIELDS.computeIfAbsent(agentClass, c -> {
+	    final List<SavedField> fields = new ArrayList<>();
+	    for (Class<?> k = c; k != AbstractAgent.class; k = k.getSuperclass()) {
+		for (final Field f : k.getDeclaredFields()) {
+		    final byte type = typeOf(f.getType());
+		    if (type >= 0 && (f.getModifiers() & (Modifier.STATIC | Modifier.TRANSIENT)) == 0) {
+			f.setAccessible(true);
+			fields.add(new SavedField(f, type));
+		    }
+		}
+	    }
+	    return Collections.unmodifiableList(fields);
+	});
+    }
+
+    private static byte typeOf(final Class<?> type) {
+	if (type == boolean.class)
+	    return BOOLEAN;
+	if (type == byte.class)
+	    return BYTE;
+	if (type == short.class)
+	    return SHORT;
+	if (type == char.class)
+	    return CHAR;
+	if (type == int.class)
+	    return INT;
+	if (type == long.class)
+	    return LONG;
+	if (type == float.class)
+	    return FLOAT;
+	if (type == double.class)
+	    return DOUBLE;
+	if (type == String.class)
+	    return STRING;
+	if (type.isEnum())
+	    return ENUM;
+	if (type == int[].class)
+	    return INTS;
+	if (type == long[].class)
+	    return LONGS;
+	if (type == double[].class)
+	    return DOUBLES;
+	return -1;
+    }
+
+    private static boolean isSaved(final AbstractAgent a, final Scheduler scheduler) {
+	return a != scheduler && !(a instanceof Agent) && !(a instanceof Watcher);
+    }
+
+    /**
+     * Writes the checkpoint of a scheduler and of the artificial society of its kernel.
+     */
+    static void write(final Scheduler scheduler, final Path file) throws IOException {
+	final MadkitKernel kernel = scheduler.getMadkitKernel();
+	// the organization, sorted for having a deterministic output
+	final Map<String, Map<String, Map<String, List<AbstractAgent>>>> organization = new TreeMap<>();
+	final Map<AbstractAgent, Integer> indexes = new IdentityHashMap<>();
+	final List<AbstractAgent> agents = new ArrayList<>();
+	for (final Map.Entry<String, Organization> community : new TreeMap<>(kernel.getOrganizations()).entrySet()) {
+	    if (community.getKey().equals(LocalCommunity.NAME) || community.getKey().equals(NetworkCommunity.NAME)) {
+		continue;
+	    }
+	    final Map<String, Map<String, List<AbstractAgent>>> groups = new TreeMap<>();
+	    for (final Map.Entry<String, Group> group : new TreeMap<>(community.getValue()).entrySet()) {
+		final Map<String, List<AbstractAgent>> roles = new TreeMap<>();
+		for (final Map.Entry<String, Role> role : new TreeMap<>(group.getValue()).entrySet()) {
+		    final List<AbstractAgent> players = new ArrayList<>();
+		    for (final AbstractAgent a : role.getValue().getAgentsList()) {
+			if (isSaved(a, scheduler)) {
+			    if (indexes.putIfAbsent(a, agents.size()) == null) {
+				agents.add(a);
+			    }
+			    players.add(a);
+			}
+		    }
+		    if (!players.isEmpty()) {
+			roles.put(role.getKey(), players);
+		    }
+		}
+		if (!roles.isEmpty()) {
+		    groups.put(group.getKey(), roles);
+		}
+	    }
+	    if (!groups.isEmpty()) {
+		organization.put(community.getKey(), groups);
+	    }
+	}
+	// in creation order, which is kept by the restore since the shuffled lists of the overlookers depend on it
+	agents.sort(Comparator.comparingInt(AbstractAgent::hashCode));
+	for (int i = 0; i < agents.size(); i++) {
+	    indexes.put(agents.get(i), i);
+	}
+	final Map<Class<?>, Integer> classes = new IdentityHashMap<>();
+	final List<Class<?>> classTable = new ArrayList<>();
+	for (final AbstractAgent a : agents) {
+	    if (classes.putIfAbsent(a.getClass(), classTable.size()) == null) {
+		classTable.add(a.getClass());
+	    }
+	}
+	try (Output out = new Output(file)) {
+	    out.putInt(MAGIC);
+	    out.putInt(VERSION);
+	    out.putDouble(scheduler.getGVT());
+	    out.putDouble(scheduler.getSimulationDuration());
+	    final SimulationRandom random = kernel.getKernelRandom();
+	    out.putLong(random.getSeed());
+	    out.putLong(random.getState());
+	    out.putInt(classTable.size());
+	    for (final Class<?> c : classTable) {
+		out.putString(c.getName());
+		final List<SavedField> fields = savedFieldsOf(c);
+		out.putInt(fields.size());
+		for (final SavedField f : fields) {
+		    out.putString(f.field.getName());
+		    out.putByte(f.type);
+		}
+	    }
+	    out.putInt(agents.size());
+	    for (final AbstractAgent a : agents) {
+		out.putInt(classes.get(a.getClass()));
+		for (final SavedField f : savedFieldsOf(a.getClass())) {
+		    writeValue(out, f, a);
+		}
+	    }
+	    out.putInt(organization.size());
+	    for (final Map.Entry<String, Map<String, Map<String, List<AbstractAgent>>>> c : organization.entrySet()) {
+		out.putString(c.getKey());
+		out.putInt(c.getValue().size());
+		for (final Map.Entry<String, Map<String, List<AbstractAgent>>> g : c.getValue().entrySet()) {
+		    out.putString(g.getKey());
+		    out.putInt(g.getValue().size());
+		    for (final Map.Entry<String, List<AbstractAgent>> r : g.getValue().entrySet()) {
+			out.putString(r.getKey());
+			out.putInt(r.getValue().size());
+			for (final AbstractAgent a : r.getValue()) {
+			    out.putInt(indexes.get(a));
+			}
+		    }
+		}
+	    }
+	    final Set<Activator<? extends AbstractAgent>> activators = scheduler.getActivators();
+	    out.putInt(activators.size());
+	    for (final Activator<? extends AbstractAgent> a : activators) {
+		out.putString(a.getClass().getName());
+		out.putString(a.getCommunity());
+		out.putString(a.getGroup());
+		out.putString(a.getRole());
+		final Set<String> roleNames = a.getRoleNames();
+		out.putInt(roleNames == null ? -1 : roleNames.size());
+		if (roleNames != null) {
+		    for (final String r : roleNames) {
+			out.putString(r);
+		    }
+		}
+		out.putString(a instanceof GenericBehaviorActivator ? ((GenericBehaviorActivator<?>) a).getBehaviorName() : null);
+		out.putInt(a.nbOfParallelTasks());
+		out.putByte((byte) (a.isWorkStealingModeOn() ? 1 : 0));
+		out.putLong(a.getShuffleCount());
+	    }
+	}
+	catch(IllegalAccessException e) {
+	    throw new IOException("cannot read an agent field", e);
+	}
+    }
+
+    private static void writeValue(final Output out, final SavedField f, final AbstractAgent a) throws IllegalAccessException, IOException {
+	final Field field = f.field;
+	switch (f.type) {
+	case BOOLEAN:
+	    out.putByte((byte) (field.getBoolean(a) ? 1 : 0));
+	    break;
+	case BYTE:
+	    out.putByte(field.getByte(a));
+	    break;
+	case SHORT:
+	    out.putInt(field.getShort(a));
+	    break;
+	case CHAR:
+	    out.putInt(field.getChar(a));
+	    break;
+	case INT:
+	    out.putInt(field.getInt(a));
+	    break;
+	case LONG:
+	    out.putLong(field.getLong(a));
+	    break;
+	case FLOAT:
+	    out.putInt(Float.floatToRawIntBits(field.getFloat(a)));
+	    break;
+	case DOUBLE:
+	    out.putDouble(field.getDouble(a));
+	    break;
+	case STRING:
+	    out.putString((String) field.get(a));
+	    break;
+	case ENUM:
+	    final Enum<?> e = (Enum<?>) field.get(a);
+	    out.putString(e == null ? null : e.name());
+	    break;
+	case INTS:
+	    final int[] ints = (int[]) field.get(a);
+	    out.putInt(ints == null ? -1 : ints.length);
+	    if (ints != null) {
+		for (final int i : ints) {
+		    out.putInt(i);
+		}
+	    }
+	    break;
+	case LONGS:
+	    final long[] longs = (long[]) field.get(a);
+	    out.putInt(longs == null ? -1 : longs.length);
+	    if (longs != null) {
+		for (final long l : longs) {
+		    out.putLong(l);
+		}
+	    }
+	    break;
+	case DOUBLES:
+	    final double[] doubles = (double[]) field.get(a);
+	    out.putInt(doubles == null ? -1 : doubles.length);
+	    if (doubles != null) {
+		for (final double d : doubles) {
+		    out.putDouble(d);
+		}
+	    }
+	    break;
+	default:
+	    throw new AssertionError(f.type);
+	}
+    }
+
+    /**
+     * Restores a checkpoint in the kernel of a scheduler, which should not already contain the saved agents.
+     *
+     * @param mapped
+     *            <code>true</code> for mapping the file in memory, rather than reading it in the heap
+     */
+    static void read(final Scheduler scheduler, final Path file, final boolean mapped) throws IOException {
+	final ByteBuffer in;
+	try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+	    final long size = channel.size();
+	    if (mapped) {
+		in = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+	    }
+	    else {
+		if (size > Integer.MAX_VALUE) {
+		    throw new IOException(file + " is too large to be read in the heap: map it");
+		}
+		in = ByteBuffer.allocate((int) size);
+		while (in.hasRemaining() && channel.read(in) >= 0) {
+		    // reading the whole file
+		}
+		in.flip();
+	    }
+	}
+	try {
+	    if (in.remaining() < 8 || in.getInt() != MAGIC) {
+		throw new IOException(file + " is not a checkpoint");
+	    }
+	    final int version = in.getInt();
+	    if (version != VERSION) {
+		throw new IOException(file + " : unsupported version " + version);
+	    }
+	    read(scheduler, in);
+	}
+	catch(BufferUnderflowException e) {
+	    throw new IOException(file + " is truncated", e);
+	}
+    }
+
+    private static void read(final Scheduler scheduler, final ByteBuffer in) throws IOException {
+	final MadkitKernel kernel = scheduler.getMadkitKernel();
+	scheduler.setGVT(in.getDouble());
+	scheduler.setSimulationDuration(in.getDouble());
+	final SimulationRandom random = new SimulationRandom(in.getLong());
+	random.setState(in.getLong());
+	kernel.setKernelRandom(random);
+	// classes
+	final int nbOfClasses = in.getInt();
+	final List<Constructor<?>> constructors = new ArrayList<>(nbOfClasses);
+	final List<Field[]> fields = new ArrayList<>(nbOfClasses);
+	final List<byte[]> types = new ArrayList<>(nbOfClasses);
+	for (int i = 0; i < nbOfClasses; i++) {
+	    final String className = getString(in);
+	    final Class<?> c;
+	    try {
+		c = Class.forName(className, true, MadkitClassLoader.getLoader());
+		final Constructor<?> constructor = c.getDeclaredConstructor();
+		constructor.setAccessible(true);
+		constructors.add(constructor);
+	    }
+	    catch(ClassNotFoundException | NoSuchMethodException e) {
+		throw new IOException("cannot restore agents of class " + className, e);
+	    }
+	    final Map<String, SavedField> byName = new TreeMap<>();
+	    for (final SavedField f : savedFieldsOf(c)) {
+		byName.putIfAbsent(f.field.getName(), f);
+	    }
+	    final int nbOfFields = in.getInt();
+	    final Field[] classFields = new Field[nbOfFields];
+	    final byte[] classTypes = new byte[nbOfFields];
+	    for (int j = 0; j < nbOfFields; j++) {
+		final SavedField f = byName.get(getString(in));
+		classTypes[j] = in.get();
+		// a field which has disappeared or changed is skipped
+		classFields[j] = f != null && f.type == classTypes[j] ? f.field : null;
+	    }
+	    fields.add(classFields);
+	    types.add(classTypes);
+	}
+	// agents
+	final int nbOfAgents = in.getInt();
+	final AbstractAgent[] agents = new AbstractAgent[nbOfAgents];
+	try {
+	    for (int i = 0; i < nbOfAgents; i++) {
+		final int c = in.getInt();
+		final AbstractAgent a = (AbstractAgent) constructors.get(c).newInstance();
+		final Field[] classFields = fields.get(c);
+		final byte[] classTypes = types.get(c);
+		for (int j = 0; j < classFields.length; j++) {
+		    readValue(in, classTypes[j], classFields[j], a);
+		}
+		a.state.set(AbstractAgent.State.ACTIVATED);
+		a.setKernel(kernel);
+		a.getAlive().set(true);
+		agents[i] = a;
+	    }
+	}
+	catch(ReflectiveOperationException | ClassCastException e) {
+	    throw new IOException("cannot restore an agent", e);
+	}
+	// organization
+	final int nbOfCommunities = in.getInt();
+	for (int c = 0; c < nbOfCommunities; c++) {
+	    final String community = getString(in);
+	    final int nbOfGroups = in.getInt();
+	    for (int g = 0; g < nbOfGroups; g++) {
+		final String groupName = getString(in);
+		final Group group;
+		synchronized (kernel) {
+		    kernel.createGroup(scheduler, community, groupName, null, false);
+		    group = kernel.getExistingGroup(community, groupName);
+		}
+		if (group == null) {
+		    throw new IOException("cannot create " + community + "," + groupName);
+		}
+		final int nbOfRoles = in.getInt();
+		for (int r = 0; r < nbOfRoles; r++) {
+		    final String roleName = getString(in);
+		    final int nbOfPlayers = in.getInt();
+		    final List<AbstractAgent> players = new ArrayList<>(nbOfPlayers);
+		    for (int p = 0; p < nbOfPlayers; p++) {
+			players.add(agents[in.getInt()]);
+		    }
+		    final Role role;
+		    final boolean created;
+		    synchronized (kernel) {
+			final Role existing = group.get(roleName);
+			created = existing == null;
+			role = created ? group.createRole(roleName) : existing;
+		    }
+		    role.addMembers(players, created);
+		}
+	    }
+	}
+	// activators
+	final int nbOfActivators = in.getInt();
+	for (int i = 0; i < nbOfActivators; i++) {
+	    final String className = getString(in);
+	    final String community = getString(in);
+	    final String group = getString(in);
+	    final String role = getString(in);
+	    final int nbOfRoleNames = in.getInt();
+	    final String[] roleNames = nbOfRoleNames < 0 ? null : new String[nbOfRoleNames];
+	    for (int r = 0; r < nbOfRoleNames; r++) {
+		roleNames[r] = getString(in);
+	    }
+	    restoreActivator(scheduler, className, community, group, role, roleNames, getString(in), in.getInt(), in.get() != 0, in.getLong());
+	}
+    }
+
+    private static void readValue(final ByteBuffer in, final byte type, final Field field, final AbstractAgent a) throws IllegalAccessException {
+	switch (type) {
+	case BOOLEAN:
+	    final boolean z = in.get() != 0;
+	    if (field != null)
+		field.setBoolean(a, z);
+	    break;
+	case BYTE:
+	    final byte b = in.get();
+	    if (field != null)
+		field.setByte(a, b);
+	    break;
+	case SHORT:
+	    final int s = in.getInt();
+	    if (field != null)
+		field.setShort(a, (short) s);
+	    break;
+	case CHAR:
+	    final int ch = in.getInt();
+	    if (field != null)
+		field.setChar(a, (char) ch);
+	    break;
+	case INT:
+	    final int i = in.getInt();
+	    if (field != null)
+		field.setInt(a, i);
+	    break;
+	case LONG:
+	    final long l = in.getLong();
+	    if (field != null)
+		field.setLong(a, l);
+	    break;
+	case FLOAT:
+	    final float f = Float.intBitsToFloat(in.getInt());
+	    if (field != null)
+		field.setFloat(a, f);
+	    break;
+	case DOUBLE:
+	    final double d = in.getDouble();
+	    if (field != null)
+		field.setDouble(a, d);
+	    break;
+	case STRING:
+	    final String string = getString(in);
+	    if (field != null)
+		field.set(a, string);
+	    break;
+	case ENUM:
+	    final String name = getString(in);
+	    if (field != null) {
+		field.set(a, name == null ? null : enumValue(field.getType(), name));
+	    }
+	    break;
+	case INTS:
+	    final int nbOfInts = in.getInt();
+	    final int[] ints = nbOfInts < 0 ? null : new int[nbOfInts];
+	    if (ints != null) {
+		in.asIntBuffer().get(ints);
+		in.position(in.position() + Integer.BYTES * nbOfInts);
+	    }
+	    if (field != null)
+		field.set(a, ints);
+	    break;
+	case LONGS:
+	    final int nbOfLongs = in.getInt();
+	    final long[] longs = nbOfLongs < 0 ? null : new long[nbOfLongs];
+	    if (longs != null) {
+		in.asLongBuffer().get(longs);
+		in.position(in.position() + Long.BYTES * nbOfLongs);
+	    }
+	    if (field != null)
+		field.set(a, longs);
+	    break;
+	case DOUBLES:
+	    final int nbOfDoubles = in.getInt();
+	    final double[] doubles = nbOfDoubles < 0 ? null : new double[nbOfDoubles];
+	    if (doubles != null) {
+		in.asDoubleBuffer().get(doubles);
+		in.position(in.position() + Double.BYTES * nbOfDoubles);
+	    }
+	    if (field != null)
+		field.set(a, doubles);
+	    break;
+	default:
+	    throw new IllegalStateException("unknown field type " + type);
+	}
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static Object enumValue(final Class<?> type, final String name) {
+	return Enum.valueOf((Class<? extends Enum>) type, name);
+    }
+
+    /**
+     * Applies the saved configuration to the activator of the scheduler having the same class and CGR location, or
+     * creates it if possible. An activator observing several roles is created using the
+     * <code>(community, group)</code> constructor for a whole group, and the
+     * <code>(community, group, role, otherRoles...)</code> one otherwise.
+     * 
+     * @param roleNames
+     *            the roles of an activator observing several roles, <code>null</code> for a single role
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static void restoreActivator(final Scheduler scheduler, final String className, final String community, final String group, final String role,
+	    final String[] roleNames, final String behavior, final int nbOfParallelTasks, final boolean workStealing, final long shuffles) {
+	Activator<? extends AbstractAgent> activator = null;
+	for (final Activator<? extends AbstractAgent> a : scheduler.getActivators()) {
+	    if (a.getClass().getName().equals(className) && a.getCommunity().equals(community) && a.getGroup().equals(group) && a.getRole().equals(role)
+		    && (a.getRoleNames() == null) == (roleNames == null)) {
+		activator = a;
+		break;
+	    }
+	}
+	if (activator == null) {
+	    try {
+		final Class<?> c = Class.forName(className, true, MadkitClassLoader.getLoader());
+		if (roleNames != null && roleNames.length == 0) {
+		    activator = (Activator<? extends AbstractAgent>) c.getConstructor(String.class, String.class).newInstance(community, group);
+		}
+		else if (roleNames != null) {
+		    activator = (Activator<? extends AbstractAgent>) c.getConstructor(String.class, String.class, String.class, String[].class).newInstance(community, group,
+			    roleNames[0], Arrays.copyOfRange(roleNames, 1, roleNames.length));
+		}
+		else if (behavior != null) {
+		    activator = (Activator<? extends AbstractAgent>) c.getConstructor(String.class, String.class, String.class, String.class).newInstance(community, group, role, behavior);
+		}
+		else {
+		    activator = (Activator<? extends AbstractAgent>) c.getConstructor(String.class, String.class, String.class).newInstance(community, group, role);
+		}
+	    }
+	    catch(ReflectiveOperationException | ClassCastException e) {
+		scheduler.getLogger().warning(() -> "Cannot restore activator " + className + " <" + community + "," + group + "," + role + "> : " + e);
+		return;
+	    }
+	    scheduler.addActivator(activator);
+	}
+	activator.useMulticore(nbOfParallelTasks);
+	activator.useWorkStealing(workStealing);
+	activator.setShuffleCount(shuffles);
+    }
+
+    private static String getString(final ByteBuffer in) {
+	final int length = in.getInt();
+	if (length < 0) {
+	    return null;
+	}
+	final byte[] bytes = new byte[length];
+	in.get(bytes);
+	return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Buffered output to a file channel
+     */
+    private static final class Output implements AutoCloseable {
+
+	private final FileChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+	Output(final Path file) throws IOException {
+	    channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+	}
+
+	private void ensure(final int bytes) throws IOException {
+	    if (buffer.remaining() < bytes) {
+		flush();
+	    }
+	}
+
+	private void flush() throws IOException {
+	    buffer.flip();
+	    while (buffer.hasRemaining()) {
+		channel.write(buffer);
+	    }
+	    buffer.clear();
+	}
+
+	void putByte(final byte b) throws IOException {
+	    ensure(Byte.BYTES);
+	    buffer.put(b);
+	}
+
+	void putInt(final int i) throws IOException {
+	    ensure(Integer.BYTES);
+	    buffer.putInt(i);
+	}
+
+	void putLong(final long l) throws IOException {
+	    ensure(Long.BYTES);
+	    buffer.putLong(l);
+	}
+
+	void putDouble(final double d) throws IOException {
+	    ensure(Double.BYTES);
+	    buffer.putDouble(d);
+	}
+
+	void putString(final String s) throws IOException {
+	    if (s == null) {
+		putInt(-1);
+		return;
+	    }
+	    final byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+	    putInt(bytes.length);
+	    for (int offset = 0; offset < bytes.length;) {
+		ensure(1);
+		final int n = Math.min(buffer.remaining(), bytes.length - offset);
+		buffer.put(bytes, offset, n);
+		offset += n;
+	    }
+	}
+
+	@Override
+	public void close() throws IOException {
+	    try {
+		flush();
+		channel.force(false);
+	    }
+	    finally {
+		channel.close();
+	    }
+	}
+    }
+
+}
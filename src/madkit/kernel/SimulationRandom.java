@@ -0,0 +1,204 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.kernel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * The seeded random service of a simulation. Everything which is drawn from it only depends on its seed, so that a
+ * simulation using it could be exactly replicated, whatever the number of threads used to run it:
+ * <ul>
+ * <li>{@link #getStream(long)} gives an independent stream for a key, such as the index of an agent or of a worker
+ * thread. Streams do not share any state, so that they could be used concurrently without contention;</li>
+ * <li>{@link #shuffle(List, long)} returns a shuffled copy of a list, the order only depending on the seed, the key and
+ * the order of the list, be it computed using one or several threads;</li>
+ * <li>{@link #nextInt(int)} draws from a shared stream, which is only reproducible if the calls are made in the same
+ * order. Its state is saved by {@link Scheduler#checkpoint(java.nio.file.Path)}.</li>
+ * </ul>
+ * Each kernel has its own instance, which is returned by {@link AbstractAgent#getSimulationRandom()}. Its seed is given
+ * by the {@link Madkit.Option#randomSeed} option.
+ *
+ * <pre>
+ * final SplittableRandom random = getSimulationRandom().getStream(agentIndex);
+ * </pre>
+ *
+ * @author Fabien Michel
+ * @since MaDKit 5.2
+ * @version 0.9
+ */
+public final class SimulationRandom {
+
+    /**
+     * the size from which lists are shuffled in parallel
+     */
+    static final int PARALLEL_THRESHOLD = 4096;
+
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private final long seed;
+    // the state of the shared stream
+    private long state;
+
+    /**
+     * @param seed
+     *            the seed from which everything is drawn
+     */
+    public SimulationRandom(final long seed) {
+	this.seed = seed;
+	state = keySeed(-1);
+    }
+
+    /**
+     * @return the seed of this random service
+     */
+    public long getSeed() {
+	return seed;
+    }
+
+    /**
+     * Returns a new stream for a key. Two calls with the same key return streams producing the same values.
+     *
+     * @param key
+     *            a key identifying the user of the stream, e.g. an agent or a worker index
+     * @return a new random generator, which is not thread safe
+     */
+    public SplittableRandom getStream(final long key) {
+	return new SplittableRandom(keySeed(key));
+    }
+
+    /**
+     * Returns a new stream for a pair of keys, e.g. an agent index and a simulation step.
+     *
+     * @param key
+     *            the first key
+     * @param subKey
+     *            the second key
+     * @return a new random generator, which is not thread safe
+     */
+    public SplittableRandom getStream(final long key, final long subKey) {
+	return new SplittableRandom(mix(keySeed(key) + GOLDEN_GAMMA * (subKey + 1)));
+    }
+
+    /**
+     * Draws a number from the stream shared by the whole simulation.
+     *
+     * @param bound
+     *            the upper bound (exclusive), which must be positive
+     * @return a number between 0 (inclusive) and bound (exclusive)
+     */
+    public int nextInt(final int bound) {
+	if (bound <= 0) {
+	    throw new IllegalArgumentException("bound must be positive: " + bound);
+	}
+	final long z;
+	synchronized (this) {
+	    z = mix(state += GOLDEN_GAMMA);
+	}
+	return (int) (((z >>> 32) * bound) >>> 32);
+    }
+
+    /**
+     * @return the state of the shared stream, so that it could be checkpointed
+     */
+    synchronized long getState() {
+	return state;
+    }
+
+    /**
+     * Restores the state of the shared stream.
+     */
+    synchronized void setState(final long state) {
+	this.state = state;
+    }
+
+    /**
+     * Returns a shuffled copy of a list, leaving the list untouched. Each element gets a random sort key computed from the
+     * seed, the key and its index, and the elements are sorted according to these keys, in parallel for large lists. So
+     * the result does not depend on the number of threads, but it depends on the order of the given list: the same
+     * elements given in another order are shuffled differently.
+     *
+     * @param list
+     *            the list to shuffle
+     * @param key
+     *            a key identifying this shuffle, e.g. a simulation step
+     * @return a new shuffled list
+     */
+    public <T> List<T> shuffle(final List<? extends T> list, final long key) {
+	final int size = list.size();
+	final long base = keySeed(key);
+	final long[] keys = new long[size];
+	final boolean parallel = size >= PARALLEL_THRESHOLD;
+	// high bits: random, low bits: index, so that keys are unique
+	if (parallel) {
+	    Arrays.parallelSetAll(keys, i -> (mix(base + GOLDEN_GAMMA * (i + 1)) & 0xFFFFFFFF00000000L) | i);
+	    Arrays.parallelSort(keys);
+	}
+	else {
+	    for (int i = 0; i < size; i++) {
+		keys[i] = (mix(base + GOLDEN_GAMMA * (i + 1)) & 0xFFFFFFFF00000000L) | i;
+	    }
+	    Arrays.sort(keys);
+	}
+	final List<T> result = new ArrayList<>(size);
+	for (final long k : keys) {
+	    result.add(list.get((int) k));
+	}
+	return result;
+    }
+
+    private long keySeed(final long key) {
+	return mix(seed + GOLDEN_GAMMA * (key + 1));
+    }
+
+    /**
+     * The SplitMix64 finalizer
+     */
+    private static long mix(long z) {
+	z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+	z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+	return z ^ (z >>> 31);
+    }
+
+    @Override
+    public String toString() {
+	return getClass().getSimpleName() + " seed = " + seed;
+    }
+
+}
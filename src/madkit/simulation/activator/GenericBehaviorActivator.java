@@ -36,11 +36,17 @@ knowledge of the CeCILL-C license and that you accept its terms.
  */
 package madkit.simulation.activator;
 
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
-import java.util.HashMap;
+import java.lang.reflect.Modifier;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 import madkit.kernel.AbstractAgent;
 import madkit.kernel.Activator;
@@ -60,8 +66,8 @@ import madkit.simulation.SimulationException;
  */
 public class GenericBehaviorActivator<A extends AbstractAgent> extends Activator<A> {
 
-    /** methods maps an agent class to its corresponding Method object for runtime invocation */
-    private final Map<Class<? extends A>, Method> methods;
+    /** behaviors maps an agent class to the compiled invocation of its behavior */
+    private final Map<Class<? extends A>, Consumer<? super A>> behaviors;
     private final String methodName;
 
     /**
@@ -78,7 +84,7 @@ public class GenericBehaviorActivator<A extends AbstractAgent> extends Activator
      */
     public GenericBehaviorActivator(final String community, final String group, final String role, final String theBehaviorToActivate) {
 	super(community, group, role);
-	methods = new HashMap<>();
+	behaviors = new ConcurrentHashMap<>();
 	methodName = theBehaviorToActivate;
     }
 
@@ -94,8 +100,8 @@ public class GenericBehaviorActivator<A extends AbstractAgent> extends Activator
     @SuppressWarnings("null")
     @Override
     public void execute(final List<A> agents, Object... args) {
-	// local cache for multicore execute and avoiding adding collision
-	Method cachedM = null;
+	// local cache for multicore execute and avoiding map lookups
+	Consumer<? super A> cachedB = null;
 	Class<? extends A> cachedC = null;
 	for (final A a : agents) {
 	    if (a.isAlive()) {
@@ -103,29 +109,105 @@ public class GenericBehaviorActivator<A extends AbstractAgent> extends Activator
 		final Class<? extends A> agentClass = (Class<? extends A>) a.getClass();
 		if (agentClass != cachedC) {
 		    cachedC = agentClass;
-		    cachedM = methods.get(agentClass);
-		    if (cachedM == null) {
-			try {
-			    cachedM = findMethodOn(agentClass, methodName);
-			}
-			catch(NoSuchMethodException e) {
-			    throw new SimulationException(toString(), e);
-			}
-			synchronized (methods) {
-			    methods.put(agentClass, cachedM);
-			}
+		    cachedB = behaviors.get(agentClass);
+		    if (cachedB == null) {
+			cachedB = compileBehavior(agentClass);
+			behaviors.put(agentClass, cachedB);
 		    }
 		}
 		try {
-		    cachedM.invoke(a);
+		    cachedB.accept(a);
 		}
-		catch(IllegalAccessException e) {
-		    throw new SimulationException(toString(), e);
-		}
-		catch(InvocationTargetException e) {
-		    throw new SimulationException(toString() + " on " + cachedM + " " + a, e.getCause());
+		catch(Throwable e) {// as Method.invoke would have wrapped it
+		    throw new SimulationException(toString() + " on " + methodName + " " + a, e);
 		}
 	    }
 	}
     }
+
+    private Consumer<? super A> compileBehavior(final Class<? extends A> agentClass) {
+	try {
+	    return compileBehavior(findMethodOn(agentClass, methodName));
+	}
+	catch(NoSuchMethodException e) {
+	    throw new SimulationException(toString(), e);
+	}
+	catch(IllegalAccessException e) {
+	    throw new SimulationException(toString(), e);
+	}
+    }
+
+    /**
+     * Turns a method having no parameter into a {@link Consumer} of agents, so that the behavior is invoked by an interface
+     * call the JIT can inline rather than by {@link Method#invoke(Object, Object...)}. A class generated by the
+     * {@link LambdaMetafactory} is used when the method can be linked from here, i.e. when it is public, its class is
+     * public and visible from the class loader of this class. Otherwise, the consumer invokes a {@link MethodHandle}.
+     * 
+     * @param m
+     *            the behavior, made accessible by {@link Activator#findMethodOn(Class, String)}
+     * @return a consumer invoking <code>m</code> on its argument
+     * @throws IllegalAccessException
+     *             if <code>m</code> cannot be accessed
+     */
+    @SuppressWarnings("unchecked")
+    static <T> Consumer<T> compileBehavior(final Method m) throws IllegalAccessException {
+	final MethodHandles.Lookup lookup = MethodHandles.lookup();
+	final MethodHandle handle = lookup.unreflect(m);
+	if (isLinkable(m)) {
+	    try {
+		final CallSite site = LambdaMetafactory.metafactory(lookup, "accept", MethodType.methodType(Consumer.class), MethodType.methodType(void.class, Object.class), handle,
+			MethodType.methodType(void.class, m.getDeclaringClass()));
+		return (Consumer<T>) site.getTarget().invoke();
+	    }
+	    catch(Throwable e) {
+		// falling back to the method handle
+	    }
+	}
+	final MethodHandle invoker = (Modifier.isStatic(m.getModifiers()) ? MethodHandles.dropArguments(handle, 0, Object.class) : handle)
+		.asType(MethodType.methodType(void.class, Object.class));
+	return new MethodHandleBehavior<>(invoker);
+    }
+
+    private static boolean isLinkable(final Method m) {
+	final Class<?> c = m.getDeclaringClass();
+	if (!Modifier.isPublic(m.getModifiers()) || Modifier.isStatic(m.getModifiers()) || !Modifier.isPublic(c.getModifiers())) {
+	    return false;
+	}
+	try {
+	    return Class.forName(c.getName(), false, GenericBehaviorActivator.class.getClassLoader()) == c;
+	}
+	catch(ClassNotFoundException e) {
+	    return false;
+	}
+    }
+
+    /**
+     * Invokes a behavior which cannot be linked by the {@link LambdaMetafactory}.
+     */
+    private static final class MethodHandleBehavior<T> implements Consumer<T> {
+
+	private final MethodHandle invoker;
+
+	MethodHandleBehavior(final MethodHandle invoker) {
+	    this.invoker = invoker;
+	}
+
+	@Override
+	public void accept(final T agent) {
+	    try {
+		invoker.invokeExact((Object) agent);
+	    }
+	    catch(Throwable e) {
+		throw MethodHandleBehavior.<RuntimeException> rethrow(e);
+	    }
+	}
+
+	/**
+	 * Rethrows checked exceptions as is, as the classes generated by the {@link LambdaMetafactory} do.
+	 */
+	@SuppressWarnings("unchecked")
+	private static <E extends Throwable> E rethrow(final Throwable e) throws E {
+	    throw (E) e;
+	}
+    }
 }
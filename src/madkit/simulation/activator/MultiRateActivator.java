@@ -0,0 +1,210 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.simulation.activator;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import madkit.kernel.AbstractAgent;
+import madkit.kernel.Activator;
+import madkit.kernel.Scheduler;
+
+/**
+ * An activator whose agents are activated at their own rate: each agent has an activation period and a phase, and it
+ * is activated at the ticks which equal its phase modulo its period, a tick being one call to
+ * {@link #execute(Object...)}, counted from the first one. So, with the default {@link Scheduler} and an activator
+ * added before the first step, an agent having a period of 10 and a phase of 3 is activated at the steps 3, 13, 23, and
+ * so on.
+ * <p>
+ * The agents are kept in a hierarchical timing wheel, so that a tick only visits the agents which are due:
+ * {@link #execute(List, Object...)} is called once per tick with the list of these agents, which is empty when none is
+ * due. The wheel is incrementally updated when agents join or leave the role, using {@link #adding(AbstractAgent)} and
+ * {@link #removing(AbstractAgent)}. The period and the phase of an agent are given by
+ * {@link #getActivationPeriod(AbstractAgent)} and {@link #getActivationPhase(AbstractAgent)} when it joins the role,
+ * and can be changed afterwards using {@link #setActivationRate(AbstractAgent, long, long)}.
+ *
+ * <pre>
+ * public class SpeciesActivator extends MultiRateActivator&lt;Animal&gt; {
+ *
+ *     protected long getActivationPeriod(Animal a) {
+ * 	return a.isPlant() ? 1000 : 1;
+ *     }
+ *
+ *     public void execute(List&lt;Animal&gt; dueAgents, Object... args) {
+ * 	for (Animal a : dueAgents) {
+ * 	    a.live();
+ * 	}
+ *     }
+ * }
+ * </pre>
+ *
+ * @author Fabien Michel
+ * @since MaDKit 5.2
+ * @version 0.9
+ * @param <A>
+ *            the most generic type of the activated agents
+ */
+public abstract class MultiRateActivator<A extends AbstractAgent> extends Activator<A> {
+
+    private final TimingWheel<A> wheel = new TimingWheel<>();
+    private final Map<A, TimingWheel.Entry<A>> entries = new IdentityHashMap<>();
+    private final List<A> due = new ArrayList<>();
+
+    /**
+     * Builds a new MultiRateActivator on the given CGR location of the artificial society.
+     *
+     * @param community
+     * @param group
+     * @param role
+     */
+    public MultiRateActivator(final String community, final String group, final String role) {
+	super(community, group, role);
+    }
+
+    /**
+     * Returns the activation period of an agent joining the role. Default is 1: the agent is activated at each tick.
+     *
+     * @param agent
+     *            an agent joining the role
+     * @return a number of ticks, which must be positive
+     */
+    protected long getActivationPeriod(final A agent) {
+	return 1;
+    }
+
+    /**
+     * Returns the activation phase of an agent joining the role. Default is 0.
+     *
+     * @param agent
+     *            an agent joining the role
+     * @return the tick of the first activation, modulo the period, the ticks being counted from the first execution
+     * @see #setActivationRate(AbstractAgent, long, long)
+     */
+    protected long getActivationPhase(final A agent) {
+	return 0;
+    }
+
+    /**
+     * Changes the activation period and phase of an agent. The agent is next activated at the first tick, starting from
+     * the current one, which equals the phase modulo the period.
+     * <p>
+     * The ticks are counted from the first execution of this activator, which is tick 0, and not derived from the GVT
+     * of the scheduler: the phases are thus relative to the step at which the activator started, and the ticks are not
+     * aligned with the GVT when the activator is added to a running simulation or when the scheduler does not increment
+     * the GVT by one per step. {@link #getTick()} gives the current tick.
+     *
+     * @param agent
+     *            an agent handled by this activator
+     * @param period
+     *            a number of ticks, which must be positive
+     * @param phase
+     *            the ticks of the activations, modulo the period
+     * @throws IllegalArgumentException
+     *             if the agent is not handled by this activator or if the period is not positive
+     */
+    public void setActivationRate(final A agent, final long period, final long phase) {
+	synchronized (wheel) {
+	    final TimingWheel.Entry<A> e = entries.get(agent);
+	    if (e == null) {
+		throw new IllegalArgumentException(agent + " is not handled by " + this);
+	    }
+	    wheel.reschedule(e, period, phase);
+	}
+    }
+
+    /**
+     * @return the tick of the next call to {@link #execute(Object...)}
+     */
+    public long getTick() {
+	synchronized (wheel) {
+	    return wheel.getTime();
+	}
+    }
+
+    /**
+     * Calls {@link #execute(List, Object...)} with the agents which are due at the current tick, and goes to the next
+     * tick. The multicore and work stealing modes are not used by this activator.
+     */
+    @Override
+    public void execute(final Object... args) {
+	synchronized (wheel) {
+	    wheel.advance(due);
+	}
+	try {
+	    execute(due, args);
+	}
+	finally {
+	    due.clear();
+	}
+    }
+
+    /**
+     * Resets the wheel before adding the agents which are already in the role.
+     */
+    @Override
+    public void initialize() {
+	synchronized (wheel) {
+	    wheel.clear();
+	    entries.clear();
+	}
+	super.initialize();
+    }
+
+    @Override
+    protected void adding(final A agent) {
+	final long period = getActivationPeriod(agent);
+	final long phase = getActivationPhase(agent);
+	synchronized (wheel) {
+	    if (!entries.containsKey(agent)) {
+		entries.put(agent, wheel.schedule(agent, period, phase));
+	    }
+	}
+    }
+
+    @Override
+    protected void removing(final A agent) {
+	synchronized (wheel) {
+	    final TimingWheel.Entry<A> e = entries.remove(agent);
+	    if (e != null) {
+		wheel.cancel(e);
+	    }
+	}
+    }
+
+}
@@ -0,0 +1,357 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.simulation.activator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import madkit.kernel.AbstractAgent;
+import madkit.kernel.Activator;
+import madkit.simulation.probe.PropertyProbe;
+
+/**
+ * An activator which only activates the agents whose state property has one of the active values, e.g. the agents
+ * whose <code>state</code> field is <code>FORAGING</code>, or whose <code>alive</code> field is <code>true</code>.
+ * <p>
+ * The agents are partitioned according to the value of the property, which is read when they join the role.
+ * Afterwards, the property has to be changed using {@link #setPropertyValue(AbstractAgent, Object)}, which updates the
+ * field and moves the agent to its new partition in a constant time, or {@link #update(AbstractAgent)} has to be called
+ * once it has been changed directly. So {@link #execute(Object...)} only visits the agents of the active partitions:
+ * when 5% of the agents are active, a step costs 5% of a step visiting all of them and testing their state.
+ * <p>
+ * {@link #execute(List, Object...)} is called once per execution with a copy of the active agents, so that agents could
+ * change their state, and thus their partition, while being activated: the change is taken into account at the next
+ * execution. Moving an agent changes the order of its former partition, which is therefore not the order of the role,
+ * but only depends on the sequence of changes. The multicore and work stealing modes are not used by this activator.
+ * <p>
+ * Instead of a field, the partition key may be computed by a function of the agents, so that a range condition such
+ * as <code>energy &gt; 0</code> can be used without maintaining a derived field: the agents are then moved using
+ * {@link #update(AbstractAgent)} once a change may have altered their key.
+ *
+ * <pre>
+ * final PartitionedActivator&lt;Ant, State&gt; foragers = new PartitionedActivator&lt;Ant, State&gt;(COMMUNITY, GROUP, "ant", "state", State.FORAGING) {
+ *
+ *     public void execute(List&lt;Ant&gt; activeAnts, Object... args) {
+ * 	for (Ant a : activeAnts) {
+ * 	    if (a.forage()) {
+ * 		setPropertyValue(a, State.RETURNING);
+ * 	    }
+ * 	}
+ *     }
+ * };
+ *
+ * final PartitionedActivator&lt;Ant, Boolean&gt; living = new PartitionedActivator&lt;Ant, Boolean&gt;(COMMUNITY, GROUP, "ant", a -&gt; a.energy &gt; 0, true) {
+ *     ...
+ * };
+ * </pre>
+ *
+ * @author Fabien Michel
+ * @since MaDKit 5.2
+ * @version 0.9
+ * @param <A>
+ *            the most generic type of the activated agents
+ * @param <K>
+ *            the type of the property, e.g. an enum or Boolean
+ */
+public abstract class PartitionedActivator<A extends AbstractAgent, K> extends Activator<A> {
+
+    private final PropertyProbe<A, K> property;
+    private final Function<? super A, ? extends K> key;
+    private final Map<K, Partition<A, K>> partitions = new HashMap<>();
+    private final Map<A, Slot<A, K>> slots = new IdentityHashMap<>();
+    private final Set<K> activeValues = new LinkedHashSet<>();
+    private final List<A> active = new ArrayList<>();
+
+    private static final class Partition<A, K> {
+
+	private final K value;
+	private final List<Slot<A, K>> slots = new ArrayList<>();
+
+	private Partition(final K value) {
+	    this.value = value;
+	}
+    }
+
+    private static final class Slot<A, K> {
+
+	private final A agent;
+	private Partition<A, K> partition;
+	private int index;
+
+	private Slot(final A agent) {
+	    this.agent = agent;
+	}
+    }
+
+    /**
+     * Builds a new PartitionedActivator on the given CGR location of the artificial society.
+     *
+     * @param community
+     * @param group
+     * @param role
+     * @param fieldName
+     *            the name of the state property, which is a field of type <code>K</code> of the agents
+     * @param activeValues
+     *            the values of the property for which the agents are activated
+     */
+    @SafeVarargs
+    public PartitionedActivator(final String community, final String group, final String role, final String fieldName, final K... activeValues) {
+	super(community, group, role);
+	property = new PropertyProbe<>(community, group, role, fieldName);
+	key = property::getPropertyValue;
+	for (final K v : activeValues) {
+	    this.activeValues.add(v);
+	}
+    }
+
+    /**
+     * Builds a new PartitionedActivator on the given CGR location of the artificial society, whose partitions are
+     * given by a key function of the agents.
+     *
+     * @param community
+     * @param group
+     * @param role
+     * @param keyFunction
+     *            the function giving the partition key of an agent, e.g. <code>a -&gt; a.energy &gt; 0</code>
+     * @param activeValues
+     *            the keys for which the agents are activated
+     */
+    @SafeVarargs
+    public PartitionedActivator(final String community, final String group, final String role, final Function<? super A, ? extends K> keyFunction,
+	    final K... activeValues) {
+	super(community, group, role);
+	property = null;
+	key = keyFunction;
+	for (final K v : activeValues) {
+	    this.activeValues.add(v);
+	}
+    }
+
+    /**
+     * Sets the values of the property for which the agents are activated by the next executions.
+     *
+     * @param values
+     *            the new active values
+     */
+    @SafeVarargs
+    public final void setActiveValues(final K... values) {
+	synchronized (partitions) {
+	    activeValues.clear();
+	    for (final K v : values) {
+		activeValues.add(v);
+	    }
+	}
+    }
+
+    /**
+     * @return the values of the property for which the agents are activated
+     */
+    public Set<K> getActiveValues() {
+	synchronized (partitions) {
+	    return Collections.unmodifiableSet(new LinkedHashSet<>(activeValues));
+	}
+    }
+
+    /**
+     * Changes the state property of an agent and moves it to the corresponding partition.
+     *
+     * @param agent
+     *            an agent handled by this activator
+     * @param value
+     *            the new value of its property
+     * @throws IllegalArgumentException
+     *             if the agent is not handled by this activator
+     * @throws UnsupportedOperationException
+     *             if the partitions are given by a key function
+     */
+    public void setPropertyValue(final A agent, final K value) {
+	if (property == null) {
+	    throw new UnsupportedOperationException(this + " partitions the agents using a key function");
+	}
+	synchronized (partitions) {
+	    final Slot<A, K> s = slots.get(agent);
+	    if (s == null) {
+		throw new IllegalArgumentException(agent + " is not handled by " + this);
+	    }
+	    property.setPropertyValue(agent, value);
+	    move(s, value);
+	}
+    }
+
+    /**
+     * Moves an agent to the partition corresponding to the current value of its property, which has been changed
+     * without using {@link #setPropertyValue(AbstractAgent, Object)}, or to the one of its current key when a key
+     * function is used.
+     *
+     * @param agent
+     *            an agent handled by this activator
+     * @throws IllegalArgumentException
+     *             if the agent is not handled by this activator
+     */
+    public void update(final A agent) {
+	synchronized (partitions) {
+	    final Slot<A, K> s = slots.get(agent);
+	    if (s == null) {
+		throw new IllegalArgumentException(agent + " is not handled by " + this);
+	    }
+	    move(s, key.apply(agent));
+	}
+    }
+
+    /**
+     * @param value
+     *            a value of the property
+     * @return a copy of the agents whose property has this value
+     */
+    public List<A> getPartition(final K value) {
+	synchronized (partitions) {
+	    final Partition<A, K> p = partitions.get(value);
+	    final List<A> l = new ArrayList<>(p == null ? 0 : p.slots.size());
+	    if (p != null) {
+		for (final Slot<A, K> s : p.slots) {
+		    l.add(s.agent);
+		}
+	    }
+	    return l;
+	}
+    }
+
+    /**
+     * @param value
+     *            a value of the property
+     * @return the number of agents whose property has this value
+     */
+    public int getPartitionSize(final K value) {
+	synchronized (partitions) {
+	    final Partition<A, K> p = partitions.get(value);
+	    return p == null ? 0 : p.slots.size();
+	}
+    }
+
+    /**
+     * Calls {@link #execute(List, Object...)} with the agents whose property has one of the active values, the
+     * partitions being visited in the order of these values.
+     */
+    @Override
+    public void execute(final Object... args) {
+	synchronized (partitions) {
+	    for (final K value : activeValues) {
+		final Partition<A, K> p = partitions.get(value);
+		if (p != null) {
+		    for (final Slot<A, K> s : p.slots) {
+			active.add(s.agent);
+		    }
+		}
+	    }
+	}
+	try {
+	    execute(active, args);
+	}
+	finally {
+	    active.clear();
+	}
+    }
+
+    /**
+     * Resets the partitions before adding the agents which are already in the role.
+     */
+    @Override
+    public void initialize() {
+	synchronized (partitions) {
+	    partitions.clear();
+	    slots.clear();
+	}
+	super.initialize();
+    }
+
+    @Override
+    protected void adding(final A agent) {
+	synchronized (partitions) {
+	    if (!slots.containsKey(agent)) {
+		final Slot<A, K> s = new Slot<>(agent);
+		slots.put(agent, s);
+		insert(s, key.apply(agent));
+	    }
+	}
+    }
+
+    @Override
+    protected void removing(final A agent) {
+	synchronized (partitions) {
+	    final Slot<A, K> s = slots.remove(agent);
+	    if (s != null) {
+		extract(s);
+	    }
+	}
+    }
+
+    private void move(final Slot<A, K> s, final K value) {
+	if (s.partition.value == null ? value != null : !s.partition.value.equals(value)) {
+	    extract(s);
+	    insert(s, value);
+	}
+    }
+
+    private void insert(final Slot<A, K> s, final K value) {
+	final Partition<A, K> p = partitions.computeIfAbsent(value, Partition::new);
+	s.partition = p;
+	s.index = p.slots.size();
+	p.slots.add(s);
+    }
+
+    // swaps the last slot of the partition into the freed one
+    private void extract(final Slot<A, K> s) {
+	final List<Slot<A, K>> l = s.partition.slots;
+	final Slot<A, K> last = l.remove(l.size() - 1);
+	if (last != s) {
+	    l.set(s.index, last);
+	    last.index = s.index;
+	}
+	if (l.isEmpty()) {
+	    partitions.remove(s.partition.value);
+	}
+	s.partition = null;
+    }
+
+}
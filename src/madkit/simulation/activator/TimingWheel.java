@@ -0,0 +1,231 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.simulation.activator;
+
+import java.util.List;
+
+/**
+ * A hierarchical timing wheel holding periodic items. It has {@value #LEVELS} levels of {@value #SLOTS} slots: level 0
+ * holds the items which are due within the next {@value #SLOTS} ticks, one slot per tick, and each slot of the level
+ * <i>n</i> covers {@value #SLOTS}<sup><i>n</i></sup> ticks. When the lower level wraps around, the items of the next slot
+ * of the upper level are cascaded down. So advancing one tick only visits the items which are due, plus the cascaded
+ * ones, whatever the number of items which are waiting.
+ * <p>
+ * The slots are intrusive doubly linked lists, so that an item is added or removed in constant time. This class is not
+ * thread safe.
+ *
+ * @author Fabien Michel
+ * @since MaDKit 5.2
+ * @version 0.9
+ */
+final class TimingWheel<T> {
+
+    private static final int BITS = 8;
+    static final int SLOTS = 1 << BITS;
+    private static final int MASK = SLOTS - 1;
+    static final int LEVELS = 4;
+
+    private final Entry<T>[][] heads;
+    private final Entry<T>[][] tails;
+    private long now;
+    private int size;
+
+    /**
+     * A periodic item of the wheel
+     */
+    static final class Entry<T> {
+
+	final T item;
+	long due;
+	long period;
+	private Entry<T> previous, next;
+	private int level = -1, slot;
+
+	private Entry(final T item) {
+	    this.item = item;
+	}
+    }
+
+    @SuppressWarnings("unchecked")
+    TimingWheel() {
+	heads = (Entry<T>[][]) new Entry<?>[LEVELS][SLOTS];
+	tails = (Entry<T>[][]) new Entry<?>[LEVELS][SLOTS];
+    }
+
+    /**
+     * @return the next tick which will be processed by {@link #advance(List)}
+     */
+    long getTime() {
+	return now;
+    }
+
+    /**
+     * @return the number of items in the wheel
+     */
+    int size() {
+	return size;
+    }
+
+    /**
+     * Adds an item, which will be due at the first tick, starting from the current one, which equals <code>phase</code>
+     * modulo <code>period</code>.
+     */
+    Entry<T> schedule(final T item, final long period, final long phase) {
+	final Entry<T> e = new Entry<>(item);
+	reschedule(e, period, phase);
+	size++;
+	return e;
+    }
+
+    /**
+     * Changes the period and the phase of an item of the wheel.
+     */
+    void reschedule(final Entry<T> e, final long period, final long phase) {
+	if (period < 1) {
+	    throw new IllegalArgumentException("period must be positive: " + period);
+	}
+	unlink(e);
+	e.period = period;
+	e.due = now + Math.floorMod(phase - now, period);
+	link(e);
+    }
+
+    /**
+     * Removes an item from the wheel.
+     */
+    void cancel(final Entry<T> e) {
+	if (e.level >= 0) {
+	    unlink(e);
+	    size--;
+	}
+    }
+
+    /**
+     * Removes all the items.
+     */
+    void clear() {
+	for (int l = 0; l < LEVELS; l++) {
+	    for (int s = 0; s < SLOTS; s++) {
+		for (Entry<T> e = heads[l][s]; e != null; e = e.next) {
+		    e.level = -1;
+		}
+		heads[l][s] = tails[l][s] = null;
+	    }
+	}
+	size = 0;
+    }
+
+    /**
+     * Processes the current tick: the items which are due are added to <code>due</code> and scheduled for their next
+     * period, and the time goes to the next tick.
+     */
+    void advance(final List<T> due) {
+	final long tick = now;
+	for (int l = LEVELS - 1; l > 0; l--) {
+	    if ((tick & ((1L << (BITS * l)) - 1)) == 0) {
+		cascade(l, (int) ((tick >>> (BITS * l)) & MASK));
+	    }
+	}
+	final int s = (int) (tick & MASK);
+	Entry<T> e = heads[0][s];
+	heads[0][s] = tails[0][s] = null;
+	now = tick + 1;
+	while (e != null) {
+	    final Entry<T> next = e.next;
+	    due.add(e.item);
+	    e.due += e.period;
+	    e.level = -1;
+	    link(e);
+	    e = next;
+	}
+    }
+
+    /**
+     * Moves the items of a slot to lower levels.
+     */
+    private void cascade(final int level, final int slot) {
+	Entry<T> e = heads[level][slot];
+	heads[level][slot] = tails[level][slot] = null;
+	while (e != null) {
+	    final Entry<T> next = e.next;
+	    e.level = -1;
+	    link(e);
+	    e = next;
+	}
+    }
+
+    private void link(final Entry<T> e) {
+	final long delta = e.due - now;
+	int level = 0;
+	while (level < LEVELS - 1 && delta >= 1L << (BITS * (level + 1))) {
+	    level++;
+	}
+	final int slot = (int) ((e.due >>> (BITS * level)) & MASK);
+	e.level = level;
+	e.slot = slot;
+	e.next = null;
+	e.previous = tails[level][slot];
+	if (e.previous == null) {
+	    heads[level][slot] = e;
+	}
+	else {
+	    e.previous.next = e;
+	}
+	tails[level][slot] = e;
+    }
+
+    private void unlink(final Entry<T> e) {
+	if (e.level < 0) {
+	    return;
+	}
+	if (e.previous == null) {
+	    heads[e.level][e.slot] = e.next;
+	}
+	else {
+	    e.previous.next = e.next;
+	}
+	if (e.next == null) {
+	    tails[e.level][e.slot] = e.previous;
+	}
+	else {
+	    e.next.previous = e.previous;
+	}
+	e.previous = e.next = null;
+	e.level = -1;
+    }
+
+}
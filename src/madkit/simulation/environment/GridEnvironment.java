@@ -0,0 +1,355 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.simulation.environment;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import madkit.kernel.AbstractAgent;
+import madkit.kernel.Activator;
+import madkit.simulation.SimulationException;
+
+/**
+ * A grid of patches holding {@link GridField}s, such as pheromones or resources, which diffuse and evaporate at each
+ * simulation step. The grid is either a torus, the borders being connected, or bounded. A patch is identified by its
+ * index <code>y * width + x</code> in the arrays of the fields.
+ * <p>
+ * The environment is an activator: when it is added to a {@link madkit.kernel.Scheduler}, each execution computes the
+ * next values of all the fields and then makes them current, so that the agents always read the values of a complete
+ * step, even while the next ones are computed. The rows of the grid are split in {@link #nbOfParallelTasks()} bands
+ * which are computed in parallel: the multicore mode is on by default, using the available processors. The CGR
+ * location of the activator could be the one of the agents living in the environment:
+ * {@link #execute(List, Object...)} is called with all of them once the fields are updated: it does nothing by default
+ * but could be overridden to update the agents.
+ * <p>
+ * The environment declares that it writes itself (see {@link #declareWrites(Object...)}), so that activators declaring
+ * that they read it are not concurrently executed with it.
+ *
+ * <pre>
+ * final GridEnvironment environment = new GridEnvironment(COMMUNITY, GROUP, "ant", 200, 200, true);
+ * final GridField pheromone = environment.addField("pheromone", 0.2, 0.05);
+ * addActivator(environment);
+ * ...
+ * pheromone.add(environment.index(antX, antY), 10);
+ * </pre>
+ *
+ * @author Fabien Michel
+ * @since MaDKit 5.2
+ * @version 0.9
+ */
+public class GridEnvironment extends Activator<AbstractAgent> {
+
+    // the 8 neighbors in reading order
+    private static final int[] NEIGHBORHOOD = { -1, -1, 0, -1, 1, -1, -1, 0, 1, 0, -1, 1, 0, 1, 1, 1 };
+
+    private final int width;
+    private final int height;
+    private final boolean torus;
+    // the neighbor columns and the offsets of the neighbor rows, -1 if there is none
+    private final int[] left, right, up, down;
+    private final Map<String, GridField> fields = new LinkedHashMap<>();
+    private final List<GridField> fieldList = new ArrayList<>();
+    private List<Callable<Void>> bands = Collections.emptyList();
+
+    /**
+     * Builds a new environment.
+     *
+     * @param community
+     * @param group
+     * @param role
+     * @param width
+     *            the number of columns
+     * @param height
+     *            the number of rows
+     * @param torus
+     *            <code>true</code> if the borders are connected, <code>false</code> if the grid is bounded
+     */
+    public GridEnvironment(final String community, final String group, final String role, final int width, final int height, final boolean torus) {
+	super(community, group, role);
+	if (width < 1 || height < 1 || (long) width * height > Integer.MAX_VALUE - 8) {
+	    throw new IllegalArgumentException("invalid dimensions: " + width + " x " + height);
+	}
+	this.width = width;
+	this.height = height;
+	this.torus = torus;
+	left = new int[width];
+	right = new int[width];
+	for (int x = 0; x < width; x++) {
+	    left[x] = neighborColumn(x - 1);
+	    right[x] = neighborColumn(x + 1);
+	}
+	up = new int[height];
+	down = new int[height];
+	for (int y = 0; y < height; y++) {
+	    final int previousRow = neighborRow(y - 1);
+	    final int nextRow = neighborRow(y + 1);
+	    up[y] = previousRow < 0 ? -1 : previousRow * width;
+	    down[y] = nextRow < 0 ? -1 : nextRow * width;
+	}
+	useMulticore(Runtime.getRuntime().availableProcessors());
+	declareWrites(this);
+    }
+
+    /**
+     * @return the number of columns
+     */
+    public int getWidth() {
+	return width;
+    }
+
+    /**
+     * @return the number of rows
+     */
+    public int getHeight() {
+	return height;
+    }
+
+    /**
+     * @return <code>true</code> if the borders are connected
+     */
+    public boolean isTorus() {
+	return torus;
+    }
+
+    /**
+     * Adds a field whose values are stored in a <code>double[]</code>.
+     *
+     * @param name
+     *            the name of the field
+     * @param diffusionRate
+     *            the fraction of the value of a patch which is shared with its 8 neighbors at each step
+     * @param evaporationRate
+     *            the fraction of the value of a patch which disappears at each step
+     * @return the new field
+     * @throws IllegalArgumentException
+     *             if a field already has this name or if a rate is not between 0 and 1
+     */
+    public GridField addField(final String name, final double diffusionRate, final double evaporationRate) {
+	return addField(name, diffusionRate, evaporationRate, false);
+    }
+
+    /**
+     * Adds a field.
+     *
+     * @param name
+     *            the name of the field
+     * @param diffusionRate
+     *            the fraction of the value of a patch which is shared with its 8 neighbors at each step
+     * @param evaporationRate
+     *            the fraction of the value of a patch which disappears at each step
+     * @param singlePrecision
+     *            <code>true</code> for storing the values in a <code>float[]</code>, which halves the memory footprint
+     * @return the new field
+     * @throws IllegalArgumentException
+     *             if a field already has this name or if a rate is not between 0 and 1
+     */
+    public synchronized GridField addField(final String name, final double diffusionRate, final double evaporationRate, final boolean singlePrecision) {
+	if (fields.containsKey(name)) {
+	    throw new IllegalArgumentException("field already exists: " + name);
+	}
+	final GridField field = new GridField(this, name, diffusionRate, evaporationRate, singlePrecision);
+	fields.put(name, field);
+	fieldList.add(field);
+	return field;
+    }
+
+    /**
+     * @param name
+     *            the name of a field
+     * @return the field having this name, or <code>null</code> if there is none
+     */
+    public synchronized GridField getField(final String name) {
+	return fields.get(name);
+    }
+
+    /**
+     * @return the fields of this environment, in the order they have been added
+     */
+    public synchronized List<GridField> getFields() {
+	return Collections.unmodifiableList(new ArrayList<>(fieldList));
+    }
+
+    /**
+     * Returns the index of a patch. Coordinates outside of the grid are wrapped on a torus, and bounded otherwise.
+     *
+     * @param x
+     *            the abscissa of the patch
+     * @param y
+     *            the ordinate of the patch
+     * @return the index of the patch in the arrays of the fields
+     */
+    public int index(final int x, final int y) {
+	return wrapOrBound(y, height) * width + wrapOrBound(x, width);
+    }
+
+    /**
+     * Returns the index of the patch containing a continuous position, a patch having a size of 1.
+     *
+     * @param x
+     *            an abscissa
+     * @param y
+     *            an ordinate
+     * @return the index of the patch in the arrays of the fields
+     */
+    public int index(final double x, final double y) {
+	return index((int) Math.floor(x), (int) Math.floor(y));
+    }
+
+    /**
+     * @param index
+     *            the index of a patch
+     * @return the abscissa of the patch
+     */
+    public int getX(final int index) {
+	return index % width;
+    }
+
+    /**
+     * @param index
+     *            the index of a patch
+     * @return the ordinate of the patch
+     */
+    public int getY(final int index) {
+	return index / width;
+    }
+
+    /**
+     * Computes the next step of all the fields, in parallel if the multicore mode is on, and makes it current.
+     */
+    @Override
+    public void execute(final Object... args) {
+	final int nbOfBands = Math.max(1, Math.min(nbOfParallelTasks(), height));
+	if (nbOfBands == 1) {
+	    computeNext(0, height);
+	}
+	else {
+	    if (bands.size() != nbOfBands) {
+		bands = buildBands(nbOfBands);
+	    }
+	    try {
+		for (final Future<Void> f : getMadkitServiceExecutor().invokeAll(bands)) {
+		    f.get();
+		}
+	    }
+	    catch(InterruptedException e) {
+		Thread.currentThread().interrupt();// do not swallow it !
+	    }
+	    catch(ExecutionException e) {
+		throw new SimulationException(toString(), e.getCause());
+	    }
+	}
+	for (final GridField f : fieldList) {
+	    f.swap();
+	}
+	execute(getCurrentAgentsList(), args);
+    }
+
+    /**
+     * Does nothing by default: the agents living in the environment could be updated here.
+     */
+    @Override
+    public void execute(final List<AbstractAgent> agentsList, final Object... args) {
+    }
+
+    private List<Callable<Void>> buildBands(final int nbOfBands) {
+	final List<Callable<Void>> tasks = new ArrayList<>(nbOfBands);
+	for (int b = 0; b < nbOfBands; b++) {
+	    final int from = (int) ((long) height * b / nbOfBands);
+	    final int to = (int) ((long) height * (b + 1) / nbOfBands);
+	    tasks.add(() -> {
+		computeNext(from, to);
+		return null;
+	    });
+	}
+	return tasks;
+    }
+
+    private void computeNext(final int fromRow, final int toRow) {
+	for (final GridField f : fieldList) {
+	    f.computeNext(fromRow, toRow, left, right, up, down);
+	}
+    }
+
+    /**
+     * @return the index of a neighbor patch, or -1 if it is outside of a bounded grid
+     */
+    int neighbor(final int x, final int y) {
+	final int column = neighborColumn(x);
+	final int row = neighborRow(y);
+	return column < 0 || row < 0 ? -1 : row * width + column;
+    }
+
+    /**
+     * @return the offsets of the 8 neighbors, as (dx, dy) pairs
+     */
+    int[] getNeighborhood() {
+	return NEIGHBORHOOD;
+    }
+
+    private int neighborColumn(final int x) {
+	if (x >= 0 && x < width) {
+	    return x;
+	}
+	return torus ? Math.floorMod(x, width) : -1;
+    }
+
+    private int neighborRow(final int y) {
+	if (y >= 0 && y < height) {
+	    return y;
+	}
+	return torus ? Math.floorMod(y, height) : -1;
+    }
+
+    private int wrapOrBound(final int v, final int size) {
+	if (torus) {
+	    return Math.floorMod(v, size);
+	}
+	return v < 0 ? 0 : v >= size ? size - 1 : v;
+    }
+
+    @Override
+    public String toString() {
+	return super.toString() + " " + width + " x " + height + (torus ? " torus " : " bounded ") + fieldList;
+    }
+
+}
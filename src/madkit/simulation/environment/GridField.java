@@ -0,0 +1,335 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.simulation.environment;
+
+import java.util.Arrays;
+
+/**
+ * A patch variable of a {@link GridEnvironment}, such as a pheromone or a resource, stored in a flat
+ * <code>double[]</code> or <code>float[]</code> array where the patch (x,y) has the index <code>y * width + x</code>.
+ * <p>
+ * The field is double buffered: the values which are read by the agents are the ones of the current step, while the
+ * environment computes the diffusion and the evaporation in a second buffer. The buffers are swapped at the end of the
+ * execution of the environment. The values could be changed by the agents between two executions of the environment,
+ * using {@link #set(int, double)} or {@link #add(int, double)}: these methods are not synchronized, so that agents
+ * running in parallel should not change the same patch.
+ *
+ * @author Fabien Michel
+ * @since MaDKit 5.2
+ * @version 0.9
+ * @see GridEnvironment#addField(String, double, double)
+ */
+public final class GridField {
+
+    private final String name;
+    private final GridEnvironment environment;
+    private double diffusionRate;
+    private double evaporationRate;
+
+    // one of the two pairs is used
+    private double[] doubles, nextDoubles;
+    private float[] floats, nextFloats;
+
+    GridField(final GridEnvironment environment, final String name, final double diffusionRate, final double evaporationRate, final boolean singlePrecision) {
+	this.environment = environment;
+	this.name = name;
+	setDiffusionRate(diffusionRate);
+	setEvaporationRate(evaporationRate);
+	final int size = environment.getWidth() * environment.getHeight();
+	if (singlePrecision) {
+	    floats = new float[size];
+	    nextFloats = new float[size];
+	}
+	else {
+	    doubles = new double[size];
+	    nextDoubles = new double[size];
+	}
+    }
+
+    /**
+     * @return the name of the field
+     */
+    public String getName() {
+	return name;
+    }
+
+    /**
+     * @return <code>true</code> if the values are stored in a <code>float[]</code>
+     */
+    public boolean isSinglePrecision() {
+	return floats != null;
+    }
+
+    /**
+     * @return the fraction of the value of a patch which is shared with its 8 neighbors at each step
+     */
+    public double getDiffusionRate() {
+	return diffusionRate;
+    }
+
+    /**
+     * @param diffusionRate
+     *            the fraction of the value of a patch which is shared with its 8 neighbors at each step, between 0 and 1
+     */
+    public void setDiffusionRate(final double diffusionRate) {
+	if (!(diffusionRate >= 0 && diffusionRate <= 1)) {
+	    throw new IllegalArgumentException("diffusion rate must be between 0 and 1: " + diffusionRate);
+	}
+	this.diffusionRate = diffusionRate;
+    }
+
+    /**
+     * @return the fraction of the value of a patch which disappears at each step
+     */
+    public double getEvaporationRate() {
+	return evaporationRate;
+    }
+
+    /**
+     * @param evaporationRate
+     *            the fraction of the value of a patch which disappears at each step, between 0 and 1
+     */
+    public void setEvaporationRate(final double evaporationRate) {
+	if (!(evaporationRate >= 0 && evaporationRate <= 1)) {
+	    throw new IllegalArgumentException("evaporation rate must be between 0 and 1: " + evaporationRate);
+	}
+	this.evaporationRate = evaporationRate;
+    }
+
+    /**
+     * @param index
+     *            the index of a patch
+     * @return the value of the patch
+     */
+    public double get(final int index) {
+	return doubles != null ? doubles[index] : floats[index];
+    }
+
+    /**
+     * @param x
+     *            the abscissa of a patch, which is wrapped or bounded according to the topology
+     * @param y
+     *            the ordinate of a patch, which is wrapped or bounded according to the topology
+     * @return the value of the patch
+     */
+    public double get(final int x, final int y) {
+	return get(environment.index(x, y));
+    }
+
+    /**
+     * @param index
+     *            the index of a patch
+     * @param value
+     *            the new value of the patch
+     */
+    public void set(final int index, final double value) {
+	if (doubles != null) {
+	    doubles[index] = value;
+	}
+	else {
+	    floats[index] = (float) value;
+	}
+    }
+
+    /**
+     * Adds a quantity to a patch, e.g. a pheromone dropped by an agent.
+     *
+     * @param index
+     *            the index of a patch
+     * @param quantity
+     *            the quantity to add
+     */
+    public void add(final int index, final double quantity) {
+	if (doubles != null) {
+	    doubles[index] += quantity;
+	}
+	else {
+	    floats[index] += quantity;
+	}
+    }
+
+    /**
+     * Sets all the patches to a value.
+     *
+     * @param value
+     *            the new value of all the patches
+     */
+    public void fill(final double value) {
+	if (doubles != null) {
+	    Arrays.fill(doubles, value);
+	}
+	else {
+	    Arrays.fill(floats, (float) value);
+	}
+    }
+
+    /**
+     * @return the sum of the values of all the patches
+     */
+    public double sum() {
+	double sum = 0;
+	final int size = environment.getWidth() * environment.getHeight();
+	for (int i = 0; i < size; i++) {
+	    sum += get(i);
+	}
+	return sum;
+    }
+
+    /**
+     * Returns the neighbor of a patch having the highest value, which is the direction an agent climbing the gradient of
+     * this field should take.
+     *
+     * @param index
+     *            the index of a patch
+     * @return the index of the neighbor patch having the highest value, the first one in reading order in case of a tie
+     */
+    public int getMaxNeighbor(final int index) {
+	final int[] neighbors = environment.getNeighborhood();
+	final int width = environment.getWidth();
+	final int x = index % width;
+	final int y = index / width;
+	int best = -1;
+	double max = Double.NEGATIVE_INFINITY;
+	for (int n = 0; n < neighbors.length; n += 2) {
+	    final int i = environment.neighbor(x + neighbors[n], y + neighbors[n + 1]);
+	    if (i >= 0 && get(i) > max) {
+		max = get(i);
+		best = i;
+	    }
+	}
+	return best;
+    }
+
+    /**
+     * @param index
+     *            the index of a patch
+     * @return the gradient of the field along the x axis at this patch, computed using central differences
+     */
+    public double getGradientX(final int index) {
+	final int width = environment.getWidth();
+	final int x = index % width;
+	final int y = index / width;
+	return (valueOrSelf(environment.neighbor(x + 1, y), index) - valueOrSelf(environment.neighbor(x - 1, y), index)) / 2;
+    }
+
+    /**
+     * @param index
+     *            the index of a patch
+     * @return the gradient of the field along the y axis at this patch, computed using central differences
+     */
+    public double getGradientY(final int index) {
+	final int width = environment.getWidth();
+	final int x = index % width;
+	final int y = index / width;
+	return (valueOrSelf(environment.neighbor(x, y + 1), index) - valueOrSelf(environment.neighbor(x, y - 1), index)) / 2;
+    }
+
+    private double valueOrSelf(final int neighbor, final int self) {
+	return get(neighbor < 0 ? self : neighbor);
+    }
+
+    /**
+     * Computes the next values of the rows from <code>fromRow</code> (inclusive) to <code>toRow</code> (exclusive) in the
+     * second buffer.
+     */
+    void computeNext(final int fromRow, final int toRow, final int[] left, final int[] right, final int[] up, final int[] down) {
+	final int width = environment.getWidth();
+	final double keep = 1 - diffusionRate;
+	final double share = diffusionRate / 8;
+	final double remain = 1 - evaporationRate;
+	for (int y = fromRow; y < toRow; y++) {
+	    final int row = y * width;
+	    final int rowUp = up[y];
+	    final int rowDown = down[y];
+	    for (int x = 0; x < width; x++) {
+		final int l = left[x];
+		final int r = right[x];
+		final int i = row + x;
+		double sum = 0;
+		int neighbors = 0;
+		for (int k = 0; k < 3; k++) {
+		    final int base = k == 0 ? rowUp : k == 1 ? row : rowDown;
+		    if (base < 0) {
+			continue;
+		    }
+		    if (l >= 0) {
+			sum += get(base + l);
+			neighbors++;
+		    }
+		    if (k != 1) {
+			sum += get(base + x);
+			neighbors++;
+		    }
+		    if (r >= 0) {
+			sum += get(base + r);
+			neighbors++;
+		    }
+		}
+		// on bounded borders, the shares which would go outside stay on the patch
+		final double value = (get(i) * (keep + share * (8 - neighbors)) + share * sum) * remain;
+		if (nextDoubles != null) {
+		    nextDoubles[i] = value;
+		}
+		else {
+		    nextFloats[i] = (float) value;
+		}
+	    }
+	}
+    }
+
+    /**
+     * Makes the second buffer the current one.
+     */
+    void swap() {
+	if (doubles != null) {
+	    final double[] t = doubles;
+	    doubles = nextDoubles;
+	    nextDoubles = t;
+	}
+	else {
+	    final float[] t = floats;
+	    floats = nextFloats;
+	    nextFloats = t;
+	}
+    }
+
+    @Override
+    public String toString() {
+	return "field " + name + " diffusion " + diffusionRate + " evaporation " + evaporationRate;
+    }
+
+}
@@ -0,0 +1,725 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.simulation.environment;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * A uniform grid indexing the positions of agents in a rectangular 2D space, so that neighbors are found by only
+ * visiting the cells around a position, rather than all the agents. The space goes from (0,0) to (width,height) and is
+ * divided in square cells: agents which are out of these bounds are kept in the border cells, so that queries remain
+ * exact. For best performance, the cell size should be close to the usual query radius.
+ * <p>
+ * Positions are incrementally updated using {@link #move(Object, double, double)}, which only changes the cell of an
+ * agent when it crosses a cell border. Queries do not allocate any object: the neighbors are given to a
+ * {@link Visitor}, added to a collection given by the caller, or put in a reusable {@link Neighbors} buffer.
+ * <p>
+ * The index is thread safe: queries may run in parallel, e.g. during {@link madkit.kernel.Activator#multicoreExecute(Object...)}
+ * or a work stealing execution, and updates wait for the running queries to be done. So the best throughput is obtained
+ * when the queries and the moves are done in separate activators. A {@link Visitor} must not modify the index.
+ *
+ * <pre>
+ * final SpatialIndex&lt;Bird&gt; space = new SpatialIndex&lt;&gt;(1000, 1000, 10);
+ * space.add(bird, 50, 50);
+ * ...
+ * space.forEachWithin(bird, 10, (other, distanceSquared) -&gt; bird.align(other));
+ * space.move(bird, bird.getX(), bird.getY());
+ * </pre>
+ *
+ * @author Fabien Michel
+ * @since MaDKit 5.2
+ * @version 0.9
+ * @param <A>
+ *            the type of the indexed agents
+ */
+public class SpatialIndex<A> {
+
+    private static final int NONE = -1;
+
+    private final double width;
+    private final double height;
+    private final double cellSize;
+    private final double inverseCellSize;
+    private final int columns;
+    private final int rows;
+
+    // the first entry of each cell
+    private final int[] cells;
+    // the entries: an agent, its position and its links in its cell
+    private Object[] agents;
+    private double[] xs;
+    private double[] ys;
+    private int[] cellOf;
+    private int[] next;
+    private int[] previous;
+    private int freeEntries = NONE;
+    private int used;
+
+    private final Map<A, Integer> entries = new IdentityHashMap<>();
+    private final StampedLock lock = new StampedLock();
+
+    /**
+     * Receives the agents found by a query.
+     *
+     * @param <A>
+     *            the type of the indexed agents
+     */
+    @FunctionalInterface
+    public interface Visitor<A> {
+
+	/**
+	 * @param agent
+	 *            an agent matching the query
+	 * @param distanceSquared
+	 *            the squared distance between the agent and the query position
+	 */
+	void visit(A agent, double distanceSquared);
+    }
+
+    /**
+     * A reusable buffer holding the result of a k-nearest neighbors query, sorted by increasing distance. Its capacity
+     * is the number of neighbors which are searched. A buffer should not be used by several threads at the same time:
+     * each thread should have its own.
+     *
+     * @param <A>
+     *            the type of the indexed agents
+     */
+    public static final class Neighbors<A> {
+
+	private final Object[] agents;
+	private final double[] distancesSquared;
+	private int size;
+
+	/**
+	 * @param k
+	 *            the number of neighbors to search, which must be positive
+	 */
+	public Neighbors(final int k) {
+	    if (k < 1) {
+		throw new IllegalArgumentException("k must be positive: " + k);
+	    }
+	    agents = new Object[k];
+	    distancesSquared = new double[k];
+	}
+
+	/**
+	 * @return the number of neighbors which have been found
+	 */
+	public int size() {
+	    return size;
+	}
+
+	/**
+	 * @return the number of neighbors which are searched
+	 */
+	public int capacity() {
+	    return agents.length;
+	}
+
+	/**
+	 * @param i
+	 *            the rank of the neighbor, 0 being the nearest
+	 * @return the neighbor of rank <code>i</code>
+	 */
+	@SuppressWarnings("unchecked")
+	public A get(final int i) {
+	    checkRank(i);
+	    return (A) agents[i];
+	}
+
+	/**
+	 * @param i
+	 *            the rank of the neighbor, 0 being the nearest
+	 * @return the distance between the neighbor of rank <code>i</code> and the query position
+	 */
+	public double getDistance(final int i) {
+	    checkRank(i);
+	    return Math.sqrt(distancesSquared[i]);
+	}
+
+	private void checkRank(final int i) {
+	    if (i < 0 || i >= size) {
+		throw new IndexOutOfBoundsException("rank " + i + ", size " + size);
+	    }
+	}
+
+	private void clear() {
+	    for (int i = 0; i < size; i++) {
+		agents[i] = null;
+	    }
+	    size = 0;
+	}
+
+	private boolean isFull() {
+	    return size == agents.length;
+	}
+
+	private double worstDistanceSquared() {
+	    return distancesSquared[size - 1];
+	}
+
+	private void offer(final Object agent, final double d2) {
+	    int i = size;
+	    if (isFull()) {
+		if (d2 >= distancesSquared[size - 1]) {
+		    return;
+		}
+		i--;
+	    }
+	    else {
+		size++;
+	    }
+	    for (; i > 0 && distancesSquared[i - 1] > d2; i--) {
+		agents[i] = agents[i - 1];
+		distancesSquared[i] = distancesSquared[i - 1];
+	    }
+	    agents[i] = agent;
+	    distancesSquared[i] = d2;
+	}
+    }
+
+    /**
+     * Builds an index for the space going from (0,0) to (width,height).
+     *
+     * @param width
+     *            the width of the space
+     * @param height
+     *            the height of the space
+     * @param cellSize
+     *            the size of the cells, which should be close to the usual query radius
+     * @throws IllegalArgumentException
+     *             if a dimension is not positive or if there would be too many cells
+     */
+    public SpatialIndex(final double width, final double height, final double cellSize) {
+	if (!(width > 0 && height > 0 && cellSize > 0)) {
+	    throw new IllegalArgumentException("dimensions must be positive: " + width + " x " + height + ", cell size " + cellSize);
+	}
+	final double nbOfCells = Math.ceil(width / cellSize) * Math.ceil(height / cellSize);
+	if (nbOfCells > Integer.MAX_VALUE - 8) {
+	    throw new IllegalArgumentException("too many cells: " + nbOfCells);
+	}
+	this.width = width;
+	this.height = height;
+	this.cellSize = cellSize;
+	inverseCellSize = 1 / cellSize;
+	columns = (int) Math.ceil(width / cellSize);
+	rows = (int) Math.ceil(height / cellSize);
+	cells = new int[columns * rows];
+	Arrays.fill(cells, NONE);
+	allocate(16);
+    }
+
+    /**
+     * @return the width of the space
+     */
+    public double getWidth() {
+	return width;
+    }
+
+    /**
+     * @return the height of the space
+     */
+    public double getHeight() {
+	return height;
+    }
+
+    /**
+     * @return the size of the cells
+     */
+    public double getCellSize() {
+	return cellSize;
+    }
+
+    /**
+     * @return the number of indexed agents
+     */
+    public int size() {
+	final long stamp = lock.readLock();
+	try {
+	    return entries.size();
+	}
+	finally {
+	    lock.unlockRead(stamp);
+	}
+    }
+
+    /**
+     * @param agent
+     *            an agent
+     * @return <code>true</code> if the agent is indexed
+     */
+    public boolean contains(final A agent) {
+	final long stamp = lock.readLock();
+	try {
+	    return entries.containsKey(agent);
+	}
+	finally {
+	    lock.unlockRead(stamp);
+	}
+    }
+
+    /**
+     * Adds an agent, or moves it if it is already indexed.
+     *
+     * @param agent
+     *            the agent to index
+     * @param x
+     *            its abscissa
+     * @param y
+     *            its ordinate
+     */
+    public void add(final A agent, final double x, final double y) {
+	final long stamp = lock.writeLock();
+	try {
+	    final Integer e = entries.get(agent);
+	    if (e != null) {
+		relocate(e, x, y);
+		return;
+	    }
+	    final int entry;
+	    if (freeEntries != NONE) {
+		entry = freeEntries;
+		freeEntries = next[entry];
+	    }
+	    else {
+		if (used == agents.length) {
+		    allocate(used * 2);
+		}
+		entry = used++;
+	    }
+	    agents[entry] = agent;
+	    xs[entry] = x;
+	    ys[entry] = y;
+	    link(entry, cellIndex(x, y));
+	    entries.put(agent, entry);
+	}
+	finally {
+	    lock.unlockWrite(stamp);
+	}
+    }
+
+    /**
+     * Removes an agent from the index.
+     *
+     * @param agent
+     *            the agent to remove
+     * @return <code>true</code> if the agent was indexed
+     */
+    public boolean remove(final A agent) {
+	final long stamp = lock.writeLock();
+	try {
+	    final Integer e = entries.remove(agent);
+	    if (e == null) {
+		return false;
+	    }
+	    final int entry = e;
+	    unlink(entry);
+	    agents[entry] = null;
+	    next[entry] = freeEntries;
+	    freeEntries = entry;
+	    return true;
+	}
+	finally {
+	    lock.unlockWrite(stamp);
+	}
+    }
+
+    /**
+     * Removes all the agents.
+     */
+    public void clear() {
+	final long stamp = lock.writeLock();
+	try {
+	    Arrays.fill(cells, NONE);
+	    Arrays.fill(agents, 0, used, null);
+	    entries.clear();
+	    used = 0;
+	    freeEntries = NONE;
+	}
+	finally {
+	    lock.unlockWrite(stamp);
+	}
+    }
+
+    /**
+     * Updates the position of an agent. The agent only changes of cell if it has crossed a cell border.
+     *
+     * @param agent
+     *            an indexed agent
+     * @param x
+     *            its new abscissa
+     * @param y
+     *            its new ordinate
+     * @throws IllegalArgumentException
+     *             if the agent is not indexed
+     */
+    public void move(final A agent, final double x, final double y) {
+	final long stamp = lock.writeLock();
+	try {
+	    relocate(entryOf(agent), x, y);
+	}
+	finally {
+	    lock.unlockWrite(stamp);
+	}
+    }
+
+    /**
+     * @param agent
+     *            an indexed agent
+     * @return the abscissa of the agent
+     * @throws IllegalArgumentException
+     *             if the agent is not indexed
+     */
+    public double getX(final A agent) {
+	final long stamp = lock.readLock();
+	try {
+	    return xs[entryOf(agent)];
+	}
+	finally {
+	    lock.unlockRead(stamp);
+	}
+    }
+
+    /**
+     * @param agent
+     *            an indexed agent
+     * @return the ordinate of the agent
+     * @throws IllegalArgumentException
+     *             if the agent is not indexed
+     */
+    public double getY(final A agent) {
+	final long stamp = lock.readLock();
+	try {
+	    return ys[entryOf(agent)];
+	}
+	finally {
+	    lock.unlockRead(stamp);
+	}
+    }
+
+    /**
+     * Visits all the agents which are within a distance of a position.
+     *
+     * @param x
+     *            the abscissa of the position
+     * @param y
+     *            the ordinate of the position
+     * @param radius
+     *            the maximum distance, inclusive
+     * @param visitor
+     *            receives the agents which are found, in no particular order
+     * @return the number of agents which have been visited
+     */
+    public int forEachWithin(final double x, final double y, final double radius, final Visitor<? super A> visitor) {
+	final long stamp = lock.readLock();
+	try {
+	    return within(x, y, radius, NONE, visitor, null);
+	}
+	finally {
+	    lock.unlockRead(stamp);
+	}
+    }
+
+    /**
+     * Visits all the agents which are within a distance of an indexed agent, this one excepted.
+     *
+     * @param agent
+     *            an indexed agent
+     * @param radius
+     *            the maximum distance, inclusive
+     * @param visitor
+     *            receives the agents which are found, in no particular order
+     * @return the number of agents which have been visited
+     * @throws IllegalArgumentException
+     *             if the agent is not indexed
+     */
+    public int forEachWithin(final A agent, final double radius, final Visitor<? super A> visitor) {
+	final long stamp = lock.readLock();
+	try {
+	    final int entry = entryOf(agent);
+	    return within(xs[entry], ys[entry], radius, entry, visitor, null);
+	}
+	finally {
+	    lock.unlockRead(stamp);
+	}
+    }
+
+    /**
+     * Adds to a collection all the agents which are within a distance of a position. Reusing the same collection, e.g.
+     * an {@link java.util.ArrayList} which is cleared between two queries, avoids any allocation.
+     *
+     * @param x
+     *            the abscissa of the position
+     * @param y
+     *            the ordinate of the position
+     * @param radius
+     *            the maximum distance, inclusive
+     * @param result
+     *            the collection to which the agents are added, in no particular order
+     * @return the number of agents which have been added
+     */
+    public int getWithin(final double x, final double y, final double radius, final Collection<? super A> result) {
+	final long stamp = lock.readLock();
+	try {
+	    return within(x, y, radius, NONE, null, result);
+	}
+	finally {
+	    lock.unlockRead(stamp);
+	}
+    }
+
+    /**
+     * Adds to a collection all the agents which are within a distance of an indexed agent, this one excepted.
+     *
+     * @param agent
+     *            an indexed agent
+     * @param radius
+     *            the maximum distance, inclusive
+     * @param result
+     *            the collection to which the agents are added, in no particular order
+     * @return the number of agents which have been added
+     * @throws IllegalArgumentException
+     *             if the agent is not indexed
+     */
+    public int getWithin(final A agent, final double radius, final Collection<? super A> result) {
+	final long stamp = lock.readLock();
+	try {
+	    final int entry = entryOf(agent);
+	    return within(xs[entry], ys[entry], radius, entry, null, result);
+	}
+	finally {
+	    lock.unlockRead(stamp);
+	}
+    }
+
+    /**
+     * Finds the agents which are the nearest to a position. The number of searched agents is the capacity of the
+     * buffer. The cells are visited in rings of increasing size around the position, until no closer agent could be
+     * found.
+     *
+     * @param x
+     *            the abscissa of the position
+     * @param y
+     *            the ordinate of the position
+     * @param result
+     *            the buffer receiving the nearest agents, which is cleared first
+     * @return the number of agents which have been found, which is lower than the capacity of the buffer only if there
+     *         are not enough agents
+     */
+    public int getNearest(final double x, final double y, final Neighbors<A> result) {
+	final long stamp = lock.readLock();
+	try {
+	    return nearest(x, y, NONE, result);
+	}
+	finally {
+	    lock.unlockRead(stamp);
+	}
+    }
+
+    /**
+     * Finds the agents which are the nearest to an indexed agent, this one excepted.
+     *
+     * @param agent
+     *            an indexed agent
+     * @param result
+     *            the buffer receiving the nearest agents, which is cleared first
+     * @return the number of agents which have been found
+     * @throws IllegalArgumentException
+     *             if the agent is not indexed
+     * @see #getNearest(double, double, Neighbors)
+     */
+    public int getNearest(final A agent, final Neighbors<A> result) {
+	final long stamp = lock.readLock();
+	try {
+	    final int entry = entryOf(agent);
+	    return nearest(xs[entry], ys[entry], entry, result);
+	}
+	finally {
+	    lock.unlockRead(stamp);
+	}
+    }
+
+    @SuppressWarnings("unchecked")
+    private int within(final double x, final double y, final double radius, final int excluded, final Visitor<? super A> visitor, final Collection<? super A> result) {
+	final double r2 = radius * radius;
+	final int minColumn = column(x - radius);
+	final int maxColumn = column(x + radius);
+	final int maxRow = row(y + radius);
+	int found = 0;
+	for (int j = row(y - radius); j <= maxRow; j++) {
+	    for (int i = minColumn; i <= maxColumn; i++) {
+		for (int e = cells[j * columns + i]; e != NONE; e = next[e]) {
+		    final double dx = xs[e] - x;
+		    final double dy = ys[e] - y;
+		    final double d2 = dx * dx + dy * dy;
+		    if (d2 <= r2 && e != excluded) {
+			found++;
+			if (visitor != null) {
+			    visitor.visit((A) agents[e], d2);
+			}
+			else {
+			    result.add((A) agents[e]);
+			}
+		    }
+		}
+	    }
+	}
+	return found;
+    }
+
+    private int nearest(final double x, final double y, final int excluded, final Neighbors<A> result) {
+	result.clear();
+	final int qx = column(x);
+	final int qy = row(y);
+	final int maxRing = Math.max(Math.max(qx, columns - 1 - qx), Math.max(qy, rows - 1 - qy));
+	for (int ring = 0; ring <= maxRing; ring++) {
+	    if (ring > 0 && result.isFull()) {
+		// the distance from the position to the cells which are not visited yet
+		double bound = Double.POSITIVE_INFINITY;
+		if (qx - ring + 1 > 0) {
+		    bound = Math.min(bound, x - (qx - ring + 1) * cellSize);
+		}
+		if (qx + ring - 1 < columns - 1) {
+		    bound = Math.min(bound, (qx + ring) * cellSize - x);
+		}
+		if (qy - ring + 1 > 0) {
+		    bound = Math.min(bound, y - (qy - ring + 1) * cellSize);
+		}
+		if (qy + ring - 1 < rows - 1) {
+		    bound = Math.min(bound, (qy + ring) * cellSize - y);
+		}
+		if (bound >= 0 && result.worstDistanceSquared() <= bound * bound) {
+		    break;
+		}
+	    }
+	    for (int j = Math.max(0, qy - ring); j <= Math.min(rows - 1, qy + ring); j++) {
+		final boolean edgeRow = j == qy - ring || j == qy + ring;
+		for (int i = Math.max(0, qx - ring); i <= Math.min(columns - 1, qx + ring); i++) {
+		    if (!edgeRow && i != qx - ring && i != qx + ring) {
+			// only the border of the ring, the inside is already visited
+			i = qx + ring - 1;
+			continue;
+		    }
+		    for (int e = cells[j * columns + i]; e != NONE; e = next[e]) {
+			if (e != excluded) {
+			    final double dx = xs[e] - x;
+			    final double dy = ys[e] - y;
+			    result.offer(agents[e], dx * dx + dy * dy);
+			}
+		    }
+		}
+	    }
+	}
+	return result.size();
+    }
+
+    private int entryOf(final A agent) {
+	final Integer e = entries.get(agent);
+	if (e == null) {
+	    throw new IllegalArgumentException(agent + " is not indexed");
+	}
+	return e;
+    }
+
+    private void relocate(final int entry, final double x, final double y) {
+	xs[entry] = x;
+	ys[entry] = y;
+	final int cell = cellIndex(x, y);
+	if (cell != cellOf[entry]) {
+	    unlink(entry);
+	    link(entry, cell);
+	}
+    }
+
+    private int column(final double x) {
+	final double c = Math.floor(x * inverseCellSize);
+	return c < 0 ? 0 : c >= columns ? columns - 1 : (int) c;
+    }
+
+    private int row(final double y) {
+	final double r = Math.floor(y * inverseCellSize);
+	return r < 0 ? 0 : r >= rows ? rows - 1 : (int) r;
+    }
+
+    private int cellIndex(final double x, final double y) {
+	return row(y) * columns + column(x);
+    }
+
+    private void link(final int entry, final int cell) {
+	final int head = cells[cell];
+	cellOf[entry] = cell;
+	previous[entry] = NONE;
+	next[entry] = head;
+	if (head != NONE) {
+	    previous[head] = entry;
+	}
+	cells[cell] = entry;
+    }
+
+    private void unlink(final int entry) {
+	final int p = previous[entry];
+	final int n = next[entry];
+	if (p == NONE) {
+	    cells[cellOf[entry]] = n;
+	}
+	else {
+	    next[p] = n;
+	}
+	if (n != NONE) {
+	    previous[n] = p;
+	}
+    }
+
+    private void allocate(final int capacity) {
+	agents = agents == null ? new Object[capacity] : Arrays.copyOf(agents, capacity);
+	xs = xs == null ? new double[capacity] : Arrays.copyOf(xs, capacity);
+	ys = ys == null ? new double[capacity] : Arrays.copyOf(ys, capacity);
+	cellOf = cellOf == null ? new int[capacity] : Arrays.copyOf(cellOf, capacity);
+	next = next == null ? new int[capacity] : Arrays.copyOf(next, capacity);
+	previous = previous == null ? new int[capacity] : Arrays.copyOf(previous, capacity);
+    }
+
+    @Override
+    public String toString() {
+	return getClass().getSimpleName() + " " + width + " x " + height + " (" + columns + " x " + rows + " cells), " + size() + " agents";
+    }
+
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.simulation.probe;
+
+import madkit.kernel.AbstractAgent;
+
+/**
+ * This probe inspects an <code>int</code> field on agents of type A and its subclasses without boxing it, contrary to
+ * a {@link PropertyProbe}. <code>short</code>, <code>char</code> and <code>byte</code> fields can also be read.
+ * 
+ * @param <A>
+ *            the most common class type expected in this group (e.g. AbstractAgent)
+ * @author Fabien Michel
+ * @since MaDKit 5.2
+ * @version 0.9
+ * @see DoublePropertyProbe
+ * @see LongPropertyProbe
+ */
+public class IntPropertyProbe<A extends AbstractAgent> extends PrimitivePropertyProbe<A> {
+
+    /**
+     * Builds a new IntPropertyProbe considering a CGR location and the name of the class's field.
+     * 
+     * @param community
+     * @param group
+     * @param role
+     * @param fieldName
+     *            the name of an int field which is encapsulated in type <A>
+     */
+    public IntPropertyProbe(String community, String group, String role, String fieldName) {
+	super(community, group, role, fieldName, int.class);
+    }
+
+    /**
+     * Returns the current value of the agent's field
+     * 
+     * @param agent
+     *            the agent to probe
+     * @return the actual value of the agent's field
+     */
+    public int getInt(final A agent) {
+	try {
+	    return (int) accessorsOf(agent).getter.invokeExact((AbstractAgent) agent);
+	}
+	catch(Throwable e) {
+	    throw accessFailure(agent, e);
+	}
+    }
+
+    /**
+     * Sets the value of the agent's field, which has to be an <code>int</code>, a <code>long</code>, a
+     * <code>float</code> or a <code>double</code>.
+     * 
+     * @param agent
+     *            the agent to probe
+     * @param value
+     *            the new value
+     */
+    public void setInt(final A agent, final int value) {
+	try {
+	    setterOf(agent).invokeExact((AbstractAgent) agent, value);
+	}
+	catch(Throwable e) {
+	    throw accessFailure(agent, e);
+	}
+    }
+
+    /**
+     * Returns the maximum for the property over all the agents.
+     * 
+     * @return the maximum value for this property, or {@link Integer#MIN_VALUE} if there is no agent
+     */
+    public int getMaxValue() {
+	int max = Integer.MIN_VALUE;
+	for (final A a : getCurrentAgentsList()) {
+	    max = Math.max(max, getInt(a));
+	}
+	return max;
+    }
+
+    /**
+     * Returns the minimum for the property over all the agents.
+     * 
+     * @return the minimum value for this property, or {@link Integer#MAX_VALUE} if there is no agent
+     */
+    public int getMinValue() {
+	int min = Integer.MAX_VALUE;
+	for (final A a : getCurrentAgentsList()) {
+	    min = Math.min(min, getInt(a));
+	}
+	return min;
+    }
+
+    /**
+     * Returns the sum of the property over all the agents.
+     * 
+     * @return the sum of the values of this property
+     */
+    public long getSum() {
+	long total = 0;
+	for (final A a : getCurrentAgentsList()) {
+	    total += getInt(a);
+	}
+	return total;
+    }
+
+    /**
+     * Returns the average value for the property over all the agents.
+     * 
+     * @return the average value for this property
+     */
+    public double getAverageValue() {
+	return (double) getSum() / size();
+    }
+
+    @Override
+    final double doubleValueOf(final A agent) {
+	return getInt(agent);
+    }
+
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.simulation.probe;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import madkit.kernel.AbstractAgent;
+import madkit.kernel.Probe;
+import madkit.simulation.SimulationException;
+
+/**
+ * The common part of the probes inspecting a primitive field without boxing its value. The field is accessed through
+ * method handles which are built once per agent class, so that the value can be converted to the primitive type of the
+ * probe by the handle itself, e.g. an <code>int</code> field can be read as a <code>double</code>.
+ * 
+ * @param <A>
+ *            the most common class type expected in this group (e.g. AbstractAgent)
+ * @author Fabien Michel
+ * @since MaDKit 5.2
+ * @version 0.9
+ */
+abstract class PrimitivePropertyProbe<A extends AbstractAgent> extends Probe<A> {
+
+    private final Map<Class<?>, Accessors> accessors = new ConcurrentHashMap<>();
+    private final String fieldName;
+    private final Class<?> type;
+    private Accessors cached = Accessors.NONE;
+
+    /**
+     * @param type
+     *            the primitive type of the probe, e.g. <code>double.class</code>
+     */
+    PrimitivePropertyProbe(String community, String group, String role, String fieldName, Class<?> type) {
+	super(community, group, role);
+	this.fieldName = fieldName;
+	this.type = type;
+    }
+
+    /**
+     * @return the name of the probed field
+     */
+    public String getFieldName() {
+	return fieldName;
+    }
+
+    /**
+     * Reads the field of this agent as a double, without boxing it.
+     */
+    abstract double doubleValueOf(A agent);
+
+    /**
+     * Computes the count, the minimum, the maximum, the mean and the variance of the property over all the agents in a
+     * single pass, which is parallel for large populations.
+     * 
+     * @return the statistics of this property
+     */
+    public PropertySummary summarize() {
+	return summarize(0, 0, 0);
+    }
+
+    /**
+     * Same as {@link #summarize()}, also building a histogram having <code>nbOfBins</code> bins of the same width
+     * between <code>lowerBound</code> and <code>upperBound</code>, from which quantiles can be estimated.
+     * 
+     * @param lowerBound
+     *            the lower bound of the first bin
+     * @param upperBound
+     *            the upper bound of the last bin
+     * @param nbOfBins
+     *            the number of bins, 0 for no histogram
+     * @return the statistics of this property
+     * @see PropertySummary#getQuantile(double)
+     */
+    public PropertySummary summarize(final double lowerBound, final double upperBound, final int nbOfBins) {
+	return PropertySummary.of(getCurrentAgentsList(), this::doubleValueOf, lowerBound, upperBound, nbOfBins);
+    }
+
+    /**
+     * Returns the accessors for the class of this agent, updating the cache if required.
+     */
+    final Accessors accessorsOf(final A agent) {
+	final Accessors a = cached;
+	if (a.agentClass == agent.getClass()) {
+	    return a;
+	}
+	return cached = accessors.computeIfAbsent(agent.getClass(), c -> {
+	    try {
+		@SuppressWarnings("unchecked")
+		final Field f = findFieldOn((Class<? extends AbstractAgent>) c, fieldName);
+		return new Accessors(c, f, type);
+	    }
+	    catch(NoSuchFieldException | IllegalAccessException | ClassCastException e) {
+		throw new SimulationException(toString() + " on " + agent, e);
+	    }
+	});
+    }
+
+    /**
+     * @return the setter of the accessors, which must exist
+     */
+    final MethodHandle setterOf(final A agent) {
+	final MethodHandle setter = accessorsOf(agent).setter;
+	if (setter == null) {
+	    throw new SimulationException(toString() + " on " + agent, new IllegalArgumentException(fieldName + " cannot be set from a " + type));
+	}
+	return setter;
+    }
+
+    final SimulationException accessFailure(final A agent, final Throwable e) {
+	return e instanceof SimulationException ? (SimulationException) e : new SimulationException(toString() + " on " + agent, e);
+    }
+
+    /**
+     * The method handles accessing the field of an agent class.
+     */
+    static final class Accessors {
+
+	static final Accessors NONE = new Accessors();
+
+	final Class<?> agentClass;
+	/**
+	 * (AbstractAgent)type
+	 */
+	final MethodHandle getter;
+	/**
+	 * (AbstractAgent,type)void or <code>null</code> if the field cannot be assigned from the type, e.g. a double probe
+	 * on an int field
+	 */
+	final MethodHandle setter;
+
+	private Accessors() {
+	    agentClass = null;
+	    getter = setter = null;
+	}
+
+	Accessors(final Class<?> agentClass, final Field f, final Class<?> type) throws IllegalAccessException {
+	    this.agentClass = agentClass;
+	    final MethodHandles.Lookup lookup = MethodHandles.lookup();
+	    try {
+		getter = lookup.unreflectGetter(f).asType(MethodType.methodType(type, AbstractAgent.class));
+	    }
+	    catch(RuntimeException e) {// WrongMethodTypeException
+		throw new ClassCastException(f + " cannot be read as a " + type);
+	    }
+	    MethodHandle s;
+	    try {
+		s = lookup.unreflectSetter(f).asType(MethodType.methodType(void.class, AbstractAgent.class, type));
+	    }
+	    catch(RuntimeException | IllegalAccessException e) {// final or narrowing
+		s = null;
+	    }
+	    setter = s;
+	}
+    }
+
+}
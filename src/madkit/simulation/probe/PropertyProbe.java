@@ -37,8 +37,8 @@ knowledge of the CeCILL-C license and that you accept its terms.
 package madkit.simulation.probe;
 
 import java.lang.reflect.Field;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import madkit.kernel.AbstractAgent;
 import madkit.kernel.Probe;
@@ -57,7 +57,7 @@ import madkit.simulation.SimulationException;
  */
 public class PropertyProbe<A extends AbstractAgent, T> extends Probe<A> {
 
-    private final Map<Class<? extends A>, Field> fields = new HashMap<>();
+    private final Map<Class<? extends A>, Field> fields = new ConcurrentHashMap<>();
     private final String fieldName;
 
     private Field cachedField;
@@ -89,17 +89,41 @@ public class PropertyProbe<A extends AbstractAgent, T> extends Probe<A> {
 	    cachedClass = agentClass;
 	    cachedField = fields.get(cachedClass);
 	    if (cachedField == null) {
-		try {
-		    cachedField = findFieldOn(cachedClass, fieldName);
-		    fields.put(cachedClass, cachedField);
-		}
-		catch(NoSuchFieldException e) {
-		    throw new SimulationException(toString() + " on " + agent, e);
-		}
+		cachedField = findField(agent);
 	    }
 	}
     }
 
+    private Field findField(final A agent) {
+	@SuppressWarnings("unchecked")
+	final Class<? extends A> agentClass = (Class<? extends A>) agent.getClass();
+	try {
+	    final Field f = findFieldOn(agentClass, fieldName);
+	    fields.put(agentClass, f);
+	    return f;
+	}
+	catch(NoSuchFieldException e) {
+	    throw new SimulationException(toString() + " on " + agent, e);
+	}
+    }
+
+    /**
+     * Reads the field as a double without boxing it nor using the single class cache, so that this can be concurrently
+     * called.
+     */
+    private double getDoubleValue(final A agent) {
+	Field f = fields.get(agent.getClass());
+	if (f == null) {
+	    f = findField(agent);
+	}
+	try {
+	    return f.getDouble(agent);
+	}
+	catch(IllegalArgumentException | IllegalAccessException e) {
+	    throw new SimulationException(toString() + " on " + agent, e);
+	}
+    }
+
     /**
      * Returns the current value of the agent's field
      * 
@@ -145,10 +169,10 @@ public class PropertyProbe<A extends AbstractAgent, T> extends Probe<A> {
 	T max = null;
 	for (final A a : getCurrentAgentsList()) {
 	    try {
+		final T val = getPropertyValue(a);
 		if (max == null) {
-		    max = getPropertyValue(a);
+		    max = val;
 		}
-		final T val = getPropertyValue(a);
 		if (((Comparable<T>) val).compareTo(max) > 0) {
 		    max = val;
 		}
@@ -171,10 +195,10 @@ public class PropertyProbe<A extends AbstractAgent, T> extends Probe<A> {
 	T min = null;
 	for (final A a : getCurrentAgentsList()) {
 	    try {
+		final T val = getPropertyValue(a);
 		if (min == null) {
-		    min = getPropertyValue(a);
+		    min = val;
 		}
-		final T val = getPropertyValue(a);
 		if (((Comparable<T>) val).compareTo(min) < 0) {
 		    min = val;
 		}
@@ -204,4 +228,34 @@ public class PropertyProbe<A extends AbstractAgent, T> extends Probe<A> {
 	return total / size();
     }
 
-}
\ No newline at end of file
+    /**
+     * Computes the count, the minimum, the maximum, the mean and the variance of the property over all the agents in a
+     * single pass, which is parallel for large populations. The property must be a primitive numerical field for this to
+     * work. Its values are read without being boxed.
+     * 
+     * @return the statistics of this property
+     * @since MaDKit 5.2
+     */
+    public PropertySummary summarize() {
+	return summarize(0, 0, 0);
+    }
+
+    /**
+     * Same as {@link #summarize()}, also building a histogram having <code>nbOfBins</code> bins of the same width
+     * between <code>lowerBound</code> and <code>upperBound</code>, from which quantiles can be estimated.
+     * 
+     * @param lowerBound
+     *            the lower bound of the first bin
+     * @param upperBound
+     *            the upper bound of the last bin
+     * @param nbOfBins
+     *            the number of bins, 0 for no histogram
+     * @return the statistics of this property
+     * @see PropertySummary#getQuantile(double)
+     * @since MaDKit 5.2
+     */
+    public PropertySummary summarize(final double lowerBound, final double upperBound, final int nbOfBins) {
+	return PropertySummary.of(getCurrentAgentsList(), this::getDoubleValue, lowerBound, upperBound, nbOfBins);
+    }
+
+}
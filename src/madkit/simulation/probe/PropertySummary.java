@@ -0,0 +1,274 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.simulation.probe;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+
+import madkit.kernel.AbstractAgent;
+
+/**
+ * Statistics about a numerical property over the agents of a probe, computed in a single pass: count, minimum,
+ * maximum, mean and variance, and optionally a histogram with fixed bins from which quantiles are estimated. Large
+ * agent lists are summarized in parallel, each thread accumulating primitive values which are merged at the end.
+ * <p>
+ * Instances are obtained using {@link PropertyProbe#summarize()}, {@link DoublePropertyProbe#summarize()} and their
+ * histogram variants.
+ * 
+ * @author Fabien Michel
+ * @since MaDKit 5.2
+ * @version 0.9
+ */
+public final class PropertySummary {
+
+    /**
+     * Lists smaller than this are summarized by the calling thread
+     */
+    static final int PARALLEL_THRESHOLD = 4096;
+
+    private long count;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private double mean;
+    /**
+     * the sum of the squared differences to the mean
+     */
+    private double m2;
+
+    private final double lowerBound;
+    private final double binWidth;
+    private final long[] bins;
+    private long underflow;
+    private long overflow;
+
+    PropertySummary(final double lowerBound, final double upperBound, final int nbOfBins) {
+	this.lowerBound = lowerBound;
+	if (nbOfBins > 0) {
+	    if (!(upperBound > lowerBound)) {
+		throw new IllegalArgumentException("the upper bound " + upperBound + " should be greater than " + lowerBound);
+	    }
+	    binWidth = (upperBound - lowerBound) / nbOfBins;
+	    bins = new long[nbOfBins];
+	}
+	else {
+	    binWidth = 0;
+	    bins = null;
+	}
+    }
+
+    /**
+     * Summarizes the values of a list of agents.
+     * 
+     * @param nbOfBins
+     *            0 for no histogram
+     */
+    static <A extends AbstractAgent> PropertySummary of(final List<A> agents, final ToDoubleFunction<? super A> property, final double lowerBound, final double upperBound,
+	    final int nbOfBins) {
+	if (agents.size() < PARALLEL_THRESHOLD) {
+	    final PropertySummary s = new PropertySummary(lowerBound, upperBound, nbOfBins);
+	    for (final A a : agents) {
+		s.accept(property.applyAsDouble(a));
+	    }
+	    return s;
+	}
+	return agents.parallelStream().collect(() -> new PropertySummary(lowerBound, upperBound, nbOfBins), (s, a) -> s.accept(property.applyAsDouble(a)), PropertySummary::combine);
+    }
+
+    /**
+     * Adds a value, updating the mean and the variance using Welford's method.
+     */
+    void accept(final double value) {
+	count++;
+	if (value < min) {
+	    min = value;
+	}
+	if (value > max) {
+	    max = value;
+	}
+	final double delta = value - mean;
+	mean += delta / count;
+	m2 += delta * (value - mean);
+	if (bins != null) {
+	    if (value < lowerBound) {
+		underflow++;
+	    }
+	    else {
+		final int bin = (int) ((value - lowerBound) / binWidth);
+		if (bin < bins.length) {
+		    bins[bin]++;
+		}
+		else if (value == lowerBound + bins.length * binWidth) {// the upper bound is in the last bin
+		    bins[bins.length - 1]++;
+		}
+		else {
+		    overflow++;
+		}
+	    }
+	}
+    }
+
+    /**
+     * Merges the values accumulated by another summary into this one.
+     */
+    void combine(final PropertySummary other) {
+	if (other.count == 0) {
+	    return;
+	}
+	if (count == 0) {
+	    mean = other.mean;
+	    m2 = other.m2;
+	}
+	else {
+	    final long total = count + other.count;
+	    final double delta = other.mean - mean;
+	    mean += delta * other.count / total;
+	    m2 += other.m2 + delta * delta * count * other.count / total;
+	}
+	count += other.count;
+	min = Math.min(min, other.min);
+	max = Math.max(max, other.max);
+	if (bins != null) {
+	    for (int i = 0; i < bins.length; i++) {
+		bins[i] += other.bins[i];
+	    }
+	    underflow += other.underflow;
+	    overflow += other.overflow;
+	}
+    }
+
+    /**
+     * @return the number of summarized values
+     */
+    public long getCount() {
+	return count;
+    }
+
+    /**
+     * @return the minimum, or {@link Double#POSITIVE_INFINITY} if there is no value
+     */
+    public double getMin() {
+	return min;
+    }
+
+    /**
+     * @return the maximum, or {@link Double#NEGATIVE_INFINITY} if there is no value
+     */
+    public double getMax() {
+	return max;
+    }
+
+    /**
+     * @return the mean, or {@link Double#NaN} if there is no value
+     */
+    public double getMean() {
+	return count == 0 ? Double.NaN : mean;
+    }
+
+    /**
+     * @return the population variance, or {@link Double#NaN} if there is no value
+     */
+    public double getVariance() {
+	return count == 0 ? Double.NaN : m2 / count;
+    }
+
+    /**
+     * @return the population standard deviation, or {@link Double#NaN} if there is no value
+     */
+    public double getStandardDeviation() {
+	return Math.sqrt(getVariance());
+    }
+
+    /**
+     * @return a copy of the bins of the histogram, or <code>null</code> if no histogram has been requested
+     */
+    public long[] getHistogram() {
+	return bins == null ? null : Arrays.copyOf(bins, bins.length);
+    }
+
+    /**
+     * @return the number of values lower than the lower bound of the histogram
+     */
+    public long getUnderflow() {
+	return underflow;
+    }
+
+    /**
+     * @return the number of values greater than the upper bound of the histogram
+     */
+    public long getOverflow() {
+	return overflow;
+    }
+
+    /**
+     * Estimates a quantile using the histogram, by interpolating within the bin containing it. The precision is the width
+     * of a bin. Quantiles falling out of the histogram are reported as the minimum or the maximum.
+     * 
+     * @param quantile
+     *            between 0 and 1, e.g. 0.5 for the median
+     * @return the estimated value, or {@link Double#NaN} if there is no value
+     * @throws IllegalStateException
+     *             if no histogram has been requested
+     */
+    public double getQuantile(final double quantile) {
+	if (bins == null) {
+	    throw new IllegalStateException("no histogram requested");
+	}
+	if (count == 0) {
+	    return Double.NaN;
+	}
+	final double rank = quantile * count;
+	if (rank <= underflow) {
+	    return min;
+	}
+	double seen = underflow;
+	for (int i = 0; i < bins.length; i++) {
+	    if (bins[i] > 0 && seen + bins[i] >= rank) {
+		final double value = lowerBound + binWidth * (i + (rank - seen) / bins[i]);
+		return Math.max(min, Math.min(max, value));
+	    }
+	    seen += bins[i];
+	}
+	return max;
+    }
+
+    @Override
+    public String toString() {
+	return "count=" + count + " min=" + min + " max=" + max + " mean=" + getMean() + " sd=" + getStandardDeviation();
+    }
+
+}
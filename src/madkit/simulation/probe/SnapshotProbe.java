@@ -0,0 +1,233 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.simulation.probe;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import madkit.kernel.AbstractAgent;
+import madkit.kernel.Probe;
+
+/**
+ * This probe copies selected numerical fields of all the agents of a role into primitive column arrays, so that
+ * analysis, rendering or export code works on dense arrays and on a consistent view of the population rather than on
+ * the agents themselves. Each {@link #capture()} fills row <code>i</code> of every column with the values of the
+ * <code>i</code>th agent, and the id column with its {@link AbstractAgent#hashCode()}, which identifies it within the
+ * kernel. Large populations are captured in parallel.
+ * <p>
+ * The arrays are reused from one capture to another and only grow when the population does. So their length may be
+ * greater than {@link #getSnapshotSize()} and their content is overwritten by the next capture. A scheduler can capture
+ * a snapshot each step by calling {@link #capture()} in its {@link madkit.kernel.Scheduler#doSimulationStep()}.
+ * 
+ * <pre>
+ * SnapshotProbe&lt;AbstractAgent&gt; snapshot = new SnapshotProbe&lt;&gt;(community, group, role);
+ * int energy = snapshot.addDoubleColumn(&quot;energy&quot;);
+ * addProbe(snapshot);
+ * ...
+ * snapshot.capture();
+ * double[] energies = snapshot.getDoubleColumn(energy);
+ * for (int i = 0; i &lt; snapshot.getSnapshotSize(); i++) {
+ *     ...
+ * </pre>
+ * 
+ * @param <A>
+ *            the most common class type expected in this group (e.g. AbstractAgent)
+ * @author Fabien Michel
+ * @since MaDKit 5.2
+ * @version 0.9
+ */
+public class SnapshotProbe<A extends AbstractAgent> extends Probe<A> {
+
+    private final List<DoublePropertyProbe<A>> doubleProbes = new ArrayList<>();
+    private final List<IntPropertyProbe<A>> intProbes = new ArrayList<>();
+
+    private double[][] doubleColumns = new double[0][];
+    private int[][] intColumns = new int[0][];
+    private int[] ids = new int[0];
+    private int snapshotSize;
+
+    /**
+     * Builds a new SnapshotProbe considering a CGR location. Columns have to be added before the first capture.
+     * 
+     * @param community
+     * @param group
+     * @param role
+     */
+    public SnapshotProbe(String community, String group, String role) {
+	super(community, group, role);
+    }
+
+    /**
+     * Adds a <code>double</code> column, which can hold any primitive numerical field.
+     * 
+     * @param fieldName
+     *            the name of a field which is encapsulated in type <A>
+     * @return the index of the column, to be used with {@link #getDoubleColumn(int)}
+     */
+    public int addDoubleColumn(final String fieldName) {
+	doubleProbes.add(new DoublePropertyProbe<>(getCommunity(), getGroup(), getRole(), fieldName));
+	doubleColumns = Arrays.copyOf(doubleColumns, doubleProbes.size());
+	doubleColumns[doubleColumns.length - 1] = new double[ids.length];
+	return doubleColumns.length - 1;
+    }
+
+    /**
+     * Adds an <code>int</code> column, which can hold <code>int</code>, <code>short</code>, <code>char</code> or
+     * <code>byte</code> fields.
+     * 
+     * @param fieldName
+     *            the name of a field which is encapsulated in type <A>
+     * @return the index of the column, to be used with {@link #getIntColumn(int)}
+     */
+    public int addIntColumn(final String fieldName) {
+	intProbes.add(new IntPropertyProbe<>(getCommunity(), getGroup(), getRole(), fieldName));
+	intColumns = Arrays.copyOf(intColumns, intProbes.size());
+	intColumns[intColumns.length - 1] = new int[ids.length];
+	return intColumns.length - 1;
+    }
+
+    /**
+     * Copies the fields of all the agents into the columns.
+     * 
+     * @return the number of captured agents
+     */
+    public int capture() {
+	final List<A> agents = getCurrentAgentsList();
+	final int size = agents.size();
+	ensureCapacity(size);
+	if (size < PropertySummary.PARALLEL_THRESHOLD) {
+	    for (int i = 0; i < size; i++) {
+		captureRow(agents.get(i), i);
+	    }
+	}
+	else {
+	    IntStream.range(0, size).parallel().forEach(i -> captureRow(agents.get(i), i));
+	}
+	snapshotSize = size;
+	return size;
+    }
+
+    private void captureRow(final A agent, final int row) {
+	ids[row] = agent.hashCode();
+	for (int c = 0; c < doubleColumns.length; c++) {
+	    doubleColumns[c][row] = doubleProbes.get(c).getDouble(agent);
+	}
+	for (int c = 0; c < intColumns.length; c++) {
+	    intColumns[c][row] = intProbes.get(c).getInt(agent);
+	}
+    }
+
+    private void ensureCapacity(final int size) {
+	if (size > ids.length) {
+	    final int capacity = Math.max(size, ids.length + (ids.length >> 1));
+	    ids = new int[capacity];
+	    for (int c = 0; c < doubleColumns.length; c++) {
+		doubleColumns[c] = new double[capacity];
+	    }
+	    for (int c = 0; c < intColumns.length; c++) {
+		intColumns[c] = new int[capacity];
+	    }
+	}
+    }
+
+    /**
+     * @return the number of agents captured by the last {@link #capture()}, i.e. the number of valid rows
+     */
+    public int getSnapshotSize() {
+	return snapshotSize;
+    }
+
+    /**
+     * @return the ids of the captured agents, i.e. their {@link AbstractAgent#hashCode()}
+     */
+    public int[] getIds() {
+	return ids;
+    }
+
+    /**
+     * @param column
+     *            the index returned by {@link #addDoubleColumn(String)}
+     * @return the values of this column
+     */
+    public double[] getDoubleColumn(final int column) {
+	return doubleColumns[column];
+    }
+
+    /**
+     * @param column
+     *            the index returned by {@link #addIntColumn(String)}
+     * @return the values of this column
+     */
+    public int[] getIntColumn(final int column) {
+	return intColumns[column];
+    }
+
+    /**
+     * @return the number of <code>double</code> columns
+     */
+    public int getNbOfDoubleColumns() {
+	return doubleColumns.length;
+    }
+
+    /**
+     * @return the number of <code>int</code> columns
+     */
+    public int getNbOfIntColumns() {
+	return intColumns.length;
+    }
+
+    /**
+     * @param column
+     *            the index of a <code>double</code> column
+     * @return the name of the field held by this column
+     */
+    public String getDoubleColumnName(final int column) {
+	return doubleProbes.get(column).getFieldName();
+    }
+
+    /**
+     * @param column
+     *            the index of an <code>int</code> column
+     * @return the name of the field held by this column
+     */
+    public String getIntColumnName(final int column) {
+	return intProbes.get(column).getFieldName();
+    }
+
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.simulation.recorder;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads a file written by a {@link TimeSeriesRecorder} using the {@link TimeSeriesRecorder.Format#BINARY} format. The
+ * file is mapped in memory and its columns are loaded into arrays.
+ * <p>
+ * This class can also be used from the command line to convert a file to CSV:
+ *
+ * <pre>
+ * java madkit.simulation.recorder.TimeSeriesReader records.bin &gt; records.csv
+ * </pre>
+ *
+ * @author Fabien Michel
+ * @since MaDKit 5.2
+ * @version 0.9
+ * @see TimeSeriesRecorder
+ */
+public class TimeSeriesReader {
+
+    private final List<String> names;
+    private final double[][] columns;
+    private final int rows;
+
+    /**
+     * Reads the whole file.
+     *
+     * @param file
+     *            a file written by a {@link TimeSeriesRecorder}
+     * @throws IOException
+     *             if the file cannot be read or is not a time series file
+     */
+    public TimeSeriesReader(final Path file) throws IOException {
+	try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+	    final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+	    if (buffer.remaining() < 16 || buffer.getInt() != TimeSeriesRecorder.MAGIC) {
+		throw new IOException(file + " is not a time series file");
+	    }
+	    final int version = buffer.getInt();
+	    if (version != TimeSeriesRecorder.VERSION) {
+		throw new IOException(file + " : unsupported version " + version);
+	    }
+	    final int nbOfColumns = buffer.getInt();
+	    final int blockSize = buffer.getInt();
+	    final List<String> n = new ArrayList<>(nbOfColumns);
+	    for (int c = 0; c < nbOfColumns; c++) {
+		final byte[] bytes = new byte[buffer.getShort()];
+		buffer.get(bytes);
+		n.add(new String(bytes, StandardCharsets.UTF_8));
+	    }
+	    names = Collections.unmodifiableList(n);
+	    double[][] values = new double[nbOfColumns][blockSize];
+	    int count = 0;
+	    while (buffer.remaining() >= Integer.BYTES) {
+		final int blockRows = buffer.getInt();
+		if (blockRows < 0 || buffer.remaining() < (long) Double.BYTES * blockRows * nbOfColumns) {
+		    throw new IOException(file + " is truncated");
+		}
+		if (count + blockRows > values[0].length) {
+		    for (int c = 0; c < nbOfColumns; c++) {
+			values[c] = Arrays.copyOf(values[c], Math.max(count + blockRows, values[c].length * 2));
+		    }
+		}
+		for (int c = 0; c < nbOfColumns; c++) {
+		    buffer.asDoubleBuffer().get(values[c], count, blockRows);
+		    buffer.position(buffer.position() + Double.BYTES * blockRows);
+		}
+		count += blockRows;
+	    }
+	    rows = count;
+	    for (int c = 0; c < nbOfColumns; c++) {
+		values[c] = Arrays.copyOf(values[c], count);
+	    }
+	    columns = values;
+	}
+    }
+
+    /**
+     * @return the names of the columns, the first one being the time
+     */
+    public List<String> getColumnNames() {
+	return names;
+    }
+
+    /**
+     * @return the number of records
+     */
+    public int getNbOfRecords() {
+	return rows;
+    }
+
+    /**
+     * @param column
+     *            the index of the column
+     * @return the values of this column
+     */
+    public double[] getColumn(final int column) {
+	return columns[column];
+    }
+
+    /**
+     * @param name
+     *            the name of the column
+     * @return the values of this column
+     * @throws IllegalArgumentException
+     *             if there is no such column
+     */
+    public double[] getColumn(final String name) {
+	final int index = names.indexOf(name);
+	if (index < 0) {
+	    throw new IllegalArgumentException("no column " + name + " in " + names);
+	}
+	return columns[index];
+    }
+
+    /**
+     * Prints the records as CSV.
+     *
+     * @param out
+     *            the stream to write to
+     */
+    public void printCSV(final PrintStream out) {
+	out.println(String.join(",", names));
+	final StringBuilder sb = new StringBuilder();
+	for (int r = 0; r < rows; r++) {
+	    sb.setLength(0);
+	    for (int c = 0; c < columns.length; c++) {
+		if (c > 0) {
+		    sb.append(',');
+		}
+		sb.append(columns[c][r]);
+	    }
+	    out.println(sb);
+	}
+    }
+
+    /**
+     * Converts a binary time series file to CSV on the standard output.
+     *
+     * @param args
+     *            the file to read
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    public static void main(final String[] args) throws IOException {
+	if (args.length != 1) {
+	    System.err.println("usage: " + TimeSeriesReader.class.getName() + " <file>");
+	    System.exit(2);
+	}
+	new TimeSeriesReader(Paths.get(args[0])).printCSV(System.out);
+    }
+
+}
@@ -0,0 +1,460 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.simulation.recorder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+
+import madkit.kernel.Watcher;
+import madkit.simulation.SimulationException;
+import madkit.simulation.probe.PropertySummary;
+
+/**
+ * A watcher appending one record per simulation step to a file, for offline analysis. A record holds the time of the
+ * step and the values of the columns, which are declared before the first record: plain values, or statistics computed
+ * on probes through a single {@link PropertySummary} per probe and per record.
+ *
+ * <pre>
+ * DoublePropertyProbe&lt;AbstractAgent&gt; energy = new DoublePropertyProbe&lt;&gt;(community, group, role, &quot;energy&quot;);
+ * addProbe(energy);
+ * addColumns(&quot;energy&quot;, energy::summarize, Statistic.MEAN, Statistic.MAX);
+ * ...
+ * record(scheduler.getGVT());
+ * </pre>
+ *
+ * Records are stored in blocks of rows, column by column. When a block is full, it is handed over to a background
+ * thread which encodes it and writes it using a {@link FileChannel}, while the records go on in a second block. So the
+ * simulation thread only computes the values and copies them into an array, unless the writer is late by a whole block.
+ * The file is closed when this agent ends or by {@link #close()}.
+ * <p>
+ * The {@link Format#BINARY} format is read by {@link TimeSeriesReader}. It starts with a header: the magic number
+ * <code>MDKT</code>, the version, the number of columns including the time, the block size and the UTF-8 names of the
+ * columns, each one preceded by its length as a short. Then each block is the number of its rows followed by the values
+ * of each column. Numbers are big endian.
+ *
+ * @author Fabien Michel
+ * @since MaDKit 5.2
+ * @version 0.9
+ * @see TimeSeriesReader
+ */
+public class TimeSeriesRecorder extends Watcher {
+
+    static final int MAGIC = 0x4D444B54;
+    static final int VERSION = 1;
+    static final String TIME = "time";
+
+    /**
+     * The output formats
+     */
+    public enum Format {
+	/**
+	 * columnar blocks of doubles
+	 */
+	BINARY,
+	/**
+	 * comma separated values, one line per record
+	 */
+	CSV
+    }
+
+    /**
+     * The statistics which can be recorded from a {@link PropertySummary}
+     */
+    public enum Statistic {
+	COUNT, MIN, MAX, MEAN, VARIANCE, STANDARD_DEVIATION;
+
+	double of(final PropertySummary s) {
+	    switch (this) {
+	    case COUNT:
+		return s.getCount();
+	    case MIN:
+		return s.getMin();
+	    case MAX:
+		return s.getMax();
+	    case MEAN:
+		return s.getMean();
+	    case VARIANCE:
+		return s.getVariance();
+	    default:
+		return s.getStandardDeviation();
+	    }
+	}
+    }
+
+    private final Path file;
+    private final Format format;
+    private final int blockSize;
+
+    private final List<String> names = new ArrayList<>();
+    private final List<ToDoubleFunction<PropertySummary[]>> columns = new ArrayList<>();
+    private final List<Supplier<PropertySummary>> summaries = new ArrayList<>();
+
+    private ToDoubleFunction<PropertySummary[]>[] columnArray;
+    private PropertySummary[] summaryValues;
+    private Block block;
+    private BlockWriter writer;
+    private long records;
+    private boolean closed;
+
+    /**
+     * Records into a binary file using blocks of 1024 records.
+     *
+     * @param file
+     *            the file to create or overwrite
+     */
+    public TimeSeriesRecorder(final Path file) {
+	this(file, Format.BINARY, 1024);
+    }
+
+    /**
+     * @param file
+     *            the file to create or overwrite
+     * @param format
+     *            the output format
+     * @param blockSize
+     *            the number of records of a block, i.e. handed over at once to the writer thread
+     */
+    public TimeSeriesRecorder(final Path file, final Format format, final int blockSize) {
+	if (blockSize < 1) {
+	    throw new IllegalArgumentException("block size " + blockSize);
+	}
+	this.file = file;
+	this.format = format;
+	this.blockSize = blockSize;
+	names.add(TIME);
+    }
+
+    /**
+     * Adds a column whose value is given by <code>value</code> at each record.
+     *
+     * @param name
+     *            the name of the column
+     * @param value
+     *            computes the value to record
+     */
+    public void addColumn(final String name, final DoubleSupplier value) {
+	checkNotStarted();
+	names.add(name);
+	columns.add(s -> value.getAsDouble());
+    }
+
+    /**
+     * Adds one column per statistic, named <code>name.statistic</code>, e.g. <code>energy.mean</code>. The summary is
+     * computed once per record for all these columns.
+     *
+     * @param name
+     *            the prefix of the column names
+     * @param summary
+     *            computes the summary, e.g. <code>probe::summarize</code>
+     * @param statistics
+     *            the statistics to record
+     */
+    public void addColumns(final String name, final Supplier<PropertySummary> summary, final Statistic... statistics) {
+	checkNotStarted();
+	final int index = summaries.size();
+	summaries.add(summary);
+	for (final Statistic statistic : statistics) {
+	    names.add(name + "." + statistic.name().toLowerCase());
+	    columns.add(s -> statistic.of(s[index]));
+	}
+    }
+
+    private void checkNotStarted() {
+	if (block != null || closed) {
+	    throw new IllegalStateException("columns have to be added before the first record");
+	}
+    }
+
+    /**
+     * @return the names of the columns, the first one being the time
+     */
+    public List<String> getColumnNames() {
+	return new ArrayList<>(names);
+    }
+
+    /**
+     * Records the values of all the columns using the number of records done so far as time. This could be triggered by
+     * a scheduler using a {@link madkit.simulation.activator.GenericBehaviorActivator} on the <code>record</code>
+     * behavior.
+     */
+    public void record() {
+	record(records);
+    }
+
+    /**
+     * Records the values of all the columns.
+     *
+     * @param time
+     *            the time of this record, e.g. the GVT of the scheduler
+     */
+    @SuppressWarnings("unchecked")
+    public void record(final double time) {
+	if (block == null) {
+	    if (closed) {
+		throw new IllegalStateException(this + " is closed");
+	    }
+	    columnArray = (ToDoubleFunction<PropertySummary[]>[]) columns.toArray(new ToDoubleFunction<?>[columns.size()]);
+	    summaryValues = new PropertySummary[summaries.size()];
+	    try {
+		writer = new BlockWriter();
+	    }
+	    catch(IOException e) {
+		closed = true;
+		throw new SimulationException(toString() + " on " + file, e);
+	    }
+	    block = writer.take();
+	}
+	for (int i = 0; i < summaryValues.length; i++) {
+	    summaryValues[i] = summaries.get(i).get();
+	}
+	final double[] values = block.values;
+	final int row = block.rows;
+	values[row] = time;
+	for (int c = 0; c < columnArray.length; c++) {
+	    values[(c + 1) * blockSize + row] = columnArray[c].applyAsDouble(summaryValues);
+	}
+	records++;
+	if (++block.rows == blockSize) {
+	    writer.submit(block);
+	    block = writer.take();
+	}
+    }
+
+    /**
+     * @return the number of records done so far
+     */
+    public long getNbOfRecords() {
+	return records;
+    }
+
+    /**
+     * Writes the pending records and closes the file. Further records are not possible.
+     */
+    public void close() {
+	if (closed) {
+	    return;
+	}
+	closed = true;
+	if (writer != null) {
+	    if (block.rows > 0) {
+		writer.submit(block);
+	    }
+	    writer.submit(Block.END);
+	    writer.join();
+	    block = null;
+	}
+    }
+
+    @Override
+    protected void end() {
+	close();
+    }
+
+    /**
+     * A part of the records, stored column by column
+     */
+    static final class Block {
+
+	static final Block END = new Block(0);
+
+	final double[] values;
+	int rows;
+
+	Block(final int size) {
+	    values = new double[size];
+	}
+    }
+
+    /**
+     * Writes the blocks using a dedicated thread. Two blocks are used: one is filled while the other is written.
+     */
+    private final class BlockWriter implements Runnable {
+
+	private final BlockingQueue<Block> full = new ArrayBlockingQueue<>(3);
+	private final BlockingQueue<Block> free = new ArrayBlockingQueue<>(2);
+	private final FileChannel channel;
+	private final ByteBuffer buffer;
+	private final Thread thread;
+	private volatile IOException failure;
+
+	BlockWriter() throws IOException {
+	    final int nbOfColumns = names.size();
+	    channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+	    buffer = ByteBuffer.allocateDirect(Math.max(Integer.BYTES + Double.BYTES * nbOfColumns * blockSize, 1 << 16));
+	    free.add(new Block(nbOfColumns * blockSize));
+	    free.add(new Block(nbOfColumns * blockSize));
+	    writeHeader();
+	    thread = new Thread(this, getName() + "-writer");
+	    thread.setDaemon(true);
+	    thread.start();
+	}
+
+	private void writeHeader() throws IOException {
+	    if (format == Format.CSV) {
+		write(String.join(",", names) + "\n");
+		return;
+	    }
+	    buffer.clear();
+	    buffer.putInt(MAGIC).putInt(VERSION).putInt(names.size()).putInt(blockSize);
+	    for (final String name : names) {
+		final byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+		buffer.putShort((short) bytes.length).put(bytes);
+	    }
+	    buffer.flip();
+	    writeBuffer();
+	}
+
+	@Override
+	public void run() {
+	    try {
+		for (Block b = full.take(); b != Block.END; b = full.take()) {
+		    if (failure == null) {
+			try {
+			    write(b);
+			}
+			catch(IOException e) {
+			    failure = e;
+			}
+		    }
+		    b.rows = 0;
+		    free.put(b);
+		}
+		channel.close();
+	    }
+	    catch(InterruptedException e) {
+		Thread.currentThread().interrupt();
+	    }
+	    catch(IOException e) {
+		failure = e;
+	    }
+	}
+
+	private void write(final Block b) throws IOException {
+	    final int nbOfColumns = names.size();
+	    if (format == Format.CSV) {
+		final StringBuilder sb = new StringBuilder(b.rows * nbOfColumns * 12);
+		for (int r = 0; r < b.rows; r++) {
+		    for (int c = 0; c < nbOfColumns; c++) {
+			if (c > 0) {
+			    sb.append(',');
+			}
+			sb.append(b.values[c * blockSize + r]);
+		    }
+		    sb.append('\n');
+		}
+		write(sb.toString());
+		return;
+	    }
+	    buffer.clear();
+	    buffer.putInt(b.rows);
+	    for (int c = 0; c < nbOfColumns; c++) {
+		final int offset = c * blockSize;
+		for (int r = 0; r < b.rows; r++) {
+		    buffer.putDouble(b.values[offset + r]);
+		}
+	    }
+	    buffer.flip();
+	    writeBuffer();
+	}
+
+	private void write(final String s) throws IOException {
+	    final ByteBuffer bytes = ByteBuffer.wrap(s.getBytes(StandardCharsets.UTF_8));
+	    while (bytes.hasRemaining()) {
+		channel.write(bytes);
+	    }
+	}
+
+	private void writeBuffer() throws IOException {
+	    while (buffer.hasRemaining()) {
+		channel.write(buffer);
+	    }
+	}
+
+	/**
+	 * @return a free block, waiting for the writer if both are in use
+	 */
+	Block take() {
+	    try {
+		return free.take();
+	    }
+	    catch(InterruptedException e) {
+		Thread.currentThread().interrupt();
+		throw new SimulationException(TimeSeriesRecorder.this.toString(), e);
+	    }
+	}
+
+	void submit(final Block b) {
+	    checkFailure();
+	    try {
+		full.put(b);
+	    }
+	    catch(InterruptedException e) {
+		Thread.currentThread().interrupt();
+		throw new SimulationException(TimeSeriesRecorder.this.toString(), e);
+	    }
+	}
+
+	void join() {
+	    try {
+		thread.join();
+	    }
+	    catch(InterruptedException e) {
+		Thread.currentThread().interrupt();
+	    }
+	    checkFailure();
+	}
+
+	private void checkFailure() {
+	    final IOException e = failure;
+	    if (e != null) {
+		throw new SimulationException(TimeSeriesRecorder.this.toString() + " on " + file, e);
+	    }
+	}
+    }
+
+}
@@ -37,6 +37,14 @@ knowledge of the CeCILL-C license and that you accept its terms.
 package madkit.kernel;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 import madkit.kernel.Madkit.LevelOption;
 import madkit.simulation.EmptyActivator;
 import madkit.testing.util.agent.NormalAgent;
@@ -119,4 +127,104 @@ public class OverlookerTest extends JunitMadkit {
 		});
 	}
 
+	@Test
+	public void batchedNotifications() {
+		launchTest(new Scheduler() {
+
+			@Override
+			protected void activate() {
+				final RecordingActivator a = new RecordingActivator();
+				a.useBatchedNotifications(true);
+				addActivator(a);
+				assertEquals(ReturnCode.SUCCESS, launchAgent(new SimulatedAgent()));
+				executeAndLog(a);
+				a.added.clear();
+				final List<AbstractAgent> agents = new ArrayList<>();
+				for (int i = 0; i < 3; i++) {
+					agents.add(new SimulatedAgent());
+					assertEquals(ReturnCode.SUCCESS, launchAgent(agents.get(i)));
+				}
+				assertTrue(a.added.isEmpty());
+				executeAndLog(a);
+				assertEquals(Collections.singletonList(agents), a.added);
+				assertTrue(a.removed.isEmpty());
+
+				final SimulatedAgent shortLived = new SimulatedAgent();
+				assertEquals(ReturnCode.SUCCESS, launchAgent(shortLived));
+				assertEquals(ReturnCode.SUCCESS, killAgent(shortLived));
+				assertEquals(ReturnCode.SUCCESS, agents.get(0).leaveRole(COMMUNITY, GROUP, ROLE));
+				assertEquals(ReturnCode.SUCCESS, agents.get(1).leaveRole(COMMUNITY, GROUP, ROLE));
+				assertEquals(ReturnCode.SUCCESS, agents.get(1).requestRole(COMMUNITY, GROUP, ROLE));
+				a.added.clear();
+				executeAndLog(a);
+				assertEquals(Collections.singletonList(agents.subList(0, 2)), a.removed);
+				assertEquals(Collections.singletonList(Arrays.asList(agents.get(1))), a.added);
+				assertEquals(0, pendingChanges(a));
+			}
+		});
+	}
+
+	@Test
+	public void batchedNotificationsTurnedOff() {
+		launchTest(new Scheduler() {
+
+			@Override
+			protected void activate() {
+				final RecordingActivator batched = new RecordingActivator();
+				final RecordingActivator immediate = new RecordingActivator();
+				batched.useBatchedNotifications(true);
+				addActivator(batched);
+				addActivator(immediate);
+				final SimulatedAgent first = new SimulatedAgent();
+				assertEquals(ReturnCode.SUCCESS, launchAgent(first));
+				final SimulatedAgent agent = new SimulatedAgent();
+				assertEquals(ReturnCode.SUCCESS, launchAgent(agent));
+				assertEquals(Arrays.asList(agent), immediate.added.get(immediate.added.size() - 1));
+				batched.added.clear();
+				assertEquals(2, pendingChanges(batched));
+				batched.useBatchedNotifications(false);
+				assertFalse(batched.isBatchedNotificationsOn());
+				assertEquals(Collections.singletonList(Arrays.asList(first, agent)), batched.added);
+				assertEquals(0, pendingChanges(batched));
+				assertEquals(ReturnCode.SUCCESS, killAgent(agent));
+				assertEquals(1, batched.removed.size());
+				assertEquals(0, pendingChanges(batched));
+			}
+		});
+	}
+
+	static int pendingChanges(Overlooker<?> o) {
+		return o.getOverlookedRole().getPendingChangesCount();
+	}
+
+	static class RecordingActivator extends EmptyActivator {
+
+		final List<List<AbstractAgent>> added = new ArrayList<>();
+		final List<List<AbstractAgent>> removed = new ArrayList<>();
+
+		RecordingActivator() {
+			super(COMMUNITY, GROUP, ROLE);
+		}
+
+		@Override
+		protected void adding(List<AbstractAgent> agents) {
+			added.add(new ArrayList<>(agents));
+		}
+
+		@Override
+		protected void adding(AbstractAgent agent) {
+			adding(Collections.singletonList(agent));
+		}
+
+		@Override
+		protected void removing(List<AbstractAgent> agents) {
+			removed.add(new ArrayList<>(agents));
+		}
+
+		@Override
+		protected void removing(AbstractAgent agent) {
+			removing(Collections.singletonList(agent));
+		}
+	}
+
 }
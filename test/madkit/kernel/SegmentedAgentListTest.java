@@ -0,0 +1,168 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.kernel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+/**
+ * @author Fabien Michel
+ * @since MaDKit 5.2
+ * @version 0.9
+ * 
+ */
+public class SegmentedAgentListTest {
+
+	private static List<AbstractAgent> newAgents(int n) {
+		final List<AbstractAgent> l = new ArrayList<>(n);
+		for (int i = 0; i < n; i++) {
+			l.add(new AbstractAgent());
+		}
+		return l;
+	}
+
+	@Test
+	public void snapshotsAreStable() {
+		final SegmentedAgentList players = new SegmentedAgentList();
+		final List<AbstractAgent> agents = newAgents(3000);
+		assertTrue(players.addAll(agents));
+		assertFalse(players.add(agents.get(0)));
+		final List<AbstractAgent> snapshot = players.snapshot();
+		assertEquals(agents, snapshot);
+		assertTrue(players.remove(agents.get(0)));
+		assertTrue(players.remove(agents.get(1500)));
+		assertFalse(players.remove(agents.get(1500)));
+		final AbstractAgent newcomer = new AbstractAgent();
+		players.add(newcomer);
+		assertEquals(agents, snapshot);
+		final List<AbstractAgent> expected = new ArrayList<>(agents);
+		expected.remove(1500);
+		expected.remove(0);
+		expected.add(newcomer);
+		assertEquals(expected, players.snapshot());
+		assertEquals(expected, new ArrayList<>(players));
+		assertEquals(expected.size(), players.size());
+		assertTrue(players.contains(newcomer));
+		assertFalse(players.contains(agents.get(0)));
+	}
+
+	@Test
+	public void randomChurn() {
+		final Random r = new Random(0);
+		final SegmentedAgentList players = new SegmentedAgentList();
+		final List<AbstractAgent> model = new ArrayList<>();
+		for (int step = 0; step < 200; step++) {
+			final List<AbstractAgent> before = players.snapshot();
+			final List<AbstractAgent> beforeModel = new ArrayList<>(model);
+			final int births = r.nextInt(100);
+			for (final AbstractAgent a : newAgents(births)) {
+				players.add(a);
+				model.add(a);
+			}
+			final int deaths = Math.min(model.size(), r.nextInt(100));
+			for (int i = 0; i < deaths; i++) {
+				final AbstractAgent a = model.remove(r.nextInt(model.size()));
+				assertTrue(players.remove(a));
+			}
+			assertEquals(beforeModel, before);
+			final List<AbstractAgent> snapshot = players.snapshot();
+			assertEquals(model, snapshot);
+			for (int i = 0; i < model.size(); i += 7) {
+				assertEquals(model.get(i), snapshot.get(i));
+			}
+			assertTrue(players.getSegmentsCount() <= 2 * (model.size() / SegmentedAgentList.SEGMENT_SIZE + 1) + 1);
+		}
+		players.removeAll(new ArrayList<>(model));
+		assertTrue(players.isEmpty());
+		assertEquals(0, players.getSegmentsCount());
+		assertTrue(players.snapshot().isEmpty());
+	}
+
+	@Test
+	public void concurrentReaders() throws InterruptedException {
+		final SegmentedAgentList players = new SegmentedAgentList();
+		final List<AbstractAgent> living = newAgents(5000);
+		players.addAll(living);
+		final AtomicBoolean done = new AtomicBoolean();
+		final List<Throwable> failures = new ArrayList<>();
+		final Thread reader = new Thread(() -> {
+			try {
+				while (!done.get()) {
+					final List<AbstractAgent> snapshot;
+					synchronized (players) {
+						snapshot = players.snapshot();
+					}
+					int n = 0;
+					for (final AbstractAgent a : snapshot) {
+						assertNotNull(a);
+						n++;
+					}
+					assertEquals(snapshot.size(), n);
+				}
+			}
+			catch(Throwable t) {
+				synchronized (failures) {
+					failures.add(t);
+				}
+			}
+		});
+		reader.start();
+		final Random r = new Random(1);
+		for (int i = 0; i < 20000; i++) {
+			synchronized (players) {
+				players.remove(living.remove(r.nextInt(living.size())));
+				final AbstractAgent a = new AbstractAgent();
+				living.add(a);
+				players.add(a);
+			}
+		}
+		done.set(true);
+		reader.join();
+		assertTrue(failures.toString(), failures.isEmpty());
+		assertEquals(living.size(), players.size());
+	}
+
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.kernel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import madkit.kernel.Madkit.Option;
+import madkit.simulation.activator.GenericBehaviorActivator;
+import madkit.testing.util.agent.SimulatedAgent;
+
+import org.junit.Test;
+
+/**
+ * @author Fabien Michel
+ * @since MaDKit 5.2
+ * @version 0.9
+ */
+public class SimulationCheckpointTest extends JunitMadkit {
+
+	public static class RolesActivator extends Activator<AbstractAgent> {
+
+		public RolesActivator(String community, String group, String role, String... otherRoles) {
+			super(community, group, role, otherRoles);
+		}
+
+		public RolesActivator(String community, String group) {
+			super(community, group);
+		}
+
+		@Override
+		public void execute(List<AbstractAgent> agents, Object... args) {
+		}
+	}
+
+	@Test
+	public void restoreInAFreshKernel() throws IOException {
+		final Path file = Files.createTempFile("madkit", ".checkpoint");
+		final int[] draws = new int[2];
+		try {
+			addMadkitArgs(Option.randomSeed.toString(), "99");
+			launchTest(new Scheduler() {
+				protected void activate() {
+					for (int i = 0; i < 20; i++) {
+						final SimulatedAgent a = new SimulatedAgent();
+						launchAgent(a);
+						a.setPrivatePrimitiveField(i);
+						a.publicPrimitiveField = i * 0.5;
+					}
+					final GenericBehaviorActivator<AbstractAgent> a = new GenericBehaviorActivator<>(COMMUNITY, GROUP, ROLE, "doIt");
+					a.useMulticore(3);
+					addActivator(a);
+					setGVT(42);
+					getSimulationRandom().nextInt(100);
+					try {
+						checkpoint(file);
+					}
+					catch(IOException e) {
+						throw new AssertionError(e);
+					}
+					draws[0] = getSimulationRandom().nextInt(Integer.MAX_VALUE);
+				}
+			});
+			for (final boolean mapped : new boolean[] { true, false }) {
+				launchTest(new Scheduler() {
+					protected void activate() {
+						try {
+							restore(file, mapped);
+						}
+						catch(IOException e) {
+							throw new AssertionError(e);
+						}
+						assertEquals(42, getGVT(), 0);
+						assertEquals(99, getSimulationRandom().getSeed());
+						draws[1] = getSimulationRandom().nextInt(Integer.MAX_VALUE);
+						assertEquals(1, getActivators().size());
+						final Activator<? extends AbstractAgent> a = getActivators().iterator().next();
+						assertTrue(a instanceof GenericBehaviorActivator);
+						assertEquals(3, a.nbOfParallelTasks());
+						final List<? extends AbstractAgent> agents = a.getCurrentAgentsList();
+						assertEquals(20, agents.size());
+						for (int i = 0; i < 20; i++) {
+							final SimulatedAgent agent = (SimulatedAgent) agents.get(i);
+							assertEquals(i, agent.getPrivatePrimitiveField());
+							assertEquals(i * 0.5, agent.publicPrimitiveField, 0);
+							assertTrue(agent.goneThroughActivate());
+							assertTrue(agent.isAlive());
+							assertTrue(agent.hasRole(COMMUNITY, GROUP, ROLE));
+						}
+						doSimulationStep();
+					}
+				});
+				assertEquals(draws[0], draws[1]);
+			}
+		}
+		finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void restoreRejectsOtherFiles() throws IOException {
+		final Path file = Files.createTempFile("madkit", ".checkpoint");
+		try {
+			Files.write(file, new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+			launchTest(new Scheduler() {
+				protected void activate() {
+					try {
+						restore(file);
+						fail("not a checkpoint");
+					}
+					catch(IOException e) {
+						assertTrue(getActivators().isEmpty());
+					}
+				}
+			});
+		}
+		finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void restoreActivatorsObservingSeveralRoles() throws IOException {
+		final Path file = Files.createTempFile("madkit", ".checkpoint");
+		try {
+			launchTest(new Scheduler() {
+				protected void activate() {
+					for (int i = 0; i < 5; i++) {
+						launchAgent(new SimulatedAgent());
+					}
+					addActivator(new RolesActivator(COMMUNITY, GROUP, ROLE, "other"));
+					addActivator(new RolesActivator(COMMUNITY, GROUP));
+					try {
+						checkpoint(file);
+					}
+					catch(IOException e) {
+						throw new AssertionError(e);
+					}
+				}
+			});
+			launchTest(new Scheduler() {
+				protected void activate() {
+					try {
+						restore(file);
+					}
+					catch(IOException e) {
+						throw new AssertionError(e);
+					}
+					assertEquals(2, getActivators().size());
+					final Set<String> labels = new HashSet<>();
+					for (final Activator<? extends AbstractAgent> a : getActivators()) {
+						assertTrue(a.overlooksSeveralRoles());
+						labels.add(a.getRole());
+						assertTrue(a.size() >= 5);
+					}
+					assertTrue(labels.contains("*"));
+					assertTrue(labels.contains(ROLE + ",other"));
+				}
+			});
+		}
+		finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void restoreKeepsTheShuffledOrders() throws IOException {
+		final Path file = Files.createTempFile("madkit", ".checkpoint");
+		final List<List<Integer>> orders = new ArrayList<>();
+		try {
+			addMadkitArgs(Option.randomSeed.toString(), "7");
+			launchTest(new Scheduler() {
+				protected void activate() {
+					final List<SimulatedAgent> agents = new ArrayList<>();
+					for (int i = 0; i < 10; i++) {
+						agents.add(new SimulatedAgent());
+						agents.get(i).setPrivatePrimitiveField(i);
+					}
+					// launched out of their creation order
+					for (int i = 0; i < 10; i++) {
+						launchAgent(agents.get((i * 7) % 10));
+					}
+					final GenericBehaviorActivator<AbstractAgent> a = new GenericBehaviorActivator<>(COMMUNITY, GROUP, ROLE, "doIt");
+					addActivator(a);
+					a.getShuffledList();
+					try {
+						checkpoint(file);
+					}
+					catch(IOException e) {
+						throw new AssertionError(e);
+					}
+					orders.add(ids(a.getShuffledList()));
+					orders.add(ids(a.getShuffledList()));
+				}
+			});
+			launchTest(new Scheduler() {
+				protected void activate() {
+					try {
+						restore(file);
+					}
+					catch(IOException e) {
+						throw new AssertionError(e);
+					}
+					final Activator<? extends AbstractAgent> a = getActivators().iterator().next();
+					assertEquals(orders.get(0), ids(a.getShuffledList()));
+					assertEquals(orders.get(1), ids(a.getShuffledList()));
+				}
+			});
+		}
+		finally {
+			Files.delete(file);
+		}
+	}
+
+	static List<Integer> ids(List<? extends AbstractAgent> agents) {
+		final List<Integer> ids = new ArrayList<>();
+		for (AbstractAgent a : agents) {
+			ids.add(((SimulatedAgent) a).getPrivatePrimitiveField());
+		}
+		return ids;
+	}
+
+}
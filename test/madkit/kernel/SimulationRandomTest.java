@@ -0,0 +1,176 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.kernel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import madkit.kernel.Madkit.Option;
+import madkit.testing.util.agent.SimulatedAgent;
+
+import org.junit.Test;
+
+/**
+ * @author Fabien Michel
+ * @since MaDKit 5.2
+ * @version 0.9
+ */
+public class SimulationRandomTest extends JunitMadkit {
+
+	static class Member extends AbstractAgent {
+
+		void join() {
+			createGroupIfAbsent(COMMUNITY, GROUP);
+			requestRole(COMMUNITY, GROUP, ROLE);
+		}
+
+		void leave() {
+			leaveRole(COMMUNITY, GROUP, ROLE);
+		}
+	}
+
+	static Activator<AbstractAgent> newActivator() {
+		return new Activator<AbstractAgent>(COMMUNITY, GROUP, ROLE) {
+			@Override
+			public void execute(List<AbstractAgent> agentsList, Object... args) {
+			}
+		};
+	}
+
+	@Test
+	public void streamsOnlyDependOnSeedAndKey() {
+		final SimulationRandom r1 = new SimulationRandom(42);
+		final SimulationRandom r2 = new SimulationRandom(42);
+		final SplittableRandom s1 = r1.getStream(3);
+		final SplittableRandom s2 = r2.getStream(3);
+		for (int i = 0; i < 100; i++) {
+			assertEquals(s1.nextLong(), s2.nextLong());
+		}
+		assertNotEquals(r1.getStream(3).nextLong(), r1.getStream(4).nextLong());
+		assertNotEquals(r1.getStream(3, 0).nextLong(), r1.getStream(3, 1).nextLong());
+		assertNotEquals(r1.getStream(3).nextLong(), new SimulationRandom(43).getStream(3).nextLong());
+	}
+
+	@Test
+	public void shuffleIsAReproduciblePermutation() {
+		for (int size : new int[] { 0, 1, 100, SimulationRandom.PARALLEL_THRESHOLD * 3 }) {
+			final List<Integer> list = new ArrayList<>();
+			for (int i = 0; i < size; i++) {
+				list.add(i);
+			}
+			final List<Integer> copy = new ArrayList<>(list);
+			final List<Integer> shuffled = new SimulationRandom(7).shuffle(list, 1);
+			assertEquals(copy, list);
+			assertEquals(size, shuffled.size());
+			assertEquals(new HashSet<>(list), new HashSet<>(shuffled));
+			assertEquals(shuffled, new SimulationRandom(7).shuffle(list, 1));
+			if (size > 1) {
+				assertNotEquals(list, shuffled);
+				assertNotEquals(shuffled, new SimulationRandom(7).shuffle(list, 2));
+			}
+		}
+	}
+
+	@Test
+	public void shuffledListLeavesTheRoleListUntouched() {
+		addMadkitArgs(Option.randomSeed.toString(), "1234");
+		launchTest(new Scheduler() {
+			protected void activate() {
+				assertEquals(1234, getSimulationRandom().getSeed());
+				for (int i = 0; i < 50; i++) {
+					launchAgent(new SimulatedAgent());
+				}
+				final Activator<AbstractAgent> a = new Activator<AbstractAgent>(COMMUNITY, GROUP, ROLE) {
+					@Override
+					public void execute(List<AbstractAgent> agentsList, Object... args) {
+					}
+				};
+				addActivator(a);
+				final List<AbstractAgent> agents = a.getCurrentAgentsList();
+				final List<AbstractAgent> before = new ArrayList<>(agents);
+				final List<AbstractAgent> shuffled = a.getShuffledList();
+				assertSame(agents, a.getCurrentAgentsList());
+				assertEquals(before, agents);
+				assertEquals(50, shuffled.size());
+				assertTrue(shuffled.containsAll(agents));
+				assertNotEquals(agents, shuffled);
+				assertNotEquals(shuffled, a.getShuffledList());
+			}
+		});
+	}
+
+	@Test
+	public void shuffledListDoesNotDependOnTheRoleOrder() {
+		addMadkitArgs(Option.randomSeed.toString(), "1234");
+		launchTest(new Scheduler() {
+			protected void activate() {
+				final List<Member> members = new ArrayList<>();
+				for (int i = 0; i < 30; i++) {
+					final Member m = new Member();
+					launchAgent(m);
+					members.add(m);
+					m.join();
+				}
+				final Activator<AbstractAgent> first = newActivator();
+				addActivator(first);
+				final List<AbstractAgent> order = new ArrayList<>(first.getCurrentAgentsList());
+				final List<AbstractAgent> shuffled = first.getShuffledList();
+				removeActivator(first);
+				for (Member m : members) {
+					m.leave();
+				}
+				Collections.reverse(members);
+				for (Member m : members) {
+					m.join();
+				}
+				final Activator<AbstractAgent> second = newActivator();
+				addActivator(second);
+				assertNotEquals(order, second.getCurrentAgentsList());
+				assertEquals(shuffled, second.getShuffledList());
+			}
+		});
+	}
+
+}
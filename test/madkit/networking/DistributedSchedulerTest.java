@@ -0,0 +1,184 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.networking;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+import madkit.kernel.AbstractAgent;
+import madkit.kernel.JunitMadkit;
+import madkit.kernel.Madkit.BooleanOption;
+import madkit.kernel.Message;
+import madkit.kernel.Scheduler;
+import madkit.kernel.Scheduler.SimulationState;
+import madkit.message.IntegerMessage;
+import madkit.simulation.activator.GenericBehaviorActivator;
+import madkit.testing.util.agent.NormalAgent;
+
+import org.junit.Test;
+
+/**
+ * @author Fabien Michel
+ * @since MaDKit 5.2
+ * @version 0.9
+ */
+public class DistributedSchedulerTest extends JunitMadkit {
+
+	static final String DISTRIBUTED_GROUP = "distributed";
+	static final int AGENTS_PER_KERNEL = 3;
+	static final int STEPS = 21;// GVT from 0 to 20
+
+	static final AtomicInteger goodReceptions = new AtomicInteger();
+	static final AtomicInteger badReceptions = new AtomicInteger();
+
+	/**
+	 * Checks that all the messages sent during the previous step have been received, then sends one to all the others.
+	 * Messages coming from a faster kernel could arrive earlier.
+	 */
+	public static class Talker extends AbstractAgent {
+
+		private int step;
+		private final int[] receptions = new int[STEPS];
+
+		@Override
+		protected void activate() {
+			createGroupIfAbsent(COMMUNITY, DISTRIBUTED_GROUP, true);
+			requestRole(COMMUNITY, DISTRIBUTED_GROUP, ROLE);
+		}
+
+		public void receive() {
+			for (Message m = nextMessage(); m != null; m = nextMessage()) {
+				receptions[((IntegerMessage) m).getContent()]++;
+			}
+			if (step > 0) {
+				if (receptions[step - 1] == 2 * AGENTS_PER_KERNEL - 1) {
+					goodReceptions.incrementAndGet();
+				}
+				else {
+					badReceptions.incrementAndGet();
+				}
+			}
+		}
+
+		public void send() {
+			broadcastMessage(COMMUNITY, DISTRIBUTED_GROUP, ROLE, new IntegerMessage(step++));
+		}
+	}
+
+	public static class DistributedSimulation extends Scheduler {
+
+		public DistributedSimulation() {
+			super(STEPS - 1);
+			setBatchMode(true);
+			useDistributedMode(COMMUNITY, GROUP, 2);
+		}
+
+		@Override
+		protected void activate() {
+			for (int i = 0; i < AGENTS_PER_KERNEL; i++) {
+				launchAgent(new Talker());
+			}
+			addActivator(new GenericBehaviorActivator<>(COMMUNITY, DISTRIBUTED_GROUP, ROLE, "receive"));
+			addActivator(new GenericBehaviorActivator<>(COMMUNITY, DISTRIBUTED_GROUP, ROLE, "send"));
+		}
+	}
+
+	/**
+	 * Checks its mailbox after a pause at each step, so that the other scheduler is already done with the next step
+	 */
+	public static class SlowSimulation extends DistributedSimulation {
+
+		public SlowSimulation() {
+			setBatchMode(false);
+			setDelay(20);
+		}
+
+		@Override
+		protected void activate() {
+			super.activate();
+			setSimulationState(SimulationState.RUNNING);
+		}
+	}
+
+	@Test
+	public void slowerPeer() {
+		goodReceptions.set(0);
+		badReceptions.set(0);
+		addMadkitArgs(BooleanOption.network.toString());
+		launchTest(new NormalAgent() {
+			protected void activate() {
+				final SlowSimulation scheduler = new SlowSimulation();
+				launchAgent(scheduler);
+				launchCustomNetworkInstance(Level.OFF, DistributedSimulation.class);
+				for (int i = 0; i < 600 && scheduler.isAlive(); i++) {
+					pause(100);
+				}
+				assertFalse(scheduler.isAlive());
+				assertEquals(STEPS, scheduler.getGVT(), 0);
+				assertEquals(0, badReceptions.get());
+				assertEquals(2 * AGENTS_PER_KERNEL * (STEPS - 1), goodReceptions.get());
+			}
+		});
+	}
+
+	@Test
+	public void stepsAreSynchronizedAndMessagesDelivered() {
+		goodReceptions.set(0);
+		badReceptions.set(0);
+		addMadkitArgs(BooleanOption.network.toString());
+		launchTest(new NormalAgent() {
+			protected void activate() {
+				final DistributedSimulation scheduler = new DistributedSimulation();
+				assertTrue(scheduler.isDistributedModeOn());
+				launchAgent(scheduler);
+				launchCustomNetworkInstance(Level.OFF, DistributedSimulation.class);
+				for (int i = 0; i < 600 && scheduler.isAlive(); i++) {
+					pause(100);
+				}
+				assertFalse(scheduler.isAlive());
+				assertEquals(STEPS, scheduler.getGVT(), 0);
+				assertEquals(0, badReceptions.get());
+				assertEquals(2 * AGENTS_PER_KERNEL * (STEPS - 1), goodReceptions.get());
+			}
+		});
+	}
+
+}
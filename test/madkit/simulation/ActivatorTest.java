@@ -121,4 +121,14 @@ public class ActivatorTest {
 		assertEquals(2, a.nbOfParallelTasks());
 	}
 
+	@Test
+	public void testIsWorkStealingModeOn() {
+		assertFalse(a.isWorkStealingModeOn());
+		a.useWorkStealing(true);
+		assertTrue(a.isWorkStealingModeOn());
+		assertTrue(a.toString().contains("work stealing"));
+		a.useWorkStealing(false);
+		assertFalse(a.isWorkStealingModeOn());
+	}
+
 }
@@ -39,11 +39,26 @@ package madkit.simulation;
 import static madkit.kernel.AbstractAgent.ReturnCode.ALREADY_GROUP;
 import static madkit.kernel.AbstractAgent.ReturnCode.SUCCESS;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.prefs.Preferences;
+
 import madkit.kernel.AbstractAgent;
 import madkit.kernel.AbstractAgent.ReturnCode;
 import madkit.kernel.Activator;
 import madkit.kernel.JunitMadkit;
+import madkit.kernel.Madkit.BooleanOption;
 import madkit.kernel.Scheduler;
+import madkit.action.SchedulingAction;
+import madkit.message.SchedulingMessage;
+import madkit.simulation.GenericBehaviorActivatorTest.Counted;
+import madkit.simulation.activator.GenericBehaviorActivator;
 
 import org.junit.Test;
 
@@ -184,4 +199,191 @@ public class BasicSchedulerTest extends JunitMadkit {
 	}
 	
 
+	@Test
+	public void workerGangExecutesEachAgentOncePerStep() {
+		launchTest(new Scheduler() {
+			protected void activate() {
+				final List<AbstractAgent> agents = new ArrayList<>();
+				for (int i = 0; i < 1001; i++) {
+					agents.add(new Counted());
+				}
+				launchAgentBucket(agents, COMMUNITY + "," + GROUP + "," + ROLE);
+				addActivator(new GenericBehaviorActivator<>(COMMUNITY, GROUP, ROLE, "doIt"));
+				useWorkerGang(4);
+				assertEquals(4, getWorkerGangSize());
+				for (int i = 0; i < 100; i++) {
+					doSimulationStep();
+				}
+				for (AbstractAgent agent : agents) {
+					assertEquals(100, ((Counted) agent).count);
+				}
+				useWorkerGang(1);
+				assertEquals(1, getWorkerGangSize());
+				doSimulationStep();
+				assertEquals(101, ((Counted) agents.get(0)).count);
+			}
+		});
+	}
+
+	@Test
+	public void workerGangPropagatesSimulationException() {
+		launchTest(new Scheduler() {
+			protected void activate() {
+				final List<AbstractAgent> agents = new ArrayList<>();
+				for (int i = 0; i < 10; i++) {
+					agents.add(new AbstractAgent());
+				}
+				launchAgentBucket(agents, COMMUNITY + "," + GROUP + "," + ROLE);
+				addActivator(new GenericBehaviorActivator<>(COMMUNITY, GROUP, ROLE, "doIt"));
+				useWorkerGang(3);
+				doSimulationStep();
+			}
+		}, ReturnCode.AGENT_CRASH);
+	}
+
+	@Test
+	public void batchModeRunsUntilEndTime() {
+		launchTest(new Scheduler(499) {
+			protected void activate() {
+				final List<AbstractAgent> agents = new ArrayList<>();
+				for (int i = 0; i < 10; i++) {
+					agents.add(new Counted());
+				}
+				launchAgentBucket(agents, COMMUNITY + "," + GROUP + "," + ROLE);
+				addActivator(new GenericBehaviorActivator<>(COMMUNITY, GROUP, ROLE, "doIt"));
+				setDelay(400);// ignored in batch mode
+				setBatchMode(true);
+				assertTrue(isBatchMode());
+				live();
+				assertEquals(500, getGVT(), 0);
+				assertEquals(500, getBatchRunSteps());
+				assertTrue(getBatchRunTime() > 0);
+				for (AbstractAgent agent : agents) {
+					assertEquals(500, ((Counted) agent).count);
+				}
+			}
+		});
+	}
+
+	@Test
+	public void batchModeOptionLeavesThePreferencesUntouched() {
+		addMadkitArgs(BooleanOption.batchMode.toString());
+		launchTest(new Scheduler() {
+			protected void activate() {
+				final Preferences preferences = Preferences.userRoot().node(Scheduler.class.getName());
+				preferences.remove(getName() + "speed");
+				setDelay(123);
+				assertEquals(123, getDelay());
+				assertNull(preferences.get(getName() + "speed", null));
+			}
+		});
+	}
+
+	@Test
+	public void batchModePollsControlMessages() {
+		launchTest(new Scheduler() {
+			protected void activate() {
+				final Scheduler scheduler = this;
+				addActivator(new Activator<AbstractAgent>(COMMUNITY, GROUP, ROLE) {
+					@Override
+					public void execute(Object... args) {
+						if (getGVT() == 25) {
+							scheduler.receiveMessage(new SchedulingMessage(SchedulingAction.SHUTDOWN));
+						}
+					}
+
+					@Override
+					public void execute(List<AbstractAgent> agents, Object... args) {
+					}
+				});
+				setBatchMode(true);
+				setControlPollingInterval(10);
+				live();
+				assertEquals(SimulationState.SHUTDOWN, getSimulationState());
+				assertEquals(30, getBatchRunSteps());
+			}
+		});
+	}
+
+	@Test
+	public void concurrentActivatorsRespectDependencies() {
+		launchTest(new Scheduler() {
+			protected void activate() {
+				final List<String> trace = Collections.synchronizedList(new ArrayList<>());
+				final Activator<AbstractAgent> environment = new Traced("environment", trace);
+				final Activator<AbstractAgent> preys = new Traced("preys", trace);
+				final Activator<AbstractAgent> predators = new Traced("predators", trace);
+				final Activator<AbstractAgent> observer = new Traced("observer", trace);
+				addActivator(environment);
+				addActivator(preys);
+				addActivator(predators);
+				addActivator(observer);// declares nothing: waits for all the others
+				environment.declareWrites("patches");
+				preys.declareReads("patches");
+				preys.declareWrites("preys");
+				predators.declareReads("patches");
+				predators.declareWrites("predators");
+				useConcurrentActivators(true);
+				assertTrue(isConcurrentActivatorsModeOn());
+				for (int i = 0; i < 50; i++) {
+					doSimulationStep();
+					assertEquals(4, trace.size());
+					assertEquals("environment", trace.get(0));
+					assertEquals("observer", trace.get(3));
+					trace.clear();
+				}
+				addOrderingConstraint(predators, environment);
+				doSimulationStep();
+				assertEquals(Arrays.asList("predators", "environment", "preys", "observer"), trace);
+				try {
+					addOrderingConstraint(environment, predators);
+					fail("cycle");
+				} catch (IllegalArgumentException e) {
+				}
+				assertEquals(51, getGVT(), 0);
+			}
+		});
+	}
+
+	@Test
+	public void concurrentActivatorsPropagateSimulationException() {
+		launchTest(new Scheduler() {
+			protected void activate() {
+				createGroup(COMMUNITY, GROUP);
+				launchAgent(new AbstractAgent() {
+					protected void activate() {
+						requestRole(COMMUNITY, GROUP, ROLE);
+					}
+				});
+				final Activator<AbstractAgent> a = new GenericBehaviorActivator<>(COMMUNITY, GROUP, ROLE, "doIt");
+				a.declareReads();
+				addActivator(a);
+				addActivator(new Traced("other", new ArrayList<>()));
+				useConcurrentActivators(true);
+				doSimulationStep();
+			}
+		}, ReturnCode.AGENT_CRASH);
+	}
+
+	static class Traced extends Activator<AbstractAgent> {
+
+		private final String name;
+		private final List<String> trace;
+
+		Traced(String name, List<String> trace) {
+			super(COMMUNITY, GROUP, ROLE);
+			this.name = name;
+			this.trace = trace;
+		}
+
+		@Override
+		public void execute(Object... args) {
+			trace.add(name);
+		}
+
+		@Override
+		public void execute(List<AbstractAgent> agentsList, Object... args) {
+		}
+	}
+
 }
@@ -0,0 +1,230 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.simulation;
+
+import static madkit.kernel.AbstractAgent.ReturnCode.SUCCESS;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import madkit.kernel.AbstractAgent;
+import madkit.kernel.AbstractAgent.ReturnCode;
+import madkit.kernel.Activator;
+import madkit.kernel.DiscreteEventScheduler;
+import madkit.kernel.JunitMadkit;
+import madkit.kernel.Scheduler.SimulationState;
+import madkit.testing.util.agent.SimulatedAgent;
+
+import org.junit.Test;
+
+/**
+ * @author Fabien Michel
+ * @since MaDKit 5.2
+ * @version 0.9
+ * 
+ */
+
+public class DiscreteEventSchedulerTest extends JunitMadkit {
+
+	/**
+	 * Records the size of each batch
+	 */
+	static class BatchRecorder extends Activator<AbstractAgent> {
+
+		final List<Integer> batches = new ArrayList<>();
+
+		BatchRecorder() {
+			super(COMMUNITY, GROUP, ROLE);
+		}
+
+		BatchRecorder(String otherRole) {
+			super(COMMUNITY, GROUP, ROLE, otherRole);
+		}
+
+		@Override
+		public void execute(List<AbstractAgent> agents, Object... args) {
+			batches.add(agents.size());
+		}
+	}
+
+	@Test
+	public void gvtJumpsToNextEvent() {
+		launchTest(new DiscreteEventScheduler() {
+			protected void activate() {
+				assertEquals(SUCCESS, launchAgent(new SimulatedAgent()));
+				final BatchRecorder a = new BatchRecorder();
+				addActivator(a, 0, 0);
+				schedule(a, 5);
+				schedule(a, 12.5);
+				assertEquals(2, getNbOfPendingEvents());
+				assertEquals(5, getNextEventTime(), 0);
+				doSimulationStep();
+				assertEquals(5, getGVT(), 0);
+				doSimulationStep();
+				assertEquals(12.5, getGVT(), 0);
+				assertEquals(2, a.batches.size());
+				assertEquals(1, (int) a.batches.get(0));
+				assertEquals(0, getNbOfPendingEvents());
+				doSimulationStep();
+				assertEquals(12.5, getGVT(), 0);
+				assertEquals(SimulationState.PAUSED, getSimulationState());
+			}
+		});
+	}
+
+	@Test
+	public void sameTimeAgentEventsAreBatched() {
+		launchTest(new DiscreteEventScheduler() {
+			protected void activate() {
+				final BatchRecorder a = new BatchRecorder();
+				addActivator(a, 0, 0);
+				for (int i = 0; i < 10; i++) {
+					final AbstractAgent agent = new SimulatedAgent();
+					launchAgent(agent);
+					schedule(a, agent, i % 2 == 0 ? 1 : 2);
+				}
+				doSimulationStep();
+				assertEquals(1, getGVT(), 0);
+				doSimulationStep();
+				assertEquals(2, getGVT(), 0);
+				assertEquals(2, a.batches.size());
+				assertEquals(5, (int) a.batches.get(0));
+				assertEquals(5, (int) a.batches.get(1));
+			}
+		});
+	}
+
+	@Test
+	public void staleAgentEventsAreSkipped() {
+		launchTest(new DiscreteEventScheduler() {
+			protected void activate() {
+				final BatchRecorder a = new BatchRecorder();
+				addActivator(a, 0, 0);
+				final List<AbstractAgent> agents = new ArrayList<>();
+				for (int i = 0; i < 3; i++) {
+					agents.add(new SimulatedAgent());
+					assertEquals(SUCCESS, launchAgent(agents.get(i)));
+					schedule(a, agents.get(i), 1);
+				}
+				assertEquals(SUCCESS, agents.get(0).leaveRole(COMMUNITY, GROUP, ROLE));
+				assertEquals(SUCCESS, killAgent(agents.get(1)));
+				doSimulationStep();
+				assertEquals(1, getGVT(), 0);
+				assertEquals(1, a.batches.size());
+				assertEquals(1, (int) a.batches.get(0));
+			}
+		});
+	}
+
+	@Test
+	public void batchedNotificationsAreDeliveredForAgentEvents() {
+		launchTest(new DiscreteEventScheduler() {
+			protected void activate() {
+				final BatchRecorder a = new BatchRecorder("other");
+				a.useBatchedNotifications(true);
+				addActivator(a, 0, 0);
+				final SimulatedAgent agent = new SimulatedAgent();
+				assertEquals(SUCCESS, launchAgent(agent));
+				assertEquals(0, a.size());
+				schedule(a, agent, 1);
+				doSimulationStep();
+				assertEquals(1, getGVT(), 0);
+				assertEquals(1, a.size());
+				assertEquals(1, a.batches.size());
+				assertEquals(1, (int) a.batches.get(0));
+			}
+		});
+	}
+
+	@Test
+	public void periodicActivators() {
+		launchTest(new DiscreteEventScheduler(6) {
+			protected void activate() {
+				final BatchRecorder a = new BatchRecorder();
+				final BatchRecorder b = new BatchRecorder();
+				addActivator(a, 0, 2);
+				addActivator(b);
+				doSimulationStep();
+				assertEquals(0, getGVT(), 0);
+				doSimulationStep();
+				assertEquals(1, getGVT(), 0);
+				doSimulationStep();
+				assertEquals(2, getGVT(), 0);
+				assertEquals(2, a.batches.size());
+				assertEquals(3, b.batches.size());
+				removeActivator(b);
+				doSimulationStep();
+				assertEquals(4, getGVT(), 0);
+				assertEquals(3, b.batches.size());
+			}
+		});
+	}
+
+	@Test
+	public void schedulingInThePast() {
+		launchTest(new DiscreteEventScheduler() {
+			protected void activate() {
+				final BatchRecorder a = new BatchRecorder();
+				addActivator(a, 0, 0);
+				setGVT(10);
+				schedule(a, 5);
+			}
+		}, ReturnCode.AGENT_CRASH);
+	}
+
+	@Test
+	public void runsUntilTheEnd() {
+		final BatchRecorder a = new BatchRecorder();
+		launchTest(new AbstractAgent() {
+			protected void activate() {
+				final DiscreteEventScheduler s = new DiscreteEventScheduler(10) {
+					@Override
+					protected void activate() {
+						addActivator(a, 0, 3);
+						setSimulationState(SimulationState.RUNNING);
+					}
+				};
+				assertEquals(SUCCESS, launchAgent(s));
+				pause(1000);
+				assertEquals(12, s.getGVT(), 0);
+				assertEquals(4, a.batches.size());
+			}
+		});
+	}
+
+}
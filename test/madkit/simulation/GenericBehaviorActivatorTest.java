@@ -36,6 +36,11 @@ knowledge of the CeCILL-C license and that you accept its terms.
  */
 package madkit.simulation;
 
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
 import madkit.kernel.AbstractAgent;
 import madkit.kernel.AbstractAgent.ReturnCode;
 import madkit.kernel.JunitMadkit;
@@ -103,4 +108,81 @@ public class GenericBehaviorActivatorTest extends JunitMadkit {
 		}, ReturnCode.AGENT_CRASH);
 	}
 
+	@Test
+	public void workStealingExecutesEachAgentOnce() {
+		launchTest(new Scheduler() {
+			protected void activate() {
+				final List<AbstractAgent> agents = new ArrayList<>();
+				for (int i = 0; i < 1000; i++) {
+					agents.add(new Counted());
+				}
+				launchAgentBucket(agents, COMMUNITY + "," + GROUP + "," + ROLE);
+				final GenericBehaviorActivator<AbstractAgent> a = new GenericBehaviorActivator<>(COMMUNITY, GROUP, ROLE, "doIt");
+				addActivator(a);
+				a.useWorkStealing(true);
+				a.execute();
+				a.execute();
+				// the size changes: the tasks are rebuilt
+				final Counted newcomer = new Counted();
+				final List<AbstractAgent> bucket = new ArrayList<>();
+				bucket.add(newcomer);
+				launchAgentBucket(bucket, COMMUNITY + "," + GROUP + "," + ROLE);
+				a.execute();
+				for (AbstractAgent agent : agents) {
+					assertEquals(3, ((Counted) agent).count);
+				}
+				assertEquals(1, newcomer.count);
+			}
+		});
+	}
+
+	@Test
+	public void nonPublicBehaviors() {
+		launchTest(new Scheduler() {
+			protected void activate() {
+				final List<AbstractAgent> agents = new ArrayList<>();
+				agents.add(new Counted());
+				agents.add(new PrivatelyCounted());
+				agents.add(new Counted() {
+					@Override
+					public void doIt() {
+						count += 2;
+					}
+				});
+				agents.add(new InheritedCounted());
+				launchAgentBucket(agents, COMMUNITY + "," + GROUP + "," + ROLE);
+				final GenericBehaviorActivator<AbstractAgent> a = new GenericBehaviorActivator<>(COMMUNITY, GROUP, ROLE, "doIt");
+				addActivator(a);
+				a.execute();
+				a.execute();
+				assertEquals(2, ((Counted) agents.get(0)).count);
+				assertEquals(2, ((PrivatelyCounted) agents.get(1)).count);
+				assertEquals(4, ((Counted) agents.get(2)).count);
+				assertEquals(2, ((Counted) agents.get(3)).count);
+			}
+		});
+	}
+
+	static class PrivatelyCounted extends AbstractAgent {
+
+		int count;
+
+		@SuppressWarnings("unused")
+		private void doIt() {
+			count++;
+		}
+	}
+
+	static class InheritedCounted extends Counted {
+	}
+
+	public static class Counted extends AbstractAgent {
+
+		int count;
+
+		public void doIt() {
+			count++;
+		}
+	}
+
 }
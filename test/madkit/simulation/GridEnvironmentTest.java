@@ -0,0 +1,158 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.simulation;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import madkit.kernel.JunitMadkit;
+import madkit.kernel.Scheduler;
+import madkit.simulation.environment.GridEnvironment;
+import madkit.simulation.environment.GridField;
+
+import org.junit.Test;
+
+/**
+ * @author Fabien Michel
+ * @since MaDKit 5.2
+ * @version 0.9
+ */
+public class GridEnvironmentTest extends JunitMadkit {
+
+	private static void randomize(GridField f, long seed) {
+		final Random r = new Random(seed);
+		for (int i = 0; i < 50 * 40; i++) {
+			f.set(i, r.nextDouble() * 100);
+		}
+	}
+
+	@Test
+	public void diffusionConservesTheQuantity() {
+		for (boolean torus : new boolean[] { true, false }) {
+			final GridEnvironment e = new GridEnvironment(COMMUNITY, GROUP, ROLE, 50, 40, torus);
+			final GridField f = e.addField("f", 0.7, 0);
+			randomize(f, 1);
+			final double sum = f.sum();
+			for (int i = 0; i < 20; i++) {
+				e.execute();
+			}
+			assertEquals(sum, f.sum(), 1e-6);
+		}
+	}
+
+	@Test
+	public void evaporation() {
+		final GridEnvironment e = new GridEnvironment(COMMUNITY, GROUP, ROLE, 50, 40, false);
+		final GridField f = e.addField("f", 0.3, 0.1);
+		final GridField g = e.addField("g", 0, 0.5, true);
+		assertTrue(g.isSinglePrecision());
+		randomize(f, 2);
+		g.fill(8);
+		final double sum = f.sum();
+		e.execute();
+		e.execute();
+		assertEquals(sum * 0.81, f.sum(), 1e-6);
+		assertEquals(2, g.get(10, 10), 0);
+	}
+
+	@Test
+	public void parallelComputationIsDeterministic() {
+		final GridEnvironment sequential = new GridEnvironment(COMMUNITY, GROUP, ROLE, 50, 40, true);
+		final GridEnvironment parallel = new GridEnvironment(COMMUNITY, GROUP, ROLE, 50, 40, true);
+		sequential.useMulticore(1);
+		parallel.useMulticore(7);
+		final GridField s = sequential.addField("f", 0.5, 0.01);
+		final GridField p = parallel.addField("f", 0.5, 0.01);
+		randomize(s, 3);
+		randomize(p, 3);
+		for (int i = 0; i < 10; i++) {
+			sequential.execute();
+			parallel.execute();
+		}
+		final double[] expected = new double[50 * 40];
+		final double[] actual = new double[50 * 40];
+		for (int i = 0; i < expected.length; i++) {
+			expected[i] = s.get(i);
+			actual[i] = p.get(i);
+		}
+		assertArrayEquals(expected, actual, 0);
+	}
+
+	@Test
+	public void topologyAndGradient() {
+		final GridEnvironment torus = new GridEnvironment(COMMUNITY, GROUP, ROLE, 10, 10, true);
+		final GridEnvironment bounded = new GridEnvironment(COMMUNITY, GROUP, ROLE, 10, 10, false);
+		assertEquals(torus.index(9, 9), torus.index(-1, -1));
+		assertEquals(bounded.index(0, 0), bounded.index(-1, -1));
+		assertEquals(torus.index(2, 3), torus.index(2.5, 3.9));
+		final GridField f = bounded.addField("f", 0.5, 0);
+		final int center = bounded.index(5, 5);
+		f.set(center, 1000);
+		for (int i = 0; i < 3; i++) {
+			bounded.execute();
+		}
+		assertEquals(bounded.index(4, 4), f.getMaxNeighbor(bounded.index(3, 3)));
+		assertEquals(center, f.getMaxNeighbor(bounded.index(6, 5)));
+		assertTrue(f.getGradientX(bounded.index(3, 5)) > 0);
+		assertTrue(f.getGradientX(bounded.index(7, 5)) < 0);
+		assertTrue(f.getGradientY(bounded.index(5, 7)) < 0);
+		// the corner has only 3 neighbors
+		for (int i = 0; i < 10; i++) {
+			bounded.execute();
+		}
+		assertEquals(bounded.index(1, 1), f.getMaxNeighbor(bounded.index(0, 0)));
+	}
+
+	@Test
+	public void runByAScheduler() {
+		launchTest(new Scheduler() {
+			protected void activate() {
+				final GridEnvironment e = new GridEnvironment(COMMUNITY, GROUP, ROLE, 20, 20, true);
+				final GridField f = e.addField("f", 0.5, 0.5);
+				f.fill(1);
+				addActivator(e);
+				doSimulationStep();
+				doSimulationStep();
+				assertEquals(0.25, f.get(3, 3), 1e-12);
+			}
+		});
+	}
+
+}
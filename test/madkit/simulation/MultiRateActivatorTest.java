@@ -0,0 +1,171 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.simulation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import madkit.kernel.AbstractAgent;
+import madkit.kernel.JunitMadkit;
+import madkit.kernel.Scheduler;
+import madkit.simulation.activator.MultiRateActivator;
+import madkit.testing.util.agent.SimulatedAgent;
+
+import org.junit.Test;
+
+/**
+ * @author Fabien Michel
+ * @since MaDKit 5.2
+ * @version 0.9
+ */
+public class MultiRateActivatorTest extends JunitMadkit {
+
+	static final long[] PERIODS = { 1, 10, 1000, 70_000 };
+
+	/**
+	 * Records the ticks at which the agents are activated
+	 */
+	static class Recorder extends MultiRateActivator<AbstractAgent> {
+
+		final Map<AbstractAgent, List<Long>> activations = new IdentityHashMap<>();
+		final Map<AbstractAgent, Integer> indexes = new IdentityHashMap<>();
+		int visited;
+
+		Recorder() {
+			super(COMMUNITY, GROUP, ROLE);
+		}
+
+		@Override
+		protected long getActivationPeriod(AbstractAgent agent) {
+			return PERIODS[indexes.get(agent) % PERIODS.length];
+		}
+
+		@Override
+		protected long getActivationPhase(AbstractAgent agent) {
+			return indexes.get(agent);
+		}
+
+		@Override
+		public void execute(List<AbstractAgent> agents, Object... args) {
+			final long tick = getTick() - 1;
+			for (AbstractAgent a : agents) {
+				activations.computeIfAbsent(a, k -> new ArrayList<>()).add(tick);
+				visited++;
+			}
+		}
+	}
+
+	@Test
+	public void agentsAreActivatedAtTheirOwnRate() {
+		launchTest(new Scheduler() {
+			protected void activate() {
+				final Recorder r = new Recorder();
+				final List<AbstractAgent> agents = new ArrayList<>();
+				for (int i = 0; i < 20; i++) {
+					final AbstractAgent a = new SimulatedAgent();
+					r.indexes.put(a, i);
+					agents.add(a);
+				}
+				launchAgentBucket(agents, COMMUNITY + "," + GROUP + "," + ROLE);
+				addActivator(r);
+				final int ticks = 150_000;
+				for (int t = 0; t < ticks; t++) {
+					r.execute();
+				}
+				assertEquals(ticks, r.getTick());
+				int expectedVisits = 0;
+				for (AbstractAgent a : agents) {
+					final int i = r.indexes.get(a);
+					final long period = PERIODS[i % PERIODS.length];
+					final List<Long> expected = new ArrayList<>();
+					for (long t = i % period; t < ticks; t += period) {
+						expected.add(t);
+					}
+					expectedVisits += expected.size();
+					assertEquals(expected, r.activations.getOrDefault(a, new ArrayList<>()));
+				}
+				assertEquals(expectedVisits, r.visited);
+			}
+		});
+	}
+
+	@Test
+	public void wheelFollowsTheRole() {
+		launchTest(new Scheduler() {
+			protected void activate() {
+				final Recorder r = new Recorder();
+				final SimulatedAgent a = new SimulatedAgent();
+				final SimulatedAgent b = new SimulatedAgent();
+				r.indexes.put(a, 0);
+				r.indexes.put(b, 1);
+				launchAgent(a);
+				addActivator(r);
+				for (int t = 0; t < 5; t++) {
+					r.execute();
+				}
+				launchAgent(b);// period 10, phase 1: activated at 11, 21
+				for (int t = 5; t < 25; t++) {
+					r.execute();
+				}
+				assertEquals(25, r.activations.get(a).size());
+				assertEquals(2, r.activations.get(b).size());
+				assertEquals(11, (long) r.activations.get(b).get(0));
+				r.setActivationRate(b, 3, 0);// 27, 30
+				a.leaveRole(COMMUNITY, GROUP, ROLE);
+				for (int t = 25; t < 31; t++) {
+					r.execute();
+				}
+				assertEquals(25, r.activations.get(a).size());
+				assertEquals(4, r.activations.get(b).size());
+				assertEquals(30, (long) r.activations.get(b).get(3));
+				try {
+					r.setActivationRate(a, 1, 0);
+					fail("not handled");
+				} catch (IllegalArgumentException e) {
+					assertTrue(e.getMessage().contains("not handled"));
+				}
+			}
+		});
+	}
+
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.simulation;
+
+import static madkit.kernel.AbstractAgent.ReturnCode.SUCCESS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import madkit.kernel.AbstractAgent;
+import madkit.kernel.Activator;
+import madkit.kernel.JunitMadkit;
+import madkit.kernel.Probe;
+import madkit.kernel.Scheduler;
+import madkit.kernel.Watcher;
+
+import org.junit.Test;
+
+/**
+ * @author Fabien Michel
+ * @since MaDKit 5.2
+ * @version 0.9
+ * 
+ */
+public class MultiRoleOverlookerTest extends JunitMadkit {
+
+	static class CountingActivator extends Activator<AbstractAgent> {
+
+		final List<AbstractAgent> activated = new ArrayList<>();
+		final List<AbstractAgent> added = new ArrayList<>();
+		final List<AbstractAgent> removed = new ArrayList<>();
+
+		CountingActivator(String... roles) {
+			super(COMMUNITY, GROUP, roles[0], Arrays.copyOfRange(roles, 1, roles.length));
+		}
+
+		CountingActivator() {
+			super(COMMUNITY, GROUP);
+		}
+
+		@Override
+		protected void adding(AbstractAgent agent) {
+			added.add(agent);
+		}
+
+		@Override
+		protected void removing(AbstractAgent agent) {
+			removed.add(agent);
+		}
+
+		@Override
+		public void execute(List<AbstractAgent> agentsList, Object... args) {
+			activated.addAll(agentsList);
+		}
+	}
+
+	private List<AbstractAgent> launchAgents(AbstractAgent launcher, int n) {
+		final List<AbstractAgent> l = new ArrayList<>();
+		for (int i = 0; i < n; i++) {
+			final AbstractAgent a = new AbstractAgent();
+			assertEquals(SUCCESS, launcher.launchAgent(a));
+			l.add(a);
+		}
+		return l;
+	}
+
+	@Test
+	public void unionOfRoles() {
+		launchTest(new Scheduler() {
+
+			@Override
+			protected void activate() {
+				createGroup(COMMUNITY, GROUP);
+				final CountingActivator union = new CountingActivator("a", "b");
+				assertEquals("a,b", union.getRole());
+				addActivator(union);
+				final List<AbstractAgent> agents = launchAgents(this, 4);
+				assertEquals(SUCCESS, agents.get(0).requestRole(COMMUNITY, GROUP, "a"));
+				assertEquals(SUCCESS, agents.get(1).requestRole(COMMUNITY, GROUP, "b"));
+				assertEquals(SUCCESS, agents.get(2).requestRole(COMMUNITY, GROUP, "a"));
+				assertEquals(SUCCESS, agents.get(2).requestRole(COMMUNITY, GROUP, "b"));
+				assertEquals(SUCCESS, agents.get(3).requestRole(COMMUNITY, GROUP, "c"));
+				assertEquals(agents.subList(0, 3), union.added);
+				assertEquals(3, union.size());
+				union.execute();
+				assertEquals(agents.subList(0, 3), union.activated);
+
+				assertEquals(SUCCESS, agents.get(2).leaveRole(COMMUNITY, GROUP, "a"));
+				assertTrue(union.removed.isEmpty());
+				assertEquals(3, union.size());
+				assertEquals(SUCCESS, agents.get(2).leaveRole(COMMUNITY, GROUP, "b"));
+				assertEquals(Arrays.asList(agents.get(2)), union.removed);
+				assertEquals(agents.subList(0, 2), union.getCurrentAgentsList());
+
+				final CountingActivator late = new CountingActivator("a", "b");
+				addActivator(late);
+				assertEquals(agents.subList(0, 2), late.getCurrentAgentsList());
+				removeActivator(late);
+				assertEquals(0, late.size());
+			}
+		});
+	}
+
+	@Test
+	public void wholeGroup() {
+		launchTest(new Scheduler() {
+
+			@Override
+			protected void activate() {
+				createGroup(COMMUNITY, GROUP);
+				final CountingActivator all = new CountingActivator();
+				assertEquals("*", all.getRole());
+				addActivator(all);
+				final List<AbstractAgent> agents = launchAgents(this, 3);
+				assertEquals(SUCCESS, agents.get(0).requestRole(COMMUNITY, GROUP, ROLE));
+				assertEquals(SUCCESS, agents.get(1).requestRole(COMMUNITY, GROUP, "other"));
+				assertEquals(SUCCESS, agents.get(1).requestRole(COMMUNITY, GROUP, ROLE));
+				assertEquals(agents.subList(0, 2), all.getCurrentAgentsList());
+				assertEquals(SUCCESS, agents.get(0).leaveGroup(COMMUNITY, GROUP));
+				assertEquals(Arrays.asList(agents.get(1)), all.getCurrentAgentsList());
+				assertEquals(Arrays.asList(agents.get(0)), all.removed);
+			}
+		});
+	}
+
+	@Test
+	public void batchedProbe() {
+		launchTest(new Watcher() {
+
+			@Override
+			protected void activate() {
+				createGroup(COMMUNITY, GROUP);
+				final List<AbstractAgent> added = new ArrayList<>();
+				final List<AbstractAgent> removed = new ArrayList<>();
+				final Probe<AbstractAgent> probe = new Probe<AbstractAgent>(COMMUNITY, GROUP, "a", "b") {
+
+					@Override
+					protected void adding(List<AbstractAgent> agents) {
+						added.addAll(agents);
+					}
+
+					@Override
+					protected void removing(List<AbstractAgent> agents) {
+						removed.addAll(agents);
+					}
+				};
+				probe.useBatchedNotifications(true);
+				addProbe(probe);
+				final List<AbstractAgent> agents = launchAgents(this, 3);
+				assertEquals(SUCCESS, agents.get(0).requestRole(COMMUNITY, GROUP, "a"));
+				assertEquals(SUCCESS, agents.get(1).requestRole(COMMUNITY, GROUP, "a"));
+				assertEquals(SUCCESS, agents.get(2).requestRole(COMMUNITY, GROUP, "a"));
+				assertEquals(SUCCESS, agents.get(2).requestRole(COMMUNITY, GROUP, "b"));
+				probe.deliverPendingNotifications();
+				assertEquals(agents, probe.getCurrentAgentsList());
+				added.clear();
+				// moving from a role to another one
+				assertEquals(SUCCESS, agents.get(1).requestRole(COMMUNITY, GROUP, "b"));
+				assertEquals(SUCCESS, agents.get(1).leaveRole(COMMUNITY, GROUP, "a"));
+				assertEquals(SUCCESS, agents.get(0).leaveRole(COMMUNITY, GROUP, "a"));
+				assertEquals(agents, probe.getCurrentAgentsList());
+				probe.deliverPendingNotifications();
+				assertTrue(added.isEmpty());
+				assertEquals(Arrays.asList(agents.get(0)), removed);
+				assertEquals(agents.subList(1, 3), probe.getCurrentAgentsList());
+			}
+		});
+	}
+
+	@Test
+	public void batchedLeaveAndRejoin() {
+		launchTest(new Scheduler() {
+
+			@Override
+			protected void activate() {
+				createGroup(COMMUNITY, GROUP);
+				final CountingActivator activator = new CountingActivator("a", "b");
+				activator.useBatchedNotifications(true);
+				addActivator(activator);
+				final List<AbstractAgent> agents = launchAgents(this, 2);
+				assertEquals(SUCCESS, agents.get(0).requestRole(COMMUNITY, GROUP, "a"));
+				assertEquals(SUCCESS, agents.get(1).requestRole(COMMUNITY, GROUP, "a"));
+				activator.deliverPendingNotifications();
+				assertEquals(2, activator.size());
+				activator.added.clear();
+				// leaving and joining again between two deliveries
+				assertEquals(SUCCESS, agents.get(0).leaveRole(COMMUNITY, GROUP, "a"));
+				assertEquals(SUCCESS, agents.get(0).requestRole(COMMUNITY, GROUP, "a"));
+				executeAndLog(activator);
+				assertEquals(2, activator.size());
+				assertTrue(activator.activated.containsAll(agents));
+				assertTrue(activator.added.isEmpty());
+				assertTrue(activator.removed.isEmpty());
+			}
+		});
+	}
+
+}
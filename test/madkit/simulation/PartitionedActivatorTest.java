@@ -0,0 +1,196 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.simulation;
+
+import static madkit.kernel.AbstractAgent.ReturnCode.SUCCESS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import madkit.kernel.AbstractAgent;
+import madkit.kernel.JunitMadkit;
+import madkit.kernel.Scheduler;
+import madkit.simulation.activator.PartitionedActivator;
+
+import org.junit.Test;
+
+/**
+ * @author Fabien Michel
+ * @since MaDKit 5.2
+ * @version 0.9
+ */
+public class PartitionedActivatorTest extends JunitMadkit {
+
+	enum AntState {
+		IDLE, FORAGING, RETURNING
+	}
+
+	public static class Ant extends AbstractAgent {
+
+		AntState state = AntState.IDLE;
+		int steps;
+		int energy;
+
+		@Override
+		protected void activate() {
+			requestRole(COMMUNITY, GROUP, ROLE);
+		}
+	}
+
+	static class Foragers extends PartitionedActivator<Ant, AntState> {
+
+		final List<Ant> activated = new ArrayList<>();
+
+		Foragers() {
+			super(COMMUNITY, GROUP, ROLE, "state", AntState.FORAGING);
+		}
+
+		@Override
+		public void execute(List<Ant> agentsList, Object... args) {
+			activated.addAll(agentsList);
+			for (Ant a : agentsList) {
+				if (++a.steps == 2) {// moving while being activated
+					setPropertyValue(a, AntState.RETURNING);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void onlyActivePartitions() {
+		launchTest(new Scheduler() {
+
+			@Override
+			protected void activate() {
+				createGroup(COMMUNITY, GROUP);
+				final Foragers foragers = new Foragers();
+				addActivator(foragers);
+				final List<Ant> ants = new ArrayList<>();
+				for (int i = 0; i < 100; i++) {
+					final Ant a = new Ant();
+					if (i % 20 == 0) {
+						a.state = AntState.FORAGING;
+					}
+					assertEquals(SUCCESS, launchAgent(a));
+					ants.add(a);
+				}
+				assertEquals(5, foragers.getPartitionSize(AntState.FORAGING));
+				assertEquals(95, foragers.getPartitionSize(AntState.IDLE));
+				foragers.execute();
+				assertEquals(5, foragers.activated.size());
+				for (Ant a : foragers.activated) {
+					assertEquals(AntState.FORAGING, a.state);
+				}
+
+				foragers.setPropertyValue(ants.get(1), AntState.FORAGING);
+				assertEquals(AntState.FORAGING, ants.get(1).state);
+				ants.get(2).state = AntState.FORAGING;
+				foragers.update(ants.get(2));
+				assertEquals(SUCCESS, killAgent(ants.get(0)));
+				foragers.activated.clear();
+				foragers.execute();
+				assertEquals(6, foragers.activated.size());
+				assertTrue(foragers.activated.containsAll(Arrays.asList(ants.get(1), ants.get(2))));
+				assertTrue(!foragers.activated.contains(ants.get(0)));
+				// the 4 ants having been activated twice are returning
+				assertEquals(4, foragers.getPartitionSize(AntState.RETURNING));
+				assertEquals(2, foragers.getPartitionSize(AntState.FORAGING));
+
+				foragers.setActiveValues(AntState.FORAGING, AntState.RETURNING);
+				foragers.activated.clear();
+				foragers.execute();
+				assertEquals(6, foragers.activated.size());
+				assertEquals(new HashSet<>(foragers.getPartition(AntState.RETURNING)), new HashSet<>(foragers.activated));
+				assertEquals(93, foragers.getPartitionSize(AntState.IDLE));
+				try {
+					foragers.setPropertyValue(ants.get(0), AntState.IDLE);
+					fail();
+				}
+				catch(IllegalArgumentException e) {
+				}
+			}
+		});
+	}
+
+	@Test
+	public void keyFunction() {
+		launchTest(new Scheduler() {
+
+			@Override
+			protected void activate() {
+				createGroup(COMMUNITY, GROUP);
+				final List<Ant> activated = new ArrayList<>();
+				final PartitionedActivator<Ant, Boolean> living = new PartitionedActivator<Ant, Boolean>(COMMUNITY, GROUP, ROLE, a -> a.energy > 0, true) {
+
+					@Override
+					public void execute(List<Ant> agentsList, Object... args) {
+						activated.addAll(agentsList);
+					}
+				};
+				addActivator(living);
+				final List<Ant> ants = new ArrayList<>();
+				for (int i = 0; i < 10; i++) {
+					final Ant a = new Ant();
+					a.energy = i % 2;
+					assertEquals(SUCCESS, launchAgent(a));
+					ants.add(a);
+				}
+				assertEquals(5, living.getPartitionSize(true));
+				ants.get(1).energy = -3;
+				living.update(ants.get(1));
+				ants.get(2).energy = 7;
+				living.update(ants.get(2));
+				living.execute();
+				assertEquals(5, activated.size());
+				assertTrue(activated.contains(ants.get(2)));
+				assertTrue(!activated.contains(ants.get(1)));
+				try {
+					living.setPropertyValue(ants.get(0), true);
+					fail();
+				}
+				catch(UnsupportedOperationException e) {
+				}
+			}
+		});
+	}
+
+}
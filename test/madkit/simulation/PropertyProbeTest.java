@@ -37,13 +37,23 @@ knowledge of the CeCILL-C license and that you accept its terms.
 package madkit.simulation;
 
 import static madkit.kernel.AbstractAgent.ReturnCode.SUCCESS;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import madkit.kernel.AbstractAgent;
 import madkit.kernel.AbstractAgent.ReturnCode;
 import madkit.kernel.JunitMadkit;
 import madkit.kernel.Watcher;
+import madkit.simulation.probe.DoublePropertyProbe;
+import madkit.simulation.probe.IntPropertyProbe;
+import madkit.simulation.probe.LongPropertyProbe;
 import madkit.simulation.probe.PropertyProbe;
+import madkit.simulation.probe.PropertySummary;
 import madkit.testing.util.agent.NormalAA;
 import madkit.testing.util.agent.SimulatedAgent;
 import madkit.testing.util.agent.SimulatedAgentBis;
@@ -297,4 +307,126 @@ public class PropertyProbeTest extends JunitMadkit {
 		}, ReturnCode.SUCCESS);
 	}
 
-}
\ No newline at end of file
+	@Test
+	public void primitiveProbes() {
+		launchTest(new Watcher() {
+
+			protected void activate() {
+				SimulatedAgent agent;
+				assertEquals(SUCCESS, launchAgent(agent = new SimulatedAgent()));
+				assertEquals(SUCCESS, launchAgent(new SimulatedAgentBis()));
+				DoublePropertyProbe<AbstractAgent> dp = new DoublePropertyProbe<>(COMMUNITY, GROUP, ROLE, "publicPrimitiveField");
+				IntPropertyProbe<AbstractAgent> ip = new IntPropertyProbe<>(COMMUNITY, GROUP, ROLE, "privatePrimitiveField");
+				LongPropertyProbe<AbstractAgent> lp = new LongPropertyProbe<>(COMMUNITY, GROUP, ROLE, "privatePrimitiveField");
+				DoublePropertyProbe<AbstractAgent> idp = new DoublePropertyProbe<>(COMMUNITY, GROUP, ROLE, "privatePrimitiveField");
+				addProbe(dp);
+				addProbe(ip);
+				addProbe(lp);
+				addProbe(idp);
+				assertEquals(2, dp.getDouble(agent), 0);
+				dp.setDouble(agent, 5);
+				assertEquals(5, agent.publicPrimitiveField, 0);
+				assertEquals(5, dp.getMaxValue(), 0);
+				assertEquals(2, dp.getMinValue(), 0);
+				assertEquals(3.5, dp.getAverageValue(), 0);
+				assertEquals(1, ip.getInt(agent));
+				ip.setInt(agent, 10);
+				assertEquals(10, agent.getPrivatePrimitiveField());
+				assertEquals(10, lp.getLong(agent));
+				assertEquals(11, ip.getSum());
+				assertEquals(10, idp.getDouble(agent), 0);
+				try {
+					idp.setDouble(agent, 1.5);
+					noExceptionFailure();
+				} catch (SimulationException e) {
+					e.printStackTrace();
+				}
+				try {
+					lp.setLong(agent, 1);
+					noExceptionFailure();
+				} catch (SimulationException e) {
+					e.printStackTrace();
+				}
+			}
+		});
+	}
+
+	@Test
+	public void primitiveProbeOnNonNumericalField() {
+		launchTest(new Watcher() {
+
+			protected void activate() {
+				SimulatedAgent agent;
+				assertEquals(SUCCESS, launchAgent(agent = new SimulatedAgent()));
+				DoublePropertyProbe<AbstractAgent> dp = new DoublePropertyProbe<>(COMMUNITY, GROUP, ROLE, "objectField");
+				addProbe(dp);
+				try {
+					dp.getDouble(agent);
+					noExceptionFailure();
+				} catch (SimulationException e) {
+					e.printStackTrace();
+				}
+			}
+		});
+	}
+
+	@Test
+	public void summarize() {
+		launchTest(new Watcher() {
+
+			protected void activate() {
+				final List<AbstractAgent> agents = new ArrayList<>();
+				for (int i = 0; i < 10000; i++) {
+					final SimulatedAgent a = new SimulatedAgent();
+					a.publicPrimitiveField = i % 10;
+					a.setPrivatePrimitiveField(i);
+					agents.add(a);
+				}
+				launchAgentBucket(agents, COMMUNITY + "," + GROUP + "," + ROLE);
+				PropertyProbe<AbstractAgent, Double> fp = new PropertyProbe<>(COMMUNITY, GROUP, ROLE, "publicPrimitiveField");
+				DoublePropertyProbe<AbstractAgent> dp = new DoublePropertyProbe<>(COMMUNITY, GROUP, ROLE, "publicPrimitiveField");
+				IntPropertyProbe<AbstractAgent> ip = new IntPropertyProbe<>(COMMUNITY, GROUP, ROLE, "privatePrimitiveField");
+				addProbe(fp);
+				addProbe(dp);
+				addProbe(ip);
+				PropertySummary s = fp.summarize(0, 10, 10);
+				assertEquals(10000, s.getCount());
+				assertEquals(0, s.getMin(), 0);
+				assertEquals(9, s.getMax(), 0);
+				assertEquals(4.5, s.getMean(), 1e-9);
+				assertEquals(8.25, s.getVariance(), 1e-9);
+				assertEquals(fp.getAverageValue(), s.getMean(), 1e-9);
+				final long[] expected = new long[10];
+				Arrays.fill(expected, 1000);
+				assertArrayEquals(expected, s.getHistogram());
+				assertEquals(5, s.getQuantile(0.5), 1e-9);
+				s = dp.summarize();
+				assertEquals(4.5, s.getMean(), 1e-9);
+				assertEquals(8.25, s.getVariance(), 1e-9);
+				s = ip.summarize(0, 5000, 2);
+				assertEquals(0, s.getMin(), 0);
+				assertEquals(9999, s.getMax(), 0);
+				assertEquals(4999.5, s.getMean(), 1e-9);
+				assertEquals((10000.0 * 10000 - 1) / 12, s.getVariance(), 1e-6);
+				assertEquals(4999, s.getOverflow());// the upper bound is in the last bin
+				assertEquals(0, s.getUnderflow());
+			}
+		});
+	}
+
+	@Test
+	public void summarizeNoAgent() {
+		launchTest(new Watcher() {
+
+			protected void activate() {
+				DoublePropertyProbe<AbstractAgent> dp = new DoublePropertyProbe<>(COMMUNITY, GROUP, ROLE, "publicPrimitiveField");
+				addProbe(dp);
+				PropertySummary s = dp.summarize();
+				assertEquals(0, s.getCount());
+				assertEquals(Double.NaN, s.getMean(), 0);
+				assertEquals(Double.NaN, s.getVariance(), 0);
+			}
+		});
+	}
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.simulation;
+
+import static madkit.kernel.AbstractAgent.ReturnCode.SUCCESS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import madkit.kernel.AbstractAgent;
+import madkit.kernel.JunitMadkit;
+import madkit.kernel.Watcher;
+import madkit.simulation.probe.SnapshotProbe;
+import madkit.testing.util.agent.SimulatedAgent;
+
+import org.junit.Test;
+
+/**
+ * @author Fabien Michel
+ * @since MaDKit 5.2
+ * @version 0.9
+ * 
+ */
+
+public class SnapshotProbeTest extends JunitMadkit {
+
+	@Test
+	public void captureColumns() {
+		launchTest(new Watcher() {
+
+			protected void activate() {
+				final List<AbstractAgent> agents = new ArrayList<>();
+				for (int i = 0; i < 5000; i++) {
+					final SimulatedAgent a = new SimulatedAgent();
+					a.publicPrimitiveField = i / 2.0;
+					a.setPrivatePrimitiveField(i);
+					agents.add(a);
+				}
+				launchAgentBucket(agents, COMMUNITY + "," + GROUP + "," + ROLE);
+				SnapshotProbe<AbstractAgent> snapshot = new SnapshotProbe<>(COMMUNITY, GROUP, ROLE);
+				final int d = snapshot.addDoubleColumn("publicPrimitiveField");
+				final int asDouble = snapshot.addDoubleColumn("privatePrimitiveField");
+				final int n = snapshot.addIntColumn("privatePrimitiveField");
+				addProbe(snapshot);
+				assertEquals(2, snapshot.getNbOfDoubleColumns());
+				assertEquals("privatePrimitiveField", snapshot.getIntColumnName(n));
+				assertEquals(5000, snapshot.capture());
+				final List<AbstractAgent> captured = snapshot.getCurrentAgentsList();
+				for (int i = 0; i < snapshot.getSnapshotSize(); i++) {
+					final SimulatedAgent a = (SimulatedAgent) captured.get(i);
+					assertEquals(a.hashCode(), snapshot.getIds()[i]);
+					assertEquals(a.publicPrimitiveField, snapshot.getDoubleColumn(d)[i], 0);
+					assertEquals(a.getPrivatePrimitiveField(), snapshot.getIntColumn(n)[i]);
+					assertEquals(a.getPrivatePrimitiveField(), snapshot.getDoubleColumn(asDouble)[i], 0);
+				}
+				// the arrays are reused
+				final double[] column = snapshot.getDoubleColumn(d);
+				((SimulatedAgent) captured.get(0)).publicPrimitiveField = -1;
+				snapshot.capture();
+				assertSame(column, snapshot.getDoubleColumn(d));
+				assertEquals(-1, column[0], 0);
+				// and grow with the population
+				assertEquals(SUCCESS, launchAgent(new SimulatedAgent()));
+				assertEquals(5001, snapshot.capture());
+				assertEquals(2, snapshot.getDoubleColumn(d)[5000], 0);
+			}
+		});
+	}
+
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.simulation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import madkit.simulation.environment.SpatialIndex;
+import madkit.simulation.environment.SpatialIndex.Neighbors;
+
+import org.junit.Test;
+
+/**
+ * @author Fabien Michel
+ * @since MaDKit 5.2
+ * @version 0.9
+ */
+public class SpatialIndexTest {
+
+	static final class Point {
+
+		double x, y;
+
+		Point(double x, double y) {
+			this.x = x;
+			this.y = y;
+		}
+
+		double distanceSquared(double px, double py) {
+			return (x - px) * (x - px) + (y - py) * (y - py);
+		}
+	}
+
+	private static List<Point> randomPoints(Random r, int n) {
+		final List<Point> points = new ArrayList<>();
+		for (int i = 0; i < n; i++) {
+			// some points are out of the bounds
+			points.add(new Point(r.nextDouble() * 120 - 10, r.nextDouble() * 120 - 10));
+		}
+		return points;
+	}
+
+	@Test
+	public void radiusQueriesMatchBruteForce() {
+		final Random r = new Random(1);
+		final List<Point> points = randomPoints(r, 2000);
+		final SpatialIndex<Point> index = new SpatialIndex<>(100, 100, 7);
+		points.forEach(p -> index.add(p, p.x, p.y));
+		assertEquals(2000, index.size());
+		final List<Point> result = new ArrayList<>();
+		for (int q = 0; q < 200; q++) {
+			// incremental moves
+			for (int i = 0; i < 100; i++) {
+				final Point p = points.get(r.nextInt(points.size()));
+				p.x += r.nextDouble() * 10 - 5;
+				p.y += r.nextDouble() * 10 - 5;
+				index.move(p, p.x, p.y);
+			}
+			final double x = r.nextDouble() * 100, y = r.nextDouble() * 100, radius = r.nextDouble() * 20;
+			final Set<Point> expected = new HashSet<>();
+			for (Point p : points) {
+				if (p.distanceSquared(x, y) <= radius * radius) {
+					expected.add(p);
+				}
+			}
+			result.clear();
+			assertEquals(expected.size(), index.getWithin(x, y, radius, result));
+			assertEquals(expected, new HashSet<>(result));
+			final Set<Point> visited = new HashSet<>();
+			index.forEachWithin(x, y, radius, (p, d2) -> {
+				assertEquals(p.distanceSquared(x, y), d2, 1e-9);
+				visited.add(p);
+			});
+			assertEquals(expected, visited);
+		}
+	}
+
+	@Test
+	public void nearestQueriesMatchBruteForce() {
+		final Random r = new Random(2);
+		final List<Point> points = randomPoints(r, 1000);
+		final SpatialIndex<Point> index = new SpatialIndex<>(100, 100, 5);
+		points.forEach(p -> index.add(p, p.x, p.y));
+		final Neighbors<Point> neighbors = new Neighbors<>(7);
+		for (int q = 0; q < 300; q++) {
+			final Point center = points.get(r.nextInt(points.size()));
+			final List<Point> expected = new ArrayList<>(points);
+			expected.remove(center);
+			expected.sort((a, b) -> Double.compare(a.distanceSquared(center.x, center.y), b.distanceSquared(center.x, center.y)));
+			assertEquals(7, index.getNearest(center, neighbors));
+			for (int i = 0; i < 7; i++) {
+				assertEquals(Math.sqrt(expected.get(i).distanceSquared(center.x, center.y)), neighbors.getDistance(i), 1e-9);
+			}
+			final double x = r.nextDouble() * 140 - 20, y = r.nextDouble() * 140 - 20;
+			expected.add(center);
+			expected.sort((a, b) -> Double.compare(a.distanceSquared(x, y), b.distanceSquared(x, y)));
+			index.getNearest(x, y, neighbors);
+			assertEquals(expected.get(0), neighbors.get(0));
+			assertEquals(Math.sqrt(expected.get(6).distanceSquared(x, y)), neighbors.getDistance(6), 1e-9);
+		}
+		final SpatialIndex<Point> small = new SpatialIndex<>(10, 10, 1);
+		small.add(points.get(0), 1, 1);
+		small.add(points.get(1), 9, 9);
+		assertEquals(2, small.getNearest(5, 5, neighbors));
+	}
+
+	@Test
+	public void removeAndReuse() {
+		final SpatialIndex<Point> index = new SpatialIndex<>(10, 10, 1);
+		final List<Point> points = randomPoints(new Random(3), 100);
+		points.forEach(p -> index.add(p, p.x / 10, p.y / 10));
+		for (int i = 0; i < 50; i++) {
+			assertTrue(index.remove(points.get(i)));
+		}
+		assertFalse(index.remove(points.get(0)));
+		assertFalse(index.contains(points.get(0)));
+		assertEquals(50, index.size());
+		assertEquals(50, index.getWithin(5, 5, 100, new ArrayList<>()));
+		index.add(points.get(0), 3, 4);
+		assertEquals(3, index.getX(points.get(0)), 0);
+		assertEquals(4, index.getY(points.get(0)), 0);
+		assertEquals(51, index.getWithin(5, 5, 100, new ArrayList<>()));
+		index.clear();
+		assertEquals(0, index.size());
+		assertEquals(0, index.getWithin(5, 5, 100, new ArrayList<>()));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void moveUnknownAgent() {
+		new SpatialIndex<Point>(10, 10, 1).move(new Point(0, 0), 1, 1);
+	}
+
+	@Test
+	public void parallelReads() {
+		final List<Point> points = randomPoints(new Random(4), 5000);
+		final SpatialIndex<Point> index = new SpatialIndex<>(100, 100, 4);
+		points.forEach(p -> index.add(p, p.x, p.y));
+		final int sequential = points.stream().mapToInt(p -> index.forEachWithin(p, 4, (o, d) -> {
+		})).sum();
+		final int parallel = IntStream.range(0, points.size()).parallel().map(i -> {
+			if (i % 10 == 0) {
+				final Point p = points.get(i);
+				index.move(p, p.x, p.y);
+			}
+			return index.forEachWithin(points.get(i), 4, (o, d) -> {
+			});
+		}).sum();
+		assertEquals(sequential, parallel);
+	}
+
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.simulation;
+
+import static madkit.kernel.AbstractAgent.ReturnCode.SUCCESS;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import madkit.kernel.AbstractAgent;
+import madkit.kernel.JunitMadkit;
+import madkit.simulation.probe.DoublePropertyProbe;
+import madkit.simulation.recorder.TimeSeriesReader;
+import madkit.simulation.recorder.TimeSeriesRecorder;
+import madkit.simulation.recorder.TimeSeriesRecorder.Format;
+import madkit.simulation.recorder.TimeSeriesRecorder.Statistic;
+import madkit.testing.util.agent.SimulatedAgent;
+
+import org.junit.Test;
+
+/**
+ * @author Fabien Michel
+ * @since MaDKit 5.2
+ * @version 0.9
+ * 
+ */
+
+public class TimeSeriesRecorderTest extends JunitMadkit {
+
+	@Test
+	public void binaryRecordsAreReadBack() throws IOException {
+		final Path file = Files.createTempFile("madkit", ".bin");
+		launchTest(new AbstractAgent() {
+
+			protected void activate() {
+				SimulatedAgent agent;
+				assertEquals(SUCCESS, launchAgent(agent = new SimulatedAgent()));
+				assertEquals(SUCCESS, launchAgent(new SimulatedAgent()));
+				final TimeSeriesRecorder recorder = new TimeSeriesRecorder(file, Format.BINARY, 100);
+				assertEquals(SUCCESS, launchAgent(recorder));
+				final DoublePropertyProbe<AbstractAgent> probe = new DoublePropertyProbe<>(COMMUNITY, GROUP, ROLE, "publicPrimitiveField");
+				recorder.addProbe(probe);
+				recorder.addColumns("field", probe::summarize, Statistic.COUNT, Statistic.MEAN, Statistic.MAX);
+				final SimulatedAgent a = agent;
+				recorder.addColumn("value", () -> a.publicPrimitiveField);
+				for (int i = 0; i < 250; i++) {
+					agent.publicPrimitiveField = i;
+					recorder.record(i * 0.5);
+				}
+				try {
+					recorder.addColumn("late", () -> 0);
+					noExceptionFailure();
+				} catch (IllegalStateException e) {
+				}
+				recorder.close();
+				assertEquals(250, recorder.getNbOfRecords());
+				try {
+					final TimeSeriesReader reader = new TimeSeriesReader(file);
+					assertEquals(Arrays.asList("time", "field.count", "field.mean", "field.max", "value"), reader.getColumnNames());
+					assertEquals(250, reader.getNbOfRecords());
+					for (int i = 0; i < 250; i++) {
+						assertEquals(i * 0.5, reader.getColumn(0)[i], 0);
+						assertEquals(2, reader.getColumn("field.count")[i], 0);
+						assertEquals((i + 2) / 2.0, reader.getColumn("field.mean")[i], 0);
+						assertEquals(Math.max(i, 2), reader.getColumn("field.max")[i], 0);
+						assertEquals(i, reader.getColumn("value")[i], 0);
+					}
+					Files.delete(file);
+				} catch (IOException e) {
+					e.printStackTrace();
+					fail(e.getMessage());
+				}
+			}
+		});
+	}
+
+	@Test
+	public void csvRecords() throws IOException {
+		final Path file = Files.createTempFile("madkit", ".csv");
+		launchTest(new AbstractAgent() {
+
+			protected void activate() {
+				final TimeSeriesRecorder recorder = new TimeSeriesRecorder(file, Format.CSV, 2);
+				assertEquals(SUCCESS, launchAgent(recorder));
+				recorder.addColumn("square", () -> recorder.getNbOfRecords() * recorder.getNbOfRecords());
+				for (int i = 0; i < 3; i++) {
+					recorder.record();
+				}
+				killAgent(recorder);
+				try {
+					final List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+					assertArrayEquals(new String[] { "time,square", "0.0,0.0", "1.0,1.0", "2.0,4.0" }, lines.toArray());
+					Files.delete(file);
+				} catch (IOException e) {
+					e.printStackTrace();
+					fail(e.getMessage());
+				}
+			}
+		});
+	}
+
+}